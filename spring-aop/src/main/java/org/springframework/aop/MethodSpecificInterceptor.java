@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop;
+
+import java.lang.reflect.Method;
+
+import org.aopalliance.intercept.MethodInterceptor;
+
+/**
+ * Subinterface of AOP Alliance MethodInterceptor for interceptors that can
+ * resolve their per-method state up front, when the advice chain for a method
+ * gets built, rather than on every invocation.
+ *
+ * <p>Advice chains are cached per method, so the returned interceptor will
+ * usually be used for all subsequent invocations of that method on the proxy.
+ * It still needs to cope with invocations on a target of a different class,
+ * e.g. when a TargetSource returns subclasses of its declared target class.
+ *
+ * @author agent
+ * @since 3.1
+ * @see org.springframework.aop.framework.DefaultAdvisorChainFactory
+ */
+public interface MethodSpecificInterceptor extends MethodInterceptor {
+
+	/**
+	 * Return an interceptor specialized for the given method.
+	 * @param method the proxied method
+	 * @param targetClass the target class (may be <code>null</code>)
+	 * @return the interceptor to use in the advice chain of the method
+	 * (may be this interceptor itself)
+	 */
+	MethodInterceptor getMethodSpecificInterceptor(Method method, Class targetClass);
+
+}
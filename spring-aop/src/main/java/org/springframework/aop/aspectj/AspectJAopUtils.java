@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,19 @@
 
 package org.springframework.aop.aspectj;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.aopalliance.aop.Advice;
 
 import org.springframework.aop.Advisor;
 import org.springframework.aop.AfterAdvice;
 import org.springframework.aop.BeforeAdvice;
+import org.springframework.aop.IntroductionAdvisor;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
 
 /**
  * Utility methods for dealing with AspectJ advisors.
@@ -69,4 +77,58 @@ public abstract class AspectJAopUtils {
 		return null;
 	}
 
+	/**
+	 * Remove those advisors from the given candidates whose AspectJ expression
+	 * pointcut cannot apply to the given class, judging from the type, annotation
+	 * and method name constraints in the text of the expression alone.
+	 * <p>This is a cheap pre-filtering step before the actual matching through
+	 * {@link org.springframework.aop.support.AopUtils#findAdvisorsThatCanApply},
+	 * avoiding the evaluation of most pointcut expressions against most classes
+	 * in applications with large numbers of aspects. It is conservative: advisors
+	 * with other kinds of pointcuts as well as expressions that cannot be analyzed
+	 * remain in place. If any introduction applies to the given class, all
+	 * candidates are retained since introduced types may affect matching.
+	 * @param candidateAdvisors the Advisors to evaluate
+	 * @param targetClass the target class
+	 * @return the sublist of Advisors that may apply to the given class
+	 * (may be the incoming List as-is)
+	 */
+	public static List<Advisor> prefilterAdvisors(List<Advisor> candidateAdvisors, Class<?> targetClass) {
+		if (candidateAdvisors.isEmpty()) {
+			return candidateAdvisors;
+		}
+		for (Advisor candidate : candidateAdvisors) {
+			if (candidate instanceof IntroductionAdvisor &&
+					((IntroductionAdvisor) candidate).getClassFilter().matches(targetClass)) {
+				return candidateAdvisors;
+			}
+		}
+		PointcutTypeConstraint.TargetType targetType = new PointcutTypeConstraint.TargetType(targetClass);
+		Map<PointcutTypeConstraint, Boolean> results = new IdentityHashMap<PointcutTypeConstraint, Boolean>();
+		List<Advisor> eligibleAdvisors = new ArrayList<Advisor>(candidateAdvisors.size());
+		for (Advisor candidate : candidateAdvisors) {
+			PointcutTypeConstraint constraint = getTypeConstraint(candidate);
+			Boolean result = results.get(constraint);
+			if (result == null) {
+				result = constraint.matches(targetType);
+				results.put(constraint, result);
+			}
+			if (result) {
+				eligibleAdvisors.add(candidate);
+			}
+		}
+		return (eligibleAdvisors.size() < candidateAdvisors.size() ? eligibleAdvisors : candidateAdvisors);
+	}
+
+	private static PointcutTypeConstraint getTypeConstraint(Advisor advisor) {
+		if (advisor instanceof PointcutAdvisor) {
+			Pointcut pointcut = ((PointcutAdvisor) advisor).getPointcut();
+			// Subclasses may customize matching beyond the expression itself...
+			if (pointcut != null && pointcut.getClass() == AspectJExpressionPointcut.class) {
+				return ((AspectJExpressionPointcut) pointcut).getTypeConstraint();
+			}
+		}
+		return PointcutTypeConstraint.ANY;
+	}
+
 }
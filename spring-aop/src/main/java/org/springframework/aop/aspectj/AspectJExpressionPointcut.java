@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -68,6 +68,17 @@ import org.springframework.util.StringUtils;
  * <p>Naturally, as this is to be processed by Spring AOP's proxy-based model,
  * only method execution pointcuts are supported.
  *
+ * <p>Note that the first match of each method against the expression holds a
+ * lock on this pointcut, since the AspectJ weaver's ReflectionWorld behind an
+ * expression is not documented to be thread-safe. Different pointcuts match
+ * concurrently, but threads that match many new methods against the same
+ * pointcut at once - e.g. when creating many prototype beans of different
+ * classes in parallel - are serialized. Only subsequent matches of a known
+ * method are lock-free. The class-level
+ * {@link #getTypeConstraint() type constraint} is evaluated without the lock
+ * and keeps most classes that the expression cannot apply to from reaching
+ * that point when used through {@link AspectJAopUtils#prefilterAdvisors}.
+ *
  * @author Rob Harrop
  * @author Adrian Colyer
  * @author Rod Johnson
@@ -109,6 +120,8 @@ public class AspectJExpressionPointcut extends AbstractExpressionPointcut
 
 	private transient Map<Method, ShadowMatch> shadowMatchCache = new ConcurrentHashMap<Method, ShadowMatch>(32);
 
+	private transient volatile PointcutTypeConstraint typeConstraint;
+
 
 	/**
 	 * Create a new default AspectJExpressionPointcut.
@@ -145,6 +158,7 @@ public class AspectJExpressionPointcut extends AbstractExpressionPointcut
 	 */
 	public void setParameterNames(String[] names) {
 		this.pointcutParameterNames = names;
+		this.typeConstraint = null;
 	}
 
 	/**
@@ -158,6 +172,11 @@ public class AspectJExpressionPointcut extends AbstractExpressionPointcut
 		this.beanFactory = beanFactory;
 	}
 
+	@Override
+	protected void onSetExpression(String expression) {
+		this.typeConstraint = null;
+	}
+
 
 	public ClassFilter getClassFilter() {
 		checkReadyToMatch();
@@ -235,6 +254,22 @@ public class AspectJExpressionPointcut extends AbstractExpressionPointcut
 	}
 
 
+	/**
+	 * Return the class-level constraint derived from the text of this pointcut's
+	 * expression, used to reject target classes without AspectJ evaluation.
+	 * @see AspectJAopUtils#prefilterAdvisors
+	 */
+	PointcutTypeConstraint getTypeConstraint() {
+		PointcutTypeConstraint constraint = this.typeConstraint;
+		if (constraint == null) {
+			constraint = (getExpression() != null ?
+					PointcutTypeConstraint.parse(replaceBooleanOperators(getExpression()), this.pointcutParameterNames) :
+					PointcutTypeConstraint.ANY);
+			this.typeConstraint = constraint;
+		}
+		return constraint;
+	}
+
 	/**
 	 * Return the underlying AspectJ pointcut expression.
 	 */
@@ -390,7 +425,8 @@ public class AspectJExpressionPointcut extends AbstractExpressionPointcut
 	}
 
 	private ShadowMatch getShadowMatch(Method targetMethod, Method originalMethod) {
-		// Avoid lock contention for known Methods through concurrent access...
+		// Avoid lock contention for known Methods through concurrent access.
+		// New Methods are matched under a per-pointcut lock: see class-level javadoc.
 		ShadowMatch shadowMatch = this.shadowMatchCache.get(targetMethod);
 		if (shadowMatch == null) {
 			synchronized (this.shadowMatchCache) {
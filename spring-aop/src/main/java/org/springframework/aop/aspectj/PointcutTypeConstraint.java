@@ -0,0 +1,654 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.aspectj;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Class-level constraint derived from the text of an AspectJ pointcut expression,
+ * allowing {@link AspectJAopUtils#prefilterAdvisors} to reject target classes
+ * without evaluating the expression through the AspectJ weaver.
+ *
+ * <p>A constraint is a conservative approximation: it only ever rejects a class
+ * if the expression cannot match any public method of it. The following
+ * designators contribute constraints, with all others (<code>args</code>,
+ * <code>this</code>, <code>@target</code>, <code>bean</code>, references to
+ * named pointcuts, negations etc) being treated as matching any class:
+ * <ul>
+ * <li><code>execution</code>: the declaring type pattern against the class hierarchy,
+ * and the method name pattern against the public method names
+ * <li><code>within</code>: the type pattern against the class hierarchy
+ * <li><code>target</code>: the type name against the class hierarchy
+ * <li><code>@within</code>: the annotation type against the class hierarchy
+ * <li><code>@annotation</code>: the annotation type against the public methods
+ * </ul>
+ * Unqualified type names are compared to simple class names, since they may refer
+ * to types in the aspect's package or in imported packages. If the expression
+ * cannot be parsed, it does not constrain the class at all.
+ *
+ * @author agent
+ * @since 3.1
+ * @see AspectJExpressionPointcut#getTypeConstraint()
+ */
+abstract class PointcutTypeConstraint {
+
+	/**
+	 * Constraint that matches any class.
+	 */
+	static final PointcutTypeConstraint ANY = new PointcutTypeConstraint() {
+		@Override
+		public boolean matches(TargetType targetType) {
+			return true;
+		}
+		@Override
+		public String toString() {
+			return "any";
+		}
+	};
+
+
+	/**
+	 * Determine whether the given target type passes this constraint.
+	 * @param targetType the target type index
+	 * @return <code>false</code> if the pointcut cannot match any method
+	 * of the given type, <code>true</code> if it may match
+	 */
+	public abstract boolean matches(TargetType targetType);
+
+
+	/**
+	 * Derive the constraint for the given pointcut expression.
+	 * @param expression the expression, with boolean operators in AspectJ syntax
+	 * @param parameterNames the names of the pointcut parameters, which identify
+	 * binding forms of designators such as <code>@annotation(tx)</code>
+	 * @return the constraint (never <code>null</code>; {@link #ANY} if the
+	 * expression does not constrain the target type)
+	 */
+	public static PointcutTypeConstraint parse(String expression, String[] parameterNames) {
+		if (expression == null) {
+			return ANY;
+		}
+		try {
+			ExpressionParser parser = new ExpressionParser(expression, parameterNames);
+			PointcutTypeConstraint constraint = parser.parseOr();
+			parser.skipWhitespace();
+			return (parser.isAtEnd() ? constraint : ANY);
+		}
+		catch (IllegalArgumentException ex) {
+			return ANY;
+		}
+	}
+
+	private static PointcutTypeConstraint and(PointcutTypeConstraint left, PointcutTypeConstraint right) {
+		if (left == ANY) {
+			return right;
+		}
+		if (right == ANY) {
+			return left;
+		}
+		return new AndConstraint(left, right);
+	}
+
+	private static PointcutTypeConstraint or(PointcutTypeConstraint left, PointcutTypeConstraint right) {
+		if (left == ANY || right == ANY) {
+			return ANY;
+		}
+		return new OrConstraint(left, right);
+	}
+
+
+	/**
+	 * Recursive descent parser for the boolean structure of a pointcut expression.
+	 */
+	private static class ExpressionParser {
+
+		private final String expression;
+
+		private final String[] parameterNames;
+
+		private int pos;
+
+		public ExpressionParser(String expression, String[] parameterNames) {
+			this.expression = expression;
+			this.parameterNames = parameterNames;
+		}
+
+		public PointcutTypeConstraint parseOr() {
+			PointcutTypeConstraint result = parseAnd();
+			while (consume("||")) {
+				result = or(result, parseAnd());
+			}
+			return result;
+		}
+
+		private PointcutTypeConstraint parseAnd() {
+			PointcutTypeConstraint result = parseUnary();
+			while (consume("&&")) {
+				result = and(result, parseUnary());
+			}
+			return result;
+		}
+
+		private PointcutTypeConstraint parseUnary() {
+			if (consume("!")) {
+				parseUnary();
+				return ANY;
+			}
+			if (consume("(")) {
+				PointcutTypeConstraint result = parseOr();
+				if (!consume(")")) {
+					throw new IllegalArgumentException("Unbalanced parentheses");
+				}
+				return result;
+			}
+			int start = this.pos;
+			while (this.pos < this.expression.length() && isDesignatorChar(this.expression.charAt(this.pos))) {
+				this.pos++;
+			}
+			String designator = this.expression.substring(start, this.pos);
+			if (designator.length() == 0 || !consume("(")) {
+				throw new IllegalArgumentException("Designator expected at position " + start);
+			}
+			int bodyStart = this.pos;
+			int depth = 1;
+			while (depth > 0) {
+				if (this.pos >= this.expression.length()) {
+					throw new IllegalArgumentException("Unbalanced parentheses");
+				}
+				char c = this.expression.charAt(this.pos++);
+				if (c == '(') {
+					depth++;
+				}
+				else if (c == ')') {
+					depth--;
+				}
+			}
+			return createConstraint(designator, this.expression.substring(bodyStart, this.pos - 1).trim());
+		}
+
+		private PointcutTypeConstraint createConstraint(String designator, String body) {
+			if ("execution".equals(designator)) {
+				return createExecutionConstraint(body);
+			}
+			else if ("within".equals(designator)) {
+				TypeNamePattern pattern = TypeNamePattern.parse(body);
+				return (pattern != null ? new TypeHierarchyConstraint(pattern) : ANY);
+			}
+			else if ("target".equals(designator)) {
+				TypeNamePattern pattern = parseTypeReference(body);
+				return (pattern != null ? new TypeHierarchyConstraint(pattern) : ANY);
+			}
+			else if ("@within".equals(designator)) {
+				TypeNamePattern pattern = parseTypeReference(body);
+				return (pattern != null ? new TypeAnnotationConstraint(pattern) : ANY);
+			}
+			else if ("@annotation".equals(designator)) {
+				TypeNamePattern pattern = parseTypeReference(body);
+				return (pattern != null ? new MethodAnnotationConstraint(pattern) : ANY);
+			}
+			return ANY;
+		}
+
+		/**
+		 * Parse the signature of an <code>execution</code> designator, i.e.
+		 * "[modifiers] returnType [declaringType.]name(parameters) [throws ...]".
+		 */
+		private PointcutTypeConstraint createExecutionConstraint(String body) {
+			int throwsIndex = body.indexOf(" throws ");
+			if (throwsIndex != -1) {
+				body = body.substring(0, throwsIndex).trim();
+			}
+			int paramsIndex = body.indexOf('(');
+			if (paramsIndex == -1 || body.charAt(body.length() - 1) != ')' ||
+					body.indexOf(')') != body.length() - 1) {
+				return ANY;
+			}
+			String signature = body.substring(0, paramsIndex).trim();
+			String qualifiedName = signature.substring(signature.lastIndexOf(' ') + 1);
+			if (qualifiedName.length() == 0 || !isTypePatternString(qualifiedName)) {
+				return ANY;
+			}
+			int separator = qualifiedName.lastIndexOf('.');
+			String methodName = qualifiedName.substring(separator + 1);
+			if (methodName.length() == 0 || methodName.indexOf('+') != -1) {
+				return ANY;
+			}
+			PointcutTypeConstraint result = ANY;
+			if (separator > 0 && qualifiedName.charAt(separator - 1) != '.') {
+				TypeNamePattern typePattern = TypeNamePattern.parse(qualifiedName.substring(0, separator));
+				if (typePattern != null) {
+					result = new TypeHierarchyConstraint(typePattern);
+				}
+			}
+			if (!"*".equals(methodName)) {
+				result = and(result, new MethodNameConstraint(methodName));
+			}
+			return result;
+		}
+
+		/**
+		 * Parse a non-wildcard type name, as long as it does not refer to a pointcut parameter.
+		 */
+		private TypeNamePattern parseTypeReference(String body) {
+			if (body.indexOf('*') != -1 || body.indexOf('+') != -1 ||
+					ObjectUtils.containsElement(this.parameterNames, body) ||
+					(body.indexOf('.') == -1 && body.length() > 0 && Character.isLowerCase(body.charAt(0)))) {
+				return null;
+			}
+			return TypeNamePattern.parse(body);
+		}
+
+		private boolean consume(String token) {
+			skipWhitespace();
+			if (this.expression.startsWith(token, this.pos)) {
+				this.pos += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		public void skipWhitespace() {
+			while (this.pos < this.expression.length() && Character.isWhitespace(this.expression.charAt(this.pos))) {
+				this.pos++;
+			}
+		}
+
+		public boolean isAtEnd() {
+			return (this.pos == this.expression.length());
+		}
+
+		private static boolean isDesignatorChar(char c) {
+			return (Character.isJavaIdentifierPart(c) || c == '.' || c == '@');
+		}
+	}
+
+
+	private static boolean isTypePatternString(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (!Character.isJavaIdentifierPart(c) && c != '.' && c != '*' && c != '+') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * An AspectJ type name pattern such as "com.mycompany..*Service+",
+	 * matched against the names collected in a {@link TargetType}.
+	 */
+	static class TypeNamePattern {
+
+		private final String literal;
+
+		private final String prefix;
+
+		private final String suffix;
+
+		private final Pattern regex;
+
+		private final boolean qualified;
+
+		private TypeNamePattern(String literal, String prefix, String suffix, Pattern regex, boolean qualified) {
+			this.literal = literal;
+			this.prefix = prefix;
+			this.suffix = suffix;
+			this.regex = regex;
+			this.qualified = qualified;
+		}
+
+		/**
+		 * Parse the given type pattern, ignoring a trailing "+" since all
+		 * supertypes get matched anyway.
+		 * @return the pattern, or <code>null</code> if it does not constrain
+		 * the type or uses unsupported syntax
+		 */
+		public static TypeNamePattern parse(String pattern) {
+			if (pattern.endsWith("+")) {
+				pattern = pattern.substring(0, pattern.length() - 1);
+			}
+			if (pattern.length() == 0 || "*".equals(pattern) || !isTypePatternString(pattern) ||
+					pattern.indexOf('+') != -1 || pattern.startsWith(".") || pattern.endsWith(".") ||
+					pattern.indexOf("...") != -1) {
+				return null;
+			}
+			boolean qualified = (pattern.indexOf('.') != -1);
+			if (pattern.indexOf('*') == -1 && pattern.indexOf("..") == -1) {
+				return new TypeNamePattern(pattern, null, null, null, qualified);
+			}
+			StringBuilder regex = new StringBuilder();
+			int i = 0;
+			int prefixEnd = -1;
+			if (pattern.startsWith("*..")) {
+				regex.append("(?:.*\\.)?");
+				i = 3;
+				prefixEnd = 0;
+			}
+			for (; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+				if (c == '*' || (c == '.' && pattern.startsWith("..", i))) {
+					if (prefixEnd == -1) {
+						prefixEnd = i;
+					}
+					if (c == '*') {
+						regex.append("[^.]*");
+					}
+					else {
+						regex.append("\\.(?:.*\\.)?");
+						i++;
+					}
+				}
+				else if (c == '.' || c == '$') {
+					regex.append('\\').append(c);
+				}
+				else {
+					regex.append(c);
+				}
+			}
+			String prefix = (prefixEnd > 0 ? pattern.substring(0, prefixEnd) : null);
+			int suffixStart = Math.max(pattern.lastIndexOf('*'), pattern.lastIndexOf("..") + 1) + 1;
+			String suffix = (suffixStart < pattern.length() ? pattern.substring(suffixStart) : null);
+			return new TypeNamePattern(null, prefix, suffix, Pattern.compile(regex.toString()), qualified);
+		}
+
+		public boolean matches(Set<String> qualifiedNames, Set<String> simpleNames) {
+			Set<String> names = (this.qualified ? qualifiedNames : simpleNames);
+			if (this.literal != null) {
+				return names.contains(this.literal);
+			}
+			for (String name : names) {
+				if ((this.prefix == null || name.startsWith(this.prefix)) &&
+						(this.suffix == null || name.endsWith(this.suffix)) && this.regex.matcher(name).matches()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return (this.literal != null ? this.literal : this.regex.pattern());
+		}
+	}
+
+
+	/**
+	 * Index of the names relevant for constraint matching of a specific target class:
+	 * the names of all types in its hierarchy and of their annotations, as well as the
+	 * names and annotations of its public methods. Every name is registered in its
+	 * qualified form, in all its dot-separated suffixes, and in its simple form.
+	 */
+	static class TargetType {
+
+		private final Class<?> targetClass;
+
+		private final Set<Class<?>> hierarchy = new LinkedHashSet<Class<?>>();
+
+		private final Set<String> qualifiedTypeNames = new HashSet<String>();
+
+		private final Set<String> simpleTypeNames = new HashSet<String>();
+
+		private Set<String> qualifiedTypeAnnotationNames;
+
+		private Set<String> simpleTypeAnnotationNames;
+
+		private Set<String> methodNames;
+
+		private Set<String> qualifiedMethodAnnotationNames;
+
+		private Set<String> simpleMethodAnnotationNames;
+
+		public TargetType(Class<?> targetClass) {
+			this.targetClass = targetClass;
+			collectHierarchy(targetClass);
+			this.hierarchy.add(Object.class);
+			for (Class<?> type : this.hierarchy) {
+				addName(type.getName(), this.qualifiedTypeNames, this.simpleTypeNames);
+			}
+		}
+
+		private void collectHierarchy(Class<?> type) {
+			if (type != null && this.hierarchy.add(type)) {
+				collectHierarchy(type.getSuperclass());
+				for (Class<?> ifc : type.getInterfaces()) {
+					collectHierarchy(ifc);
+				}
+			}
+		}
+
+		public boolean hasType(TypeNamePattern pattern) {
+			return pattern.matches(this.qualifiedTypeNames, this.simpleTypeNames);
+		}
+
+		public boolean hasTypeAnnotation(TypeNamePattern pattern) {
+			if (this.qualifiedTypeAnnotationNames == null) {
+				this.qualifiedTypeAnnotationNames = new HashSet<String>();
+				this.simpleTypeAnnotationNames = new HashSet<String>();
+				for (Class<?> type : this.hierarchy) {
+					addAnnotationNames(type.getDeclaredAnnotations(),
+							this.qualifiedTypeAnnotationNames, this.simpleTypeAnnotationNames);
+				}
+			}
+			return pattern.matches(this.qualifiedTypeAnnotationNames, this.simpleTypeAnnotationNames);
+		}
+
+		public boolean hasMethod(Pattern namePattern) {
+			initMethodNames();
+			for (String name : this.methodNames) {
+				if (namePattern.matcher(name).matches()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public boolean hasMethodAnnotation(TypeNamePattern pattern) {
+			initMethodNames();
+			return pattern.matches(this.qualifiedMethodAnnotationNames, this.simpleMethodAnnotationNames);
+		}
+
+		private void initMethodNames() {
+			if (this.methodNames == null) {
+				this.methodNames = new HashSet<String>();
+				this.qualifiedMethodAnnotationNames = new HashSet<String>();
+				this.simpleMethodAnnotationNames = new HashSet<String>();
+				addMethods(this.targetClass);
+				for (Class<?> type : this.hierarchy) {
+					if (type.isInterface()) {
+						addMethods(type);
+					}
+				}
+			}
+		}
+
+		private void addMethods(Class<?> type) {
+			for (Method method : type.getMethods()) {
+				this.methodNames.add(method.getName());
+				addAnnotationNames(method.getAnnotations(),
+						this.qualifiedMethodAnnotationNames, this.simpleMethodAnnotationNames);
+			}
+		}
+
+		private static void addAnnotationNames(Annotation[] annotations, Set<String> qualifiedNames, Set<String> simpleNames) {
+			for (Annotation annotation : annotations) {
+				addName(annotation.annotationType().getName(), qualifiedNames, simpleNames);
+			}
+		}
+
+		private static void addName(String className, Set<String> qualifiedNames, Set<String> simpleNames) {
+			addSuffixes(className, qualifiedNames, simpleNames);
+			if (className.indexOf('$') != -1) {
+				addSuffixes(className.replace('$', '.'), qualifiedNames, simpleNames);
+			}
+		}
+
+		private static void addSuffixes(String name, Set<String> qualifiedNames, Set<String> simpleNames) {
+			int index = 0;
+			while (index != -1) {
+				String suffix = name.substring(index);
+				qualifiedNames.add(suffix);
+				index = name.indexOf('.', index) + 1;
+				if (index == 0) {
+					simpleNames.add(suffix);
+					index = -1;
+				}
+			}
+		}
+	}
+
+
+	private static class AndConstraint extends PointcutTypeConstraint {
+
+		private final PointcutTypeConstraint left;
+
+		private final PointcutTypeConstraint right;
+
+		public AndConstraint(PointcutTypeConstraint left, PointcutTypeConstraint right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return (this.left.matches(targetType) && this.right.matches(targetType));
+		}
+
+		@Override
+		public String toString() {
+			return "(" + this.left + " && " + this.right + ")";
+		}
+	}
+
+
+	private static class OrConstraint extends PointcutTypeConstraint {
+
+		private final PointcutTypeConstraint left;
+
+		private final PointcutTypeConstraint right;
+
+		public OrConstraint(PointcutTypeConstraint left, PointcutTypeConstraint right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return (this.left.matches(targetType) || this.right.matches(targetType));
+		}
+
+		@Override
+		public String toString() {
+			return "(" + this.left + " || " + this.right + ")";
+		}
+	}
+
+
+	private static class TypeHierarchyConstraint extends PointcutTypeConstraint {
+
+		private final TypeNamePattern pattern;
+
+		public TypeHierarchyConstraint(TypeNamePattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return targetType.hasType(this.pattern);
+		}
+
+		@Override
+		public String toString() {
+			return "type " + this.pattern;
+		}
+	}
+
+
+	private static class TypeAnnotationConstraint extends PointcutTypeConstraint {
+
+		private final TypeNamePattern pattern;
+
+		public TypeAnnotationConstraint(TypeNamePattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return targetType.hasTypeAnnotation(this.pattern);
+		}
+
+		@Override
+		public String toString() {
+			return "type annotation " + this.pattern;
+		}
+	}
+
+
+	private static class MethodNameConstraint extends PointcutTypeConstraint {
+
+		private final Pattern pattern;
+
+		public MethodNameConstraint(String namePattern) {
+			StringBuilder regex = new StringBuilder();
+			for (String part : namePattern.split("\\*", -1)) {
+				if (regex.length() > 0) {
+					regex.append(".*");
+				}
+				regex.append(Pattern.quote(part));
+			}
+			this.pattern = Pattern.compile(regex.toString());
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return targetType.hasMethod(this.pattern);
+		}
+
+		@Override
+		public String toString() {
+			return "method " + this.pattern;
+		}
+	}
+
+
+	private static class MethodAnnotationConstraint extends PointcutTypeConstraint {
+
+		private final TypeNamePattern pattern;
+
+		public MethodAnnotationConstraint(TypeNamePattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean matches(TargetType targetType) {
+			return targetType.hasMethodAnnotation(this.pattern);
+		}
+
+		@Override
+		public String toString() {
+			return "method annotation " + this.pattern;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import org.aspectj.util.PartialOrder.PartialComparable;
 
 import org.springframework.aop.Advisor;
 import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.aspectj.AspectJAopUtils;
 import org.springframework.aop.aspectj.AspectJPointcutAdvisor;
 import org.springframework.aop.aspectj.AspectJProxyUtils;
 import org.springframework.aop.framework.autoproxy.AbstractAdvisorAutoProxyCreator;
@@ -47,6 +48,22 @@ public class AspectJAwareAdvisorAutoProxyCreator extends AbstractAdvisorAutoProx
 
 	private static final Comparator DEFAULT_PRECEDENCE_COMPARATOR = new AspectJPrecedenceComparator();
 
+	private boolean prefilterAdvisors = true;
+
+
+	/**
+	 * Set whether to pre-filter candidate Advisors by the type, annotation and
+	 * method name constraints in the text of their AspectJ pointcut expressions,
+	 * before evaluating the remaining expressions through the AspectJ weaver.
+	 * <p>Default is "true". Switch this off to evaluate every expression against
+	 * every bean class, e.g. in case of pointcut subtleties that the conservative
+	 * pre-filter does not account for.
+	 * @see AspectJAopUtils#prefilterAdvisors
+	 */
+	public void setPrefilterAdvisors(boolean prefilterAdvisors) {
+		this.prefilterAdvisors = prefilterAdvisors;
+	}
+
 
 	/**
 	 * Sort the rest by AspectJ precedence. If two pieces of advice have
@@ -91,6 +108,21 @@ public class AspectJAwareAdvisorAutoProxyCreator extends AbstractAdvisorAutoProx
 		return result;
 	}
 
+	/**
+	 * Pre-filters the candidate Advisors by the constraints in their pointcut
+	 * expressions before delegating to the full matching algorithm.
+	 * @see #setPrefilterAdvisors
+	 */
+	@Override
+	protected List<Advisor> findAdvisorsThatCanApply(
+			List<Advisor> candidateAdvisors, Class beanClass, String beanName) {
+
+		if (this.prefilterAdvisors) {
+			candidateAdvisors = AspectJAopUtils.prefilterAdvisors(candidateAdvisors, beanClass);
+		}
+		return super.findAdvisorsThatCanApply(candidateAdvisors, beanClass, beanName);
+	}
+
 	/**
 	 * Adds an {@link ExposeInvocationInterceptor} to the beginning of the advice chain.
 	 * These additional advices are needed when using AspectJ expression pointcuts
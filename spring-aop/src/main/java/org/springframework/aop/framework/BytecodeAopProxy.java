@@ -0,0 +1,322 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.aop.framework;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.AfterReturningAdvice;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.RawTargetAccess;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.adapter.AfterReturningAdviceInterceptor;
+import org.springframework.aop.framework.adapter.MethodBeforeAdviceInterceptor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * AOP proxy that compiles a frozen configuration into a generated class,
+ * as an alternative to a {@link JdkDynamicAopProxy} for the same interfaces.
+ * Used when {@link ProxyConfig#setCompiled "compiled"} is set.
+ *
+ * <p>Since advisors cannot change on a frozen configuration and the target is
+ * static, the interceptor chain of every proxied method can be determined once,
+ * when the proxy is created. The generated class then implements each method
+ * with dedicated bytecode (see {@link BytecodeProxyGenerator}):
+ * <ul>
+ * <li>methods without advice call the target method directly, without
+ * argument arrays, chain lookup or reflection;
+ * <li>methods with before and after returning advice only apply that advice
+ * in a simple loop around a direct call of the target method;
+ * <li>all other methods proceed through a {@link ReflectiveMethodInvocation}
+ * as usual, which invokes the target method directly at the end of the chain.
+ * </ul>
+ *
+ * <p>Generated classes are shared between proxies with the same interfaces
+ * and the same set of advised methods. Configurations that cannot be compiled -
+ * for example because of non-public interfaces or a ClassLoader that cannot see
+ * Spring's AOP classes - fall back to a regular JDK dynamic proxy.
+ *
+ * <p>In contrast to JDK dynamic proxies, compiled proxies are not serializable.
+ *
+ * @author agent
+ * @since 3.1
+ * @see ProxyConfig#setCompiled
+ * @see BytecodeProxySupport
+ */
+final class BytecodeAopProxy implements AopProxy {
+
+	private static final Log logger = LogFactory.getLog(BytecodeAopProxy.class);
+
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	/**
+	 * Generated proxy classes, per parent ClassLoader. Keys identify interfaces
+	 * by name only, which is unambiguous since they are all visible from that
+	 * ClassLoader, so that the cache does not hold on to any ClassLoader itself.
+	 */
+	private static final Map<ClassLoader, Map<List<String>, Reference<Class<?>>>> proxyClassCache =
+			new WeakHashMap<ClassLoader, Map<List<String>, Reference<Class<?>>>>();
+
+
+	/** Config used to configure this proxy */
+	private final AdvisedSupport advised;
+
+
+	/**
+	 * Construct a new BytecodeAopProxy for the given AOP configuration.
+	 * @param config the AOP configuration as AdvisedSupport object
+	 * @throws AopConfigException if the config is invalid
+	 */
+	public BytecodeAopProxy(AdvisedSupport config) throws AopConfigException {
+		Assert.notNull(config, "AdvisedSupport must not be null");
+		if (config.getAdvisors().length == 0 && config.getTargetSource() == AdvisedSupport.EMPTY_TARGET_SOURCE) {
+			throw new AopConfigException("No advisors and no TargetSource specified");
+		}
+		this.advised = config;
+	}
+
+	/**
+	 * Determine whether the given configuration qualifies for compilation:
+	 * it needs to be frozen, must not expose the proxy, and must have a
+	 * static TargetSource.
+	 * @param config the AOP configuration to check
+	 */
+	public static boolean isApplicable(AdvisedSupport config) {
+		return (config.isCompiled() && config.isFrozen() && !config.isExposeProxy() &&
+				config.getTargetSource().isStatic());
+	}
+
+
+	public Object getProxy() {
+		return getProxy(ClassUtils.getDefaultClassLoader());
+	}
+
+	public Object getProxy(ClassLoader classLoader) {
+		Class<?>[] proxiedInterfaces = AopProxyUtils.completeProxiedInterfaces(this.advised);
+		Object target = getTarget();
+		Method[] methods = (target != null && isAccessible(BytecodeProxySupport.class, classLoader) ?
+				getProxiedMethods(proxiedInterfaces, classLoader) : null);
+		if (methods == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cannot compile proxy for target source " + this.advised.getTargetSource() +
+						" - falling back to JDK dynamic proxy");
+			}
+			return new JdkDynamicAopProxy(this.advised).getProxy(classLoader);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Creating compiled proxy: target source is " + this.advised.getTargetSource());
+		}
+
+		BytecodeProxySupport.MethodPlan[] plans = new BytecodeProxySupport.MethodPlan[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			plans[i] = createMethodPlan(methods[i], target.getClass(), proxiedInterfaces);
+		}
+		Class<?> proxyClass = getProxyClass(classLoader, proxiedInterfaces, methods, plans);
+		try {
+			Constructor<?> ctor = proxyClass.getConstructor(
+					AdvisedSupport.class, Object.class, BytecodeProxySupport.MethodPlan[].class);
+			return ctor.newInstance(this.advised, target, plans);
+		}
+		catch (Exception ex) {
+			throw new AopConfigException("Could not instantiate generated proxy class [" + proxyClass.getName() + "]", ex);
+		}
+	}
+
+	private Object getTarget() {
+		TargetSource targetSource = this.advised.getTargetSource();
+		try {
+			return targetSource.getTarget();
+		}
+		catch (Exception ex) {
+			throw new AopConfigException("Could not obtain target from static TargetSource " + targetSource, ex);
+		}
+	}
+
+	/**
+	 * Determine the methods that the generated class needs to implement,
+	 * sorted by signature for a stable index order.
+	 * @return the methods, or <code>null</code> if a proxy class cannot be
+	 * generated for the given interfaces
+	 */
+	private Method[] getProxiedMethods(Class<?>[] proxiedInterfaces, ClassLoader classLoader) {
+		Map<String, Method> methods = new TreeMap<String, Method>();
+		Method toStringMethod = ReflectionUtils.findMethod(Object.class, "toString");
+		methods.put(getSignature(toStringMethod), toStringMethod);
+		for (Class<?> proxiedInterface : proxiedInterfaces) {
+			if (!isAccessible(proxiedInterface, classLoader)) {
+				return null;
+			}
+			for (Method method : proxiedInterface.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				if (!this.advised.isOpaque() && method.getDeclaringClass().isAssignableFrom(Advised.class)) {
+					// Implemented by BytecodeProxySupport itself.
+					continue;
+				}
+				if (AopUtils.isEqualsMethod(method) || AopUtils.isHashCodeMethod(method) ||
+						(!AopUtils.isToStringMethod(method) &&
+								ReflectionUtils.findMethod(BytecodeProxySupport.class, method.getName(), method.getParameterTypes()) != null) ||
+						!isAccessible(method.getDeclaringClass(), classLoader) ||
+						!isAccessible(method.getReturnType(), classLoader)) {
+					return null;
+				}
+				for (Class<?> paramType : method.getParameterTypes()) {
+					if (!isAccessible(paramType, classLoader)) {
+						return null;
+					}
+				}
+				Method existing = methods.put(getSignature(method), method);
+				if (existing != null && existing.getReturnType() != method.getReturnType() &&
+						!AopUtils.isToStringMethod(method)) {
+					// Covariant declarations across interfaces would require bridge methods.
+					return null;
+				}
+			}
+		}
+		return methods.values().toArray(new Method[methods.size()]);
+	}
+
+	private static String getSignature(Method method) {
+		return method.getName() + Arrays.asList(method.getParameterTypes());
+	}
+
+	private BytecodeProxySupport.MethodPlan createMethodPlan(
+			Method method, Class<?> targetClass, Class<?>[] proxiedInterfaces) {
+
+		List<Object> chain = this.advised.getInterceptorsAndDynamicInterceptionAdvice(method, targetClass);
+		List<MethodBeforeAdvice> beforeAdvices = new ArrayList<MethodBeforeAdvice>();
+		List<AfterReturningAdvice> afterReturningAdvices = new ArrayList<AfterReturningAdvice>();
+		boolean flat = !chain.isEmpty();
+		for (Object interceptor : chain) {
+			if (interceptor.getClass() == MethodBeforeAdviceInterceptor.class) {
+				beforeAdvices.add(((MethodBeforeAdviceInterceptor) interceptor).getAdvice());
+			}
+			else if (interceptor.getClass() == AfterReturningAdviceInterceptor.class) {
+				afterReturningAdvices.add(((AfterReturningAdviceInterceptor) interceptor).getAdvice());
+			}
+			else {
+				flat = false;
+				break;
+			}
+		}
+		return new BytecodeProxySupport.MethodPlan(method, targetClass, chain,
+				(flat ? beforeAdvices.toArray(new MethodBeforeAdvice[beforeAdvices.size()]) : null),
+				(flat ? afterReturningAdvices.toArray(new AfterReturningAdvice[afterReturningAdvices.size()]) : null),
+				isProxyReturnType(method, proxiedInterfaces));
+	}
+
+	/**
+	 * Determine whether the proxy may be returned in place of the target,
+	 * analogous to the corresponding check in {@link JdkDynamicAopProxy}.
+	 */
+	private static boolean isProxyReturnType(Method method, Class<?>[] proxiedInterfaces) {
+		Class<?> returnType = method.getReturnType();
+		if (returnType.isPrimitive() || RawTargetAccess.class.isAssignableFrom(method.getDeclaringClass())) {
+			return false;
+		}
+		if (returnType.isAssignableFrom(BytecodeProxySupport.class)) {
+			return true;
+		}
+		for (Class<?> proxiedInterface : proxiedInterfaces) {
+			if (returnType.isAssignableFrom(proxiedInterface)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAccessible(Class<?> clazz, ClassLoader classLoader) {
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		return (clazz.isPrimitive() ||
+				(Modifier.isPublic(clazz.getModifiers()) && classLoader != null && ClassUtils.isVisible(clazz, classLoader)));
+	}
+
+	/**
+	 * Obtain the generated class for the given interfaces and plans,
+	 * generating it on first request.
+	 */
+	private static Class<?> getProxyClass(ClassLoader classLoader, Class<?>[] proxiedInterfaces,
+			Method[] methods, BytecodeProxySupport.MethodPlan[] plans) {
+
+		// The generated code only depends on the methods and on which of them are advised.
+		List<String> key = new ArrayList<String>(proxiedInterfaces.length + 1);
+		for (Class<?> proxiedInterface : proxiedInterfaces) {
+			key.add(proxiedInterface.getName());
+		}
+		StringBuilder shape = new StringBuilder(plans.length);
+		for (BytecodeProxySupport.MethodPlan plan : plans) {
+			shape.append(plan.isDirect() ? 'D' : 'I');
+		}
+		key.add(shape.toString());
+
+		synchronized (proxyClassCache) {
+			Map<List<String>, Reference<Class<?>>> classes = proxyClassCache.get(classLoader);
+			if (classes == null) {
+				classes = new HashMap<List<String>, Reference<Class<?>>>();
+				proxyClassCache.put(classLoader, classes);
+			}
+			Reference<Class<?>> ref = classes.get(key);
+			Class<?> proxyClass = (ref != null ? ref.get() : null);
+			if (proxyClass == null) {
+				String className = BytecodeProxySupport.class.getPackage().getName() +
+						".BytecodeProxy" + classCounter.incrementAndGet();
+				byte[] bytes = new BytecodeProxyGenerator(className, proxiedInterfaces, methods, plans).generate();
+				proxyClass = new ProxyClassLoader(classLoader).defineProxyClass(className, bytes);
+				classes.put(key, new WeakReference<Class<?>>(proxyClass));
+			}
+			return proxyClass;
+		}
+	}
+
+
+	/**
+	 * ClassLoader that defines a single generated proxy class,
+	 * delegating to the proxy's ClassLoader for everything else.
+	 */
+	private static class ProxyClassLoader extends ClassLoader {
+
+		public ProxyClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		public Class<?> defineProxyClass(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length, BytecodeProxySupport.class.getProtectionDomain());
+		}
+	}
+
+}
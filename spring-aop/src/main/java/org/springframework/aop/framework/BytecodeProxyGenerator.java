@@ -0,0 +1,300 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.aop.framework;
+
+import java.lang.reflect.Method;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+/**
+ * Generates the bytecode of a {@link BytecodeProxySupport} subclass for a
+ * given set of interfaces and method plans.
+ *
+ * <p>Each proxied method becomes a plain method on the generated class:
+ * Methods without interceptor chain load the target, cast it to the declaring
+ * interface and call the method with <code>invokeinterface</code>; advised
+ * methods box their arguments and delegate to {@link BytecodeProxySupport#invoke}.
+ * The joinpoint at the end of an interceptor chain is implemented by a
+ * <code>tableswitch</code> over the method indexes in
+ * {@link BytecodeProxySupport#invokeTarget}, again calling the target directly.
+ *
+ * <p>Emits Java 5 class files, which do not require stack map frames.
+ *
+ * @author agent
+ * @since 3.1
+ * @see BytecodeAopProxy
+ */
+class BytecodeProxyGenerator implements Opcodes {
+
+	private static final String SUPER_NAME = Type.getInternalName(BytecodeProxySupport.class);
+
+	private static final String OBJECT_NAME = Type.getInternalName(Object.class);
+
+	private static final String CONSTRUCTOR_DESCRIPTOR = "(" + Type.getDescriptor(AdvisedSupport.class) +
+			Type.getDescriptor(Object.class) + Type.getDescriptor(BytecodeProxySupport.MethodPlan[].class) + ")V";
+
+	private static final String INVOKE_DESCRIPTOR = "(I[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	private static final String PROCESS_RETURN_VALUE_DESCRIPTOR = "(Ljava/lang/Object;)Ljava/lang/Object;";
+
+
+	private final String className;
+
+	private final Class<?>[] interfaces;
+
+	private final Method[] methods;
+
+	private final BytecodeProxySupport.MethodPlan[] plans;
+
+
+	/**
+	 * Create a new generator for the given proxy class.
+	 * @param className the fully qualified name of the class to generate
+	 * @param interfaces the interfaces that the class implements
+	 * @param methods the methods to implement, in index order
+	 * @param plans the plans of those methods, in the same order
+	 */
+	public BytecodeProxyGenerator(String className, Class<?>[] interfaces,
+			Method[] methods, BytecodeProxySupport.MethodPlan[] plans) {
+
+		this.className = className.replace('.', '/');
+		this.interfaces = interfaces;
+		this.methods = methods;
+		this.plans = plans;
+	}
+
+
+	/**
+	 * Generate the class file.
+	 */
+	public byte[] generate() {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		String[] interfaceNames = new String[this.interfaces.length];
+		for (int i = 0; i < this.interfaces.length; i++) {
+			interfaceNames[i] = Type.getInternalName(this.interfaces[i]);
+		}
+		cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+				this.className, null, SUPER_NAME, interfaceNames);
+		generateConstructor(cw);
+		for (int i = 0; i < this.methods.length; i++) {
+			generateProxyMethod(cw, i);
+		}
+		generateInvokeTarget(cw);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private void generateConstructor(ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitVarInsn(ALOAD, 3);
+		mv.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private void generateProxyMethod(ClassWriter cw, int index) {
+		Method method = this.methods[index];
+		BytecodeProxySupport.MethodPlan plan = this.plans[index];
+		Type[] argumentTypes = Type.getArgumentTypes(method);
+		Type returnType = Type.getReturnType(method);
+		int access = ACC_PUBLIC | ACC_FINAL | (method.isVarArgs() ? ACC_VARARGS : 0);
+		Class<?>[] exceptionTypes = method.getExceptionTypes();
+		String[] exceptionNames = new String[exceptionTypes.length];
+		for (int i = 0; i < exceptionTypes.length; i++) {
+			exceptionNames[i] = Type.getInternalName(exceptionTypes[i]);
+		}
+
+		MethodVisitor mv = cw.visitMethod(access, method.getName(), Type.getMethodDescriptor(method), null, exceptionNames);
+		mv.visitCode();
+		if (plan.isDirect()) {
+			loadTarget(mv, method);
+			int slot = 1;
+			for (Type argumentType : argumentTypes) {
+				mv.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+				slot += argumentType.getSize();
+			}
+			invokeTargetMethod(mv, method);
+			if (plan.replaceTargetReturnValue) {
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitInsn(SWAP);
+				mv.visitMethodInsn(INVOKEVIRTUAL, SUPER_NAME, "processReturnValue", PROCESS_RETURN_VALUE_DESCRIPTOR);
+				unboxOrCast(mv, returnType);
+			}
+		}
+		else {
+			mv.visitVarInsn(ALOAD, 0);
+			push(mv, index);
+			push(mv, argumentTypes.length);
+			mv.visitTypeInsn(ANEWARRAY, OBJECT_NAME);
+			int slot = 1;
+			for (int i = 0; i < argumentTypes.length; i++) {
+				mv.visitInsn(DUP);
+				push(mv, i);
+				mv.visitVarInsn(argumentTypes[i].getOpcode(ILOAD), slot);
+				box(mv, argumentTypes[i]);
+				mv.visitInsn(AASTORE);
+				slot += argumentTypes[i].getSize();
+			}
+			mv.visitMethodInsn(INVOKEVIRTUAL, SUPER_NAME, "invoke", INVOKE_DESCRIPTOR);
+			unboxOrCast(mv, returnType);
+		}
+		mv.visitInsn(returnType.getOpcode(IRETURN));
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private void generateInvokeTarget(ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PROTECTED | ACC_FINAL, "invokeTarget", INVOKE_DESCRIPTOR,
+				null, new String[] {Type.getInternalName(Throwable.class)});
+		mv.visitCode();
+		Label defaultLabel = new Label();
+		if (this.methods.length > 0) {
+			Label[] labels = new Label[this.methods.length];
+			for (int i = 0; i < labels.length; i++) {
+				// Methods that are not advised never reach the joinpoint through this method.
+				labels[i] = (this.plans[i].isDirect() ? defaultLabel : new Label());
+			}
+			mv.visitVarInsn(ILOAD, 1);
+			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+			for (int i = 0; i < labels.length; i++) {
+				if (labels[i] == defaultLabel) {
+					continue;
+				}
+				Method method = this.methods[i];
+				Type[] argumentTypes = Type.getArgumentTypes(method);
+				Type returnType = Type.getReturnType(method);
+				mv.visitLabel(labels[i]);
+				loadTarget(mv, method);
+				for (int j = 0; j < argumentTypes.length; j++) {
+					mv.visitVarInsn(ALOAD, 2);
+					push(mv, j);
+					mv.visitInsn(AALOAD);
+					unboxOrCast(mv, argumentTypes[j]);
+				}
+				invokeTargetMethod(mv, method);
+				if (returnType.getSort() == Type.VOID) {
+					mv.visitInsn(ACONST_NULL);
+				}
+				else {
+					box(mv, returnType);
+				}
+				mv.visitInsn(ARETURN);
+			}
+		}
+		mv.visitLabel(defaultLabel);
+		String exceptionName = Type.getInternalName(IllegalArgumentException.class);
+		mv.visitTypeInsn(NEW, exceptionName);
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, exceptionName, "<init>", "()V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+
+	/**
+	 * Push the target onto the stack, cast to the declaring class of the given method.
+	 */
+	private void loadTarget(MethodVisitor mv, Method method) {
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, SUPER_NAME, "target", Type.getDescriptor(Object.class));
+		if (method.getDeclaringClass() != Object.class) {
+			mv.visitTypeInsn(CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+		}
+	}
+
+	/**
+	 * Call the given method on the target, with the arguments already on the stack.
+	 */
+	private void invokeTargetMethod(MethodVisitor mv, Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		mv.visitMethodInsn((declaringClass.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL),
+				Type.getInternalName(declaringClass), method.getName(), Type.getMethodDescriptor(method));
+	}
+
+	private static void push(MethodVisitor mv, int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		}
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		}
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(SIPUSH, value);
+		}
+		else {
+			mv.visitLdcInsn(value);
+		}
+	}
+
+	/**
+	 * Box the primitive value of the given type on top of the stack;
+	 * leaves references as they are.
+	 */
+	private static void box(MethodVisitor mv, Type type) {
+		String wrapperName = getWrapperName(type);
+		if (wrapperName != null) {
+			mv.visitMethodInsn(INVOKESTATIC, wrapperName, "valueOf",
+					"(" + type.getDescriptor() + ")L" + wrapperName + ";");
+		}
+	}
+
+	/**
+	 * Convert the reference on top of the stack to the given type: unboxing it
+	 * for a primitive type, casting it for a reference type other than Object,
+	 * or discarding it for <code>void</code>.
+	 */
+	private static void unboxOrCast(MethodVisitor mv, Type type) {
+		if (type.getSort() == Type.VOID) {
+			mv.visitInsn(POP);
+			return;
+		}
+		String wrapperName = getWrapperName(type);
+		if (wrapperName != null) {
+			mv.visitTypeInsn(CHECKCAST, wrapperName);
+			mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getClassName() + "Value", "()" + type.getDescriptor());
+		}
+		else if (!OBJECT_NAME.equals(type.getInternalName())) {
+			mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+		}
+	}
+
+	private static String getWrapperName(Type type) {
+		switch (type.getSort()) {
+			case Type.BOOLEAN: return "java/lang/Boolean";
+			case Type.CHAR: return "java/lang/Character";
+			case Type.BYTE: return "java/lang/Byte";
+			case Type.SHORT: return "java/lang/Short";
+			case Type.INT: return "java/lang/Integer";
+			case Type.FLOAT: return "java/lang/Float";
+			case Type.LONG: return "java/lang/Long";
+			case Type.DOUBLE: return "java/lang/Double";
+			default: return null;
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.aop.framework;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+
+import org.aopalliance.aop.Advice;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.AfterReturningAdvice;
+import org.springframework.aop.AopInvocationException;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.TargetSource;
+
+/**
+ * Base class for the proxy classes generated by {@link BytecodeAopProxy}.
+ * Not intended to be used directly by application code.
+ *
+ * <p>A generated subclass implements every proxied interface method either
+ * by calling the target directly - if the method is not advised at all - or
+ * by delegating to {@link #invoke} with the index of the method's
+ * {@link MethodPlan}. It also implements {@link #invokeTarget} as a switch
+ * over those indexes, calling the corresponding target method without
+ * reflection at the end of the interceptor chain.
+ *
+ * <p>Implements the {@link Advised} methods by delegating to the
+ * configuration of the proxy; generated classes declare the {@link Advised}
+ * interface unless the configuration is opaque. Since the target has been
+ * compiled into the proxy, {@link #setTargetSource} is rejected.
+ *
+ * @author agent
+ * @since 3.1
+ * @see BytecodeAopProxy
+ */
+public abstract class BytecodeProxySupport {
+
+	/** The configuration that the proxy has been generated for */
+	private final AdvisedSupport advised;
+
+	/** The static target of the proxy, called by generated code */
+	protected final Object target;
+
+	private final MethodPlan[] plans;
+
+
+	/**
+	 * Create a new proxy instance for the given configuration.
+	 * @param advised the frozen configuration of the proxy
+	 * @param target the target object, as obtained from the static TargetSource
+	 * @param plans the invocation plans of the proxied methods, in the
+	 * order of the indexes used by the generated code
+	 */
+	protected BytecodeProxySupport(AdvisedSupport advised, Object target, MethodPlan[] plans) {
+		this.advised = advised;
+		this.target = target;
+		this.plans = plans;
+	}
+
+
+	/**
+	 * Invoke the advised method with the given index. Called by generated
+	 * proxy methods with a non-empty interceptor chain.
+	 * <p>Chains that consist of before and after returning advice only are
+	 * applied in a simple loop around {@link #invokeTarget}; all other chains
+	 * are processed through a {@link ReflectiveMethodInvocation}.
+	 * @param index the index of the method's plan
+	 * @param args the arguments of the invocation
+	 * @return the (boxed) return value of the invocation
+	 */
+	protected final Object invoke(int index, Object[] args) throws Throwable {
+		MethodPlan plan = this.plans[index];
+		Object retVal;
+		try {
+			if (plan.beforeAdvices != null) {
+				for (MethodBeforeAdvice advice : plan.beforeAdvices) {
+					advice.before(plan.method, args, this.target);
+				}
+				retVal = invokeTarget(index, args);
+				for (int i = plan.afterReturningAdvices.length - 1; i >= 0; i--) {
+					plan.afterReturningAdvices[i].afterReturning(retVal, plan.method, args, this.target);
+				}
+			}
+			else {
+				retVal = new BytecodeMethodInvocation(this, index, args, plan).proceed();
+			}
+		}
+		catch (RuntimeException ex) {
+			throw ex;
+		}
+		catch (Error err) {
+			throw err;
+		}
+		catch (Throwable ex) {
+			// Same semantics as a JDK dynamic proxy: checked exceptions that the
+			// interface method does not declare need to be wrapped.
+			for (Class<?> declaredType : plan.method.getExceptionTypes()) {
+				if (declaredType.isInstance(ex)) {
+					throw ex;
+				}
+			}
+			throw new UndeclaredThrowableException(ex);
+		}
+		if (retVal == null) {
+			if (plan.primitiveReturnType) {
+				throw new AopInvocationException(
+						"Null return value from advice does not match primitive return type for: " + plan.method);
+			}
+		}
+		else if (plan.replaceTargetReturnValue && retVal == this.target) {
+			retVal = this;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Replace the target with the proxy if it has been returned from a method
+	 * with a compatible return type. Called by generated proxy methods that do
+	 * not have an interceptor chain.
+	 * @param retVal the value returned by the target
+	 * @return the value to return from the proxy
+	 */
+	protected final Object processReturnValue(Object retVal) {
+		return (retVal != null && retVal == this.target ? this : retVal);
+	}
+
+	/**
+	 * Invoke the target method with the given index. Implemented by generated
+	 * subclasses.
+	 * @param index the index of the method's plan
+	 * @param args the (boxed) arguments to invoke the method with
+	 * @return the (boxed) return value of the target method,
+	 * or <code>null</code> for a <code>void</code> method
+	 */
+	protected abstract Object invokeTarget(int index, Object[] args) throws Throwable;
+
+
+	//---------------------------------------------------------------------
+	// Implementation of Advised interface
+	//---------------------------------------------------------------------
+
+	public boolean isFrozen() {
+		return this.advised.isFrozen();
+	}
+
+	public boolean isProxyTargetClass() {
+		return this.advised.isProxyTargetClass();
+	}
+
+	public Class<?>[] getProxiedInterfaces() {
+		return this.advised.getProxiedInterfaces();
+	}
+
+	public boolean isInterfaceProxied(Class<?> intf) {
+		return this.advised.isInterfaceProxied(intf);
+	}
+
+	/**
+	 * Not supported: the interceptor chains and the target of a compiled proxy
+	 * are fixed when the proxy is created.
+	 * @throws AopConfigException always
+	 */
+	public void setTargetSource(TargetSource targetSource) {
+		throw new AopConfigException("Cannot replace TargetSource of a compiled proxy: " +
+				"create a new proxy for the new TargetSource instead");
+	}
+
+	public TargetSource getTargetSource() {
+		return this.advised.getTargetSource();
+	}
+
+	public Class<?> getTargetClass() {
+		return this.advised.getTargetClass();
+	}
+
+	public void setExposeProxy(boolean exposeProxy) {
+		this.advised.setExposeProxy(exposeProxy);
+	}
+
+	public boolean isExposeProxy() {
+		return this.advised.isExposeProxy();
+	}
+
+	public void setPreFiltered(boolean preFiltered) {
+		this.advised.setPreFiltered(preFiltered);
+	}
+
+	public boolean isPreFiltered() {
+		return this.advised.isPreFiltered();
+	}
+
+	public Advisor[] getAdvisors() {
+		return this.advised.getAdvisors();
+	}
+
+	public void addAdvisor(Advisor advisor) throws AopConfigException {
+		this.advised.addAdvisor(advisor);
+	}
+
+	public void addAdvisor(int pos, Advisor advisor) throws AopConfigException {
+		this.advised.addAdvisor(pos, advisor);
+	}
+
+	public boolean removeAdvisor(Advisor advisor) {
+		return this.advised.removeAdvisor(advisor);
+	}
+
+	public void removeAdvisor(int index) throws AopConfigException {
+		this.advised.removeAdvisor(index);
+	}
+
+	public int indexOf(Advisor advisor) {
+		return this.advised.indexOf(advisor);
+	}
+
+	public boolean replaceAdvisor(Advisor a, Advisor b) throws AopConfigException {
+		return this.advised.replaceAdvisor(a, b);
+	}
+
+	public void addAdvice(Advice advice) throws AopConfigException {
+		this.advised.addAdvice(advice);
+	}
+
+	public void addAdvice(int pos, Advice advice) throws AopConfigException {
+		this.advised.addAdvice(pos, advice);
+	}
+
+	public boolean removeAdvice(Advice advice) {
+		return this.advised.removeAdvice(advice);
+	}
+
+	public int indexOf(Advice advice) {
+		return this.advised.indexOf(advice);
+	}
+
+	public String toProxyConfigString() {
+		return this.advised.toProxyConfigString();
+	}
+
+
+	/**
+	 * Equality means interfaces, advisors and TargetSource are equal.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof BytecodeProxySupport)) {
+			return false;
+		}
+		return AopProxyUtils.equalsInProxy(this.advised, ((BytecodeProxySupport) other).advised);
+	}
+
+	/**
+	 * Proxy uses the hash code of the TargetSource.
+	 */
+	@Override
+	public int hashCode() {
+		return BytecodeProxySupport.class.hashCode() * 13 + this.advised.getTargetSource().hashCode();
+	}
+
+
+	/**
+	 * The invocation plan for a single proxied method, resolved once when the
+	 * proxy is created.
+	 */
+	public static final class MethodPlan {
+
+		final Method method;
+
+		final Class<?> targetClass;
+
+		final List<Object> chain;
+
+		final MethodBeforeAdvice[] beforeAdvices;
+
+		final AfterReturningAdvice[] afterReturningAdvices;
+
+		final boolean primitiveReturnType;
+
+		final boolean replaceTargetReturnValue;
+
+		MethodPlan(Method method, Class<?> targetClass, List<Object> chain,
+				MethodBeforeAdvice[] beforeAdvices, AfterReturningAdvice[] afterReturningAdvices,
+				boolean replaceTargetReturnValue) {
+
+			this.method = method;
+			this.targetClass = targetClass;
+			this.chain = chain;
+			this.beforeAdvices = beforeAdvices;
+			this.afterReturningAdvices = afterReturningAdvices;
+			this.primitiveReturnType = (method.getReturnType().isPrimitive() && !void.class.equals(method.getReturnType()));
+			this.replaceTargetReturnValue = replaceTargetReturnValue;
+		}
+
+		/**
+		 * Return whether the method is not advised at all, i.e. whether the
+		 * generated code may call the target directly.
+		 */
+		boolean isDirect() {
+			return this.chain.isEmpty();
+		}
+	}
+
+
+	/**
+	 * Invocation that proceeds through the interceptor chain of a plan,
+	 * with the joinpoint being invoked by generated code.
+	 */
+	private static class BytecodeMethodInvocation extends ReflectiveMethodInvocation {
+
+		private final int index;
+
+		public BytecodeMethodInvocation(BytecodeProxySupport proxy, int index, Object[] args, MethodPlan plan) {
+			super(proxy, proxy.target, plan.method, args, plan.targetClass, plan.chain);
+			this.index = index;
+		}
+
+		@Override
+		protected Object invokeJoinpoint() throws Throwable {
+			return ((BytecodeProxySupport) this.proxy).invokeTarget(this.index, getArguments());
+		}
+	}
+
+}
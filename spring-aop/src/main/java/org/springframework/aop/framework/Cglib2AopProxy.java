@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,28 @@
 
 package org.springframework.aop.framework;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.WeakHashMap;
 
+import net.sf.cglib.core.ClassGenerator;
 import net.sf.cglib.core.CodeGenerationException;
+import net.sf.cglib.core.NamingPolicy;
+import net.sf.cglib.core.Predicate;
+import net.sf.cglib.core.ReflectUtils;
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.CallbackFilter;
 import net.sf.cglib.proxy.Dispatcher;
@@ -48,7 +60,11 @@ import org.springframework.aop.support.AopUtils;
 import org.springframework.core.SmartClassLoader;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * CGLIB2-based {@link AopProxy} implementation for the Spring AOP framework.
@@ -67,6 +83,18 @@ import org.springframework.util.ObjectUtils;
  * <p>Proxies created using this class are thread-safe if the underlying
  * (target) class is thread-safe.
  *
+ * <p>If the {@link #SHARE_PROXY_CLASSES_PROPERTY_NAME} system property is set to
+ * "true", generated proxy classes are cached per ClassLoader and shared between
+ * all proxies whose methods end up with the same callback assignments, independent
+ * of the actual advice instances - e.g. for the same bean class proxied in
+ * several application contexts. If the {@link #PROXY_CLASS_DIRECTORY_PROPERTY_NAME}
+ * system property is set, which implies sharing, proxy classes are furthermore
+ * written to the specified directory (e.g. in a build step that starts the
+ * application once) and loaded from there on subsequent startups, avoiding
+ * bytecode generation altogether. Class names are derived from a digest of the
+ * structure of each proxy class, so changed classes result in a new file rather
+ * than a stale proxy class. By default, CGLIB's own per-Enhancer cache applies.
+ *
  * @author Rod Johnson
  * @author Rob Harrop
  * @author Juergen Hoeller
@@ -77,6 +105,20 @@ import org.springframework.util.ObjectUtils;
  */
 final class Cglib2AopProxy implements AopProxy, Serializable {
 
+	/**
+	 * System property that specifies a directory for proxy classes: if set,
+	 * proxy classes are loaded from that directory if present there, and
+	 * written to it once generated otherwise. Checked on every proxy creation.
+	 */
+	public static final String PROXY_CLASS_DIRECTORY_PROPERTY_NAME = "spring.aop.proxyClassDirectory";
+
+	/**
+	 * System property that, if set to "true", makes proxies with the same
+	 * structure share their generated class across proxy factories.
+	 * Checked on every proxy creation.
+	 */
+	public static final String SHARE_PROXY_CLASSES_PROPERTY_NAME = "spring.aop.shareProxyClasses";
+
 	// Constants for CGLIB callback array indices
 	private static final int AOP_PROXY = 0;
 	private static final int INVOKE_TARGET = 1;
@@ -93,6 +135,16 @@ final class Cglib2AopProxy implements AopProxy, Serializable {
 	/** Keeps track of the Classes that we have validated for final methods */
 	private static final Map<Class, Boolean> validatedClasses = new WeakHashMap<Class, Boolean>();
 
+	/**
+	 * Generated proxy classes, per ClassLoader, shared across all proxy factories.
+	 * Keys only hold class and method names, which are unambiguous within the
+	 * defining ClassLoader, and values are weak: nothing in here keeps a
+	 * ClassLoader or any of its classes reachable.
+	 */
+	private static final Map<ClassLoader, Map<ProxyClassKey, Reference<Class<?>>>> proxyClassCache =
+			new WeakHashMap<ClassLoader, Map<ProxyClassKey, Reference<Class<?>>>>();
+
+
 
 	/** The configuration used to configure this proxy */
 	protected final AdvisedSupport advised;
@@ -169,22 +221,27 @@ final class Cglib2AopProxy implements AopProxy, Serializable {
 
 			// Configure CGLIB Enhancer...
 			Enhancer enhancer = createEnhancer();
+			File proxyClassDirectory = getProxyClassDirectory();
+			boolean useCache = (proxyClassDirectory != null ||
+					Boolean.valueOf(System.getProperty(SHARE_PROXY_CLASSES_PROPERTY_NAME)));
 			if (classLoader != null) {
 				enhancer.setClassLoader(classLoader);
 				if (classLoader instanceof SmartClassLoader &&
 						((SmartClassLoader) classLoader).isClassReloadable(proxySuperClass)) {
 					enhancer.setUseCache(false);
+					useCache = false;
 				}
 			}
+			Class<?>[] proxiedInterfaces = AopProxyUtils.completeProxiedInterfaces(this.advised);
 			enhancer.setSuperclass(proxySuperClass);
 			enhancer.setStrategy(new UndeclaredThrowableStrategy(UndeclaredThrowableException.class));
-			enhancer.setInterfaces(AopProxyUtils.completeProxiedInterfaces(this.advised));
+			enhancer.setInterfaces(proxiedInterfaces);
 			enhancer.setInterceptDuringConstruction(false);
 
 			Callback[] callbacks = getCallbacks(rootClass);
-			enhancer.setCallbacks(callbacks);
-			enhancer.setCallbackFilter(new ProxyCallbackFilter(
-					this.advised.getConfigurationOnlyCopy(), this.fixedInterceptorMap, this.fixedInterceptorOffset));
+			CallbackFilter callbackFilter = new ProxyCallbackFilter(
+					this.advised.getConfigurationOnlyCopy(), this.fixedInterceptorMap, this.fixedInterceptorOffset);
+			enhancer.setCallbackFilter(callbackFilter);
 
 			Class[] types = new Class[callbacks.length];
 			for (int x = 0; x < types.length; x++) {
@@ -193,6 +250,14 @@ final class Cglib2AopProxy implements AopProxy, Serializable {
 			enhancer.setCallbackTypes(types);
 
 			// Generate the proxy class and create a proxy instance.
+			ClassLoader proxyClassLoader = (classLoader != null ? classLoader : proxySuperClass.getClassLoader());
+			if (useCache && proxyClassLoader != null) {
+				ProxyClassKey key = new ProxyClassKey(proxySuperClass, proxiedInterfaces, types, callbackFilter);
+				return createProxyInstance(
+						getProxyClass(enhancer, proxyClassLoader, key, proxyClassDirectory), callbacks);
+			}
+
+			enhancer.setCallbacks(callbacks);
 			Object proxy;
 			if (this.constructorArgs != null) {
 				proxy = enhancer.create(this.constructorArgTypes, this.constructorArgs);
@@ -229,6 +294,109 @@ final class Cglib2AopProxy implements AopProxy, Serializable {
 		return new Enhancer();
 	}
 
+	/**
+	 * Return the directory specified through the
+	 * {@link #PROXY_CLASS_DIRECTORY_PROPERTY_NAME} system property, if any.
+	 */
+	private static File getProxyClassDirectory() {
+		String dir = System.getProperty(PROXY_CLASS_DIRECTORY_PROPERTY_NAME);
+		return (StringUtils.hasText(dir) ? new File(dir) : null);
+	}
+
+	/**
+	 * Obtain the proxy class for the given key from the shared cache,
+	 * loading it from the proxy class directory or generating it on first request.
+	 * @param enhancer the fully configured Enhancer to generate the class with
+	 * @param classLoader the ClassLoader to define the class in
+	 * @param key the key identifying the generated bytecode
+	 * @param proxyClassDirectory the directory to load the class from and to
+	 * write a generated class to (may be <code>null</code>)
+	 */
+	private static Class<?> getProxyClass(Enhancer enhancer, ClassLoader classLoader, ProxyClassKey key,
+			File proxyClassDirectory) throws Exception {
+
+		synchronized (proxyClassCache) {
+			Map<ProxyClassKey, Reference<Class<?>>> proxyClasses = proxyClassCache.get(classLoader);
+			if (proxyClasses == null) {
+				proxyClasses = new HashMap<ProxyClassKey, Reference<Class<?>>>();
+				proxyClassCache.put(classLoader, proxyClasses);
+			}
+			Reference<Class<?>> ref = proxyClasses.get(key);
+			Class<?> proxyClass = (ref != null ? ref.get() : null);
+			if (proxyClass == null) {
+				String className = key.getClassName();
+				File classFile = (proxyClassDirectory != null ? new File(proxyClassDirectory, className + ".class") : null);
+				boolean nameTaken = false;
+				if (classFile != null && classFile.isFile()) {
+					proxyClass = loadProxyClass(className, classFile, classLoader, key);
+					nameTaken = (proxyClass == null && ClassUtils.isPresent(className, classLoader));
+				}
+				if (proxyClass == null) {
+					enhancer.setUseCache(false);
+					enhancer.setClassLoader(classLoader);
+					if (!nameTaken) {
+						if (classFile != null) {
+							enhancer.setStrategy(new ClassFileWritingStrategy(classFile));
+						}
+						enhancer.setNamingPolicy(new FixedNamingPolicy(className));
+					}
+					// else: an unusable class has been defined under that name already,
+					// so fall back to CGLIB's default naming and leave the file alone.
+					proxyClass = enhancer.createClass();
+				}
+				proxyClasses.put(key, new WeakReference<Class<?>>(proxyClass));
+			}
+			return proxyClass;
+		}
+	}
+
+	/**
+	 * Load a pre-generated proxy class from the given class file.
+	 * <p>A file that cannot be defined - e.g. because it is corrupt or has been
+	 * written for a different class structure - or that does not contain a proxy
+	 * class for the key's superclass is ignored, so that the class gets generated instead.
+	 * @return the proxy class, or <code>null</code> if the file is not usable
+	 */
+	private static Class<?> loadProxyClass(String className, File classFile, ClassLoader classLoader,
+			ProxyClassKey key) {
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loading CGLIB2 proxy class [" + className + "] from " + classFile);
+		}
+		try {
+			Class<?> proxyClass = ReflectUtils.defineClass(className, FileCopyUtils.copyToByteArray(classFile), classLoader);
+			if (Enhancer.isEnhanced(proxyClass) && proxyClass.getSuperclass() != null &&
+					proxyClass.getSuperclass().getName().equals(key.superclassName)) {
+				return proxyClass;
+			}
+			logger.warn("Ignoring CGLIB2 proxy class file " + classFile +
+					": not a proxy class for [" + key.superclassName + "] - generating class instead");
+		}
+		catch (Exception ex) {
+			logger.warn("Ignoring unusable CGLIB2 proxy class file " + classFile + " - generating class instead", ex);
+		}
+		catch (LinkageError err) {
+			logger.warn("Ignoring unusable CGLIB2 proxy class file " + classFile + " - generating class instead", err);
+		}
+		return null;
+	}
+
+	/**
+	 * Instantiate the given proxy class, binding the given callbacks to the new instance.
+	 */
+	private Object createProxyInstance(Class<?> proxyClass, Callback[] callbacks) throws Exception {
+		Enhancer.registerCallbacks(proxyClass, callbacks);
+		try {
+			Constructor<?> ctor = (this.constructorArgs != null ?
+					proxyClass.getDeclaredConstructor(this.constructorArgTypes) : proxyClass.getDeclaredConstructor());
+			ReflectionUtils.makeAccessible(ctor);
+			return ctor.newInstance(this.constructorArgs != null ? this.constructorArgs : new Object[0]);
+		}
+		finally {
+			Enhancer.registerCallbacks(proxyClass, null);
+		}
+	}
+
 	/**
 	 * Checks to see whether the supplied <code>Class</code> has already been validated and
 	 * validates it if not.
@@ -692,6 +860,115 @@ final class Cglib2AopProxy implements AopProxy, Serializable {
 	}
 
 
+	/**
+	 * Key for a shared proxy class: the superclass with its constructors, the
+	 * interfaces, the callback types, and the callback index that the filter
+	 * assigns to each method. Advice instances and pointcuts only matter through
+	 * those callback indexes. Only names and signatures are kept, so that a key
+	 * does not hold on to any of the classes it describes.
+	 */
+	private static class ProxyClassKey {
+
+		private final String superclassName;
+
+		private final String description;
+
+		public ProxyClassKey(Class<?> superclass, Class<?>[] interfaces, Class<?>[] callbackTypes,
+				CallbackFilter filter) {
+
+			this.superclassName = superclass.getName();
+			StringBuilder sb = new StringBuilder(this.superclassName);
+			TreeSet<String> ctors = new TreeSet<String>();
+			for (Constructor<?> ctor : superclass.getDeclaredConstructors()) {
+				ctors.add(ctor.toString());
+			}
+			for (String ctor : ctors) {
+				sb.append(';').append(ctor);
+			}
+			for (Class<?> intf : interfaces) {
+				sb.append(';').append(intf.getName());
+			}
+			for (Class<?> callbackType : callbackTypes) {
+				sb.append(';').append(callbackType.getName());
+			}
+			// The same methods that the Enhancer will ask the filter about.
+			List<Method> methods = new ArrayList<Method>();
+			Enhancer.getMethods(superclass, interfaces, methods);
+			for (Method method : methods) {
+				sb.append(';').append(method).append('=').append(filter.accept(method));
+			}
+			this.description = sb.toString();
+		}
+
+		/**
+		 * Return the name for the proxy class, derived from a digest of the key's
+		 * content and therefore stable across JVM runs.
+		 */
+		public String getClassName() throws UnsupportedEncodingException {
+			String prefix = this.superclassName;
+			if (prefix.startsWith("java")) {
+				prefix = "$" + prefix;
+			}
+			return prefix + "$$EnhancerByCGLIB$$" + DigestUtils.md5DigestAsHex(this.description.getBytes("UTF-8"));
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (this == other || (other instanceof ProxyClassKey &&
+					this.description.equals(((ProxyClassKey) other).description)));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.description.hashCode();
+		}
+	}
+
+
+	/**
+	 * NamingPolicy that returns a given class name, as determined by a {@link ProxyClassKey}.
+	 */
+	private static class FixedNamingPolicy implements NamingPolicy {
+
+		private final String className;
+
+		public FixedNamingPolicy(String className) {
+			this.className = className;
+		}
+
+		public String getClassName(String prefix, String source, Object key, Predicate names) {
+			return this.className;
+		}
+	}
+
+
+	/**
+	 * Generator strategy that writes each generated class file to the proxy class directory.
+	 */
+	private static class ClassFileWritingStrategy extends UndeclaredThrowableStrategy {
+
+		private final File classFile;
+
+		public ClassFileWritingStrategy(File classFile) {
+			super(UndeclaredThrowableException.class);
+			this.classFile = classFile;
+		}
+
+		@Override
+		public byte[] generate(ClassGenerator cg) throws Exception {
+			byte[] bytes = super.generate(cg);
+			try {
+				this.classFile.getParentFile().mkdirs();
+				FileCopyUtils.copy(bytes, this.classFile);
+			}
+			catch (IOException ex) {
+				logger.warn("Could not write CGLIB2 proxy class file " + this.classFile, ex);
+			}
+			return bytes;
+		}
+	}
+
+
 	/**
 	 * CallbackFilter to assign Callbacks to methods.
 	 */
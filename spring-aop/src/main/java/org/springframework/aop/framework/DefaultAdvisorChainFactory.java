@@ -28,6 +28,7 @@ import org.aopalliance.intercept.MethodInterceptor;
 import org.springframework.aop.Advisor;
 import org.springframework.aop.IntroductionAdvisor;
 import org.springframework.aop.MethodMatcher;
+import org.springframework.aop.MethodSpecificInterceptor;
 import org.springframework.aop.PointcutAdvisor;
 import org.springframework.aop.framework.adapter.AdvisorAdapterRegistry;
 import org.springframework.aop.framework.adapter.GlobalAdvisorAdapterRegistry;
@@ -61,6 +62,7 @@ public class DefaultAdvisorChainFactory implements AdvisorChainFactory, Serializ
 					MethodInterceptor[] interceptors = registry.getInterceptors(advisor);
 					MethodMatcher mm = pointcutAdvisor.getPointcut().getMethodMatcher();
 					if (MethodMatchers.matches(mm, method, targetClass, hasIntroductions)) {
+						interceptors = getMethodSpecificInterceptors(interceptors, method, targetClass);
 						if (mm.isRuntime()) {
 							// Creating a new object instance in the getInterceptors() method
 							// isn't a problem as we normally cache created chains.
@@ -89,6 +91,25 @@ public class DefaultAdvisorChainFactory implements AdvisorChainFactory, Serializ
 		return interceptorList;
 	}
 
+	/**
+	 * Let {@link MethodSpecificInterceptor MethodSpecificInterceptors} resolve
+	 * their state for the given method, once per advice chain.
+	 */
+	private static MethodInterceptor[] getMethodSpecificInterceptors(
+			MethodInterceptor[] interceptors, Method method, Class targetClass) {
+
+		MethodInterceptor[] result = interceptors;
+		for (int i = 0; i < interceptors.length; i++) {
+			if (interceptors[i] instanceof MethodSpecificInterceptor) {
+				if (result == interceptors) {
+					result = interceptors.clone();
+				}
+				result[i] = ((MethodSpecificInterceptor) interceptors[i]).getMethodSpecificInterceptor(method, targetClass);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Determine whether the Advisors contain matching introductions.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -39,12 +39,16 @@ import org.springframework.util.ClassUtils;
  * <p>In general, specify "proxyTargetClass" to enforce a CGLIB proxy,
  * or specify one or more interfaces to use a JDK dynamic proxy.
  *
+ * <p>Interface-based proxies for a frozen configuration with the "compiled"
+ * flag set are created as {@link BytecodeAopProxy} instead.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @since 12.03.2004
  * @see AdvisedSupport#setOptimize
  * @see AdvisedSupport#setProxyTargetClass
  * @see AdvisedSupport#setInterfaces
+ * @see AdvisedSupport#setCompiled
  */
 public class DefaultAopProxyFactory implements AopProxyFactory, Serializable {
 
@@ -70,6 +74,9 @@ public class DefaultAopProxyFactory implements AopProxyFactory, Serializable {
 			}
 			return CglibProxyFactory.createCglibProxy(config);
 		}
+		else if (BytecodeAopProxy.isApplicable(config)) {
+			return new BytecodeAopProxy(config);
+		}
 		else {
 			return new JdkDynamicAopProxy(config);
 		}
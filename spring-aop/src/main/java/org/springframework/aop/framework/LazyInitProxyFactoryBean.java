@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.framework;
+
+import java.lang.reflect.Modifier;
+
+import org.springframework.aop.target.LazyInitTargetSource;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.FactoryBeanNotInitializedException;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Convenient proxy factory bean for lazily initialized singleton beans,
+ * fronting a target bean with a {@link LazyInitTargetSource}.
+ *
+ * <p>The proxy may be injected into other beans right away, while the
+ * target bean (which needs to be marked as "lazy-init") does not get
+ * initialized until the first method invocation on the proxy. The proxy
+ * itself is only built on the first {@link #getObject()} call, keeping
+ * type checks against this factory bean cheap.
+ *
+ * <p>Analogous to {@link org.springframework.aop.scope.ScopedProxyFactoryBean},
+ * the proxies created by this factory are <i>class-based</i> proxies by default.
+ * This can be customized through switching the "proxyTargetClass" property to
+ * "false". Note that class-based proxies invoke the target class's default
+ * constructor for the proxy instance itself.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #setTargetBeanName
+ * @see #setProxyTargetClass
+ * @see org.springframework.context.support.LazyInitializationConfigurer
+ */
+public class LazyInitProxyFactoryBean extends ProxyConfig implements FactoryBean<Object>, BeanFactoryAware {
+
+	private LazyInitTargetSource targetSource = new LazyInitTargetSource();
+
+	private ConfigurableBeanFactory beanFactory;
+
+	/** The lazily created singleton proxy */
+	private Object proxy;
+
+
+	/**
+	 * Create a new LazyInitProxyFactoryBean instance.
+	 */
+	public LazyInitProxyFactoryBean() {
+		setProxyTargetClass(true);
+	}
+
+
+	/**
+	 * Set the name of the lazy-init bean that is to be proxied.
+	 */
+	public void setTargetBeanName(String targetBeanName) {
+		this.targetSource.setTargetBeanName(targetBeanName);
+	}
+
+	/**
+	 * Specify a custom LazyInitTargetSource to use, e.g. a subclass that
+	 * post-processes the target object. Its target bean name needs to be
+	 * set already; the BeanFactory will be passed in by this factory bean.
+	 */
+	public void setTargetSource(LazyInitTargetSource targetSource) {
+		this.targetSource = targetSource;
+	}
+
+	public void setBeanFactory(BeanFactory beanFactory) {
+		if (!(beanFactory instanceof ConfigurableBeanFactory)) {
+			throw new IllegalStateException("Not running in a ConfigurableBeanFactory: " + beanFactory);
+		}
+		this.beanFactory = (ConfigurableBeanFactory) beanFactory;
+		this.targetSource.setBeanFactory(beanFactory);
+	}
+
+
+	public synchronized Object getObject() {
+		if (this.proxy == null) {
+			if (this.beanFactory == null) {
+				throw new FactoryBeanNotInitializedException();
+			}
+			this.proxy = createProxy();
+		}
+		return this.proxy;
+	}
+
+	private Object createProxy() {
+		ProxyFactory pf = new ProxyFactory();
+		pf.copyFrom(this);
+		pf.setTargetSource(this.targetSource);
+
+		Class<?> beanType = this.targetSource.getTargetClass();
+		if (beanType == null) {
+			throw new IllegalStateException("Cannot create lazy-init proxy for bean '" +
+					this.targetSource.getTargetBeanName() + "': Target type could not be determined.");
+		}
+		if (!isProxyTargetClass() || beanType.isInterface() || Modifier.isPrivate(beanType.getModifiers())) {
+			pf.setInterfaces(ClassUtils.getAllInterfacesForClass(beanType, this.beanFactory.getBeanClassLoader()));
+		}
+
+		// Add the AopInfrastructureBean marker to indicate that the lazy-init proxy
+		// itself is not subject to auto-proxying! Only its target bean is.
+		pf.addInterface(AopInfrastructureBean.class);
+
+		return pf.getProxy(this.beanFactory.getBeanClassLoader());
+	}
+
+	public synchronized Class<?> getObjectType() {
+		if (this.proxy != null) {
+			return this.proxy.getClass();
+		}
+		if (this.beanFactory != null) {
+			return this.targetSource.getTargetClass();
+		}
+		return null;
+	}
+
+	public boolean isSingleton() {
+		return true;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,8 @@ public class ProxyConfig implements Serializable {
 
 	private boolean frozen = false;
 
+	private boolean compiled = false;
+
 
 	/**
 	 * Set whether to proxy the target class directly, instead of just proxying
@@ -147,6 +149,35 @@ public class ProxyConfig implements Serializable {
 	}
 
 
+	/**
+	 * Set whether a frozen configuration should be compiled into a dedicated
+	 * proxy class. Default is "false".
+	 * <p>Set this to "true" to have a JDK interface proxy replaced by a generated
+	 * class that resolves the interceptor chain of each method once, invokes the
+	 * target method directly instead of through reflection, and only creates a
+	 * {@link org.aopalliance.intercept.MethodInvocation} for methods that are
+	 * actually intercepted by a {@link org.aopalliance.intercept.MethodInterceptor}.
+	 * <p>Only applies to frozen configurations with a static TargetSource that
+	 * do not expose the proxy; other configurations, as well as target class
+	 * proxies, are unaffected by this flag. A compiled proxy keeps the target
+	 * that it has been created for: it rejects {@link Advised#setTargetSource}
+	 * calls, and does not see TargetSource changes on the configuration.
+	 * @see #setFrozen
+	 * @see BytecodeAopProxy
+	 */
+	public void setCompiled(boolean compiled) {
+		this.compiled = compiled;
+	}
+
+	/**
+	 * Return whether a frozen configuration should be compiled into a
+	 * dedicated proxy class.
+	 */
+	public boolean isCompiled() {
+		return this.compiled;
+	}
+
+
 	/**
 	 * Copy configuration from the other config object.
 	 * @param other object to copy configuration from
@@ -158,6 +189,7 @@ public class ProxyConfig implements Serializable {
 		this.exposeProxy = other.exposeProxy;
 		this.frozen = other.frozen;
 		this.opaque = other.opaque;
+		this.compiled = other.compiled;
 	}
 
 	@Override
@@ -167,7 +199,8 @@ public class ProxyConfig implements Serializable {
 		sb.append("optimize=").append(this.optimize).append("; ");
 		sb.append("opaque=").append(this.opaque).append("; ");
 		sb.append("exposeProxy=").append(this.exposeProxy).append("; ");
-		sb.append("frozen=").append(this.frozen);
+		sb.append("frozen=").append(this.frozen).append("; ");
+		sb.append("compiled=").append(this.compiled);
 		return sb.toString();
 	}
 
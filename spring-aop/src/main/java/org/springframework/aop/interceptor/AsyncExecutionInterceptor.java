@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -73,6 +73,14 @@ public class AsyncExecutionInterceptor implements MethodInterceptor, Ordered {
 	}
 
 
+	/**
+	 * Return the AsyncTaskExecutor to delegate to.
+	 */
+	protected AsyncTaskExecutor getAsyncExecutor() {
+		return this.asyncExecutor;
+	}
+
+
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
 		Future result = this.asyncExecutor.submit(new Callable<Object>() {
 			public Object call() throws Exception {
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.interceptor;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Performance monitor interceptor that records the latency of each intercepted
+ * method in a lock-free {@link LatencyHistogram}, without logging or allocating
+ * anything per invocation. In contrast to {@link PerformanceMonitorInterceptor}
+ * and {@link JamonPerformanceMonitorInterceptor}, this makes it suitable for
+ * always-on monitoring of high-volume production code.
+ *
+ * <p>Apply it through any pointcut advisor to select the methods to monitor:
+ *
+ * <pre class="code">
+ * &lt;bean id="performanceMonitor" class="org.springframework.aop.interceptor.HistogramPerformanceMonitorInterceptor"/&gt;
+ *
+ * &lt;aop:config&gt;
+ *   &lt;aop:advisor advice-ref="performanceMonitor" pointcut="execution(* com.mycompany.service.*.*(..))"/&gt;
+ * &lt;/aop:config&gt;</pre>
+ *
+ * The collected statistics, including percentiles, are available through the
+ * {@link HistogramPerformanceMonitorInterceptorMBean} interface, which
+ * {@link org.springframework.jmx.export.MBeanExporter} autodetects as a standard
+ * MBean; the {@link #setSamplingInterval "samplingInterval"} may be changed at
+ * runtime through it as well. With a sampling interval of 0, the interceptor
+ * reduces to a single volatile read before proceeding.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LatencyHistogram
+ * @see #setSamplingInterval
+ */
+public class HistogramPerformanceMonitorInterceptor
+		implements MethodInterceptor, HistogramPerformanceMonitorInterceptorMBean, Serializable {
+
+	private static final double NANOS_PER_MILLISECOND = 1000000.0;
+
+	private volatile int samplingInterval = 1;
+
+	private int concurrencyLevel = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+
+	private transient ConcurrentMap<Method, MethodStatistics> statisticsMap =
+			new ConcurrentHashMap<Method, MethodStatistics>();
+
+	private transient ThreadLocal<int[]> samplingCounter =
+			new NamedThreadLocal<int[]>("Performance monitor sampling counter");
+
+
+	/**
+	 * Set the sampling interval: every n-th invocation (per thread) is measured.
+	 * <p>Default is 1, i.e. every invocation is measured. Specify a higher value
+	 * to reduce the overhead for extremely fine-grained methods, or 0 to switch
+	 * monitoring off (e.g. at runtime through JMX) while keeping the statistics
+	 * collected so far.
+	 */
+	public void setSamplingInterval(int samplingInterval) {
+		if (samplingInterval < 0) {
+			throw new IllegalArgumentException("'samplingInterval' must not be negative");
+		}
+		this.samplingInterval = samplingInterval;
+	}
+
+	public int getSamplingInterval() {
+		return this.samplingInterval;
+	}
+
+	/**
+	 * Set the number of threads expected to invoke the same method concurrently,
+	 * determining the number of stripes in each method's histogram.
+	 * <p>Default is the number of available processors (up to 16). Each stripe
+	 * takes about 5 KB per monitored method, allocated on first use.
+	 */
+	public void setConcurrencyLevel(int concurrencyLevel) {
+		if (concurrencyLevel < 1) {
+			throw new IllegalArgumentException("'concurrencyLevel' must be at least 1");
+		}
+		this.concurrencyLevel = concurrencyLevel;
+	}
+
+
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		int interval = this.samplingInterval;
+		if (interval == 0 || (interval > 1 && !isSampled(interval))) {
+			return invocation.proceed();
+		}
+		LatencyHistogram histogram = getStatistics(invocation.getMethod()).histogram;
+		long startTime = System.nanoTime();
+		try {
+			return invocation.proceed();
+		}
+		finally {
+			histogram.record(System.nanoTime() - startTime);
+		}
+	}
+
+	private boolean isSampled(int interval) {
+		int[] counter = this.samplingCounter.get();
+		if (counter == null) {
+			counter = new int[1];
+			this.samplingCounter.set(counter);
+		}
+		if (++counter[0] >= interval) {
+			counter[0] = 0;
+			return true;
+		}
+		return false;
+	}
+
+	private MethodStatistics getStatistics(Method method) {
+		MethodStatistics statistics = this.statisticsMap.get(method);
+		if (statistics == null) {
+			MethodStatistics newStatistics =
+					new MethodStatistics(getMethodName(method), new LatencyHistogram(this.concurrencyLevel));
+			statistics = this.statisticsMap.putIfAbsent(method, newStatistics);
+			if (statistics == null) {
+				statistics = newStatistics;
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Build the name to expose the statistics for the given method under.
+	 * <p>The default implementation returns the qualified method name followed by
+	 * the short names of the parameter types, e.g. "com.mycompany.MyService.process(String,int)".
+	 * @param method the monitored method
+	 * @return the name (should be unique per method)
+	 */
+	protected String getMethodName(Method method) {
+		StringBuilder sb = new StringBuilder(ClassUtils.getQualifiedMethodName(method));
+		sb.append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(ClassUtils.getShortName(parameterTypes[i]));
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+
+	/**
+	 * Return the latency histogram for the given method, or <code>null</code>
+	 * if the method has not been measured yet.
+	 * @param method the monitored method
+	 */
+	public LatencyHistogram getHistogram(Method method) {
+		MethodStatistics statistics = this.statisticsMap.get(method);
+		return (statistics != null ? statistics.histogram : null);
+	}
+
+	private LatencyHistogram.Snapshot getSnapshot(String methodName) {
+		for (MethodStatistics statistics : this.statisticsMap.values()) {
+			if (statistics.name.equals(methodName)) {
+				return statistics.histogram.getSnapshot();
+			}
+		}
+		throw new IllegalArgumentException("No statistics for method '" + methodName + "'");
+	}
+
+
+	public String[] getMonitoredMethods() {
+		List<String> names = new ArrayList<String>(this.statisticsMap.size());
+		for (MethodStatistics statistics : this.statisticsMap.values()) {
+			names.add(statistics.name);
+		}
+		Collections.sort(names);
+		return names.toArray(new String[names.size()]);
+	}
+
+	public String[] getStatistics() {
+		List<String> result = new ArrayList<String>(this.statisticsMap.size());
+		for (MethodStatistics statistics : this.statisticsMap.values()) {
+			LatencyHistogram.Snapshot snapshot = statistics.histogram.getSnapshot();
+			result.add(statistics.name + ": count=" + snapshot.getCount() +
+					", mean=" + toMillis(snapshot.getMean()) +
+					", p50=" + toMillis(snapshot.getValueAtPercentile(50)) +
+					", p90=" + toMillis(snapshot.getValueAtPercentile(90)) +
+					", p99=" + toMillis(snapshot.getValueAtPercentile(99)) +
+					", p99.9=" + toMillis(snapshot.getValueAtPercentile(99.9)) +
+					", max=" + toMillis(snapshot.getMax()) + " ms");
+		}
+		Collections.sort(result);
+		return result.toArray(new String[result.size()]);
+	}
+
+	public long getInvocationCount(String methodName) {
+		return getSnapshot(methodName).getCount();
+	}
+
+	public double getMeanTime(String methodName) {
+		return toMillis(getSnapshot(methodName).getMean());
+	}
+
+	public double getMaxTime(String methodName) {
+		return toMillis(getSnapshot(methodName).getMax());
+	}
+
+	public double getPercentileTime(String methodName, double percentile) {
+		return toMillis(getSnapshot(methodName).getValueAtPercentile(percentile));
+	}
+
+	public void reset() {
+		for (MethodStatistics statistics : this.statisticsMap.values()) {
+			statistics.histogram.reset();
+		}
+	}
+
+	private static double toMillis(double nanos) {
+		return nanos / NANOS_PER_MILLISECOND;
+	}
+
+
+	//---------------------------------------------------------------------
+	// Serialization support
+	//---------------------------------------------------------------------
+
+	/**
+	 * Statistics are not serialized: a deserialized interceptor starts afresh.
+	 */
+	private void readObject(java.io.ObjectInputStream ois) throws java.io.IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		this.statisticsMap = new ConcurrentHashMap<Method, MethodStatistics>();
+		this.samplingCounter = new NamedThreadLocal<int[]>("Performance monitor sampling counter");
+	}
+
+
+	/**
+	 * Holder for the exposed name and the histogram of a monitored method.
+	 */
+	private static class MethodStatistics {
+
+		private final String name;
+
+		private final LatencyHistogram histogram;
+
+		public MethodStatistics(String name, LatencyHistogram histogram) {
+			this.name = name;
+			this.histogram = histogram;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.interceptor;
+
+/**
+ * Management interface for a {@link HistogramPerformanceMonitorInterceptor},
+ * exposing its per-method latency statistics as a standard MBean.
+ *
+ * <p>Methods are identified by the names returned from {@link #getMonitoredMethods()},
+ * i.e. the declaring class name, method name and short parameter type names,
+ * e.g. "com.mycompany.MyService.process(String,int)". All times are given
+ * in milliseconds.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public interface HistogramPerformanceMonitorInterceptorMBean {
+
+	/**
+	 * Return the sampling interval: every n-th invocation is measured,
+	 * with 0 meaning that monitoring is switched off.
+	 */
+	int getSamplingInterval();
+
+	/**
+	 * Set the sampling interval: every n-th invocation is measured,
+	 * with 0 switching monitoring off.
+	 */
+	void setSamplingInterval(int samplingInterval);
+
+	/**
+	 * Return the names of all methods that have been measured so far.
+	 */
+	String[] getMonitoredMethods();
+
+	/**
+	 * Return a one-line summary (count, mean, 50th/90th/99th/99.9th
+	 * percentile and maximum) for each measured method.
+	 */
+	String[] getStatistics();
+
+	/**
+	 * Return the number of measured invocations of the given method.
+	 * @param methodName the name of the method
+	 */
+	long getInvocationCount(String methodName);
+
+	/**
+	 * Return the mean time of the measured invocations of the given method.
+	 * @param methodName the name of the method
+	 */
+	double getMeanTime(String methodName);
+
+	/**
+	 * Return the maximum time of the measured invocations of the given method.
+	 * @param methodName the name of the method
+	 */
+	double getMaxTime(String methodName);
+
+	/**
+	 * Return the time below which the given percentage of measured invocations
+	 * of the given method completed.
+	 * @param methodName the name of the method
+	 * @param percentile the percentile, between 0 and 100
+	 */
+	double getPercentileTime(String methodName, double percentile);
+
+	/**
+	 * Reset the statistics of all methods.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.interceptor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free histogram of latency values (in nanoseconds), used by
+ * {@link HistogramPerformanceMonitorInterceptor}.
+ *
+ * <p>Values are counted in log-linear buckets: each power of two is divided
+ * into 16 sub-buckets, keeping the relative error of reported percentiles
+ * below 6.25% across the full range of 0 nanoseconds to about 4.9 hours
+ * (larger values are counted in the highest bucket). Bucket counts are
+ * striped across a number of independently allocated arrays, with each
+ * recording thread updating the stripe selected by its thread id, so that
+ * concurrent {@link #record} calls do not contend on a single counter.
+ *
+ * <p>{@link #getSnapshot()} merges all stripes; a snapshot taken while values
+ * are being recorded is not an atomic view but never loses counts.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int MAX_EXPONENT = 43;
+
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+	private static final int SUM_SLOT = BUCKET_COUNT;
+
+
+	private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+	private final int stripeMask;
+
+	private final AtomicLong max = new AtomicLong();
+
+
+	/**
+	 * Create a new LatencyHistogram with a single stripe.
+	 */
+	public LatencyHistogram() {
+		this(1);
+	}
+
+	/**
+	 * Create a new LatencyHistogram for the given number of concurrently
+	 * recording threads, rounded up to the next power of two.
+	 * @param concurrencyLevel the number of stripes to distribute counts over
+	 */
+	public LatencyHistogram(int concurrencyLevel) {
+		int stripeCount = 1;
+		while (stripeCount < concurrencyLevel) {
+			stripeCount <<= 1;
+		}
+		this.stripes = new AtomicReferenceArray<AtomicLongArray>(stripeCount);
+		this.stripeMask = stripeCount - 1;
+	}
+
+
+	/**
+	 * Record the given latency value.
+	 * @param nanos the latency in nanoseconds (negative values count as 0)
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		AtomicLongArray stripe = getStripe((int) Thread.currentThread().getId() & this.stripeMask);
+		stripe.incrementAndGet(bucketIndex(nanos));
+		stripe.addAndGet(SUM_SLOT, nanos);
+		long currentMax = this.max.get();
+		while (nanos > currentMax && !this.max.compareAndSet(currentMax, nanos)) {
+			currentMax = this.max.get();
+		}
+	}
+
+	private AtomicLongArray getStripe(int index) {
+		AtomicLongArray stripe = this.stripes.get(index);
+		if (stripe == null) {
+			this.stripes.compareAndSet(index, null, new AtomicLongArray(BUCKET_COUNT + 1));
+			stripe = this.stripes.get(index);
+		}
+		return stripe;
+	}
+
+	/**
+	 * Return a snapshot of the values recorded so far.
+	 */
+	public Snapshot getSnapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		long sum = 0;
+		for (int i = 0; i < this.stripes.length(); i++) {
+			AtomicLongArray stripe = this.stripes.get(i);
+			if (stripe != null) {
+				for (int j = 0; j < BUCKET_COUNT; j++) {
+					counts[j] += stripe.get(j);
+				}
+				sum += stripe.get(SUM_SLOT);
+			}
+		}
+		return new Snapshot(counts, sum, this.max.get());
+	}
+
+	/**
+	 * Reset all counts to zero. Values recorded concurrently
+	 * may or may not be retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < this.stripes.length(); i++) {
+			AtomicLongArray stripe = this.stripes.get(i);
+			if (stripe != null) {
+				for (int j = 0; j <= SUM_SLOT; j++) {
+					stripe.set(j, 0);
+				}
+			}
+		}
+		this.max.set(0);
+	}
+
+
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long highestValueInBucket(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+
+	/**
+	 * Immutable view of the values recorded by a {@link LatencyHistogram}.
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long sum;
+
+		private final long max;
+
+		private Snapshot(long[] counts, long sum, long max) {
+			this.counts = counts;
+			long count = 0;
+			for (long bucketCount : counts) {
+				count += bucketCount;
+			}
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Return the number of recorded values.
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Return the mean of all recorded values (in nanoseconds),
+		 * or 0 if no values have been recorded.
+		 */
+		public double getMean() {
+			return (this.count > 0 ? (double) this.sum / this.count : 0);
+		}
+
+		/**
+		 * Return the highest recorded value (in nanoseconds).
+		 */
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * Return the value (in nanoseconds) below which the given percentage
+		 * of recorded values fall, or 0 if no values have been recorded.
+		 * @param percentile the percentile, between 0 and 100
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (this.count == 0) {
+				return 0;
+			}
+			double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+			long target = Math.max((long) Math.ceil(fraction * this.count), 1);
+			long cumulative = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				cumulative += this.counts[i];
+				if (cumulative >= target) {
+					return Math.min(highestValueInBucket(i), this.max);
+				}
+			}
+			return this.max;
+		}
+	}
+
+}
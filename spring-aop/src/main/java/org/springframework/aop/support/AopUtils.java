@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import org.springframework.aop.Pointcut;
 import org.springframework.aop.PointcutAdvisor;
 import org.springframework.aop.SpringProxy;
 import org.springframework.aop.TargetClassAware;
+import org.springframework.aop.framework.BytecodeProxySupport;
 import org.springframework.core.BridgeMethodResolver;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
@@ -56,14 +57,16 @@ import org.springframework.util.ReflectionUtils;
 public abstract class AopUtils {
 
 	/**
-	 * Check whether the given object is a JDK dynamic proxy or a CGLIB proxy.
+	 * Check whether the given object is a JDK dynamic proxy, a CGLIB proxy
+	 * or a compiled proxy.
 	 * @param object the object to check
 	 * @see #isJdkDynamicProxy
 	 * @see #isCglibProxy
 	 */
 	public static boolean isAopProxy(Object object) {
 		return (object instanceof SpringProxy &&
-				(Proxy.isProxyClass(object.getClass()) || ClassUtils.isCglibProxyClass(object.getClass())));
+				(Proxy.isProxyClass(object.getClass()) || ClassUtils.isCglibProxyClass(object.getClass()) ||
+						object instanceof BytecodeProxySupport));
 	}
 
 	/**
@@ -0,0 +1,610 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.aop.target;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * {@link org.springframework.aop.TargetSource} implementation that holds
+ * objects in a built-in concurrent pool, without a dependency on an
+ * external pooling library and without a global lock.
+ *
+ * <p>Fetching a target first tries the object most recently used by the
+ * current thread, which is typically idle again and can be claimed with a
+ * single compare-and-set. Otherwise, idle objects are taken from a lock-free
+ * shared queue, and new objects are created as long as the pool has not
+ * reached its maximum size. The maximum size is enforced through a
+ * {@link Semaphore}, which also implements the maximum waiting time for
+ * an exhausted pool.
+ *
+ * <p>Supports the main configuration options of {@link CommonsPoolTargetSource}:
+ * periodic eviction of objects that have been idle for too long, a minimum
+ * number of pooled objects, and a maximum waiting time. Objects may also be
+ * validated on borrow and while idle, through a
+ * {@link #setValidationMethodName validation method} on the target.
+ *
+ * <p>Statistics are available through the {@link ConcurrentPoolTargetSourceMBean}
+ * interface, for JMX exposure of this TargetSource as a standard MBean.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #setMaxSize
+ * @see #setMinIdle
+ * @see #setMaxWait
+ * @see #setTimeBetweenEvictionRunsMillis
+ * @see #setMinEvictableIdleTimeMillis
+ * @see #setValidationMethodName
+ */
+public class ConcurrentPoolTargetSource extends AbstractPoolingTargetSource
+		implements ConcurrentPoolTargetSourceMBean {
+
+	private static final long serialVersionUID = 7037219935909257636L;
+
+	private static final int IDLE = 0;
+
+	private static final int IN_USE = 1;
+
+	private static final int REMOVED = 2;
+
+	private static final int EVICTING = 3;
+
+
+	private int minIdle = 0;
+
+	private long maxWait = -1;
+
+	private long timeBetweenEvictionRunsMillis = -1;
+
+	private long minEvictableIdleTimeMillis = 1800000;
+
+	private String validationMethodName;
+
+	private boolean testOnBorrow = false;
+
+	private boolean testWhileIdle = false;
+
+	/** All pooled objects, whether in use or idle */
+	private final List<PooledTarget> pooledTargets = new CopyOnWriteArrayList<PooledTarget>();
+
+	/** Idle objects; may contain objects that have been claimed again in the meantime */
+	private final Queue<PooledTarget> idleTargets = new ConcurrentLinkedQueue<PooledTarget>();
+
+	/**
+	 * The object most recently fetched by the current thread. Held weakly, so that
+	 * threads do not keep objects reachable once they have been removed from the pool.
+	 */
+	private final ThreadLocal<Reference<PooledTarget>> affinity =
+			new NamedThreadLocal<Reference<PooledTarget>>("Most recently used pooled target");
+
+	/** Number of pooled objects, including those currently being created */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLong createdCount = new AtomicLong();
+
+	private final AtomicLong destroyedCount = new AtomicLong();
+
+	private final AtomicLong validationFailureCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private Semaphore permits;
+
+	private ScheduledExecutorService evictor;
+
+	private volatile Method validationMethod;
+
+	private volatile boolean closed;
+
+
+	/**
+	 * Create a ConcurrentPoolTargetSource with default settings.
+	 * Default maximum size of the pool is 8.
+	 * @see #setMaxSize
+	 */
+	public ConcurrentPoolTargetSource() {
+		setMaxSize(8);
+	}
+
+	/**
+	 * Set the minimum number of objects to keep in the pool.
+	 * Default is 0.
+	 * <p>Eviction runs will not evict objects below this size,
+	 * and create objects up to this size.
+	 * @see #setTimeBetweenEvictionRunsMillis
+	 */
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * Return the minimum number of objects to keep in the pool.
+	 */
+	public int getMinIdle() {
+		return this.minIdle;
+	}
+
+	/**
+	 * Set the maximum waiting time (in milliseconds) for fetching an object
+	 * from an exhausted pool. Default is -1, waiting forever.
+	 * <p>If the timeout expires, a {@link NoSuchElementException} is thrown.
+	 */
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Return the maximum waiting time for fetching an object from the pool.
+	 */
+	public long getMaxWait() {
+		return this.maxWait;
+	}
+
+	/**
+	 * Set the time between eviction runs that check idle objects whether
+	 * they have been idle for too long or have become invalid.
+	 * Default is -1, not performing any eviction.
+	 */
+	public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
+		this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+	}
+
+	/**
+	 * Return the time between eviction runs that check idle objects.
+	 */
+	public long getTimeBetweenEvictionRunsMillis() {
+		return this.timeBetweenEvictionRunsMillis;
+	}
+
+	/**
+	 * Set the minimum time that an idle object can sit in the pool before
+	 * it becomes subject to eviction. Default is 1800000 (30 minutes).
+	 * <p>Note that eviction runs need to be performed to take this
+	 * setting into effect.
+	 * @see #setTimeBetweenEvictionRunsMillis
+	 */
+	public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
+		this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+	}
+
+	/**
+	 * Return the minimum time that an idle object can sit in the pool.
+	 */
+	public long getMinEvictableIdleTimeMillis() {
+		return this.minEvictableIdleTimeMillis;
+	}
+
+	/**
+	 * Set the name of a no-arg method on the target that validates it.
+	 * The target is considered invalid if the method returns <code>false</code>
+	 * or throws an exception. Default is none.
+	 * @see #setTestOnBorrow
+	 * @see #setTestWhileIdle
+	 * @see #validateTarget
+	 */
+	public void setValidationMethodName(String validationMethodName) {
+		this.validationMethodName = validationMethodName;
+	}
+
+	/**
+	 * Return the name of the validation method on the target, if any.
+	 */
+	public String getValidationMethodName() {
+		return this.validationMethodName;
+	}
+
+	/**
+	 * Set whether to validate pooled objects before handing them out,
+	 * discarding invalid ones. Default is "false".
+	 */
+	public void setTestOnBorrow(boolean testOnBorrow) {
+		this.testOnBorrow = testOnBorrow;
+	}
+
+	/**
+	 * Return whether pooled objects are validated before being handed out.
+	 */
+	public boolean isTestOnBorrow() {
+		return this.testOnBorrow;
+	}
+
+	/**
+	 * Set whether to validate idle objects during eviction runs,
+	 * discarding invalid ones. Default is "false".
+	 * @see #setTimeBetweenEvictionRunsMillis
+	 */
+	public void setTestWhileIdle(boolean testWhileIdle) {
+		this.testWhileIdle = testWhileIdle;
+	}
+
+	/**
+	 * Return whether idle objects are validated during eviction runs.
+	 */
+	public boolean isTestWhileIdle() {
+		return this.testWhileIdle;
+	}
+
+
+	/**
+	 * Sets up the pool size limit and the eviction thread, if necessary.
+	 */
+	@Override
+	protected void createPool() {
+		logger.debug("Creating concurrent object pool");
+		if (getMaxSize() >= 0) {
+			this.permits = new Semaphore(getMaxSize());
+		}
+		if (this.timeBetweenEvictionRunsMillis > 0) {
+			final CustomizableThreadCreator threadCreator =
+					new CustomizableThreadCreator(getTargetBeanName() + "-pool-evictor-");
+			threadCreator.setDaemon(true);
+			this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					return threadCreator.createThread(runnable);
+				}
+			});
+			this.evictor.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					evict();
+				}
+			}, this.timeBetweenEvictionRunsMillis, this.timeBetweenEvictionRunsMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Fetch an object from the pool, preferring the object that the
+	 * current thread used most recently.
+	 * @throws NoSuchElementException if the pool is exhausted and the
+	 * maximum waiting time has expired
+	 */
+	@Override
+	public Object getTarget() throws Exception {
+		if (this.closed) {
+			throw new IllegalStateException("Pool for bean '" + getTargetBeanName() + "' has been closed");
+		}
+		if (this.permits != null) {
+			acquirePermit();
+		}
+		try {
+			return borrow().target;
+		}
+		catch (Exception ex) {
+			releasePermit();
+			throw ex;
+		}
+		catch (Error err) {
+			releasePermit();
+			throw err;
+		}
+	}
+
+	private void acquirePermit() throws InterruptedException {
+		if (this.maxWait < 0) {
+			this.permits.acquire();
+		}
+		else if (!this.permits.tryAcquire(this.maxWait, TimeUnit.MILLISECONDS)) {
+			this.timeoutCount.incrementAndGet();
+			throw new NoSuchElementException(
+					"Timeout waiting for idle object in pool for bean '" + getTargetBeanName() + "'");
+		}
+	}
+
+	private void releasePermit() {
+		if (this.permits != null) {
+			this.permits.release();
+		}
+	}
+
+	private PooledTarget borrow() {
+		PooledTarget affine = getAffineTarget();
+		PooledTarget candidate = affine;
+		while (true) {
+			if (candidate != null && candidate.state.compareAndSet(IDLE, IN_USE)) {
+				if (!this.testOnBorrow || isValid(candidate)) {
+					if (candidate != affine) {
+						this.affinity.set(candidate.reference);
+					}
+					return candidate;
+				}
+			}
+			candidate = this.idleTargets.poll();
+			if (candidate != null) {
+				// Unmark before claiming, so that a concurrent release re-queues it.
+				candidate.queued.set(false);
+				continue;
+			}
+			int currentSize = this.size.get();
+			if (getMaxSize() < 0 || currentSize < getMaxSize()) {
+				if (this.size.compareAndSet(currentSize, currentSize + 1)) {
+					PooledTarget created = create(IN_USE);
+					this.affinity.set(created.reference);
+					return created;
+				}
+			}
+			else {
+				// We hold a permit, so an object is about to be released to the queue.
+				Thread.yield();
+			}
+		}
+	}
+
+	private PooledTarget getAffineTarget() {
+		Reference<PooledTarget> reference = this.affinity.get();
+		return (reference != null ? reference.get() : null);
+	}
+
+	private PooledTarget create(int state) {
+		try {
+			PooledTarget pooledTarget = new PooledTarget(newPrototypeInstance(), state);
+			this.pooledTargets.add(pooledTarget);
+			this.createdCount.incrementAndGet();
+			return pooledTarget;
+		}
+		catch (RuntimeException ex) {
+			this.size.decrementAndGet();
+			throw ex;
+		}
+		catch (Error err) {
+			this.size.decrementAndGet();
+			throw err;
+		}
+	}
+
+	/**
+	 * Return the given object to the pool.
+	 * @throws IllegalArgumentException if the object has not been obtained from this pool
+	 * @throws IllegalStateException if the object is not currently in use,
+	 * e.g. because it has been released already
+	 */
+	@Override
+	public void releaseTarget(Object target) {
+		PooledTarget pooledTarget = getAffineTarget();
+		if (pooledTarget == null || pooledTarget.target != target) {
+			pooledTarget = findPooledTarget(target);
+			if (pooledTarget == null) {
+				throw new IllegalArgumentException("Object [" + target + "] is not part of the pool");
+			}
+		}
+		if (this.evictor != null && !this.closed) {
+			pooledTarget.lastReturned = System.currentTimeMillis();
+		}
+		// Only one release per borrow may succeed, since each one returns a permit.
+		if (!pooledTarget.state.compareAndSet(IN_USE, this.closed ? REMOVED : IDLE)) {
+			throw new IllegalStateException("Object [" + target + "] is not in use: released already?");
+		}
+		if (this.closed) {
+			remove(pooledTarget);
+		}
+		else {
+			enqueue(pooledTarget);
+		}
+		releasePermit();
+	}
+
+	private PooledTarget findPooledTarget(Object target) {
+		for (PooledTarget pooledTarget : this.pooledTargets) {
+			if (pooledTarget.target == target) {
+				return pooledTarget;
+			}
+		}
+		return null;
+	}
+
+	private void makeIdle(PooledTarget pooledTarget) {
+		pooledTarget.state.set(IDLE);
+		enqueue(pooledTarget);
+	}
+
+	private void enqueue(PooledTarget pooledTarget) {
+		if (pooledTarget.queued.compareAndSet(false, true)) {
+			this.idleTargets.offer(pooledTarget);
+		}
+	}
+
+	/**
+	 * Validate the given pooled object, removing it from the pool if invalid.
+	 */
+	private boolean isValid(PooledTarget pooledTarget) {
+		boolean valid;
+		try {
+			valid = validateTarget(pooledTarget.target);
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Validation of pooled instance of bean '" + getTargetBeanName() + "' failed", ex);
+			}
+			valid = false;
+		}
+		if (!valid) {
+			this.validationFailureCount.incrementAndGet();
+			remove(pooledTarget);
+		}
+		return valid;
+	}
+
+	/**
+	 * Validate the given target object. Called for objects from the pool
+	 * if "testOnBorrow" or "testWhileIdle" is active.
+	 * <p>The default implementation invokes the specified validation method,
+	 * if any. Can be overridden for custom validation.
+	 * @param target the target object to validate
+	 * @return whether the target is valid
+	 * @throws Exception if validation failed, treated like an invalid target
+	 * @see #setValidationMethodName
+	 */
+	protected boolean validateTarget(Object target) throws Exception {
+		if (this.validationMethodName == null) {
+			return true;
+		}
+		Method method = this.validationMethod;
+		if (method == null || !method.getDeclaringClass().isInstance(target)) {
+			method = ReflectionUtils.findMethod(target.getClass(), this.validationMethodName);
+			if (method == null) {
+				throw new IllegalStateException("No validation method '" + this.validationMethodName +
+						"' found on " + target.getClass());
+			}
+			ReflectionUtils.makeAccessible(method);
+			this.validationMethod = method;
+		}
+		return !Boolean.FALSE.equals(method.invoke(target));
+	}
+
+	private void remove(PooledTarget pooledTarget) {
+		pooledTarget.state.set(REMOVED);
+		if (this.pooledTargets.remove(pooledTarget)) {
+			this.size.decrementAndGet();
+			this.destroyedCount.incrementAndGet();
+			destroyPrototypeInstance(pooledTarget.target);
+		}
+	}
+
+	/**
+	 * Perform an eviction run: discard objects that have been idle for longer
+	 * than the minimum evictable idle time (or that turn out to be invalid,
+	 * if "testWhileIdle" is active), then fill the pool up to its minimum size.
+	 * <p>Called periodically if "timeBetweenEvictionRunsMillis" is set.
+	 */
+	protected void evict() {
+		long now = System.currentTimeMillis();
+		for (PooledTarget pooledTarget : this.pooledTargets) {
+			if (this.closed) {
+				return;
+			}
+			if (!pooledTarget.state.compareAndSet(IDLE, EVICTING)) {
+				continue;
+			}
+			if (now - pooledTarget.lastReturned > this.minEvictableIdleTimeMillis && this.size.get() > this.minIdle) {
+				remove(pooledTarget);
+			}
+			else if (!this.testWhileIdle || isValid(pooledTarget)) {
+				makeIdle(pooledTarget);
+			}
+		}
+		int maxSize = getMaxSize();
+		int currentSize;
+		while (!this.closed && (currentSize = this.size.get()) < this.minIdle && (maxSize < 0 || currentSize < maxSize)) {
+			if (this.size.compareAndSet(currentSize, currentSize + 1)) {
+				makeIdle(create(EVICTING));
+			}
+		}
+	}
+
+
+	public int getActiveCount() {
+		return countPooledTargets(IN_USE);
+	}
+
+	public int getIdleCount() {
+		return countPooledTargets(IDLE);
+	}
+
+	private int countPooledTargets(int state) {
+		int count = 0;
+		for (PooledTarget pooledTarget : this.pooledTargets) {
+			if (pooledTarget.state.get() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getSize() {
+		return this.size.get();
+	}
+
+	public long getCreatedCount() {
+		return this.createdCount.get();
+	}
+
+	public long getDestroyedCount() {
+		return this.destroyedCount.get();
+	}
+
+	public long getValidationFailureCount() {
+		return this.validationFailureCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return this.timeoutCount.get();
+	}
+
+
+	/**
+	 * Stops eviction and destroys all idle objects when destroying this object.
+	 * Objects in use are destroyed when released.
+	 * <p>Clears the current thread's affinity; other threads only hold weak
+	 * references to pooled objects, which do not keep destroyed objects alive.
+	 */
+	public void destroy() {
+		logger.debug("Closing concurrent object pool");
+		this.closed = true;
+		this.affinity.remove();
+		if (this.evictor != null) {
+			this.evictor.shutdownNow();
+		}
+		for (PooledTarget pooledTarget : this.pooledTargets) {
+			if (pooledTarget.state.compareAndSet(IDLE, REMOVED)) {
+				remove(pooledTarget);
+			}
+		}
+		this.idleTargets.clear();
+	}
+
+
+	/**
+	 * Holder for a pooled object and its state.
+	 */
+	private static class PooledTarget {
+
+		public final Object target;
+
+		public final AtomicInteger state;
+
+		/** Whether this object is currently contained in the idle queue */
+		public final AtomicBoolean queued = new AtomicBoolean();
+
+		public volatile long lastReturned = System.currentTimeMillis();
+
+		/** Weak reference to this holder, for the thread affinity */
+		public final Reference<PooledTarget> reference = new WeakReference<PooledTarget>(this);
+
+		public PooledTarget(Object target, int state) {
+			this.target = target;
+			this.state = new AtomicInteger(state);
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.aop.target;
+
+/**
+ * Management interface for a {@link ConcurrentPoolTargetSource}, exposing its
+ * pool statistics as a standard MBean, e.g. through autodetection by
+ * {@link org.springframework.jmx.export.MBeanExporter}.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public interface ConcurrentPoolTargetSourceMBean extends PoolingConfig {
+
+	/**
+	 * Return the current number of target objects in the pool,
+	 * both active and idle.
+	 */
+	int getSize();
+
+	/**
+	 * Return the number of target objects created so far.
+	 */
+	long getCreatedCount();
+
+	/**
+	 * Return the number of target objects destroyed so far,
+	 * due to eviction, failed validation or pool shutdown.
+	 */
+	long getDestroyedCount();
+
+	/**
+	 * Return the number of target objects that failed validation.
+	 */
+	long getValidationFailureCount();
+
+	/**
+	 * Return the number of times that fetching a target timed out
+	 * because the pool was exhausted.
+	 */
+	long getTimeoutCount();
+
+}
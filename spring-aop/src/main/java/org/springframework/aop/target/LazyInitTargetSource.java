@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,6 +50,8 @@ import org.springframework.beans.BeansException;
  * <p>Subclasses can extend this class and override the {@link #postProcessTargetObject(Object)} to
  * perform some additional processing with the target object when it is first loaded.
  *
+ * <p>As of Spring 3.1, the initialized target is returned without synchronization.
+ *
  * @author Juergen Hoeller
  * @author Rob Harrop
  * @since 1.1.4
@@ -58,15 +60,25 @@ import org.springframework.beans.BeansException;
  */
 public class LazyInitTargetSource extends AbstractBeanFactoryBasedTargetSource {
 
-	private Object target;
+	private volatile Object target;
 
 
-	public synchronized Object getTarget() throws BeansException {
-		if (this.target == null) {
-			this.target = getBeanFactory().getBean(getTargetBeanName());
-			postProcessTargetObject(this.target);
+	public Object getTarget() throws BeansException {
+		Object target = this.target;
+		if (target == null) {
+			// Obtain the target outside of our own lock, since the bean factory
+			// may hold its singleton lock while calling into this proxy.
+			Object newTarget = getBeanFactory().getBean(getTargetBeanName());
+			synchronized (this) {
+				target = this.target;
+				if (target == null) {
+					target = newTarget;
+					postProcessTargetObject(target);
+					this.target = target;
+				}
+			}
 		}
-		return this.target;
+		return target;
 	}
 
 	/**
@@ -16,6 +16,10 @@
 
 package org.springframework.cache;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 /**
  * Interface that defines the common cache operations.
  *
@@ -47,6 +51,32 @@ public interface Cache {
 	 */
 	ValueWrapper get(Object key);
 
+	/**
+	 * Return the value to which this cache maps the specified key, obtaining
+	 * that value from the given loader if the cache contains no mapping for it.
+	 * <p>The entire load-through operation is atomic per key: If several threads
+	 * ask for the same missing key concurrently, the loader will be invoked only
+	 * once, with the other threads waiting for its result. This protects the
+	 * underlying resource against a "stampede" of identical requests whenever
+	 * a frequently used entry expires.
+	 * <p>If the loader throws an exception, no mapping is added and the exception
+	 * is propagated to all waiting callers, wrapped in a {@link ValueRetrievalException}.
+	 * @param key key whose associated value is to be returned
+	 * @param valueLoader the loader to compute the value with if not cached yet
+	 * @return the value to which this cache maps the specified key
+	 * @throws ValueRetrievalException if the loader failed
+	 */
+	<T> T get(Object key, Callable<T> valueLoader);
+
+	/**
+	 * Return the values to which this cache maps the specified keys,
+	 * performing a single bulk lookup where the cache provider supports it.
+	 * @param keys the keys whose associated values are to be returned
+	 * @return a Map from each of the given keys that this cache contains a
+	 * mapping for to its value; keys without mapping are not contained
+	 */
+	Map<Object, ValueWrapper> getAll(Collection<?> keys);
+
 	/**
 	 * Associate the specified value with the specified key in this cache.
 	 * <p>If the cache previously contained a mapping for this key, the old
@@ -56,6 +86,14 @@ public interface Cache {
 	 */
 	void put(Object key, Object value);
 
+	/**
+	 * Associate each of the specified keys with its value in this cache,
+	 * performing a single bulk update where the cache provider supports it.
+	 * @param entries the key-value pairs to store
+	 * @see #put(Object, Object)
+	 */
+	void putAll(Map<?, ?> entries);
+
 	/**
 	 * Evict the mapping for this key from this cache if it is present.
 	 * @param key the key whose mapping is to be removed from the cache
@@ -79,4 +117,27 @@ public interface Cache {
 		Object get();
 	}
 
+
+	/**
+	 * Wrapper exception to be thrown from {@link #get(Object, Callable)}
+	 * in case of the value loader callback failing with an exception.
+	 */
+	@SuppressWarnings("serial")
+	class ValueRetrievalException extends RuntimeException {
+
+		private final Object key;
+
+		public ValueRetrievalException(Object key, Callable<?> loader, Throwable ex) {
+			super("Value for key '" + key + "' could not be loaded using '" + loader + "'", ex);
+			this.key = key;
+		}
+
+		/**
+		 * Return the key whose value could not be loaded.
+		 */
+		public Object getKey() {
+			return this.key;
+		}
+	}
+
 }
@@ -56,4 +56,34 @@ public @interface Cacheable {
 	 * <p>Default is "", meaning the method is always cached.
 	 */
 	String condition() default "";
+
+	/**
+	 * Synchronize the invocation of the underlying method if several threads are
+	 * attempting to load a value for the same key: Only one of them invokes the
+	 * method, with the others waiting for its result instead of hitting the
+	 * underlying resource concurrently.
+	 * <p>Relies on {@link org.springframework.cache.Cache#get(Object, java.util.concurrent.Callable)};
+	 * consequently, only a single cache may be specified, and no other cache
+	 * operation may be combined with this one on the same method.
+	 * <p>Default is <code>false</code>.
+	 */
+	boolean sync() default false;
+
+	/**
+	 * Cache each element of the method's collection argument individually,
+	 * e.g. for a method such as <code>List&lt;User&gt; findUsers(Collection&lt;Long&gt; ids)</code>.
+	 * <p>The elements of the collection argument serve as cache keys themselves: All
+	 * of them are looked up in a single bulk operation, with the method being invoked
+	 * for the missing elements only and the results being merged in the order of the
+	 * original argument. The method must declare exactly one {@link java.util.Collection}
+	 * parameter and return either a {@link java.util.Map} from element to value or a
+	 * {@link java.util.List} holding one value per requested element (in the given order).
+	 * <code>null</code> values are not cached. Aspects that cannot proceed with a
+	 * different argument (i.e. other than Spring AOP's {@code CacheInterceptor})
+	 * invoke the method for all elements whenever any of them is missing.
+	 * <p>Consequently, no custom key may be specified, and no other cache operation
+	 * may be combined with this one on the same method.
+	 * <p>Default is <code>false</code>.
+	 */
+	boolean bulk() default false;
 }
@@ -27,6 +27,7 @@ import org.springframework.cache.interceptor.CacheOperation;
 import org.springframework.cache.interceptor.CachePutOperation;
 import org.springframework.cache.interceptor.CacheableOperation;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * Strategy implementation for parsing Spring's {@link Caching}, {@link Cacheable},
@@ -71,6 +72,9 @@ public class SpringCacheAnnotationParser implements CacheAnnotationParser, Seria
 				ops.addAll(parseCachingAnnotation(ae, c));
 			}
 		}
+		if (ops != null) {
+			validateCacheOperations(ae, ops);
+		}
 		return ops;
 	}
 
@@ -83,6 +87,8 @@ public class SpringCacheAnnotationParser implements CacheAnnotationParser, Seria
 		cuo.setCacheNames(caching.value());
 		cuo.setCondition(caching.condition());
 		cuo.setKey(caching.key());
+		cuo.setSync(caching.sync());
+		cuo.setBulk(caching.bulk());
 		cuo.setName(ae.toString());
 		return cuo;
 	}
@@ -154,4 +160,38 @@ public class SpringCacheAnnotationParser implements CacheAnnotationParser, Seria
 
 		return (anns.isEmpty() ? null : anns);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Validate that synchronized and bulk cacheable operations are declared on their own:
+	 * A per-key synchronized load can only be delegated to a single cache, and bulk
+	 * operations derive their keys from the elements of the collection argument.
+	 */
+	private void validateCacheOperations(AnnotatedElement ae, Collection<CacheOperation> ops) {
+		for (CacheOperation op : ops) {
+			if (op instanceof CacheableOperation && ((CacheableOperation) op).isBulk()) {
+				if (ops.size() > 1) {
+					throw new IllegalStateException("@Cacheable(bulk = true) cannot be combined with other " +
+							"cache operations on '" + ae + "'");
+				}
+				if (((CacheableOperation) op).isSync()) {
+					throw new IllegalStateException("@Cacheable(bulk = true) cannot be combined with " +
+							"sync = true on '" + ae + "'");
+				}
+				if (StringUtils.hasText(op.getKey())) {
+					throw new IllegalStateException("@Cacheable(bulk = true) does not allow for a custom key " +
+							"on '" + ae + "': the elements of the collection argument serve as keys");
+				}
+			}
+			if (op instanceof CacheableOperation && ((CacheableOperation) op).isSync()) {
+				if (ops.size() > 1) {
+					throw new IllegalStateException("@Cacheable(sync = true) cannot be combined with other " +
+							"cache operations on '" + ae + "'");
+				}
+				if (op.getCacheNames().size() > 1) {
+					throw new IllegalStateException("@Cacheable(sync = true) only allows a single cache on '" +
+							ae + "': " + op.getCacheNames());
+				}
+			}
+		}
+	}
+}
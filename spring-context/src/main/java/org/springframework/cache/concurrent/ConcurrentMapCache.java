@@ -17,11 +17,16 @@
 package org.springframework.cache.concurrent;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoadCoordinator;
 
 /**
  * Simple {@link Cache} implementation based on the core JDK
@@ -36,6 +41,10 @@ import org.springframework.cache.support.SimpleValueWrapper;
  * them with a predefined internal object. This behavior can be changed through the
  * {@link #ConcurrentMapCache(String, ConcurrentMap, boolean)} constructor.
  *
+ * <p>{@link #get(Object, Callable)} coordinates concurrent loads of the same key
+ * through a {@link ValueLoadCoordinator}, so lookups of existing entries
+ * never block.
+ *
  * @author Costin Leau
  * @author Juergen Hoeller
  * @since 3.1
@@ -50,6 +59,9 @@ public class ConcurrentMapCache implements Cache {
 
 	private final boolean allowNullValues;
 
+	/** Loads currently in progress, keyed by cache key */
+	private final ValueLoadCoordinator loadCoordinator = new ValueLoadCoordinator();
+
 
 	/**
 	 * Create a new ConcurrentMapCache with the specified name.
@@ -99,10 +111,49 @@ public class ConcurrentMapCache implements Cache {
 		return (value != null ? new SimpleValueWrapper(fromStoreValue(value)) : null);
 	}
 
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		Object storeValue = this.store.get(key);
+		if (storeValue != null) {
+			return (T) fromStoreValue(storeValue);
+		}
+		return this.loadCoordinator.<T>load(key, valueLoader, new Callable<Object>() {
+			public Object call() throws Exception {
+				// Another load may have completed in the meantime
+				Object existingValue = store.get(key);
+				if (existingValue != null) {
+					return fromStoreValue(existingValue);
+				}
+				T value = valueLoader.call();
+				if (value != null || allowNullValues) {
+					store.put(key, toStoreValue(value));
+				}
+				return value;
+			}
+		});
+	}
+
+	public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+		Map<Object, ValueWrapper> result = new HashMap<Object, ValueWrapper>(keys.size());
+		for (Object key : keys) {
+			Object value = this.store.get(key);
+			if (value != null) {
+				result.put(key, new SimpleValueWrapper(fromStoreValue(value)));
+			}
+		}
+		return result;
+	}
+
 	public void put(Object key, Object value) {
 		this.store.put(key, toStoreValue(value));
 	}
 
+	public void putAll(Map<?, ?> entries) {
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+			this.store.put(entry.getKey(), toStoreValue(entry.getValue()));
+		}
+	}
+
 	public void evict(Object key) {
 		this.store.remove(key);
 	}
@@ -165,7 +165,21 @@ class CacheAdviceParser extends AbstractSingleBeanDefinitionParser {
 			String name = prop.merge(opElement, parserContext.getReaderContext());
 			TypedStringValue nameHolder = new TypedStringValue(name);
 			nameHolder.setSource(parserContext.extractSource(opElement));
-			CacheOperation op = prop.merge(opElement, parserContext.getReaderContext(), new CacheableOperation());
+			CacheableOperation op = prop.merge(opElement, parserContext.getReaderContext(), new CacheableOperation());
+
+			String sync = opElement.getAttribute("sync");
+			if (StringUtils.hasText(sync)) {
+				op.setSync(Boolean.valueOf(sync.trim()));
+			}
+
+			String bulk = opElement.getAttribute("bulk");
+			if (StringUtils.hasText(bulk)) {
+				op.setBulk(Boolean.valueOf(bulk.trim()));
+				if (op.isBulk() && StringUtils.hasText(op.getKey())) {
+					parserContext.getReaderContext().error(
+							"A bulk cacheable operation does not allow for a custom key", opElement);
+				}
+			}
 
 			Collection<CacheOperation> col = cacheOpMap.get(nameHolder);
 			if (col == null) {
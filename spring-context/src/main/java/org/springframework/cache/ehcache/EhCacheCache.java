@@ -16,6 +16,13 @@
 
 package org.springframework.cache.ehcache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.Status;
@@ -27,6 +34,9 @@ import org.springframework.util.Assert;
 /**
  * {@link Cache} implementation on top of an {@link Ehcache} instance.
  *
+ * <p>{@link #get(Object, Callable)} serializes concurrent loads of the same key
+ * through Ehcache's key-level write lock, holding it only while loading.
+ *
  * @author Costin Leau
  * @author Juergen Hoeller
  * @since 3.1
@@ -66,10 +76,57 @@ public class EhCacheCache implements Cache {
 		return (element != null ? new SimpleValueWrapper(element.getObjectValue()) : null);
 	}
 
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		Element element = this.cache.get(key);
+		if (element != null) {
+			return (T) element.getObjectValue();
+		}
+		this.cache.acquireWriteLockOnKey(key);
+		try {
+			// Another load may have completed while we were waiting for the lock
+			element = this.cache.get(key);
+			if (element != null) {
+				return (T) element.getObjectValue();
+			}
+			T value;
+			try {
+				value = valueLoader.call();
+			}
+			catch (Throwable ex) {
+				throw new ValueRetrievalException(key, valueLoader, ex);
+			}
+			this.cache.put(new Element(key, value));
+			return value;
+		}
+		finally {
+			this.cache.releaseWriteLockOnKey(key);
+		}
+	}
+
+	public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+		Map<Object, Element> elements = this.cache.getAll(keys);
+		Map<Object, ValueWrapper> result = new HashMap<Object, ValueWrapper>(elements.size());
+		for (Map.Entry<Object, Element> entry : elements.entrySet()) {
+			if (entry.getValue() != null) {
+				result.put(entry.getKey(), new SimpleValueWrapper(entry.getValue().getObjectValue()));
+			}
+		}
+		return result;
+	}
+
 	public void put(Object key, Object value) {
 		this.cache.put(new Element(key, value));
 	}
 
+	public void putAll(Map<?, ?> entries) {
+		List<Element> elements = new ArrayList<Element>(entries.size());
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+			elements.add(new Element(entry.getKey(), entry.getValue()));
+		}
+		this.cache.putAll(elements);
+	}
+
 	public void evict(Object key) {
 		this.cache.remove(key);
 	}
@@ -19,9 +19,13 @@ package org.springframework.cache.interceptor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,6 +33,7 @@ import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.core.CollectionFactory;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
@@ -64,6 +69,15 @@ public abstract class CacheAspectSupport implements InitializingBean {
 		Object invoke();
 	}
 
+	/**
+	 * Extension of the {@link Invoker} interface for invokers that are able to
+	 * proceed with a different set of arguments, leaving the original ones untouched.
+	 * Allows bulk cacheable methods to be invoked for the missing keys only.
+	 */
+	public interface ArgumentReplacingInvoker extends Invoker {
+		Object invoke(Object[] args);
+	}
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private CacheManager cacheManager;
@@ -191,6 +205,18 @@ public abstract class CacheAspectSupport implements InitializingBean {
 		if (!CollectionUtils.isEmpty(cacheOp)) {
 			Map<String, Collection<CacheOperationContext>> ops = createOperationContext(cacheOp, method, args, target, targetClass);
 
+			// synchronized cacheable: load through the cache, one invocation per key
+			CacheOperationContext syncContext = getSynchronizedContext(ops);
+			if (syncContext != null) {
+				return executeSynchronized(invoker, syncContext);
+			}
+
+			// bulk cacheable: look up each element of the collection argument
+			CacheOperationContext bulkContext = getBulkContext(ops);
+			if (bulkContext != null) {
+				return executeBulk(invoker, bulkContext);
+			}
+
 			// start with evictions
 			inspectBeforeCacheEvicts(ops.get(EVICT));
 
@@ -224,6 +250,210 @@ public abstract class CacheAspectSupport implements InitializingBean {
 		return invoker.invoke();
 	}
 	
+	private CacheOperationContext getSynchronizedContext(Map<String, Collection<CacheOperationContext>> ops) {
+		Collection<CacheOperationContext> cacheables = ops.get(CACHEABLE);
+		for (CacheOperationContext context : cacheables) {
+			if (((CacheableOperation) context.operation).isSync()) {
+				if (cacheables.size() > 1 || !ops.get(EVICT).isEmpty() || !ops.get(UPDATE).isEmpty()) {
+					throw new IllegalStateException(
+							"A synchronized cacheable operation cannot be combined with other cache operations: " +
+									context.operation);
+				}
+				if (context.getCaches().size() > 1) {
+					throw new IllegalStateException(
+							"A synchronized cacheable operation only allows a single cache: " + context.operation);
+				}
+				return context;
+			}
+		}
+		return null;
+	}
+
+	private Object executeSynchronized(final Invoker invoker, CacheOperationContext context) {
+		if (!context.isConditionPassing()) {
+			if (logger.isTraceEnabled()) {
+				logger.trace("Cache condition failed on method " + context.method + " for operation " + context.operation);
+			}
+			return invoker.invoke();
+		}
+		Object key = context.generateKey();
+		if (logger.isTraceEnabled()) {
+			logger.trace("Computed cache key " + key + " for synchronized operation " + context.operation);
+		}
+		if (key == null) {
+			throw new IllegalArgumentException(
+					"Null key returned for cache operation (maybe you are using named params on classes without debug info?) "
+							+ context.operation);
+		}
+		Cache cache = context.getCaches().iterator().next();
+		try {
+			return cache.get(key, new Callable<Object>() {
+				public Object call() {
+					return invoker.invoke();
+				}
+			});
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			// propagate the invoker's own exception, as with unsynchronized invocations
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw ex;
+		}
+	}
+
+	private CacheOperationContext getBulkContext(Map<String, Collection<CacheOperationContext>> ops) {
+		Collection<CacheOperationContext> cacheables = ops.get(CACHEABLE);
+		for (CacheOperationContext context : cacheables) {
+			if (((CacheableOperation) context.operation).isBulk()) {
+				if (cacheables.size() > 1 || !ops.get(EVICT).isEmpty() || !ops.get(UPDATE).isEmpty()) {
+					throw new IllegalStateException(
+							"A bulk cacheable operation cannot be combined with other cache operations: " +
+									context.operation);
+				}
+				return context;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object executeBulk(Invoker invoker, CacheOperationContext context) {
+		int argIndex = getBulkArgumentIndex(context.method);
+		Collection<?> keys = (Collection<?>) context.args[argIndex];
+		if (keys == null || !context.isConditionPassing()) {
+			if (logger.isTraceEnabled()) {
+				logger.trace("Bulk caching skipped on method " + context.method + " for operation " + context.operation);
+			}
+			return invoker.invoke();
+		}
+
+		// look up all keys, going through the caches in order for the remaining misses
+		Map<Object, Object> values = new HashMap<Object, Object>(keys.size());
+		Collection<Object> misses = new LinkedHashSet<Object>(keys);
+		for (Cache cache : context.getCaches()) {
+			if (misses.isEmpty()) {
+				break;
+			}
+			for (Map.Entry<Object, Cache.ValueWrapper> entry : cache.getAll(misses).entrySet()) {
+				values.put(entry.getKey(), entry.getValue().get());
+				misses.remove(entry.getKey());
+			}
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Bulk cache lookup of " + keys.size() + " keys for operation " + context.operation +
+					" found " + values.size() + " entries, loading " + misses.size());
+		}
+
+		// invoke the method for the misses only, then cache and merge its results
+		if (!misses.isEmpty()) {
+			Object retVal;
+			Collection<Object> requested;
+			if (invoker instanceof ArgumentReplacingInvoker) {
+				Collection<Object> missArg = CollectionFactory.createCollection(
+						context.method.getParameterTypes()[argIndex], misses.size());
+				missArg.addAll(misses);
+				Object[] args = context.args.clone();
+				args[argIndex] = missArg;
+				retVal = ((ArgumentReplacingInvoker) invoker).invoke(args);
+				requested = misses;
+			}
+			else {
+				// cannot narrow down the arguments: invoke the method for all keys
+				retVal = invoker.invoke();
+				requested = new ArrayList<Object>(keys);
+			}
+			Map<Object, Object> loaded = extractBulkResults(retVal, requested, context);
+			if (!loaded.isEmpty()) {
+				for (Cache cache : context.getCaches()) {
+					cache.putAll(loaded);
+				}
+			}
+			values.putAll(loaded);
+		}
+
+		Class<?> returnType = context.method.getReturnType();
+		if (Map.class.isAssignableFrom(returnType)) {
+			Map<Object, Object> result = CollectionFactory.createMap(returnType, keys.size());
+			for (Object key : keys) {
+				Object value = values.get(key);
+				if (value != null) {
+					result.put(key, value);
+				}
+			}
+			return result;
+		}
+		List<Object> result = new ArrayList<Object>(keys.size());
+		for (Object key : keys) {
+			result.add(values.get(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Determine the index of the collection argument of the given bulk cacheable method,
+	 * validating its return type along the way.
+	 */
+	private int getBulkArgumentIndex(Method method) {
+		Class<?> returnType = method.getReturnType();
+		if (!Map.class.isAssignableFrom(returnType) && !returnType.isAssignableFrom(List.class)) {
+			throw new IllegalStateException("Bulk cacheable method must return a Map or a List: " + method);
+		}
+		int argIndex = -1;
+		Class<?>[] paramTypes = method.getParameterTypes();
+		for (int i = 0; i < paramTypes.length; i++) {
+			if (Collection.class.isAssignableFrom(paramTypes[i])) {
+				if (argIndex != -1) {
+					throw new IllegalStateException(
+							"Bulk cacheable method must declare exactly one Collection parameter: " + method);
+				}
+				argIndex = i;
+			}
+		}
+		if (argIndex == -1) {
+			throw new IllegalStateException(
+					"Bulk cacheable method must declare exactly one Collection parameter: " + method);
+		}
+		return argIndex;
+	}
+
+	/**
+	 * Extract the non-null values per key from the given result of a bulk
+	 * cacheable method, invoked for the given keys.
+	 */
+	private Map<Object, Object> extractBulkResults(Object retVal, Collection<Object> keys, CacheOperationContext context) {
+		Map<Object, Object> loaded = new LinkedHashMap<Object, Object>(keys.size());
+		if (retVal instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) retVal).entrySet()) {
+				if (entry.getValue() != null) {
+					loaded.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		else if (retVal instanceof List) {
+			List<?> list = (List<?>) retVal;
+			if (list.size() != keys.size()) {
+				throw new IllegalStateException("Bulk cacheable method returned " + list.size() +
+						" elements for " + keys.size() + " keys - expected one element per key: " + context.method);
+			}
+			int i = 0;
+			for (Object key : keys) {
+				Object value = list.get(i++);
+				if (value != null) {
+					loaded.put(key, value);
+				}
+			}
+		}
+		else if (retVal != null) {
+			throw new IllegalStateException("Bulk cacheable method must return a Map or a List: " + context.method);
+		}
+		return loaded;
+	}
+
 	private void inspectBeforeCacheEvicts(Collection<CacheOperationContext> evictions) {
 		inspectCacheEvicts(evictions, true);
 	}
@@ -435,8 +665,13 @@ public abstract class CacheAspectSupport implements InitializingBean {
 
 		private final Object[] args;
 
-		// context passed around to avoid multiple creations
-		private final EvaluationContext evalContext;
+		private final Class<?> targetClass;
+
+		// resolved lazily, only for operations with a condition or key expression
+		private ExpressionEvaluator.OperationExpressions expressions;
+
+		// created lazily, only for expressions that cannot be resolved against the arguments directly
+		private EvaluationContext evalContext;
 
 		public CacheOperationContext(CacheOperation operation, Method method, Object[] args, Object target, Class<?> targetClass) {
 			this.operation = operation;
@@ -444,13 +679,12 @@ public abstract class CacheAspectSupport implements InitializingBean {
 			this.target = target;
 			this.method = method;
 			this.args = args;
-
-			this.evalContext = evaluator.createEvaluationContext(caches, method, args, target, targetClass);
+			this.targetClass = targetClass;
 		}
 
 		protected boolean isConditionPassing() {
 			if (StringUtils.hasText(this.operation.getCondition())) {
-				return evaluator.condition(this.operation.getCondition(), this.method, this.evalContext);
+				return (Boolean) evaluate(getExpressions().getConditionExpression());
 			}
 			return true;
 		}
@@ -461,11 +695,30 @@ public abstract class CacheAspectSupport implements InitializingBean {
 		 */
 		protected Object generateKey() {
 			if (StringUtils.hasText(this.operation.getKey())) {
-				return evaluator.key(this.operation.getKey(), this.method, this.evalContext);
+				return evaluate(getExpressions().getKeyExpression());
 			}
 			return keyGenerator.generate(this.target, this.method, this.args);
 		}
 
+		private Object evaluate(ExpressionEvaluator.MethodExpression expression) {
+			Object value = expression.getValue(this.args);
+			if (value != ExpressionEvaluator.UNRESOLVED) {
+				return value;
+			}
+			if (this.evalContext == null) {
+				this.evalContext = evaluator.createEvaluationContext(
+						this.caches, this.method, this.args, this.target, this.targetClass, getExpressions());
+			}
+			return expression.getValue(this.evalContext);
+		}
+
+		private ExpressionEvaluator.OperationExpressions getExpressions() {
+			if (this.expressions == null) {
+				this.expressions = evaluator.getExpressions(this.operation, this.method, this.targetClass);
+			}
+			return this.expressions;
+		}
+
 		protected Collection<Cache> getCaches() {
 			return this.caches;
 		}
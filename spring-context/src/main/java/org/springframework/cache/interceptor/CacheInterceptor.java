@@ -22,6 +22,8 @@ import java.lang.reflect.Method;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.aop.ProxyMethodInvocation;
+
 /**
  * AOP Alliance MethodInterceptor for declarative cache
  * management using the common Spring caching infrastructure
@@ -52,15 +54,36 @@ public class CacheInterceptor extends CacheAspectSupport implements MethodInterc
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
 		Method method = invocation.getMethod();
 
-		Invoker aopAllianceInvoker = new Invoker() {
-			public Object invoke() {
-				try {
-					return invocation.proceed();
-				} catch (Throwable ex) {
-					throw new ThrowableWrapper(ex);
+		Invoker aopAllianceInvoker;
+		if (invocation instanceof ProxyMethodInvocation) {
+			aopAllianceInvoker = new ArgumentReplacingInvoker() {
+				public Object invoke() {
+					try {
+						return invocation.proceed();
+					} catch (Throwable ex) {
+						throw new ThrowableWrapper(ex);
+					}
+				}
+				public Object invoke(Object[] args) {
+					try {
+						return ((ProxyMethodInvocation) invocation).invocableClone(args).proceed();
+					} catch (Throwable ex) {
+						throw new ThrowableWrapper(ex);
+					}
 				}
-			}
-		};
+			};
+		}
+		else {
+			aopAllianceInvoker = new Invoker() {
+				public Object invoke() {
+					try {
+						return invocation.proceed();
+					} catch (Throwable ex) {
+						throw new ThrowableWrapper(ex);
+					}
+				}
+			};
+		}
 
 		try {
 			return execute(aopAllianceInvoker, invocation.getThis(), method, invocation.getArguments());
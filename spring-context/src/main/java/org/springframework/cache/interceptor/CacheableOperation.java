@@ -24,4 +24,45 @@ package org.springframework.cache.interceptor;
  */
 public class CacheableOperation extends CacheOperation {
 
+	private boolean sync = false;
+
+	private boolean bulk = false;
+
+	/**
+	 * Set whether the underlying method invocation should be synchronized
+	 * per key, letting only one caller compute a missing value while
+	 * concurrent callers for the same key wait for its result.
+	 * @see org.springframework.cache.Cache#get(Object, java.util.concurrent.Callable)
+	 */
+	public void setSync(boolean sync) {
+		this.sync = sync;
+	}
+
+	public boolean isSync() {
+		return this.sync;
+	}
+
+	/**
+	 * Set whether each element of the method's collection argument should be
+	 * cached individually, with the method only being invoked for the elements
+	 * that could not be found in the cache.
+	 */
+	public void setBulk(boolean bulk) {
+		this.bulk = bulk;
+	}
+
+	public boolean isBulk() {
+		return this.bulk;
+	}
+
+	@Override
+	protected StringBuilder getOperationDescription() {
+		StringBuilder sb = super.getOperationDescription();
+		sb.append(" | sync='");
+		sb.append(this.sync);
+		sb.append("' | bulk='");
+		sb.append(this.bulk);
+		sb.append("'");
+		return sb;
+	}
 }
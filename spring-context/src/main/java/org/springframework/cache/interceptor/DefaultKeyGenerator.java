@@ -27,6 +27,9 @@ import org.springframework.cache.interceptor.KeyGenerator;
  * Uses the constant value {@value #NULL_PARAM_KEY} for any
  * {@code null} parameters given.
  *
+ * <p>Note that keys for several parameters are a mere hash code, and may
+ * therefore collide; consider {@link SimpleKeyGenerator} instead.
+ *
  * @author Costin Leau
  * @author Chris Beams
  * @since 3.1
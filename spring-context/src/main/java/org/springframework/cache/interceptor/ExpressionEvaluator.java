@@ -16,77 +16,346 @@
 
 package org.springframework.cache.interceptor;
 
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
 import org.springframework.cache.Cache;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * Utility class handling the SpEL expression parsing.
  * Meant to be used as a reusable, thread-safe component.
  *
- * <p>Performs internal caching for performance reasons.
+ * <p>Performs internal caching for performance reasons: expressions are parsed
+ * once per operation, method and target class, and expressions that merely refer
+ * to a method argument or a property path thereof (e.g. {@code #p0} or
+ * {@code #book.isbn}) are resolved against the arguments directly, without an
+ * evaluation context.
  *
  * @author Costin Leau
  * @since 3.1
  */
 class ExpressionEvaluator {
 
-	private SpelExpressionParser parser = new SpelExpressionParser();
+	/**
+	 * Marker returned by {@link MethodExpression#getValue(Object[])} if the
+	 * expression needs to be evaluated against an evaluation context.
+	 */
+	static final Object UNRESOLVED = new Object();
+
+	private static final Pattern ARGUMENT_REFERENCE = Pattern.compile("#(\\w+)((?:\\.\\w+)*)");
 
-	// shared param discoverer since it caches data internally
-	private ParameterNameDiscoverer paramNameDiscoverer = new LocalVariableTableParameterNameDiscoverer();
 
-	private Map<String, Expression> conditionCache = new ConcurrentHashMap<String, Expression>();
+	private final SpelExpressionParser parser = new SpelExpressionParser();
 
-	private Map<String, Expression> keyCache = new ConcurrentHashMap<String, Expression>();
+	// shared param discoverer since it caches data internally
+	private final ParameterNameDiscoverer paramNameDiscoverer = new LocalVariableTableParameterNameDiscoverer();
 
-	private Map<String, Method> targetMethodCache = new ConcurrentHashMap<String, Method>();
+	/** Precompiled expressions per method and target class */
+	private final ConcurrentMap<Method, ConcurrentMap<Class<?>, MethodExpressions>> expressionCache =
+			new ConcurrentHashMap<Method, ConcurrentMap<Class<?>, MethodExpressions>>();
 
 
-	public EvaluationContext createEvaluationContext(
-			Collection<Cache> caches, Method method, Object[] args, Object target, Class<?> targetClass) {
+	public EvaluationContext createEvaluationContext(Collection<Cache> caches, Method method, Object[] args,
+			Object target, Class<?> targetClass, OperationExpressions expressions) {
 
 		CacheExpressionRootObject rootObject =
 				new CacheExpressionRootObject(caches, method, args, target, targetClass);
 		return new LazyParamAwareEvaluationContext(rootObject,
-				this.paramNameDiscoverer, method, args, targetClass, this.targetMethodCache);
+				this.paramNameDiscoverer, expressions.getTargetMethod(), args);
 	}
 
-	public boolean condition(String conditionExpression, Method method, EvaluationContext evalContext) {
-		String key = toString(method, conditionExpression);
-		Expression condExp = this.conditionCache.get(key);
-		if (condExp == null) {
-			condExp = this.parser.parseExpression(conditionExpression);
-			this.conditionCache.put(key, condExp);
+	/**
+	 * Return the precompiled condition and key expressions of the given
+	 * operation on the given method. Resolved once per operation, method and
+	 * target class; subsequent lookups do not allocate.
+	 */
+	public OperationExpressions getExpressions(CacheOperation operation, Method method, Class<?> targetClass) {
+		// the most specific method for a null target class is the method itself
+		Class<?> cacheClass = (targetClass != null ? targetClass : method.getDeclaringClass());
+		ConcurrentMap<Class<?>, MethodExpressions> expressionsPerClass = this.expressionCache.get(method);
+		if (expressionsPerClass == null) {
+			expressionsPerClass = new ConcurrentHashMap<Class<?>, MethodExpressions>(4);
+			ConcurrentMap<Class<?>, MethodExpressions> existing =
+					this.expressionCache.putIfAbsent(method, expressionsPerClass);
+			if (existing != null) {
+				expressionsPerClass = existing;
+			}
 		}
-		return condExp.getValue(evalContext, boolean.class);
+		MethodExpressions methodExpressions = expressionsPerClass.get(cacheClass);
+		if (methodExpressions == null) {
+			Method targetMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+			methodExpressions = new MethodExpressions(targetMethod != null ? targetMethod : method);
+			MethodExpressions existing = expressionsPerClass.putIfAbsent(cacheClass, methodExpressions);
+			if (existing != null) {
+				methodExpressions = existing;
+			}
+		}
+		return methodExpressions.getExpressions(operation);
 	}
 
-	public Object key(String keyExpression, Method method, EvaluationContext evalContext) {
-		String key = toString(method, keyExpression);
-		Expression keyExp = this.keyCache.get(key);
-		if (keyExp == null) {
-			keyExp = this.parser.parseExpression(keyExpression);
-			this.keyCache.put(key, keyExp);
+	private MethodExpression compile(String expression, Method targetMethod, Class<?> resultType) {
+		if (!StringUtils.hasText(expression)) {
+			return null;
+		}
+		Expression parsed = this.parser.parseExpression(expression);
+		Matcher matcher = ARGUMENT_REFERENCE.matcher(expression.trim());
+		if (matcher.matches()) {
+			int index = resolveArgumentIndex(matcher.group(1), targetMethod);
+			if (index >= 0) {
+				String[] propertyPath = StringUtils.tokenizeToStringArray(matcher.group(2), ".");
+				return new ArgumentExpression(parsed, resultType, index, propertyPath);
+			}
 		}
-		return keyExp.getValue(evalContext);
+		return new MethodExpression(parsed, resultType);
 	}
 
-	private String toString(Method method, String expression) {
-		StringBuilder sb = new StringBuilder();
-		sb.append(method.getDeclaringClass().getName());
-		sb.append("#");
-		sb.append(method.toString());
-		sb.append("#");
-		sb.append(expression);
-		return sb.toString();
+	/**
+	 * Resolve the given variable name to an argument index, following the
+	 * precedence of {@link LazyParamAwareEvaluationContext}: parameter names
+	 * override the indexed {@code p<index>} variables.
+	 * @return the argument index, or -1 if the name does not denote an argument
+	 */
+	private int resolveArgumentIndex(String name, Method targetMethod) {
+		if ("root".equals(name) || "this".equals(name)) {
+			return -1;
+		}
+		String[] parameterNames = this.paramNameDiscoverer.getParameterNames(targetMethod);
+		if (parameterNames != null) {
+			for (int i = 0; i < parameterNames.length; i++) {
+				if (name.equals(parameterNames[i])) {
+					return i;
+				}
+			}
+		}
+		if (name.length() > 1 && name.charAt(0) == 'p') {
+			String suffix = name.substring(1);
+			try {
+				int index = Integer.parseInt(suffix);
+				if (index < targetMethod.getParameterTypes().length && String.valueOf(index).equals(suffix)) {
+					return index;
+				}
+			}
+			catch (NumberFormatException ex) {
+				// not an indexed variable
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * The expressions of all operations on a specific method and target class.
+	 */
+	private class MethodExpressions {
+
+		private final Method targetMethod;
+
+		// copy-on-write, searched by identity first
+		private volatile OperationExpressions[] expressions = new OperationExpressions[0];
+
+		MethodExpressions(Method targetMethod) {
+			this.targetMethod = targetMethod;
+		}
+
+		OperationExpressions getExpressions(CacheOperation operation) {
+			for (OperationExpressions candidate : this.expressions) {
+				if (candidate.operation == operation) {
+					return candidate;
+				}
+			}
+			synchronized (this) {
+				// an equal operation from another lookup shares the same expressions
+				for (OperationExpressions candidate : this.expressions) {
+					if (candidate.operation == operation || candidate.operation.equals(operation)) {
+						return candidate;
+					}
+				}
+				OperationExpressions added = new OperationExpressions(operation, this.targetMethod,
+						compile(operation.getCondition(), this.targetMethod, boolean.class),
+						compile(operation.getKey(), this.targetMethod, null));
+				OperationExpressions[] expanded = new OperationExpressions[this.expressions.length + 1];
+				System.arraycopy(this.expressions, 0, expanded, 0, this.expressions.length);
+				expanded[this.expressions.length] = added;
+				this.expressions = expanded;
+				return added;
+			}
+		}
 	}
-}
\ No newline at end of file
+
+
+	/**
+	 * The precompiled expressions of an operation on a specific method.
+	 */
+	static class OperationExpressions {
+
+		private final CacheOperation operation;
+
+		private final Method targetMethod;
+
+		private final MethodExpression conditionExpression;
+
+		private final MethodExpression keyExpression;
+
+		OperationExpressions(CacheOperation operation, Method targetMethod,
+				MethodExpression conditionExpression, MethodExpression keyExpression) {
+			this.operation = operation;
+			this.targetMethod = targetMethod;
+			this.conditionExpression = conditionExpression;
+			this.keyExpression = keyExpression;
+		}
+
+		/**
+		 * Return the most specific method on the target class.
+		 */
+		public Method getTargetMethod() {
+			return this.targetMethod;
+		}
+
+		/**
+		 * Return the condition expression, or <code>null</code> if none.
+		 */
+		public MethodExpression getConditionExpression() {
+			return this.conditionExpression;
+		}
+
+		/**
+		 * Return the key expression, or <code>null</code> if none.
+		 */
+		public MethodExpression getKeyExpression() {
+			return this.keyExpression;
+		}
+	}
+
+
+	/**
+	 * A parsed expression for a specific method.
+	 */
+	static class MethodExpression {
+
+		private final Expression expression;
+
+		private final Class<?> resultType;
+
+		MethodExpression(Expression expression, Class<?> resultType) {
+			this.expression = expression;
+			this.resultType = resultType;
+		}
+
+		protected Class<?> getResultType() {
+			return this.resultType;
+		}
+
+		/**
+		 * Evaluate the expression against the given arguments directly.
+		 * @return the value, or {@link ExpressionEvaluator#UNRESOLVED}
+		 * if an evaluation context is required
+		 */
+		public Object getValue(Object[] args) {
+			return UNRESOLVED;
+		}
+
+		/**
+		 * Evaluate the expression against the given evaluation context.
+		 */
+		public Object getValue(EvaluationContext evalContext) {
+			return (this.resultType != null ?
+					this.expression.getValue(evalContext, this.resultType) : this.expression.getValue(evalContext));
+		}
+	}
+
+
+	/**
+	 * Expression that refers to a method argument, optionally followed by a
+	 * path of bean properties. Resolved reflectively through getters that are
+	 * cached per path element for the last type seen; anything unusual (null
+	 * values, missing getters, non-matching result types) is left to SpEL.
+	 */
+	private static class ArgumentExpression extends MethodExpression {
+
+		private final int argumentIndex;
+
+		private final String[] propertyPath;
+
+		// benign races: Getter instances are immutable
+		private final Getter[] getters;
+
+		ArgumentExpression(Expression expression, Class<?> resultType, int argumentIndex, String[] propertyPath) {
+			super(expression, resultType);
+			this.argumentIndex = argumentIndex;
+			this.propertyPath = propertyPath;
+			this.getters = new Getter[propertyPath.length];
+		}
+
+		@Override
+		public Object getValue(Object[] args) {
+			if (this.argumentIndex >= args.length) {
+				return UNRESOLVED;
+			}
+			Object value = args[this.argumentIndex];
+			for (int i = 0; i < this.propertyPath.length; i++) {
+				if (value == null) {
+					return UNRESOLVED;
+				}
+				Method readMethod = getReadMethod(i, value.getClass());
+				if (readMethod == null) {
+					return UNRESOLVED;
+				}
+				try {
+					value = readMethod.invoke(value);
+				}
+				catch (Exception ex) {
+					// let SpEL report the failure
+					return UNRESOLVED;
+				}
+			}
+			Class<?> resultType = getResultType();
+			if (resultType != null && !ClassUtils.resolvePrimitiveIfNecessary(resultType).isInstance(value)) {
+				return UNRESOLVED;
+			}
+			return value;
+		}
+
+		private Method getReadMethod(int level, Class<?> type) {
+			Getter getter = this.getters[level];
+			if (getter == null || getter.type != type) {
+				PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(type, this.propertyPath[level]);
+				Method readMethod = (pd != null ? pd.getReadMethod() : null);
+				if (readMethod != null) {
+					ReflectionUtils.makeAccessible(readMethod);
+				}
+				getter = new Getter(type, readMethod);
+				this.getters[level] = getter;
+			}
+			return getter.method;
+		}
+	}
+
+
+	private static class Getter {
+
+		final Class<?> type;
+
+		final Method method;
+
+		Getter(Class<?> type, Method method) {
+			this.type = type;
+			this.method = method;
+		}
+	}
+
+}
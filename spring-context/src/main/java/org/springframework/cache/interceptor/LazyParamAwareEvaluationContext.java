@@ -17,9 +17,7 @@
 package org.springframework.cache.interceptor;
 
 import java.lang.reflect.Method;
-import java.util.Map;
 
-import org.springframework.aop.support.AopUtils;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.ObjectUtils;
@@ -43,22 +41,21 @@ class LazyParamAwareEvaluationContext extends StandardEvaluationContext {
 
 	private final Object[] args;
 
-	private final Class<?> targetClass;
-
-	private final Map<String, Method> methodCache;
-
 	private boolean paramLoaded = false;
 
 
+	/**
+	 * Create a new context for the given arguments.
+	 * @param method the most specific method on the target class,
+	 * to discover the parameter names from
+	 */
 	LazyParamAwareEvaluationContext(Object rootObject, ParameterNameDiscoverer paramDiscoverer, Method method,
-			Object[] args, Class<?> targetClass, Map<String, Method> methodCache) {
+			Object[] args) {
 		super(rootObject);
 
 		this.paramDiscoverer = paramDiscoverer;
 		this.method = method;
 		this.args = args;
-		this.targetClass = targetClass;
-		this.methodCache = methodCache;
 	}
 
 
@@ -85,22 +82,12 @@ class LazyParamAwareEvaluationContext extends StandardEvaluationContext {
 			return;
 		}
 
-		String mKey = toString(this.method);
-		Method targetMethod = this.methodCache.get(mKey);
-		if (targetMethod == null) {
-			targetMethod = AopUtils.getMostSpecificMethod(this.method, this.targetClass);
-			if (targetMethod == null) {
-				targetMethod = this.method;
-			}
-			this.methodCache.put(mKey, targetMethod);
-		}
-
 		// save arguments as indexed variables
 		for (int i = 0; i < this.args.length; i++) {
 			setVariable("p" + i, this.args[i]);
 		}
 
-		String[] parameterNames = this.paramDiscoverer.getParameterNames(targetMethod);
+		String[] parameterNames = this.paramDiscoverer.getParameterNames(this.method);
 		// save parameter names (if discovered)
 		if (parameterNames != null) {
 			for (int i = 0; i < parameterNames.length; i++) {
@@ -108,12 +95,4 @@ class LazyParamAwareEvaluationContext extends StandardEvaluationContext {
 			}
 		}
 	}
-
-	private String toString(Method m) {
-		StringBuilder sb = new StringBuilder();
-		sb.append(m.getDeclaringClass().getName());
-		sb.append("#");
-		sb.append(m.toString());
-		return sb.toString();
-	}
 }
\ No newline at end of file
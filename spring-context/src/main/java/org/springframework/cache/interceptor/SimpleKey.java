@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.interceptor;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A compact key composed of several method parameters, as generated by
+ * {@link SimpleKeyGenerator}. Equal if all of its elements are equal
+ * (as defined by {@link Arrays#deepEquals}), which is what sets it apart
+ * from keys consisting of a mere hash code over the elements.
+ *
+ * <p>The hash code is computed once, on construction, so that the repeated
+ * hashing by cache providers does not traverse the elements again.
+ *
+ * @author agent
+ * @since 3.1
+ * @see SimpleKeyGenerator
+ */
+public final class SimpleKey implements Serializable {
+
+	private static final long serialVersionUID = -6436628173507235942L;
+
+	/**
+	 * Shared key for methods without parameters.
+	 */
+	public static final SimpleKey EMPTY = new SimpleKey();
+
+
+	private final Object[] params;
+
+	private final int hashCode;
+
+
+	/**
+	 * Create a new SimpleKey instance, holding a copy of the given elements.
+	 * @param elements the elements of the key
+	 */
+	public SimpleKey(Object... elements) {
+		Assert.notNull(elements, "Elements must not be null");
+		this.params = new Object[elements.length];
+		System.arraycopy(elements, 0, this.params, 0, elements.length);
+		this.hashCode = Arrays.deepHashCode(this.params);
+	}
+
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SimpleKey)) {
+			return false;
+		}
+		SimpleKey otherKey = (SimpleKey) other;
+		return (this.hashCode == otherKey.hashCode && Arrays.deepEquals(this.params, otherKey.params));
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return "SimpleKey [" + StringUtils.arrayToCommaDelimitedString(this.params) + "]";
+	}
+
+}
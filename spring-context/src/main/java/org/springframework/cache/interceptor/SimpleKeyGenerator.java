@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.interceptor;
+
+import java.lang.reflect.Method;
+
+/**
+ * Simple key generator. Returns the parameter itself if a single non-null
+ * (non-array) value is given, or a {@link SimpleKey} of the parameters otherwise.
+ *
+ * <p>Unlike {@link DefaultKeyGenerator}, which combines several parameters into
+ * their hash code only, this generator produces keys that are equal only if all
+ * of their parameters are equal. No objects are created for a single parameter,
+ * and methods without parameters share a constant key.
+ *
+ * <p>{@link DefaultKeyGenerator} remains the default, since switching would change
+ * the keys of existing cache entries. Opt in through
+ * {@link CacheAspectSupport#setKeyGenerator}, the {@code key-generator} attribute
+ * of {@code <cache:annotation-driven>} or {@code CachingConfigurer#keyGenerator()}.
+ *
+ * @author agent
+ * @since 3.1
+ * @see SimpleKey
+ */
+public class SimpleKeyGenerator implements KeyGenerator {
+
+	public Object generate(Object target, Method method, Object... params) {
+		if (params.length == 0) {
+			return SimpleKey.EMPTY;
+		}
+		if (params.length == 1) {
+			Object param = params[0];
+			if (param != null && !param.getClass().isArray()) {
+				return param;
+			}
+		}
+		return new SimpleKey(params);
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+/**
+ * Strategy for computing the value of a cache entry from its key alone,
+ * used by a {@link LocalCache} to refresh entries in the background.
+ *
+ * <p>In contrast to the loader passed into
+ * {@link org.springframework.cache.Cache#get(Object, java.util.concurrent.Callable)},
+ * a CacheLoader is not bound to a particular caller: It is invoked on a separate
+ * thread, outside of any transaction or other context of the original request.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocalCache#setCacheLoader
+ * @see LocalCacheSettings#setRefreshAfterWrite
+ */
+public interface CacheLoader {
+
+	/**
+	 * Compute the value for the given key.
+	 * @param key the key of the entry
+	 * @return the value for the entry (may be <code>null</code>)
+	 * @throws Exception if the value could not be computed, in which case
+	 * the current value is kept
+	 */
+	Object load(Object key) throws Exception;
+
+}
@@ -0,0 +1,899 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoadCoordinator;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.util.Assert;
+
+/**
+ * Bounded, expiring {@link Cache} implementation for local use within the JVM,
+ * configured through {@link LocalCacheSettings}.
+ *
+ * <p>Entries are held in a {@link ConcurrentHashMap}, so lookups never block.
+ * A bounded cache evicts according to a <i>segmented LRU</i> policy: New entries
+ * enter a probationary segment and are promoted to a protected segment (holding up
+ * to 80% of the maximum weight) when read again, with entries demoted from the
+ * protected segment getting another chance in the probationary one. Eviction
+ * always takes the least recently used probationary entry first, so that a burst
+ * of entries that are read only once cannot flush the frequently used ones.
+ *
+ * <p>All modifications as well as the bookkeeping for eviction and expiration are
+ * performed under a single lock. Reads merely <i>try</i> to acquire that lock in
+ * order to record the access; under contention, some accesses go unrecorded,
+ * trading exact recency order for non-blocking reads.
+ *
+ * <p>Expired entries are removed when encountered by a lookup, as well as in the
+ * course of subsequent modifications, without a background thread of their own.
+ *
+ * <p>Hit, miss, eviction, expiration and load statistics are exposed through the
+ * {@link LocalCacheMBean} management interface.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocalCacheManager
+ */
+public class LocalCache implements Cache, LocalCacheMBean {
+
+	private static final Object NULL_HOLDER = new NullHolder();
+
+	private static final int PROBATION = 1;
+
+	private static final int PROTECTED = 2;
+
+	private static final Log logger = LogFactory.getLog(LocalCache.class);
+
+
+	private final String name;
+
+	private final long maximumWeight;
+
+	private final long maximumProtectedWeight;
+
+	private final Weigher weigher;
+
+	private final long expireAfterWriteNanos;
+
+	private final long expireAfterAccessNanos;
+
+	private final long refreshAfterWriteNanos;
+
+	private final boolean allowNullValues;
+
+	private final boolean recordStats;
+
+	private CacheLoader cacheLoader;
+
+	private TaskExecutor refreshExecutor;
+
+	private final ConcurrentMap<Object, Node> store = new ConcurrentHashMap<Object, Node>(16);
+
+	/** Loads currently in progress, keyed by cache key */
+	private final ValueLoadCoordinator loadCoordinator = new ValueLoadCoordinator();
+
+	/** Lock guarding all modifications as well as the order-keeping structures below */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final NodeDeque probationSegment = new PolicyDeque();
+
+	private final NodeDeque protectedSegment = new PolicyDeque();
+
+	private final NodeDeque writeOrder = new WriteOrderDeque();
+
+	private final NodeDeque accessOrder = new AccessOrderDeque();
+
+	private volatile long weightedSize;
+
+	private long protectedWeightedSize;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final AtomicLong expirationCount = new AtomicLong();
+
+	private final AtomicLong loadSuccessCount = new AtomicLong();
+
+	private final AtomicLong loadFailureCount = new AtomicLong();
+
+	private final AtomicLong totalLoadTime = new AtomicLong();
+
+
+	/**
+	 * Create a new unbounded LocalCache with the specified name,
+	 * not expiring any entries.
+	 * @param name the name of the cache
+	 */
+	public LocalCache(String name) {
+		this(name, new LocalCacheSettings());
+	}
+
+	/**
+	 * Create a new LocalCache with the specified name and settings.
+	 * @param name the name of the cache
+	 * @param settings the bounds, expiration and statistics settings
+	 */
+	public LocalCache(String name, LocalCacheSettings settings) {
+		Assert.notNull(name, "Name must not be null");
+		Assert.notNull(settings, "LocalCacheSettings must not be null");
+		settings.validate();
+		this.name = name;
+		this.maximumWeight = (settings.getMaximumSize() >= 0 ? settings.getMaximumSize() : settings.getMaximumWeight());
+		this.maximumProtectedWeight = (long) (this.maximumWeight * 0.8);
+		this.weigher = settings.getWeigher();
+		this.expireAfterWriteNanos = toNanos(settings.getExpireAfterWrite());
+		this.expireAfterAccessNanos = toNanos(settings.getExpireAfterAccess());
+		this.refreshAfterWriteNanos = toNanos(settings.getRefreshAfterWrite());
+		this.allowNullValues = settings.isAllowNullValues();
+		this.recordStats = settings.isRecordStats();
+		this.refreshExecutor = new SimpleAsyncTaskExecutor(getClass().getSimpleName() + "-" + name + "-");
+	}
+
+	private static long toNanos(long millis) {
+		return (millis >= 0 ? millis * 1000000 : -1);
+	}
+
+
+	/**
+	 * Set the CacheLoader to refresh entries with once they are older than the
+	 * {@link LocalCacheSettings#setRefreshAfterWrite "refreshAfterWrite"} time.
+	 * Default is none, i.e. no refresh-ahead.
+	 * <p>Loaders passed into {@link #get(Object, Callable)} are never used for
+	 * refreshing, since they are bound to the invocation of their caller.
+	 */
+	public void setCacheLoader(CacheLoader cacheLoader) {
+		this.cacheLoader = cacheLoader;
+	}
+
+	/**
+	 * Set the TaskExecutor to perform asynchronous refreshes with.
+	 * Default is a {@link SimpleAsyncTaskExecutor}.
+	 * @see LocalCacheSettings#setRefreshAfterWrite
+	 */
+	public void setRefreshExecutor(TaskExecutor refreshExecutor) {
+		Assert.notNull(refreshExecutor, "TaskExecutor must not be null");
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * This implementation returns the LocalCache itself,
+	 * as there is no separate native cache provider.
+	 */
+	public LocalCache getNativeCache() {
+		return this;
+	}
+
+	public boolean isAllowNullValues() {
+		return this.allowNullValues;
+	}
+
+	public ValueWrapper get(Object key) {
+		Node node = getLiveNode(key);
+		return (node != null ? new SimpleValueWrapper(fromStoreValue(node.value)) : null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		Node node = getLiveNode(key);
+		if (node != null) {
+			return (T) fromStoreValue(node.value);
+		}
+		return this.loadCoordinator.<T>load(key, valueLoader, new Callable<Object>() {
+			public Object call() throws Exception {
+				// Another load may have completed in the meantime
+				Node existingNode = store.get(key);
+				if (existingNode != null && !isExpired(existingNode, currentTime())) {
+					return fromStoreValue(existingNode.value);
+				}
+				return load(key, valueLoader);
+			}
+		});
+	}
+
+	public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+		Map<Object, ValueWrapper> result = new HashMap<Object, ValueWrapper>(keys.size());
+		for (Object key : keys) {
+			Node node = getLiveNode(key);
+			if (node != null) {
+				result.put(key, new SimpleValueWrapper(fromStoreValue(node.value)));
+			}
+		}
+		return result;
+	}
+
+	public void put(Object key, Object value) {
+		putNode(key, toStoreValue(value));
+	}
+
+	/**
+	 * This implementation stores all entries under a single
+	 * acquisition of the eviction lock.
+	 */
+	public void putAll(Map<?, ?> entries) {
+		long now = currentTime();
+		List<Node> nodes = new ArrayList<Node>(entries.size());
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+			Object storeValue = toStoreValue(entry.getValue());
+			nodes.add(new Node(entry.getKey(), storeValue, weigh(entry.getKey(), storeValue), now));
+		}
+		this.evictionLock.lock();
+		try {
+			for (Node node : nodes) {
+				Node priorNode = this.store.put(node.key, node);
+				if (priorNode != null) {
+					unlink(priorNode);
+				}
+				link(node);
+			}
+			expireEntries(now);
+			evictEntries();
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	public void evict(Object key) {
+		this.evictionLock.lock();
+		try {
+			Node node = this.store.remove(key);
+			if (node != null) {
+				unlink(node);
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	public void clear() {
+		this.evictionLock.lock();
+		try {
+			for (Node node : this.store.values()) {
+				node.alive = false;
+			}
+			this.store.clear();
+			this.probationSegment.clear();
+			this.protectedSegment.clear();
+			this.writeOrder.clear();
+			this.accessOrder.clear();
+			this.weightedSize = 0;
+			this.protectedWeightedSize = 0;
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Implementation of LocalCacheMBean interface
+	//-------------------------------------------------------------------------
+
+	public long getSize() {
+		return this.store.size();
+	}
+
+	public long getWeightedSize() {
+		return this.weightedSize;
+	}
+
+	public long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	public double getHitRatio() {
+		long hits = this.hitCount.get();
+		long lookups = hits + this.missCount.get();
+		return (lookups > 0 ? (double) hits / lookups : 1.0);
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	public long getExpirationCount() {
+		return this.expirationCount.get();
+	}
+
+	public long getLoadSuccessCount() {
+		return this.loadSuccessCount.get();
+	}
+
+	public long getLoadFailureCount() {
+		return this.loadFailureCount.get();
+	}
+
+	public double getAverageLoadTime() {
+		long loads = this.loadSuccessCount.get() + this.loadFailureCount.get();
+		return (loads > 0 ? this.totalLoadTime.get() / 1000000.0 / loads : 0.0);
+	}
+
+	public void resetStatistics() {
+		this.hitCount.set(0);
+		this.missCount.set(0);
+		this.evictionCount.set(0);
+		this.expirationCount.set(0);
+		this.loadSuccessCount.set(0);
+		this.loadFailureCount.set(0);
+		this.totalLoadTime.set(0);
+	}
+
+
+	/**
+	 * Return the current time in nanoseconds, as used for expiration and refresh.
+	 * <p>The default implementation delegates to {@link System#nanoTime()}.
+	 */
+	protected long currentTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Convert the given value from the internal store to a user value
+	 * returned from the get method (adapting <code>null</code>).
+	 * @param storeValue the store value
+	 * @return the value to return to the user
+	 */
+	protected Object fromStoreValue(Object storeValue) {
+		if (this.allowNullValues && storeValue == NULL_HOLDER) {
+			return null;
+		}
+		return storeValue;
+	}
+
+	/**
+	 * Convert the given user value, as passed into the put method,
+	 * to a value in the internal store (adapting <code>null</code>).
+	 * @param userValue the given user value
+	 * @return the value to store
+	 */
+	protected Object toStoreValue(Object userValue) {
+		if (userValue == null) {
+			Assert.isTrue(this.allowNullValues, "Cache '" + this.name + "' is configured to not allow null values");
+			return NULL_HOLDER;
+		}
+		return userValue;
+	}
+
+
+	/**
+	 * Look up the live entry for the given key, recording the access.
+	 * @return the entry, or <code>null</code> if none or expired
+	 */
+	private Node getLiveNode(Object key) {
+		Node node = this.store.get(key);
+		long now = currentTime();
+		if (node != null && isExpired(node, now)) {
+			expire(node);
+			node = null;
+		}
+		if (node == null) {
+			if (this.recordStats) {
+				this.missCount.incrementAndGet();
+			}
+			return null;
+		}
+		if (this.recordStats) {
+			this.hitCount.incrementAndGet();
+		}
+		if (this.expireAfterAccessNanos >= 0) {
+			node.accessTime = now;
+		}
+		if ((this.maximumWeight >= 0 || this.expireAfterAccessNanos >= 0) && this.evictionLock.tryLock()) {
+			try {
+				if (node.alive) {
+					onAccess(node);
+				}
+				expireEntries(now);
+			}
+			finally {
+				this.evictionLock.unlock();
+			}
+		}
+		if (this.refreshAfterWriteNanos >= 0 && this.cacheLoader != null &&
+				now - node.writeTime >= this.refreshAfterWriteNanos) {
+			refreshAsync(node);
+		}
+		return node;
+	}
+
+	private boolean isExpired(Node node, long now) {
+		return ((this.expireAfterWriteNanos >= 0 && now - node.writeTime >= this.expireAfterWriteNanos) ||
+				(this.expireAfterAccessNanos >= 0 && now - node.accessTime >= this.expireAfterAccessNanos));
+	}
+
+	/**
+	 * Load the value for the given key through the given loader and store it.
+	 */
+	private <T> T load(Object key, Callable<T> valueLoader) throws Exception {
+		long startTime = System.nanoTime();
+		T value;
+		try {
+			value = valueLoader.call();
+		}
+		catch (Exception ex) {
+			recordLoad(false, startTime);
+			throw ex;
+		}
+		recordLoad(true, startTime);
+		if (value != null || this.allowNullValues) {
+			putNode(key, toStoreValue(value));
+		}
+		return value;
+	}
+
+	private void recordLoad(boolean success, long startTime) {
+		if (this.recordStats) {
+			(success ? this.loadSuccessCount : this.loadFailureCount).incrementAndGet();
+			this.totalLoadTime.addAndGet(System.nanoTime() - startTime);
+		}
+	}
+
+	private void putNode(Object key, Object storeValue) {
+		int weight = weigh(key, storeValue);
+		Node node = new Node(key, storeValue, weight, currentTime());
+		this.evictionLock.lock();
+		try {
+			Node priorNode = this.store.put(key, node);
+			if (priorNode != null) {
+				unlink(priorNode);
+			}
+			link(node);
+			expireEntries(node.writeTime);
+			evictEntries();
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	private int weigh(Object key, Object storeValue) {
+		if (this.weigher == null) {
+			return 1;
+		}
+		int weight = this.weigher.weigh(key, fromStoreValue(storeValue));
+		Assert.isTrue(weight >= 0, "Weigher must not return a negative weight");
+		return weight;
+	}
+
+	/**
+	 * Reload the value of the given entry in the background,
+	 * unless a refresh is in progress already.
+	 */
+	private void refreshAsync(final Node node) {
+		if (!node.startRefresh()) {
+			return;
+		}
+		try {
+			this.refreshExecutor.execute(new Runnable() {
+				public void run() {
+					refresh(node);
+				}
+			});
+		}
+		catch (TaskRejectedException ex) {
+			node.endRefresh();
+		}
+	}
+
+	private void refresh(Node node) {
+		long startTime = System.nanoTime();
+		Object value;
+		try {
+			value = this.cacheLoader.load(node.key);
+		}
+		catch (Throwable ex) {
+			recordLoad(false, startTime);
+			node.endRefresh();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Refresh of entry '" + node.key + "' in cache '" + this.name +
+						"' failed - keeping current value", ex);
+			}
+			return;
+		}
+		recordLoad(true, startTime);
+		this.evictionLock.lock();
+		try {
+			if (!node.alive) {
+				return;
+			}
+			if (value == null && !this.allowNullValues) {
+				this.store.remove(node.key, node);
+				unlink(node);
+				return;
+			}
+			Object storeValue = toStoreValue(value);
+			int weight = weigh(node.key, storeValue);
+			this.weightedSize += weight - node.weight;
+			if (node.segment == PROTECTED) {
+				this.protectedWeightedSize += weight - node.weight;
+			}
+			node.weight = weight;
+			node.value = storeValue;
+			node.writeTime = currentTime();
+			if (this.expireAfterWriteNanos >= 0) {
+				this.writeOrder.moveToLast(node);
+			}
+			evictEntries();
+		}
+		finally {
+			node.endRefresh();
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove the given expired entry, unless removed already.
+	 */
+	private void expire(Node node) {
+		this.evictionLock.lock();
+		try {
+			if (node.alive) {
+				remove(node);
+				if (this.recordStats) {
+					this.expirationCount.incrementAndGet();
+				}
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+
+	// Methods below require the eviction lock to be held
+
+	private void link(Node node) {
+		node.alive = true;
+		this.weightedSize += node.weight;
+		if (this.maximumWeight >= 0) {
+			node.segment = PROBATION;
+			this.probationSegment.addLast(node);
+		}
+		if (this.expireAfterWriteNanos >= 0) {
+			this.writeOrder.addLast(node);
+		}
+		if (this.expireAfterAccessNanos >= 0) {
+			this.accessOrder.addLast(node);
+		}
+	}
+
+	private void unlink(Node node) {
+		node.alive = false;
+		this.weightedSize -= node.weight;
+		if (node.segment == PROBATION) {
+			this.probationSegment.remove(node);
+		}
+		else if (node.segment == PROTECTED) {
+			this.protectedSegment.remove(node);
+			this.protectedWeightedSize -= node.weight;
+		}
+		node.segment = 0;
+		if (this.expireAfterWriteNanos >= 0) {
+			this.writeOrder.remove(node);
+		}
+		if (this.expireAfterAccessNanos >= 0) {
+			this.accessOrder.remove(node);
+		}
+	}
+
+	private void remove(Node node) {
+		this.store.remove(node.key, node);
+		unlink(node);
+	}
+
+	private void onAccess(Node node) {
+		if (this.expireAfterAccessNanos >= 0) {
+			this.accessOrder.moveToLast(node);
+		}
+		if (node.segment == PROBATION) {
+			// Promote to the protected segment, demoting its least recently used entries
+			this.probationSegment.remove(node);
+			this.protectedSegment.addLast(node);
+			node.segment = PROTECTED;
+			this.protectedWeightedSize += node.weight;
+			while (this.protectedWeightedSize > this.maximumProtectedWeight) {
+				Node demoted = this.protectedSegment.pollFirst();
+				this.protectedWeightedSize -= demoted.weight;
+				this.probationSegment.addLast(demoted);
+				demoted.segment = PROBATION;
+			}
+		}
+		else if (node.segment == PROTECTED) {
+			this.protectedSegment.moveToLast(node);
+		}
+	}
+
+	private void expireEntries(long now) {
+		if (this.expireAfterWriteNanos >= 0) {
+			Node node;
+			while ((node = this.writeOrder.peekFirst()) != null && now - node.writeTime >= this.expireAfterWriteNanos) {
+				remove(node);
+				if (this.recordStats) {
+					this.expirationCount.incrementAndGet();
+				}
+			}
+		}
+		if (this.expireAfterAccessNanos >= 0) {
+			Node node;
+			while ((node = this.accessOrder.peekFirst()) != null && now - node.accessTime >= this.expireAfterAccessNanos) {
+				remove(node);
+				if (this.recordStats) {
+					this.expirationCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private void evictEntries() {
+		if (this.maximumWeight < 0) {
+			return;
+		}
+		while (this.weightedSize > this.maximumWeight) {
+			Node victim = this.probationSegment.peekFirst();
+			if (victim == null) {
+				victim = this.protectedSegment.peekFirst();
+			}
+			if (victim == null) {
+				break;
+			}
+			remove(victim);
+			if (this.recordStats) {
+				this.evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+
+	/**
+	 * A cache entry, linked into the order-keeping deques of its cache.
+	 */
+	private static final class Node {
+
+		private static final AtomicIntegerFieldUpdater<Node> refreshingUpdater =
+				AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+		final Object key;
+
+		volatile Object value;
+
+		volatile long writeTime;
+
+		volatile long accessTime;
+
+		volatile int refreshing;
+
+		// Guarded by the eviction lock
+
+		int weight;
+
+		boolean alive;
+
+		int segment;
+
+		Node prev;
+
+		Node next;
+
+		Node prevInWriteOrder;
+
+		Node nextInWriteOrder;
+
+		Node prevInAccessOrder;
+
+		Node nextInAccessOrder;
+
+		Node(Object key, Object value, int weight, long now) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.writeTime = now;
+			this.accessTime = now;
+		}
+
+		boolean startRefresh() {
+			return refreshingUpdater.compareAndSet(this, 0, 1);
+		}
+
+		void endRefresh() {
+			this.refreshing = 0;
+		}
+	}
+
+
+	/**
+	 * Doubly-linked deque of nodes, using links embedded in the nodes themselves.
+	 */
+	private static abstract class NodeDeque {
+
+		private Node first;
+
+		private Node last;
+
+		public Node peekFirst() {
+			return this.first;
+		}
+
+		public Node pollFirst() {
+			Node node = this.first;
+			if (node != null) {
+				remove(node);
+			}
+			return node;
+		}
+
+		public void addLast(Node node) {
+			setPrevious(node, this.last);
+			setNext(node, null);
+			if (this.last == null) {
+				this.first = node;
+			}
+			else {
+				setNext(this.last, node);
+			}
+			this.last = node;
+		}
+
+		public void remove(Node node) {
+			Node prev = getPrevious(node);
+			Node next = getNext(node);
+			if (prev == null) {
+				this.first = next;
+			}
+			else {
+				setNext(prev, next);
+			}
+			if (next == null) {
+				this.last = prev;
+			}
+			else {
+				setPrevious(next, prev);
+			}
+			setPrevious(node, null);
+			setNext(node, null);
+		}
+
+		public void moveToLast(Node node) {
+			if (node != this.last) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		public void clear() {
+			this.first = null;
+			this.last = null;
+		}
+
+		protected abstract Node getPrevious(Node node);
+
+		protected abstract void setPrevious(Node node, Node prev);
+
+		protected abstract Node getNext(Node node);
+
+		protected abstract void setNext(Node node, Node next);
+	}
+
+
+	/**
+	 * Deque for the segments of the eviction policy.
+	 */
+	private static class PolicyDeque extends NodeDeque {
+
+		protected Node getPrevious(Node node) {
+			return node.prev;
+		}
+
+		protected void setPrevious(Node node, Node prev) {
+			node.prev = prev;
+		}
+
+		protected Node getNext(Node node) {
+			return node.next;
+		}
+
+		protected void setNext(Node node, Node next) {
+			node.next = next;
+		}
+	}
+
+
+	/**
+	 * Deque in write order, for expiration after write.
+	 */
+	private static class WriteOrderDeque extends NodeDeque {
+
+		protected Node getPrevious(Node node) {
+			return node.prevInWriteOrder;
+		}
+
+		protected void setPrevious(Node node, Node prev) {
+			node.prevInWriteOrder = prev;
+		}
+
+		protected Node getNext(Node node) {
+			return node.nextInWriteOrder;
+		}
+
+		protected void setNext(Node node, Node next) {
+			node.nextInWriteOrder = next;
+		}
+	}
+
+
+	/**
+	 * Deque in access order, for expiration after access.
+	 */
+	private static class AccessOrderDeque extends NodeDeque {
+
+		protected Node getPrevious(Node node) {
+			return node.prevInAccessOrder;
+		}
+
+		protected void setPrevious(Node node, Node prev) {
+			node.prevInAccessOrder = prev;
+		}
+
+		protected Node getNext(Node node) {
+			return node.nextInAccessOrder;
+		}
+
+		protected void setNext(Node node, Node next) {
+			node.nextInAccessOrder = next;
+		}
+	}
+
+
+	@SuppressWarnings("serial")
+	private static class NullHolder implements Serializable {
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+/**
+ * Management interface for a {@link LocalCache}, exposing its size and
+ * statistics as a standard MBean.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocalCacheManager#setServer
+ */
+public interface LocalCacheMBean {
+
+	/**
+	 * Return the name of the cache.
+	 */
+	String getName();
+
+	/**
+	 * Return the current number of entries (including expired entries
+	 * that have not been cleaned up yet).
+	 */
+	long getSize();
+
+	/**
+	 * Return the current total weight of all entries.
+	 */
+	long getWeightedSize();
+
+	/**
+	 * Return the maximum total weight, or -1 if unbounded.
+	 */
+	long getMaximumWeight();
+
+	/**
+	 * Return the number of lookups that found a live entry.
+	 */
+	long getHitCount();
+
+	/**
+	 * Return the number of lookups that did not find a live entry.
+	 */
+	long getMissCount();
+
+	/**
+	 * Return the ratio of hits to lookups, or 1.0 if there were no lookups yet.
+	 */
+	double getHitRatio();
+
+	/**
+	 * Return the number of entries evicted due to the size or weight bound.
+	 */
+	long getEvictionCount();
+
+	/**
+	 * Return the number of entries removed due to expiration.
+	 */
+	long getExpirationCount();
+
+	/**
+	 * Return the number of successful loads, including refreshes.
+	 */
+	long getLoadSuccessCount();
+
+	/**
+	 * Return the number of failed loads, including refreshes.
+	 */
+	long getLoadFailureCount();
+
+	/**
+	 * Return the average time (in milliseconds) spent loading values.
+	 */
+	double getAverageLoadTime();
+
+	/**
+	 * Remove all entries from the cache.
+	 */
+	void clear();
+
+	/**
+	 * Reset all statistics counters to zero.
+	 */
+	void resetStatistics();
+
+}
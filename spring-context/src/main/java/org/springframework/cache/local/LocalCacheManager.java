@@ -0,0 +1,238 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jmx.export.UnableToRegisterMBeanException;
+
+/**
+ * {@link CacheManager} implementation that builds {@link LocalCache} instances,
+ * applying the {@link LocalCacheSettings} configured for each cache name.
+ *
+ * <p>Like {@link org.springframework.cache.concurrent.ConcurrentMapCacheManager},
+ * lazily creates caches for each {@link #getCache} request by default, or operates
+ * in a 'static' mode with the set of cache names pre-defined through
+ * {@link #setCacheNames}. Declare it as the cache manager bean referenced by
+ * <code>&lt;cache:annotation-driven&gt;</code> or returned from
+ * {@link org.springframework.cache.annotation.CachingConfigurer#cacheManager()}
+ * for use with {@code @EnableCaching}; per-cache settings may be given in textual
+ * form in XML bean definitions:
+ *
+ * <pre class="code">
+ * &lt;bean id="cacheManager" class="org.springframework.cache.local.LocalCacheManager"&gt;
+ *   &lt;property name="defaultSettings" value="maximumSize=1000,expireAfterWrite=10m"/&gt;
+ *   &lt;property name="cacheSettings"&gt;
+ *     &lt;map&gt;
+ *       &lt;entry key="books" value="maximumSize=50000,expireAfterAccess=1h"/&gt;
+ *     &lt;/map&gt;
+ *   &lt;/property&gt;
+ *   &lt;property name="server" ref="mbeanServer"/&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * If an {@link MBeanServer} is specified, each cache is registered with it under
+ * the object name <code>org.springframework.cache:type=LocalCache,name=&lt;name&gt;</code>,
+ * exposing its statistics through the {@link LocalCacheMBean} interface.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocalCacheSettings
+ */
+public class LocalCacheManager implements CacheManager, InitializingBean, DisposableBean {
+
+	/**
+	 * The domain of the object names that caches are registered under.
+	 */
+	public static final String OBJECT_NAME_DOMAIN = "org.springframework.cache";
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<String, Cache>();
+
+	private Collection<String> cacheNames;
+
+	private boolean dynamic = true;
+
+	private LocalCacheSettings defaultSettings = new LocalCacheSettings();
+
+	private Map<String, LocalCacheSettings> cacheSettings = Collections.emptyMap();
+
+	private Map<String, CacheLoader> cacheLoaders = Collections.emptyMap();
+
+	private TaskExecutor refreshExecutor;
+
+	private MBeanServer mbeanServer;
+
+	private final Set<ObjectName> registeredObjectNames = new CopyOnWriteArraySet<ObjectName>();
+
+
+	/**
+	 * Specify the set of cache names for this CacheManager's 'static' mode.
+	 * <p>The number of caches and their names will be fixed once this CacheManager
+	 * has been initialized, with no creation of further cache regions at runtime.
+	 */
+	public void setCacheNames(Collection<String> cacheNames) {
+		this.cacheNames = cacheNames;
+	}
+
+	/**
+	 * Set the settings to apply to caches without specific settings.
+	 * Default is an unbounded cache without expiration.
+	 * @see #setCacheSettings
+	 */
+	public void setDefaultSettings(LocalCacheSettings defaultSettings) {
+		this.defaultSettings = (defaultSettings != null ? defaultSettings : new LocalCacheSettings());
+	}
+
+	/**
+	 * Set specific settings per cache name, overriding the default settings.
+	 * @see #setDefaultSettings
+	 */
+	public void setCacheSettings(Map<String, LocalCacheSettings> cacheSettings) {
+		this.cacheSettings = (cacheSettings != null ?
+				new LinkedHashMap<String, LocalCacheSettings>(cacheSettings) :
+				Collections.<String, LocalCacheSettings>emptyMap());
+	}
+
+	/**
+	 * Set the CacheLoader to refresh entries with per cache name.
+	 * Caches without CacheLoader do not refresh their entries.
+	 * @see LocalCache#setCacheLoader
+	 * @see LocalCacheSettings#setRefreshAfterWrite
+	 */
+	public void setCacheLoaders(Map<String, CacheLoader> cacheLoaders) {
+		this.cacheLoaders = (cacheLoaders != null ?
+				new LinkedHashMap<String, CacheLoader>(cacheLoaders) :
+				Collections.<String, CacheLoader>emptyMap());
+	}
+
+	/**
+	 * Set the TaskExecutor to perform asynchronous refreshes with,
+	 * shared by all caches. Default is a separate
+	 * {@link org.springframework.core.task.SimpleAsyncTaskExecutor} per cache.
+	 * @see LocalCacheSettings#setRefreshAfterWrite
+	 */
+	public void setRefreshExecutor(TaskExecutor refreshExecutor) {
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Set the MBeanServer to register each cache's {@link LocalCacheMBean} with.
+	 * Default is none, i.e. no JMX exposure.
+	 */
+	public void setServer(MBeanServer mbeanServer) {
+		this.mbeanServer = mbeanServer;
+	}
+
+	public void afterPropertiesSet() {
+		for (Map.Entry<String, LocalCacheSettings> entry : this.cacheSettings.entrySet()) {
+			entry.getValue().validate();
+		}
+		if (this.cacheNames != null) {
+			for (String name : this.cacheNames) {
+				this.cacheMap.put(name, createLocalCache(name));
+			}
+			this.dynamic = false;
+		}
+	}
+
+
+	public Collection<String> getCacheNames() {
+		return Collections.unmodifiableSet(this.cacheMap.keySet());
+	}
+
+	public Cache getCache(String name) {
+		Cache cache = this.cacheMap.get(name);
+		if (cache == null && this.dynamic) {
+			synchronized (this.cacheMap) {
+				cache = this.cacheMap.get(name);
+				if (cache == null) {
+					cache = createLocalCache(name);
+					this.cacheMap.put(name, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Create a new LocalCache instance for the specified cache name,
+	 * registering it with the MBeanServer if specified.
+	 * @param name the name of the cache
+	 * @return the LocalCache (or a decorator thereof)
+	 */
+	protected Cache createLocalCache(String name) {
+		LocalCacheSettings settings = this.cacheSettings.get(name);
+		LocalCache cache = new LocalCache(name, (settings != null ? settings : this.defaultSettings));
+		cache.setCacheLoader(this.cacheLoaders.get(name));
+		if (this.refreshExecutor != null) {
+			cache.setRefreshExecutor(this.refreshExecutor);
+		}
+		if (this.mbeanServer != null) {
+			registerCache(cache);
+		}
+		return cache;
+	}
+
+	private void registerCache(LocalCache cache) {
+		ObjectName objectName = null;
+		try {
+			objectName = new ObjectName(OBJECT_NAME_DOMAIN + ":type=LocalCache,name=" +
+					ObjectName.quote(cache.getName()));
+			this.mbeanServer.registerMBean(cache, objectName);
+			this.registeredObjectNames.add(objectName);
+		}
+		catch (JMException ex) {
+			throw new UnableToRegisterMBeanException(
+					"Unable to register LocalCache '" + cache.getName() + "' with object name [" + objectName + "]", ex);
+		}
+	}
+
+	/**
+	 * Unregister all caches from the MBeanServer, if registered.
+	 */
+	public void destroy() {
+		for (ObjectName objectName : this.registeredObjectNames) {
+			try {
+				this.mbeanServer.unregisterMBean(objectName);
+			}
+			catch (JMException ex) {
+				logger.warn("Could not unregister LocalCache MBean [" + objectName + "]", ex);
+			}
+		}
+		this.registeredObjectNames.clear();
+	}
+
+}
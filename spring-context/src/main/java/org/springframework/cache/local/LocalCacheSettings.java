@@ -0,0 +1,277 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Settings for a {@link LocalCache}: bounds, expiration and statistics.
+ *
+ * <p>Can also be specified in textual form, as a comma-separated list of
+ * <code>property=value</code> pairs, e.g.
+ * <code>"maximumSize=1000,expireAfterWrite=10m,refreshAfterWrite=1m"</code>.
+ * Durations are specified as a number followed by one of the units
+ * <code>ms</code>, <code>s</code>, <code>m</code>, <code>h</code> or <code>d</code>,
+ * with plain numbers interpreted as milliseconds. This is the format accepted by
+ * {@link LocalCacheSettingsEditor}, allowing for convenient per-cache configuration
+ * of a {@link LocalCacheManager} in XML bean definitions.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #parse(String)
+ * @see LocalCacheManager#setCacheSettings
+ */
+public class LocalCacheSettings {
+
+	private long maximumSize = -1;
+
+	private long maximumWeight = -1;
+
+	private Weigher weigher;
+
+	private long expireAfterWrite = -1;
+
+	private long expireAfterAccess = -1;
+
+	private long refreshAfterWrite = -1;
+
+	private boolean allowNullValues = true;
+
+	private boolean recordStats = true;
+
+
+	/**
+	 * Set the maximum number of entries. Default is -1 (unbounded).
+	 * <p>Mutually exclusive with {@link #setMaximumWeight "maximumWeight"}.
+	 */
+	public void setMaximumSize(long maximumSize) {
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Return the maximum number of entries, or -1 if not bounded by size.
+	 */
+	public long getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	/**
+	 * Set the maximum total weight of all entries, as determined by the
+	 * {@link #setWeigher "weigher"}. Default is -1 (unbounded).
+	 * <p>Mutually exclusive with {@link #setMaximumSize "maximumSize"}.
+	 */
+	public void setMaximumWeight(long maximumWeight) {
+		this.maximumWeight = maximumWeight;
+	}
+
+	/**
+	 * Return the maximum total weight of all entries, or -1 if not bounded by weight.
+	 */
+	public long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	/**
+	 * Set the Weigher to determine the weight of each entry with.
+	 * Required in combination with {@link #setMaximumWeight "maximumWeight"}.
+	 */
+	public void setWeigher(Weigher weigher) {
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Return the Weigher to determine the weight of each entry with, if any.
+	 */
+	public Weigher getWeigher() {
+		return this.weigher;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which an entry expires once it has
+	 * been stored. Default is -1 (no expiration after write).
+	 */
+	public void setExpireAfterWrite(long expireAfterWrite) {
+		this.expireAfterWrite = expireAfterWrite;
+	}
+
+	/**
+	 * Return the time (in milliseconds) after which an entry expires once stored.
+	 */
+	public long getExpireAfterWrite() {
+		return this.expireAfterWrite;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which an entry expires once it has
+	 * last been stored or read. Default is -1 (no expiration after access).
+	 */
+	public void setExpireAfterAccess(long expireAfterAccess) {
+		this.expireAfterAccess = expireAfterAccess;
+	}
+
+	/**
+	 * Return the time (in milliseconds) after which an entry expires once last accessed.
+	 */
+	public long getExpireAfterAccess() {
+		return this.expireAfterAccess;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which an entry is eligible for
+	 * asynchronous refresh once it has been stored. Default is -1 (no refresh).
+	 * <p>Only applies to caches with a {@link LocalCache#setCacheLoader CacheLoader}:
+	 * The first read of an entry past the refresh time triggers a reload through
+	 * that CacheLoader in the background, while the current value keeps being returned.
+	 * Should be shorter than the "expireAfterWrite" time in order to have an effect.
+	 */
+	public void setRefreshAfterWrite(long refreshAfterWrite) {
+		this.refreshAfterWrite = refreshAfterWrite;
+	}
+
+	/**
+	 * Return the time (in milliseconds) after which an entry is eligible for refresh.
+	 */
+	public long getRefreshAfterWrite() {
+		return this.refreshAfterWrite;
+	}
+
+	/**
+	 * Set whether to allow <code>null</code> values to be stored.
+	 * Default is "true".
+	 */
+	public void setAllowNullValues(boolean allowNullValues) {
+		this.allowNullValues = allowNullValues;
+	}
+
+	/**
+	 * Return whether <code>null</code> values are allowed to be stored.
+	 */
+	public boolean isAllowNullValues() {
+		return this.allowNullValues;
+	}
+
+	/**
+	 * Set whether to record hit, miss, eviction and load statistics.
+	 * Default is "true".
+	 */
+	public void setRecordStats(boolean recordStats) {
+		this.recordStats = recordStats;
+	}
+
+	/**
+	 * Return whether statistics are being recorded.
+	 */
+	public boolean isRecordStats() {
+		return this.recordStats;
+	}
+
+	/**
+	 * Check these settings for consistency.
+	 * @throws IllegalArgumentException if the settings are inconsistent
+	 */
+	public void validate() {
+		if (this.maximumSize >= 0 && this.maximumWeight >= 0) {
+			throw new IllegalArgumentException("Specify either 'maximumSize' or 'maximumWeight', not both");
+		}
+		if (this.maximumWeight >= 0 && this.weigher == null) {
+			throw new IllegalArgumentException("'maximumWeight' requires a 'weigher'");
+		}
+		if (this.weigher != null && this.maximumWeight < 0) {
+			throw new IllegalArgumentException("'weigher' requires a 'maximumWeight'");
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "maximumSize=" + this.maximumSize + ",maximumWeight=" + this.maximumWeight +
+				",expireAfterWrite=" + this.expireAfterWrite + ",expireAfterAccess=" + this.expireAfterAccess +
+				",refreshAfterWrite=" + this.refreshAfterWrite + ",allowNullValues=" + this.allowNullValues +
+				",recordStats=" + this.recordStats;
+	}
+
+
+	/**
+	 * Parse the given textual specification into a LocalCacheSettings instance.
+	 * <p>Supported properties are "maximumSize", "maximumWeight", "expireAfterWrite",
+	 * "expireAfterAccess", "refreshAfterWrite", "allowNullValues" and "recordStats".
+	 * A "maximumWeight" specification requires a {@link Weigher} to be set afterwards.
+	 * @param spec the specification, e.g. "maximumSize=1000,expireAfterAccess=5m"
+	 * @return the corresponding LocalCacheSettings
+	 * @throws IllegalArgumentException if the specification is invalid
+	 */
+	public static LocalCacheSettings parse(String spec) {
+		LocalCacheSettings settings = new LocalCacheSettings();
+		for (String pair : StringUtils.tokenizeToStringArray(spec, ",")) {
+			int separator = pair.indexOf('=');
+			if (separator == -1) {
+				throw new IllegalArgumentException("Invalid cache specification [" + spec + "]: " +
+						"expected 'property=value' but got [" + pair + "]");
+			}
+			String property = pair.substring(0, separator).trim();
+			String value = pair.substring(separator + 1).trim();
+			if ("maximumSize".equals(property)) {
+				settings.setMaximumSize(Long.parseLong(value));
+			}
+			else if ("maximumWeight".equals(property)) {
+				settings.setMaximumWeight(Long.parseLong(value));
+			}
+			else if ("expireAfterWrite".equals(property)) {
+				settings.setExpireAfterWrite(parseDuration(value));
+			}
+			else if ("expireAfterAccess".equals(property)) {
+				settings.setExpireAfterAccess(parseDuration(value));
+			}
+			else if ("refreshAfterWrite".equals(property)) {
+				settings.setRefreshAfterWrite(parseDuration(value));
+			}
+			else if ("allowNullValues".equals(property)) {
+				settings.setAllowNullValues(Boolean.valueOf(value));
+			}
+			else if ("recordStats".equals(property)) {
+				settings.setRecordStats(Boolean.valueOf(value));
+			}
+			else {
+				throw new IllegalArgumentException("Invalid cache specification [" + spec + "]: " +
+						"unknown property '" + property + "'");
+			}
+		}
+		return settings;
+	}
+
+	/**
+	 * Parse the given duration into milliseconds.
+	 */
+	private static long parseDuration(String value) {
+		if (value.endsWith("ms")) {
+			return Long.parseLong(value.substring(0, value.length() - 2));
+		}
+		char unit = value.charAt(value.length() - 1);
+		if (Character.isDigit(unit)) {
+			return Long.parseLong(value);
+		}
+		long amount = Long.parseLong(value.substring(0, value.length() - 1));
+		switch (unit) {
+			case 's': return amount * 1000;
+			case 'm': return amount * 60 * 1000;
+			case 'h': return amount * 60 * 60 * 1000;
+			case 'd': return amount * 24 * 60 * 60 * 1000;
+			default: throw new IllegalArgumentException("Invalid duration unit in [" + value + "]");
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.local;
+
+import java.beans.PropertyEditorSupport;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Editor for {@link LocalCacheSettings}, converting from a textual specification
+ * such as "maximumSize=1000,expireAfterWrite=10m".
+ *
+ * <p>Automatically picked up by the bean factory through the JavaBeans naming
+ * convention, e.g. for the values of {@link LocalCacheManager#setCacheSettings}.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocalCacheSettings#parse
+ */
+public class LocalCacheSettingsEditor extends PropertyEditorSupport {
+
+	@Override
+	public void setAsText(String text) throws IllegalArgumentException {
+		setValue(StringUtils.hasText(text) ? LocalCacheSettings.parse(text) : null);
+	}
+
+}
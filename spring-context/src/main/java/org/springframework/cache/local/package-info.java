@@ -0,0 +1,8 @@
+/**
+ * Implementation package for bounded, expiring local caches.
+ * Provides a {@link org.springframework.cache.CacheManager CacheManager}
+ * and {@link org.springframework.cache.Cache Cache} implementation with
+ * size- or weight-based eviction, expiration and JMX-exposed statistics.
+ */
+package org.springframework.cache.local;
+
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoadCoordinator;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link Cache} implementation that stores serialized values outside of the Java heap,
+ * keeping large working sets out of the way of the garbage collector.
+ *
+ * <p>The capacity is split into a number of segments, each guarded by a lock of its own
+ * and backed by either a direct {@link ByteBuffer} or - if a directory is specified - a
+ * memory-mapped file. Each segment is written as a ring: New entries are appended at the
+ * current write position, and once the segment is full, the oldest entries are evicted
+ * in order to make room (FIFO). Only the keys and the location of each entry are
+ * held on the heap, in an index per segment.
+ *
+ * <p>Keys and values are encoded through the {@link Serializer} and {@link Deserializer}
+ * strategies, by default using Java serialization. Each lookup deserializes a fresh
+ * copy of the value; callers are free to modify it without affecting the cache.
+ *
+ * <p>When backed by files, the cache contents survive a restart provided that the cache
+ * has been {@link #close() closed} properly: The index is rebuilt from the files on
+ * startup, while files of a cache that has not been closed are discarded.
+ *
+ * @author agent
+ * @since 3.1
+ * @see OffHeapCacheFactoryBean
+ */
+public class OffHeapCache implements Cache {
+
+	/** Marker at the start of each segment, followed by the segment's metadata */
+	private static final int MAGIC = 0x53434F48;
+
+	private static final int HEADER_SIZE = 24;
+
+	private static final int ENTRY_HEADER_SIZE = 12;
+
+	private static final int STATUS_REMOVED = 0;
+
+	private static final int STATUS_LIVE = 1;
+
+	private static final int STATUS_WRAP = -1;
+
+	private static final int NULL_LENGTH = -1;
+
+	/** Value bytes returned for a <code>null</code> value */
+	private static final byte[] NULL_VALUE = new byte[0];
+
+	private static final Log logger = LogFactory.getLog(OffHeapCache.class);
+
+
+	private final String name;
+
+	private final Segment[] segments;
+
+	private final Serializer<Object> serializer;
+
+	private final Deserializer<Object> deserializer;
+
+	private final boolean allowNullValues;
+
+	/** Loads currently in progress, keyed by cache key */
+	private final ValueLoadCoordinator loadCoordinator = new ValueLoadCoordinator();
+
+
+	/**
+	 * Create a new OffHeapCache with the specified name and capacity,
+	 * held in direct memory and using Java serialization.
+	 * @param name the name of the cache
+	 * @param capacity the total capacity in bytes
+	 */
+	public OffHeapCache(String name, long capacity) {
+		this(name, capacity, 16, null, new DefaultSerializer(), new DefaultDeserializer(), true);
+	}
+
+	/**
+	 * Create a new OffHeapCache.
+	 * @param name the name of the cache
+	 * @param capacity the total capacity in bytes, split evenly between the segments
+	 * @param segmentCount the number of independently locked segments (a power of two)
+	 * @param directory the directory to keep one memory-mapped file per segment in,
+	 * or <code>null</code> to use direct memory
+	 * @param serializer the Serializer to encode keys and values with
+	 * @param deserializer the Deserializer to decode keys and values with
+	 * @param allowNullValues whether to allow <code>null</code> values
+	 * @throws IllegalStateException if the segment files could not be opened
+	 */
+	public OffHeapCache(String name, long capacity, int segmentCount, File directory,
+			Serializer<Object> serializer, Deserializer<Object> deserializer, boolean allowNullValues) {
+
+		Assert.notNull(name, "Name must not be null");
+		Assert.isTrue(segmentCount > 0 && (segmentCount & (segmentCount - 1)) == 0,
+				"Segment count must be a power of two");
+		Assert.notNull(serializer, "Serializer must not be null");
+		Assert.notNull(deserializer, "Deserializer must not be null");
+		long segmentCapacity = capacity / segmentCount;
+		Assert.isTrue(segmentCapacity > HEADER_SIZE + ENTRY_HEADER_SIZE,
+				"Capacity too small for " + segmentCount + " segments");
+		Assert.isTrue(segmentCapacity <= Integer.MAX_VALUE,
+				"Capacity per segment must not exceed 2 GB - increase the segment count");
+		this.name = name;
+		this.serializer = serializer;
+		this.deserializer = deserializer;
+		this.allowNullValues = allowNullValues;
+		this.segments = new Segment[segmentCount];
+		try {
+			for (int i = 0; i < segmentCount; i++) {
+				File file = (directory != null ? new File(directory, name + "-" + i + ".cache") : null);
+				this.segments[i] = new Segment((int) segmentCapacity, file);
+			}
+		}
+		catch (IOException ex) {
+			close();
+			throw new IllegalStateException("Could not open segment files for cache '" + name + "'", ex);
+		}
+	}
+
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * This implementation returns the OffHeapCache itself,
+	 * as there is no separate native cache provider.
+	 */
+	public OffHeapCache getNativeCache() {
+		return this;
+	}
+
+	public boolean isAllowNullValues() {
+		return this.allowNullValues;
+	}
+
+	/**
+	 * Return the number of entries currently held in this cache.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public ValueWrapper get(Object key) {
+		byte[] bytes = segmentFor(key).read(key);
+		if (bytes == null) {
+			return null;
+		}
+		return new SimpleValueWrapper(bytes != NULL_VALUE ? deserialize(bytes) : null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		ValueWrapper wrapper = get(key);
+		if (wrapper != null) {
+			return (T) wrapper.get();
+		}
+		return this.loadCoordinator.<T>load(key, valueLoader, new Callable<Object>() {
+			public Object call() throws Exception {
+				// Another load may have completed in the meantime
+				ValueWrapper existing = get(key);
+				if (existing != null) {
+					return existing.get();
+				}
+				T value = valueLoader.call();
+				if (value != null || allowNullValues) {
+					put(key, value);
+				}
+				return value;
+			}
+		});
+	}
+
+	public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+		Map<Object, ValueWrapper> result = new HashMap<Object, ValueWrapper>(keys.size());
+		for (Object key : keys) {
+			ValueWrapper wrapper = get(key);
+			if (wrapper != null) {
+				result.put(key, wrapper);
+			}
+		}
+		return result;
+	}
+
+	public void put(Object key, Object value) {
+		if (value == null) {
+			Assert.isTrue(this.allowNullValues, "Cache '" + this.name + "' is configured to not allow null values");
+		}
+		byte[] keyBytes = serialize(key);
+		byte[] valueBytes = (value != null ? serialize(value) : null);
+		if (!segmentFor(key).write(key, keyBytes, valueBytes) && logger.isDebugEnabled()) {
+			logger.debug("Entry for key '" + key + "' exceeds the segment capacity of cache '" +
+					this.name + "' - not cached");
+		}
+	}
+
+	public void putAll(Map<?, ?> entries) {
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public void evict(Object key) {
+		segmentFor(key).remove(key);
+	}
+
+	public void clear() {
+		for (Segment segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Close this cache, flushing memory-mapped segments to their files and
+	 * marking them as consistent for reuse on the next startup.
+	 * <p>The cache must not be used after it has been closed.
+	 */
+	public void close() {
+		for (Segment segment : this.segments) {
+			if (segment != null) {
+				segment.close();
+			}
+		}
+	}
+
+
+	private Segment segmentFor(Object key) {
+		int hash = key.hashCode();
+		// Spread the bits of the hash code (as done by java.util.HashMap)
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return this.segments[hash & (this.segments.length - 1)];
+	}
+
+	private byte[] serialize(Object object) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try {
+			this.serializer.serialize(object, out);
+		}
+		catch (IOException ex) {
+			throw new SerializationFailedException("Failed to serialize object for cache '" + this.name + "'", ex);
+		}
+		return out.toByteArray();
+	}
+
+	private Object deserialize(byte[] bytes) {
+		try {
+			return this.deserializer.deserialize(new ByteArrayInputStream(bytes));
+		}
+		catch (IOException ex) {
+			throw new SerializationFailedException("Failed to deserialize object for cache '" + this.name + "'", ex);
+		}
+	}
+
+
+	/**
+	 * A ring of entries in a single buffer, with an index from key to entry.
+	 * <p>The buffer starts with a header of six ints: magic number, capacity,
+	 * head offset, tail offset, entry count and a "clean" flag. It is followed by
+	 * the entries, each consisting of status, key length and value length ints
+	 * followed by the key and value bytes.
+	 */
+	private class Segment {
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private final int capacity;
+
+		private final ByteBuffer buffer;
+
+		private final RandomAccessFile file;
+
+		// Guarded by the lock
+
+		private final Map<Object, Entry> index = new HashMap<Object, Entry>();
+
+		/** All entries occupying the buffer, including removed ones, oldest first */
+		private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+
+		private int tail = HEADER_SIZE;
+
+		public Segment(int capacity, File file) throws IOException {
+			this.capacity = capacity;
+			if (file != null) {
+				this.file = new RandomAccessFile(file, "rw");
+				this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+				if (!recover()) {
+					reset();
+				}
+			}
+			else {
+				this.file = null;
+				this.buffer = ByteBuffer.allocateDirect(capacity);
+				reset();
+			}
+			// Mark as in use until closed, forcing the flag out before the first write
+			this.buffer.putInt(20, 0);
+			if (this.file != null) {
+				((MappedByteBuffer) this.buffer).force();
+			}
+		}
+
+		public int size() {
+			this.lock.readLock().lock();
+			try {
+				return this.index.size();
+			}
+			finally {
+				this.lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Copy the value bytes for the given key out of the buffer.
+		 * @return the value bytes ({@link #NULL_VALUE} for a <code>null</code> value),
+		 * or <code>null</code> if not found
+		 */
+		public byte[] read(Object key) {
+			this.lock.readLock().lock();
+			try {
+				Entry entry = this.index.get(key);
+				if (entry == null) {
+					return null;
+				}
+				if (entry.valueLength == NULL_LENGTH) {
+					return NULL_VALUE;
+				}
+				byte[] bytes = new byte[entry.valueLength];
+				ByteBuffer source = this.buffer.duplicate();
+				source.position(entry.offset + ENTRY_HEADER_SIZE + entry.keyLength);
+				source.get(bytes);
+				return bytes;
+			}
+			finally {
+				this.lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Append an entry for the given key, evicting the oldest entries as necessary.
+		 * @return whether the entry could be stored
+		 */
+		public boolean write(Object key, byte[] keyBytes, byte[] valueBytes) {
+			int valueLength = (valueBytes != null ? valueBytes.length : NULL_LENGTH);
+			// Offsets and lengths are computed as longs, since their sum may exceed 2 GB
+			long entryLength = (long) ENTRY_HEADER_SIZE + keyBytes.length + (valueBytes != null ? valueBytes.length : 0);
+			this.lock.writeLock().lock();
+			try {
+				removeEntry(this.index.remove(key));
+				if (entryLength > this.capacity - HEADER_SIZE) {
+					return false;
+				}
+				int length = (int) entryLength;
+				int offset = this.tail;
+				if ((long) offset + length > this.capacity) {
+					// Wrap around, evicting all entries up to the end of the buffer
+					while (!this.entries.isEmpty() && this.entries.peekFirst().offset >= offset) {
+						evictOldest();
+					}
+					if (offset <= this.capacity - 4) {
+						this.buffer.putInt(offset, STATUS_WRAP);
+					}
+					offset = HEADER_SIZE;
+				}
+				while (!this.entries.isEmpty() && this.entries.peekFirst().offset < offset + length &&
+						this.entries.peekFirst().offset >= offset) {
+					evictOldest();
+				}
+				ByteBuffer target = this.buffer.duplicate();
+				target.position(offset);
+				target.putInt(STATUS_LIVE);
+				target.putInt(keyBytes.length);
+				target.putInt(valueLength);
+				target.put(keyBytes);
+				if (valueBytes != null) {
+					target.put(valueBytes);
+				}
+				Entry entry = new Entry(key, offset, keyBytes.length, valueLength);
+				this.entries.addLast(entry);
+				this.index.put(key, entry);
+				this.tail = offset + length;
+				writeHeader();
+				return true;
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+
+		public void remove(Object key) {
+			this.lock.writeLock().lock();
+			try {
+				removeEntry(this.index.remove(key));
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+
+		public void clear() {
+			this.lock.writeLock().lock();
+			try {
+				reset();
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+
+		public void close() {
+			this.lock.writeLock().lock();
+			try {
+				if (this.file != null) {
+					this.buffer.putInt(20, 1);
+					((MappedByteBuffer) this.buffer).force();
+					this.file.close();
+				}
+			}
+			catch (IOException ex) {
+				logger.warn("Could not close segment file of cache '" + name + "'", ex);
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+
+		private void removeEntry(Entry entry) {
+			if (entry != null) {
+				// The space is reclaimed once the ring comes around
+				entry.removed = true;
+				this.buffer.putInt(entry.offset, STATUS_REMOVED);
+			}
+		}
+
+		private void evictOldest() {
+			Entry entry = this.entries.pollFirst();
+			if (!entry.removed) {
+				this.index.remove(entry.key);
+			}
+		}
+
+		private void reset() {
+			this.index.clear();
+			this.entries.clear();
+			this.tail = HEADER_SIZE;
+			this.buffer.putInt(0, MAGIC);
+			this.buffer.putInt(4, this.capacity);
+			writeHeader();
+		}
+
+		private void writeHeader() {
+			this.buffer.putInt(8, this.entries.isEmpty() ? this.tail : this.entries.peekFirst().offset);
+			this.buffer.putInt(12, this.tail);
+			this.buffer.putInt(16, this.entries.size());
+		}
+
+		/**
+		 * Rebuild the index from a segment file written by a previous run.
+		 * @return whether the file contents could be recovered
+		 */
+		private boolean recover() {
+			if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != this.capacity ||
+					this.buffer.getInt(20) != 1) {
+				return false;
+			}
+			int offset = this.buffer.getInt(8);
+			int count = this.buffer.getInt(16);
+			int tailOffset = this.buffer.getInt(12);
+			try {
+				if (!isValidOffset(offset) || !isValidOffset(tailOffset) || count < 0) {
+					throw new IllegalStateException("Corrupt segment header");
+				}
+				for (int i = 0; i < count; i++) {
+					if (offset > this.capacity - ENTRY_HEADER_SIZE || this.buffer.getInt(offset) == STATUS_WRAP) {
+						offset = HEADER_SIZE;
+					}
+					int status = this.buffer.getInt(offset);
+					int keyLength = this.buffer.getInt(offset + 4);
+					int valueLength = this.buffer.getInt(offset + 8);
+					if (keyLength < 0 || valueLength < NULL_LENGTH || (long) offset + ENTRY_HEADER_SIZE +
+							keyLength + Math.max(valueLength, 0) > this.capacity) {
+						throw new IllegalStateException("Corrupt entry at offset " + offset);
+					}
+					Object key = null;
+					if (status == STATUS_LIVE) {
+						byte[] keyBytes = new byte[keyLength];
+						ByteBuffer source = this.buffer.duplicate();
+						source.position(offset + ENTRY_HEADER_SIZE);
+						source.get(keyBytes);
+						key = deserialize(keyBytes);
+					}
+					Entry entry = new Entry(key, offset, keyLength, valueLength);
+					entry.removed = (status != STATUS_LIVE);
+					this.entries.addLast(entry);
+					if (!entry.removed) {
+						this.index.put(key, entry);
+					}
+					offset += ENTRY_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+				}
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Could not recover segment of cache '" + name + "' - discarding its contents", ex);
+				this.index.clear();
+				this.entries.clear();
+				return false;
+			}
+			this.tail = tailOffset;
+			return true;
+		}
+
+		private boolean isValidOffset(int offset) {
+			return (offset >= HEADER_SIZE && offset <= this.capacity);
+		}
+	}
+
+
+	/**
+	 * Location of an entry within its segment.
+	 */
+	private static class Entry {
+
+		private final Object key;
+
+		private final int offset;
+
+		private final int keyLength;
+
+		private final int valueLength;
+
+		private boolean removed;
+
+		public Entry(Object key, int offset, int keyLength, int valueLength) {
+			this.key = key;
+			this.offset = offset;
+			this.keyLength = keyLength;
+			this.valueLength = valueLength;
+		}
+	}
+
+}
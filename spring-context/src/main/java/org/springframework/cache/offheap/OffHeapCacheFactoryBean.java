@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.offheap;
+
+import java.io.File;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link FactoryBean} for easy configuration of an {@link OffHeapCache}
+ * when used within a Spring container. Can be configured through bean properties;
+ * uses the assigned Spring bean name as the default cache name.
+ *
+ * <p>Typically used in combination with
+ * {@link org.springframework.cache.support.SimpleCacheManager}.
+ * Closes the cache on shutdown, preserving its contents for the next startup
+ * if a {@link #setDirectory directory} has been specified.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public class OffHeapCacheFactoryBean
+		implements FactoryBean<OffHeapCache>, BeanNameAware, InitializingBean, DisposableBean {
+
+	private String name = "";
+
+	private long capacity = 64 * 1024 * 1024;
+
+	private int segmentCount = 16;
+
+	private File directory;
+
+	private Serializer<Object> serializer = new DefaultSerializer();
+
+	private Deserializer<Object> deserializer = new DefaultDeserializer();
+
+	private boolean allowNullValues = true;
+
+	private OffHeapCache cache;
+
+
+	/**
+	 * Specify the name of the cache.
+	 * <p>Default is "" (empty String).
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Specify the total capacity of the cache in bytes.
+	 * <p>Default is 64 MB.
+	 */
+	public void setCapacity(long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Specify the number of independently locked segments, which has to be
+	 * a power of two. Each segment may hold up to 2 GB.
+	 * <p>Default is 16.
+	 */
+	public void setSegmentCount(int segmentCount) {
+		this.segmentCount = segmentCount;
+	}
+
+	/**
+	 * Specify a directory to keep the segments in, as memory-mapped files
+	 * named after the cache.
+	 * <p>Default is none, holding the segments in direct memory.
+	 */
+	public void setDirectory(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Specify the Serializer to encode keys and values with.
+	 * <p>Default is a {@link DefaultSerializer}, using Java serialization.
+	 */
+	public void setSerializer(Serializer<Object> serializer) {
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Specify the Deserializer to decode keys and values with.
+	 * <p>Default is a {@link DefaultDeserializer}, using Java serialization.
+	 */
+	public void setDeserializer(Deserializer<Object> deserializer) {
+		this.deserializer = deserializer;
+	}
+
+	/**
+	 * Set whether to allow {@code null} values.
+	 * <p>Default is "true".
+	 */
+	public void setAllowNullValues(boolean allowNullValues) {
+		this.allowNullValues = allowNullValues;
+	}
+
+	public void setBeanName(String beanName) {
+		if (!StringUtils.hasLength(this.name)) {
+			setName(beanName);
+		}
+	}
+
+	public void afterPropertiesSet() {
+		if (this.directory != null && !this.directory.exists() && !this.directory.mkdirs()) {
+			throw new IllegalStateException("Could not create cache directory [" + this.directory + "]");
+		}
+		this.cache = new OffHeapCache(this.name, this.capacity, this.segmentCount, this.directory,
+				this.serializer, this.deserializer, this.allowNullValues);
+	}
+
+
+	public OffHeapCache getObject() {
+		return this.cache;
+	}
+
+	public Class<?> getObjectType() {
+		return OffHeapCache.class;
+	}
+
+	public boolean isSingleton() {
+		return true;
+	}
+
+
+	public void destroy() {
+		this.cache.close();
+	}
+
+}
@@ -0,0 +1,8 @@
+/**
+ * Implementation package for caches holding serialized values outside of the
+ * Java heap, in direct memory or memory-mapped files. Provides a
+ * {@link org.springframework.cache.Cache Cache} implementation for
+ * use in a Spring context.
+ */
+package org.springframework.cache.offheap;
+
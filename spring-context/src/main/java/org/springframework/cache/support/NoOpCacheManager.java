@@ -19,7 +19,9 @@ package org.springframework.cache.support;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -60,6 +62,19 @@ public class NoOpCacheManager implements CacheManager {
 			return null;
 		}
 
+		public <T> T get(Object key, Callable<T> valueLoader) {
+			try {
+				return valueLoader.call();
+			}
+			catch (Throwable ex) {
+				throw new ValueRetrievalException(key, valueLoader, ex);
+			}
+		}
+
+		public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+			return Collections.emptyMap();
+		}
+
 		public String getName() {
 			return name;
 		}
@@ -70,6 +85,9 @@ public class NoOpCacheManager implements CacheManager {
 
 		public void put(Object key, Object value) {
 		}
+
+		public void putAll(Map<?, ?> entries) {
+		}
 	}
 
 	/**
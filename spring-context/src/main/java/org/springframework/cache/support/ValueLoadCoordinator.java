@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.support;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueRetrievalException;
+
+/**
+ * Helper for {@link Cache} implementations that coordinates concurrent
+ * load-through operations as required by {@link Cache#get(Object, Callable)}.
+ *
+ * <p>Tracks in-flight loads in a separate map, so lookups of existing entries
+ * never block: The first caller for a missing key runs the load in its own
+ * thread, while concurrent callers for the same key wait for its result.
+ * A load is forgotten as soon as it completes, whether successfully or not.
+ *
+ * <p>A value loader that loads the same key through the same cache again,
+ * from within its own thread, is rejected with an {@link IllegalStateException}
+ * instead of waiting for its own result forever.
+ *
+ * @author agent
+ * @since 3.1
+ * @see org.springframework.cache.concurrent.ConcurrentMapCache
+ * @see org.springframework.cache.local.LocalCache
+ * @see org.springframework.cache.offheap.OffHeapCache
+ */
+public class ValueLoadCoordinator {
+
+	private final ConcurrentMap<Object, LoadTask> loads = new ConcurrentHashMap<Object, LoadTask>();
+
+
+	/**
+	 * Run the given load operation for the given key, unless a load for the same
+	 * key is in progress already, in which case its result will be returned instead.
+	 * <p>The load operation is expected to check the cache again (since another
+	 * load may have completed in the meantime), to invoke the value loader if
+	 * still necessary, and to store its result.
+	 * @param key the key to load the value for
+	 * @param valueLoader the value loader as passed into the cache
+	 * (only used for exception messages)
+	 * @param load the load operation to run
+	 * @return the result of the load operation
+	 * @throws ValueRetrievalException if the load operation failed
+	 * @throws IllegalStateException if the current thread is running
+	 * a load for the same key already
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T load(Object key, Callable<?> valueLoader, Callable<?> load) {
+		LoadTask task = new LoadTask((Callable<Object>) load);
+		LoadTask existingTask = this.loads.putIfAbsent(key, task);
+		if (existingTask == null) {
+			try {
+				task.run();
+			}
+			finally {
+				this.loads.remove(key, task);
+			}
+		}
+		else if (existingTask.owner == Thread.currentThread()) {
+			throw new IllegalStateException("Recursive load of key '" + key + "' from within its own value loader");
+		}
+		else {
+			task = existingTask;
+		}
+		try {
+			return (T) task.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ValueRetrievalException(key, valueLoader, ex);
+		}
+		catch (ExecutionException ex) {
+			throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+		}
+	}
+
+	/**
+	 * Return the number of loads currently in progress.
+	 */
+	public int getLoadCount() {
+		return this.loads.size();
+	}
+
+
+	/**
+	 * FutureTask that remembers the thread running the load.
+	 */
+	private static class LoadTask extends FutureTask<Object> {
+
+		private final Thread owner = Thread.currentThread();
+
+		public LoadTask(Callable<Object> load) {
+			super(load);
+		}
+	}
+
+}
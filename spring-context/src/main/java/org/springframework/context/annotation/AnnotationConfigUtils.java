@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.LazyInitializationConfigurer;
 import org.springframework.util.ClassUtils;
 
 /**
@@ -223,6 +224,9 @@ public class AnnotationConfigUtils {
 		if (abd.getMetadata().isAnnotated(Lazy.class.getName())) {
 			Boolean value = (Boolean) abd.getMetadata().getAnnotationAttributes(Lazy.class.getName()).get("value");
 			abd.setLazyInit(value);
+			if (!value) {
+				abd.setAttribute(LazyInitializationConfigurer.EAGER_INIT_ATTRIBUTE, Boolean.TRUE);
+			}
 		}
 		if (abd.getMetadata().isAnnotated(DependsOn.class.getName())) {
 			String[] value = (String[]) abd.getMetadata().getAnnotationAttributes(DependsOn.class.getName()).get("value");
@@ -43,6 +43,7 @@ import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
 import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.LazyInitializationConfigurer;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.type.AnnotationMetadata;
@@ -216,6 +217,11 @@ class ConfigurationClassBeanDefinitionReader {
 		else if (configClass.getMetadata().isAnnotated(Lazy.class.getName())){
 			beanDef.setLazyInit((Boolean) configClass.getMetadata().getAnnotationAttributes(Lazy.class.getName()).get("value"));
 		}
+		if (!beanDef.isLazyInit() && (metadata.isAnnotated(Lazy.class.getName()) ||
+				configClass.getMetadata().isAnnotated(Lazy.class.getName()))) {
+			// explicitly eager, even in case of a context-wide lazy initialization mode
+			beanDef.setAttribute(LazyInitializationConfigurer.EAGER_INIT_ATTRIBUTE, Boolean.TRUE);
+		}
 
 		if (metadata.isAnnotated(DependsOn.class.getName())) {
 			String[] dependsOn = (String[]) metadata.getAnnotationAttributes(DependsOn.class.getName()).get("value");
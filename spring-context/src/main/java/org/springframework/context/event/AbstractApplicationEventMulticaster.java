@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.context.event;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
@@ -38,6 +39,11 @@ import org.springframework.core.OrderComparator;
  * ApplicationListener objects can be overridden through the "collectionClass"
  * bean property.
  *
+ * <p>The listeners matching a given event type and source type get cached.
+ * Registering or removing a listener only evicts the cache entries that it
+ * affects, except for registering a listener bean: this evicts all entries,
+ * since determining the affected ones would require obtaining the bean.
+ *
  * <p>Implementing ApplicationEventMulticaster's actual {@link #multicastEvent} method
  * is left to subclasses. {@link SimpleApplicationEventMulticaster} simply multicasts
  * all events to all registered listeners, invoking them in the calling thread.
@@ -61,7 +67,12 @@ public abstract class AbstractApplicationEventMulticaster implements Application
 	public void addApplicationListener(ApplicationListener listener) {
 		synchronized (this.defaultRetriever) {
 			this.defaultRetriever.applicationListeners.add(listener);
-			this.retrieverCache.clear();
+			for (Iterator<ListenerCacheKey> it = this.retrieverCache.keySet().iterator(); it.hasNext();) {
+				ListenerCacheKey cacheKey = it.next();
+				if (supportsEvent(listener, cacheKey.eventType, cacheKey.sourceType)) {
+					it.remove();
+				}
+			}
 		}
 	}
 
@@ -75,14 +86,22 @@ public abstract class AbstractApplicationEventMulticaster implements Application
 	public void removeApplicationListener(ApplicationListener listener) {
 		synchronized (this.defaultRetriever) {
 			this.defaultRetriever.applicationListeners.remove(listener);
-			this.retrieverCache.clear();
+			for (Iterator<ListenerRetriever> it = this.retrieverCache.values().iterator(); it.hasNext();) {
+				if (it.next().applicationListeners.contains(listener)) {
+					it.remove();
+				}
+			}
 		}
 	}
 
 	public void removeApplicationListenerBean(String listenerBeanName) {
 		synchronized (this.defaultRetriever) {
 			this.defaultRetriever.applicationListenerBeans.remove(listenerBeanName);
-			this.retrieverCache.clear();
+			for (Iterator<ListenerRetriever> it = this.retrieverCache.values().iterator(); it.hasNext();) {
+				if (it.next().applicationListenerBeans.contains(listenerBeanName)) {
+					it.remove();
+				}
+			}
 		}
 	}
 
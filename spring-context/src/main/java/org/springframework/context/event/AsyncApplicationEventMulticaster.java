@@ -0,0 +1,573 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Asynchronous implementation of the {@link ApplicationEventMulticaster} interface,
+ * queueing up events per listener.
+ *
+ * <p>Each listener has a bounded queue of pending events, drained by at most one
+ * task on the configured {@link #setTaskExecutor TaskExecutor} at any time. As a
+ * consequence, each listener receives events in the order of their publication,
+ * one at a time, while different listeners proceed independently of each other:
+ * a slow listener only ever delays its own events. Listeners implementing
+ * {@link BatchApplicationListener} receive all pending events (up to the
+ * {@link #setMaxBatchSize maximum batch size}) at once.
+ *
+ * <p>When a listener's queue is full, the {@link #setOverflowPolicy overflow policy}
+ * decides what happens to further events for it: the publisher waits for space
+ * to become available (the default), the event gets dropped for that listener,
+ * or the listener gets invoked in the publishing thread, ahead of the events
+ * still queued. Exceptions thrown by listeners are passed to the
+ * {@link #setErrorHandler ErrorHandler}, by default logged and suppressed.
+ *
+ * <p>Queue depths and dropped events are exposed through accessor methods,
+ * for example for export through Spring's JMX support. Queues are held per
+ * listener instance: the queue of a listener that has been registered as an
+ * instance lives until the listener gets removed, while the queue of a
+ * listener that has been obtained by bean name (e.g. a prototype) gets
+ * discarded as soon as it has been drained.
+ *
+ * <p>Note that listeners do not participate in the publisher's thread context
+ * (transaction association etc). See
+ * {@link org.springframework.transaction.support.TransactionAwareApplicationEventMulticaster}
+ * for a variant that holds back events published within a transaction until
+ * after its commit.
+ *
+ * @author agent
+ * @since 3.1
+ * @see SimpleApplicationEventMulticaster
+ * @see BatchApplicationListener
+ */
+public class AsyncApplicationEventMulticaster extends AbstractApplicationEventMulticaster implements DisposableBean {
+
+	/**
+	 * Policies for events published to a listener whose queue is full.
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Block the publishing thread until there is space in the queue.
+		 * Listeners publishing events themselves never block, though: they
+		 * invoke the target listener in their own thread instead, since two
+		 * listeners waiting for each other's queues would never proceed.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the event for the listener, counting it as dropped.
+		 */
+		DROP,
+
+		/**
+		 * Invoke the listener in the publishing thread.
+		 */
+		CALLER_RUNS
+	}
+
+
+	/**
+	 * Maximum number of events that a single drain task delivers to a listener
+	 * before giving up its thread, letting other tasks of the executor proceed.
+	 */
+	private static final int DRAIN_LIMIT = 1024;
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private Executor taskExecutor = new SimpleAsyncTaskExecutor(getClass().getSimpleName() + "-");
+
+	private int queueCapacity = 1024;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private int maxBatchSize = 100;
+
+	private ErrorHandler errorHandler = TaskUtils.LOG_AND_SUPPRESS_ERROR_HANDLER;
+
+	private long shutdownTimeout = 0;
+
+	private final ConcurrentMap<ApplicationListener, ListenerQueue> listenerQueues =
+			new ConcurrentHashMap<ApplicationListener, ListenerQueue>();
+
+	private final Set<ApplicationListener> registeredListeners =
+			Collections.newSetFromMap(new ConcurrentHashMap<ApplicationListener, Boolean>());
+
+	private final ThreadLocal<ListenerQueue> drainingQueue =
+			new NamedThreadLocal<ListenerQueue>("Application event listener queue being drained");
+
+	private final AtomicLong droppedEventCount = new AtomicLong();
+
+	private final AtomicLong callerRunsEventCount = new AtomicLong();
+
+
+	/**
+	 * Create a new AsyncApplicationEventMulticaster.
+	 */
+	public AsyncApplicationEventMulticaster() {
+	}
+
+	/**
+	 * Create a new AsyncApplicationEventMulticaster for the given BeanFactory.
+	 */
+	public AsyncApplicationEventMulticaster(BeanFactory beanFactory) {
+		setBeanFactory(beanFactory);
+	}
+
+
+	/**
+	 * Set the TaskExecutor to drain the listener queues with. Each listener
+	 * occupies at most one thread of the executor at any time.
+	 * <p>Default is a {@link SimpleAsyncTaskExecutor}, starting a new thread
+	 * whenever an idle listener receives an event.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "TaskExecutor must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Return the current TaskExecutor for this multicaster.
+	 */
+	protected Executor getTaskExecutor() {
+		return this.taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of pending events per listener. Default is 1024.
+	 * <p>Only applies to queues created after this setting has been changed.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Set the policy for events published to a listener whose queue is full.
+	 * Default is {@link OverflowPolicy#BLOCK}.
+	 * <p>Note that with the blocking policy, events published by listeners
+	 * of this multicaster get executed in the listener's own thread once the
+	 * target queue is full, since blocking could end up in a deadlock there.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "OverflowPolicy must not be null");
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Set the maximum number of events to pass to a {@link BatchApplicationListener}
+	 * at once. Default is 100.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		Assert.isTrue(maxBatchSize > 0, "Maximum batch size must be positive");
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Set the ErrorHandler to pass exceptions thrown by listeners to.
+	 * Default is an ErrorHandler that logs the exception and continues
+	 * with the next event.
+	 * @see TaskUtils#LOG_AND_SUPPRESS_ERROR_HANDLER
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "ErrorHandler must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds to wait on shutdown for pending
+	 * events to be delivered. Default is 0, i.e. not waiting at all.
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+
+	@Override
+	public void addApplicationListener(ApplicationListener listener) {
+		this.registeredListeners.add(listener);
+		super.addApplicationListener(listener);
+	}
+
+	@Override
+	public void removeApplicationListener(ApplicationListener listener) {
+		super.removeApplicationListener(listener);
+		this.registeredListeners.remove(listener);
+		ListenerQueue queue = this.listenerQueues.get(listener);
+		if (queue != null) {
+			queue.retireIfIdle();
+		}
+	}
+
+	@Override
+	public void removeAllListeners() {
+		super.removeAllListeners();
+		this.registeredListeners.clear();
+		for (ListenerQueue queue : this.listenerQueues.values()) {
+			queue.retireIfIdle();
+		}
+	}
+
+	public void multicastEvent(ApplicationEvent event) {
+		for (ApplicationListener listener : getApplicationListeners(event)) {
+			while (!getListenerQueue(listener).enqueue(event)) {
+				// queue has just been retired: retry with a fresh one
+			}
+		}
+	}
+
+	private ListenerQueue getListenerQueue(ApplicationListener listener) {
+		ListenerQueue queue = this.listenerQueues.get(listener);
+		if (queue == null) {
+			queue = new ListenerQueue(listener, this.queueCapacity);
+			ListenerQueue existing = this.listenerQueues.putIfAbsent(listener, queue);
+			if (existing != null) {
+				queue = existing;
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * Invoke the given listener for the given event, passing any exception
+	 * to the ErrorHandler.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void invokeListener(ApplicationListener listener, ApplicationEvent event) {
+		try {
+			listener.onApplicationEvent(event);
+		}
+		catch (Throwable ex) {
+			this.errorHandler.handleError(ex);
+		}
+	}
+
+	/**
+	 * Invoke the given batch listener for the given events, passing any
+	 * exception to the ErrorHandler.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void invokeListener(BatchApplicationListener listener, List<ApplicationEvent> events) {
+		try {
+			listener.onApplicationEvents(events);
+		}
+		catch (Throwable ex) {
+			this.errorHandler.handleError(ex);
+		}
+	}
+
+
+	/**
+	 * Return the total number of events pending across all listeners.
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (ListenerQueue queue : this.listenerQueues.values()) {
+			depth += queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Return the number of events pending for the given listener.
+	 */
+	public int getQueueDepth(ApplicationListener listener) {
+		ListenerQueue queue = this.listenerQueues.get(listener);
+		return (queue != null ? queue.size() : 0);
+	}
+
+	/**
+	 * Return the largest number of events pending for a single listener.
+	 */
+	public int getMaxQueueDepth() {
+		int depth = 0;
+		for (ListenerQueue queue : this.listenerQueues.values()) {
+			depth = Math.max(depth, queue.size());
+		}
+		return depth;
+	}
+
+	/**
+	 * Return the number of listeners that currently have a queue.
+	 */
+	public int getListenerQueueCount() {
+		return this.listenerQueues.size();
+	}
+
+	/**
+	 * Return the number of events dropped due to full queues.
+	 * @see OverflowPolicy#DROP
+	 */
+	public long getDroppedEventCount() {
+		return this.droppedEventCount.get();
+	}
+
+	/**
+	 * Return the number of events delivered in the publishing thread due to full queues.
+	 * @see OverflowPolicy#CALLER_RUNS
+	 */
+	public long getCallerRunsEventCount() {
+		return this.callerRunsEventCount.get();
+	}
+
+
+	/**
+	 * Wait for pending events to be delivered, up to the specified shutdown timeout.
+	 * @see #setShutdownTimeout
+	 */
+	public void destroy() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + this.shutdownTimeout;
+		while (getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		int depth = getQueueDepth();
+		if (depth > 0 && logger.isWarnEnabled()) {
+			logger.warn("Shutting down with " + depth + " application events still pending");
+		}
+	}
+
+
+	/**
+	 * Bounded FIFO queue of pending events for a specific listener, doubling
+	 * as the task that delivers those events. A ring buffer guarded by a lock,
+	 * with the 'scheduled' flag ensuring a single drain task at any time.
+	 * Once retired, a queue is no longer registered and rejects further events.
+	 */
+	private class ListenerQueue implements Runnable {
+
+		private final ApplicationListener listener;
+
+		private final ApplicationEvent[] buffer;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition notFull = this.lock.newCondition();
+
+		private int head;
+
+		private int count;
+
+		private boolean scheduled;
+
+		private boolean retired;
+
+		public ListenerQueue(ApplicationListener listener, int capacity) {
+			this.listener = listener;
+			this.buffer = new ApplicationEvent[capacity];
+		}
+
+		public int size() {
+			this.lock.lock();
+			try {
+				return this.count;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Add the given event to this queue, applying the overflow policy if full.
+		 * @return {@code false} if this queue has been retired in the meantime
+		 */
+		public boolean enqueue(ApplicationEvent event) {
+			boolean runInline = false;
+			boolean schedule = false;
+			this.lock.lock();
+			try {
+				while (this.count == this.buffer.length && !runInline && !this.retired) {
+					if (overflowPolicy == OverflowPolicy.DROP) {
+						droppedEventCount.incrementAndGet();
+						if (logger.isDebugEnabled()) {
+							logger.debug("Dropped " + event + " for listener [" + this.listener + "]: queue is full");
+						}
+						return true;
+					}
+					if (overflowPolicy == OverflowPolicy.CALLER_RUNS || drainingQueue.get() != null) {
+						runInline = true;
+					}
+					else {
+						try {
+							this.notFull.await();
+						}
+						catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+							runInline = true;
+						}
+					}
+				}
+				if (this.retired) {
+					return false;
+				}
+				if (!runInline) {
+					this.buffer[(this.head + this.count) % this.buffer.length] = event;
+					this.count++;
+					if (!this.scheduled) {
+						this.scheduled = true;
+						schedule = true;
+					}
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+			if (runInline) {
+				callerRunsEventCount.incrementAndGet();
+				invokeListener(this.listener, event);
+			}
+			else if (schedule && !schedule()) {
+				// executor unavailable: deliver in the publishing thread
+				run();
+			}
+			return true;
+		}
+
+		/**
+		 * Retire this queue if it has no pending events; otherwise leave it
+		 * to the drain task to retire it once empty.
+		 */
+		public void retireIfIdle() {
+			this.lock.lock();
+			try {
+				if (this.count == 0 && !this.scheduled) {
+					retire();
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void retire() {
+			this.retired = true;
+			listenerQueues.remove(this.listener, this);
+			// wake up blocked publishers, letting them retry with a fresh queue
+			this.notFull.signalAll();
+		}
+
+		private boolean schedule() {
+			try {
+				taskExecutor.execute(this);
+				return true;
+			}
+			catch (RejectedExecutionException ex) {
+				logger.debug("Application event delivery task rejected by executor", ex);
+				return false;
+			}
+		}
+
+		public void run() {
+			ListenerQueue previousDrainingQueue = drainingQueue.get();
+			drainingQueue.set(this);
+			boolean pending = true;
+			try {
+				int delivered = 0;
+				while (delivered < DRAIN_LIMIT) {
+					List<ApplicationEvent> events = poll();
+					if (events == null) {
+						pending = false;
+						break;
+					}
+					deliver(events);
+					delivered += events.size();
+				}
+			}
+			finally {
+				if (previousDrainingQueue != null) {
+					drainingQueue.set(previousDrainingQueue);
+				}
+				else {
+					drainingQueue.remove();
+				}
+				if (pending && !schedule()) {
+					this.lock.lock();
+					try {
+						// let the next published event trigger delivery again
+						this.scheduled = false;
+					}
+					finally {
+						this.lock.unlock();
+					}
+				}
+			}
+		}
+
+		private List<ApplicationEvent> poll() {
+			this.lock.lock();
+			try {
+				if (this.count == 0) {
+					this.scheduled = false;
+					if (!registeredListeners.contains(this.listener)) {
+						retire();
+					}
+					return null;
+				}
+				int batchSize = (this.listener instanceof BatchApplicationListener ?
+						Math.min(this.count, maxBatchSize) : 1);
+				List<ApplicationEvent> events = new ArrayList<ApplicationEvent>(batchSize);
+				for (int i = 0; i < batchSize; i++) {
+					events.add(this.buffer[this.head]);
+					this.buffer[this.head] = null;
+					this.head = (this.head + 1) % this.buffer.length;
+				}
+				this.count -= batchSize;
+				this.notFull.signalAll();
+				return events;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void deliver(List<ApplicationEvent> events) {
+			if (this.listener instanceof BatchApplicationListener) {
+				invokeListener((BatchApplicationListener) this.listener, events);
+			}
+			else {
+				for (ApplicationEvent event : events) {
+					invokeListener(this.listener, event);
+				}
+			}
+		}
+	}
+
+}
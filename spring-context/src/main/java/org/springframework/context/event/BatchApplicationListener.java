@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.event;
+
+import java.util.List;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Extended variant of the standard {@link ApplicationListener} interface,
+ * receiving several events at once when events are queued up for it.
+ *
+ * <p>Only {@link AsyncApplicationEventMulticaster} delivers events in batches;
+ * other multicasters simply call {@link #onApplicationEvent} for each event.
+ *
+ * @author agent
+ * @since 3.1
+ * @see AsyncApplicationEventMulticaster#setMaxBatchSize
+ */
+public interface BatchApplicationListener<E extends ApplicationEvent> extends ApplicationListener<E> {
+
+	/**
+	 * Handle the given application events, in the order of their publication.
+	 * @param events the events to respond to (never empty)
+	 */
+	void onApplicationEvents(List<E> events);
+
+}
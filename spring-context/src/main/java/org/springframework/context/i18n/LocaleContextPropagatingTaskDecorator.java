@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.context.i18n;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * {@link TaskDecorator} that exposes the submitting thread's {@link LocaleContext}
+ * to the executing thread for the duration of the task, restoring the executing
+ * thread's own LocaleContext afterwards.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LocaleContextHolder
+ * @see org.springframework.scheduling.concurrent.WorkStealingTaskExecutor#setTaskDecorators
+ */
+public class LocaleContextPropagatingTaskDecorator implements TaskDecorator {
+
+	public Runnable decorate(final Runnable runnable) {
+		final LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+		if (localeContext == null) {
+			return runnable;
+		}
+		return new Runnable() {
+			public void run() {
+				LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+				LocaleContextHolder.setLocaleContext(localeContext);
+				try {
+					runnable.run();
+				}
+				finally {
+					LocaleContextHolder.setLocaleContext(previousLocaleContext);
+				}
+			}
+		};
+	}
+
+}
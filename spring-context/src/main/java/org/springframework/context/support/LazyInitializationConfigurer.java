@@ -0,0 +1,757 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.support;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.framework.LazyInitProxyFactoryBean;
+import org.springframework.aop.framework.autoproxy.AutoProxyUtils;
+import org.springframework.aop.target.LazyInitTargetSource;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Conventions;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * {@link BeanFactoryPostProcessor} that switches an application context into a
+ * lazy initialization mode: all application singletons that are not explicitly
+ * marked as eager get initialized on demand instead of on context refresh,
+ * and are initialized in the background after the refresh has completed.
+ * This allows for very fast startup of development, test and autoscaled
+ * instances, with only the critical beans initialized before the context
+ * is ready.
+ *
+ * <p>By default, deferred beans are simply marked as lazy-init, so they get
+ * initialized as soon as an eager bean refers to them. Optionally, deferred beans
+ * may be fronted by a lazy-init proxy (see {@link #setProxyLazyBeans}), which
+ * allows eager beans to depend on them without triggering their initialization.
+ *
+ * <p>Infrastructure beans, post-processors, application listeners, {@link Lifecycle}
+ * beans and {@link FactoryBean FactoryBeans} always remain eager, as do beans
+ * that match one of the {@link #setEagerBeanNames "eagerBeanNames"} patterns,
+ * beans declared with {@code @Lazy(false)}, and beans carrying the
+ * {@link #EAGER_INIT_ATTRIBUTE} attribute, e.g. through a
+ * <code>&lt;meta key="..." value="true"/&gt;</code> element in XML:
+ *
+ * <pre class="code">
+ * &lt;bean class="org.springframework.context.support.LazyInitializationConfigurer"&gt;
+ *   &lt;property name="eagerBeanNames" value="dataSource,*Scheduler"/&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * After the {@link ContextRefreshedEvent}, a background warm-up initializes all
+ * deferred beans in dependency order (as far as expressed through bean references
+ * and "depends-on" in their bean definitions), using the specified number of
+ * threads. Startup and warm-up metrics are available through the
+ * {@link LazyInitializationConfigurerMBean} interface. Requests are observed
+ * through lazy-init proxies on every first invocation, but for deferred beans
+ * without proxy only when they get initialized on demand.
+ *
+ * <p>May also be registered programmatically with an application context, both
+ * through {@link AbstractApplicationContext#addBeanFactoryPostProcessor} and
+ * {@link AbstractApplicationContext#addApplicationListener}.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LazyInitProxyFactoryBean
+ * @see org.springframework.context.annotation.Lazy
+ */
+public class LazyInitializationConfigurer implements BeanFactoryPostProcessor,
+		ApplicationListener<ApplicationEvent>, DisposableBean, Ordered, LazyInitializationConfigurerMBean {
+
+	/**
+	 * Bean definition attribute that indicates whether a given bean is supposed
+	 * to be initialized eagerly, even in a context with lazy initialization mode.
+	 * The value may be {@link Boolean#TRUE} or the String "true".
+	 */
+	public static final String EAGER_INIT_ATTRIBUTE =
+			Conventions.getQualifiedAttributeName(LazyInitializationConfigurer.class, "eagerInit");
+
+	private static final String TARGET_NAME_PREFIX = "lazyTarget.";
+
+	private static final Class<?>[] EAGER_TYPES = new Class<?>[] {BeanFactoryPostProcessor.class,
+			BeanPostProcessor.class, ApplicationListener.class, Lifecycle.class, FactoryBean.class,
+			AopInfrastructureBean.class};
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private String[] eagerBeanNames = new String[0];
+
+	private boolean proxyLazyBeans = false;
+
+	private boolean warmUp = true;
+
+	private int warmUpConcurrency = 1;
+
+	private int order = Ordered.LOWEST_PRECEDENCE;
+
+	private ConfigurableListableBeanFactory beanFactory;
+
+	private final List<String> lazyBeanNames = new ArrayList<String>();
+
+	private final Set<String> proxiedBeanNames = new HashSet<String>();
+
+	/** Deferred beans without proxy, whose on-demand initialization gets tracked */
+	private final Set<String> trackedBeanNames = new HashSet<String>();
+
+	private final ThreadLocal<Boolean> warmUpInProgress = new NamedThreadLocal<Boolean>("Lazy-init warm-up");
+
+	private final Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+
+	private volatile boolean closed;
+
+	private volatile Thread warmUpThread;
+
+	private volatile long startTime;
+
+	private volatile long refreshTime;
+
+	private volatile long warmUpEndTime;
+
+	private final AtomicLong firstAccessTime = new AtomicLong();
+
+	private final AtomicInteger warmedUpCount = new AtomicInteger();
+
+	private final AtomicInteger onDemandCount = new AtomicInteger();
+
+	private final AtomicLong maxOnDemandTime = new AtomicLong();
+
+	private final AtomicInteger warmUpFailureCount = new AtomicInteger();
+
+
+	/**
+	 * Specify the names of beans that need to be initialized on context refresh.
+	 * <p>Supports "xxx*", "*xxx" and "*xxx*" patterns, as well as direct equality.
+	 * @see org.springframework.util.PatternMatchUtils#simpleMatch
+	 */
+	public void setEagerBeanNames(String[] eagerBeanNames) {
+		this.eagerBeanNames = eagerBeanNames;
+	}
+
+	/**
+	 * Set whether to front deferred beans with lazy-init proxies where possible.
+	 * <p>Default is "false", simply marking deferred beans as lazy-init: they will
+	 * then be initialized as soon as an eager bean refers to them. Switch this to
+	 * "true" to register a {@link LazyInitProxyFactoryBean} under the original
+	 * bean name instead, with the actual bean renamed to "lazyTarget.&lt;beanName&gt;".
+	 * Beans created through factory methods and beans referenced by "depends-on"
+	 * are never proxied.
+	 * <p><b>Note:</b> Proxying changes the deferred beans in ways that the
+	 * application may not expect:
+	 * <ul>
+	 * <li>The target bean gets called back with the "lazyTarget." name by
+	 * {@link org.springframework.beans.factory.BeanNameAware}, and is visible under
+	 * that name to post-processors, e.g. to auto-proxy creators that select beans by
+	 * name such as {@link org.springframework.aop.framework.autoproxy.BeanNameAutoProxyCreator}.
+	 * <li>The proxies are class-based CGLIB proxies, requiring CGLIB on the classpath
+	 * and a concrete bean class that is neither final nor has final public methods and
+	 * that declares a non-private default constructor, which will be invoked for the
+	 * proxy instance itself. Beans that do not qualify are marked as lazy-init.
+	 * </ul>
+	 */
+	public void setProxyLazyBeans(boolean proxyLazyBeans) {
+		this.proxyLazyBeans = proxyLazyBeans;
+	}
+
+	/**
+	 * Set whether to initialize all deferred beans in the background after the
+	 * context refresh. Default is "true".
+	 */
+	public void setWarmUp(boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	/**
+	 * Set the number of threads to initialize independent beans with during warm-up.
+	 * <p>Default is 1. Note that the bean factory serializes the creation of singleton
+	 * beans, so a higher value only helps if beans block during initialization
+	 * outside of the creation of other beans.
+	 */
+	public void setWarmUpConcurrency(int warmUpConcurrency) {
+		if (warmUpConcurrency < 1) {
+			throw new IllegalArgumentException("'warmUpConcurrency' must be at least 1");
+		}
+		this.warmUpConcurrency = warmUpConcurrency;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	public int getOrder() {
+		return this.order;
+	}
+
+
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+		if (!(beanFactory instanceof BeanDefinitionRegistry)) {
+			throw new IllegalStateException(
+					"LazyInitializationConfigurer requires a BeanDefinitionRegistry: " + beanFactory);
+		}
+		BeanDefinitionRegistry registry = (BeanDefinitionRegistry) beanFactory;
+		this.startTime = System.currentTimeMillis();
+		this.beanFactory = beanFactory;
+
+		Set<String> eagerNames = new HashSet<String>();
+		for (Class<?> eagerType : EAGER_TYPES) {
+			for (String beanName : beanFactory.getBeanNamesForType(eagerType, true, false)) {
+				eagerNames.add(BeanFactoryUtils.transformedBeanName(beanName));
+			}
+		}
+		Map<String, String> aliasMap = new HashMap<String, String>();
+		Set<String> dependsOnNames = new HashSet<String>();
+		String[] beanNames = beanFactory.getBeanDefinitionNames();
+		for (String beanName : beanNames) {
+			for (String alias : beanFactory.getAliases(beanName)) {
+				aliasMap.put(alias, beanName);
+			}
+		}
+		for (String beanName : beanNames) {
+			String[] dependsOn = beanFactory.getMergedBeanDefinition(beanName).getDependsOn();
+			if (dependsOn != null) {
+				for (String dependency : dependsOn) {
+					dependsOnNames.add(canonicalName(dependency, aliasMap));
+				}
+			}
+		}
+
+		for (String beanName : beanNames) {
+			BeanDefinition mbd = beanFactory.getMergedBeanDefinition(beanName);
+			if (mbd.isAbstract() || !mbd.isSingleton() || mbd.isLazyInit() ||
+					mbd.getRole() != BeanDefinition.ROLE_APPLICATION ||
+					eagerNames.contains(beanName) || isEagerBean(beanName, mbd)) {
+				continue;
+			}
+			BeanDefinition bd = beanFactory.getBeanDefinition(beanName);
+			Set<String> references = new LinkedHashSet<String>();
+			collectReferences(mbd, references);
+			Set<String> canonicalReferences = new LinkedHashSet<String>();
+			for (String reference : references) {
+				canonicalReferences.add(canonicalName(reference, aliasMap));
+			}
+			this.dependencies.put(beanName, canonicalReferences);
+			if (this.proxyLazyBeans && !dependsOnNames.contains(beanName) && isProxyable(mbd)) {
+				registerLazyProxy(registry, beanName, bd);
+				this.proxiedBeanNames.add(beanName);
+			}
+			else {
+				bd.setLazyInit(true);
+				this.trackedBeanNames.add(beanName);
+			}
+			this.lazyBeanNames.add(beanName);
+		}
+		if (!this.trackedBeanNames.isEmpty()) {
+			beanFactory.addBeanPostProcessor(new InitializationTracker());
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Deferring initialization of " + this.lazyBeanNames.size() + " singleton beans (" +
+					this.proxiedBeanNames.size() + " of them behind lazy-init proxies)");
+		}
+	}
+
+	/**
+	 * Determine whether the given bean needs to be initialized on context refresh,
+	 * in addition to infrastructure beans and post-processors.
+	 * <p>The default implementation checks the {@link #EAGER_INIT_ATTRIBUTE} and the
+	 * {@link #setEagerBeanNames "eagerBeanNames"}, including the bean's aliases.
+	 * @param beanName the name of the bean
+	 * @param beanDefinition the merged bean definition
+	 * @return whether the bean is to be initialized eagerly
+	 */
+	protected boolean isEagerBean(String beanName, BeanDefinition beanDefinition) {
+		Object eagerInit = beanDefinition.getAttribute(EAGER_INIT_ATTRIBUTE);
+		if (Boolean.TRUE.equals(eagerInit) || "true".equals(eagerInit)) {
+			return true;
+		}
+		if (PatternMatchUtils.simpleMatch(this.eagerBeanNames, beanName)) {
+			return true;
+		}
+		for (String alias : this.beanFactory.getAliases(beanName)) {
+			if (PatternMatchUtils.simpleMatch(this.eagerBeanNames, alias)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether the given bean can be fronted by a class-based proxy:
+	 * a concrete, non-final bean class (without factory method) with a non-private
+	 * default constructor and without final public methods.
+	 */
+	private boolean isProxyable(BeanDefinition mbd) {
+		if (mbd.getFactoryMethodName() != null || mbd.getBeanClassName() == null) {
+			return false;
+		}
+		Class<?> beanClass;
+		try {
+			beanClass = ClassUtils.forName(mbd.getBeanClassName(), this.beanFactory.getBeanClassLoader());
+		}
+		catch (Throwable ex) {
+			return false;
+		}
+		int modifiers = beanClass.getModifiers();
+		if (beanClass.isInterface() || Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers)) {
+			return false;
+		}
+		try {
+			Constructor<?> defaultConstructor = beanClass.getDeclaredConstructor();
+			if (Modifier.isPrivate(defaultConstructor.getModifiers())) {
+				return false;
+			}
+		}
+		catch (NoSuchMethodException ex) {
+			return false;
+		}
+		for (Method method : beanClass.getMethods()) {
+			if (Modifier.isFinal(method.getModifiers()) && !Modifier.isStatic(method.getModifiers()) &&
+					method.getDeclaringClass() != Object.class) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Register a lazy-init proxy under the original bean name, "hiding" the
+	 * target bean under an internal name - analogous to a scoped proxy.
+	 */
+	private void registerLazyProxy(BeanDefinitionRegistry registry, String beanName, BeanDefinition targetDefinition) {
+		String targetBeanName = TARGET_NAME_PREFIX + beanName;
+		TrackingLazyInitTargetSource targetSource = new TrackingLazyInitTargetSource(this);
+		targetSource.setTargetBeanName(targetBeanName);
+
+		RootBeanDefinition proxyDefinition = new RootBeanDefinition(LazyInitProxyFactoryBean.class);
+		proxyDefinition.setOriginatingBeanDefinition(targetDefinition);
+		proxyDefinition.setSource(targetDefinition.getSource());
+		proxyDefinition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+		proxyDefinition.setLazyInit(true);
+		proxyDefinition.getPropertyValues().add("targetSource", targetSource);
+
+		// Copy autowire settings from original bean definition.
+		proxyDefinition.setAutowireCandidate(targetDefinition.isAutowireCandidate());
+		proxyDefinition.setPrimary(targetDefinition.isPrimary());
+		if (targetDefinition instanceof AbstractBeanDefinition) {
+			proxyDefinition.copyQualifiersFrom((AbstractBeanDefinition) targetDefinition);
+		}
+
+		// The target bean should be ignored in favor of the lazy-init proxy,
+		// and must remain castable to its class even when auto-proxied.
+		targetDefinition.setAutowireCandidate(false);
+		targetDefinition.setPrimary(false);
+		targetDefinition.setLazyInit(true);
+		targetDefinition.setAttribute(AutoProxyUtils.PRESERVE_TARGET_CLASS_ATTRIBUTE, Boolean.TRUE);
+
+		registry.removeBeanDefinition(beanName);
+		registry.registerBeanDefinition(targetBeanName, targetDefinition);
+		registry.registerBeanDefinition(beanName, proxyDefinition);
+	}
+
+	private void collectReferences(Object value, Set<String> references) {
+		if (value instanceof RuntimeBeanReference) {
+			references.add(((RuntimeBeanReference) value).getBeanName());
+		}
+		else if (value instanceof BeanDefinitionHolder) {
+			collectReferences(((BeanDefinitionHolder) value).getBeanDefinition(), references);
+		}
+		else if (value instanceof BeanDefinition) {
+			BeanDefinition bd = (BeanDefinition) value;
+			if (bd.getDependsOn() != null) {
+				for (String dependency : bd.getDependsOn()) {
+					references.add(dependency);
+				}
+			}
+			if (bd.getFactoryBeanName() != null) {
+				references.add(bd.getFactoryBeanName());
+			}
+			for (PropertyValue pv : bd.getPropertyValues().getPropertyValues()) {
+				collectReferences(pv.getValue(), references);
+			}
+			ConstructorArgumentValues cav = bd.getConstructorArgumentValues();
+			for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getIndexedArgumentValues().values()) {
+				collectReferences(valueHolder.getValue(), references);
+			}
+			for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getGenericArgumentValues()) {
+				collectReferences(valueHolder.getValue(), references);
+			}
+		}
+		else if (value instanceof Collection) {
+			for (Object element : (Collection<?>) value) {
+				collectReferences(element, references);
+			}
+		}
+		else if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				collectReferences(entry.getKey(), references);
+				collectReferences(entry.getValue(), references);
+			}
+		}
+	}
+
+	private static String canonicalName(String name, Map<String, String> aliasMap) {
+		String canonicalName = aliasMap.get(name);
+		return (canonicalName != null ? canonicalName : name);
+	}
+
+
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (!(event instanceof ApplicationContextEvent) || this.beanFactory == null ||
+				((ApplicationContextEvent) event).getApplicationContext().getAutowireCapableBeanFactory() != this.beanFactory) {
+			return;
+		}
+		if (event instanceof ContextRefreshedEvent && this.refreshTime == 0) {
+			this.refreshTime = System.currentTimeMillis();
+			if (logger.isInfoEnabled()) {
+				logger.info("Application context ready after " + getTimeToReady() + " ms with " +
+						this.lazyBeanNames.size() + " deferred singleton beans");
+			}
+			if (this.warmUp && !this.lazyBeanNames.isEmpty()) {
+				startWarmUp();
+			}
+		}
+		else if (event instanceof ContextClosedEvent) {
+			stopWarmUp();
+		}
+	}
+
+	/**
+	 * Stop the warm-up, waiting for the initialization of the bean currently
+	 * in progress, if any. Called on context close, before any singletons get
+	 * destroyed, so that the warm-up does not create beans in a closed context.
+	 */
+	private void stopWarmUp() {
+		this.closed = true;
+		Thread thread = this.warmUpThread;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Stops the warm-up. Does not wait for it, since this is called while the
+	 * bean factory destroys its singletons: The warm-up thread has usually been
+	 * stopped on context close already.
+	 */
+	public void destroy() {
+		this.closed = true;
+	}
+
+	private void startWarmUp() {
+		final List<List<String>> stages = determineWarmUpStages();
+		final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lazy-init-warmup-");
+		threadFactory.setDaemon(true);
+		Thread thread = threadFactory.newThread(new Runnable() {
+			public void run() {
+				warmUp(stages, threadFactory);
+			}
+		});
+		this.warmUpThread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Group the deferred beans into stages, with each bean in a later stage
+	 * than the deferred beans that it refers to. Beans within a stage keep
+	 * their registration order; circular references are broken arbitrarily.
+	 */
+	private List<List<String>> determineWarmUpStages() {
+		Map<String, Integer> stageIndexes = new HashMap<String, Integer>();
+		List<List<String>> stages = new ArrayList<List<String>>();
+		for (String beanName : this.lazyBeanNames) {
+			int stageIndex = determineStageIndex(beanName, stageIndexes, new HashSet<String>());
+			while (stages.size() <= stageIndex) {
+				stages.add(new ArrayList<String>());
+			}
+			stages.get(stageIndex).add(beanName);
+		}
+		return stages;
+	}
+
+	private int determineStageIndex(String beanName, Map<String, Integer> stageIndexes, Set<String> inProgress) {
+		Integer stageIndex = stageIndexes.get(beanName);
+		if (stageIndex != null) {
+			return stageIndex;
+		}
+		if (!inProgress.add(beanName)) {
+			return 0;
+		}
+		int result = 0;
+		for (String dependency : this.dependencies.get(beanName)) {
+			if (this.dependencies.containsKey(dependency) && !dependency.equals(beanName)) {
+				result = Math.max(result, determineStageIndex(dependency, stageIndexes, inProgress) + 1);
+			}
+		}
+		inProgress.remove(beanName);
+		stageIndexes.put(beanName, result);
+		return result;
+	}
+
+	private void warmUp(List<List<String>> stages, CustomizableThreadFactory threadFactory) {
+		ExecutorService executor = (this.warmUpConcurrency > 1 ?
+				Executors.newFixedThreadPool(this.warmUpConcurrency - 1, threadFactory) : null);
+		try {
+			for (List<String> stage : stages) {
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				for (int i = 0; i < stage.size(); i++) {
+					if (this.closed) {
+						return;
+					}
+					final String beanName = stage.get(i);
+					if (executor != null && i % this.warmUpConcurrency != 0) {
+						futures.add(executor.submit(new Runnable() {
+							public void run() {
+								warmUpBean(beanName);
+							}
+						}));
+					}
+					else {
+						warmUpBean(beanName);
+					}
+				}
+				for (Future<?> future : futures) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException ex) {
+						// cannot happen: warmUpBean handles all exceptions
+					}
+				}
+			}
+			this.warmUpEndTime = System.currentTimeMillis();
+			if (logger.isInfoEnabled()) {
+				logger.info("Warm-up of " + this.lazyBeanNames.size() + " deferred singleton beans completed in " +
+						getWarmUpTime() + " ms (" + this.warmedUpCount.get() + " initialized in the background, " +
+						this.onDemandCount.get() + " on demand, " + this.warmUpFailureCount.get() + " failed)");
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			if (executor != null) {
+				// Wait for beans still being initialized, in case of an early return on close.
+				executor.shutdown();
+				try {
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			this.warmUpThread = null;
+		}
+	}
+
+	private void warmUpBean(String beanName) {
+		if (this.closed) {
+			return;
+		}
+		String targetBeanName = (this.proxiedBeanNames.contains(beanName) ? TARGET_NAME_PREFIX + beanName : beanName);
+		this.warmUpInProgress.set(Boolean.TRUE);
+		try {
+			if (!this.beanFactory.containsSingleton(targetBeanName)) {
+				this.beanFactory.getBean(targetBeanName);
+				this.warmedUpCount.incrementAndGet();
+			}
+		}
+		catch (RuntimeException ex) {
+			if (!this.closed) {
+				this.warmUpFailureCount.incrementAndGet();
+				logger.warn("Failed to initialize deferred bean '" + beanName + "' during warm-up", ex);
+			}
+		}
+		finally {
+			this.warmUpInProgress.remove();
+		}
+	}
+
+	/**
+	 * Determine whether the given bean is a deferred bean without proxy
+	 * that is being initialized on demand: after the context refresh,
+	 * and not by the warm-up.
+	 */
+	private boolean isInitializedOnDemand(String beanName) {
+		return (this.refreshTime != 0 && !this.closed && this.trackedBeanNames.contains(beanName) &&
+				this.warmUpInProgress.get() == null);
+	}
+
+	private void recordFirstAccess(boolean onDemand, long initializationTime) {
+		this.firstAccessTime.compareAndSet(0, System.currentTimeMillis());
+		if (onDemand) {
+			this.onDemandCount.incrementAndGet();
+			long currentMax = this.maxOnDemandTime.get();
+			while (initializationTime > currentMax && !this.maxOnDemandTime.compareAndSet(currentMax, initializationTime)) {
+				currentMax = this.maxOnDemandTime.get();
+			}
+		}
+	}
+
+
+	public int getLazyBeanCount() {
+		return this.lazyBeanNames.size();
+	}
+
+	public int getProxiedBeanCount() {
+		return this.proxiedBeanNames.size();
+	}
+
+	public long getTimeToReady() {
+		return (this.refreshTime != 0 ? this.refreshTime - this.startTime : -1);
+	}
+
+	public long getTimeToFirstRequest() {
+		long firstAccess = this.firstAccessTime.get();
+		return (firstAccess != 0 ? firstAccess - this.startTime : -1);
+	}
+
+	public long getWarmUpTime() {
+		return (this.warmUpEndTime != 0 ? this.warmUpEndTime - this.refreshTime : -1);
+	}
+
+	public boolean isWarmUpComplete() {
+		return (this.warmUpEndTime != 0);
+	}
+
+	public int getWarmedUpBeanCount() {
+		return this.warmedUpCount.get();
+	}
+
+	public int getOnDemandInitializedBeanCount() {
+		return this.onDemandCount.get();
+	}
+
+	public long getMaxOnDemandInitializationTime() {
+		return this.maxOnDemandTime.get();
+	}
+
+	public int getWarmUpFailureCount() {
+		return this.warmUpFailureCount.get();
+	}
+
+
+	/**
+	 * BeanPostProcessor that reports the on-demand initialization of deferred
+	 * beans without lazy-init proxy to the LazyInitializationConfigurer.
+	 * Subsequent accesses to such beans are not visible.
+	 */
+	private class InitializationTracker extends InstantiationAwareBeanPostProcessorAdapter {
+
+		private final Map<String, Long> startTimes = new ConcurrentHashMap<String, Long>();
+
+		@Override
+		public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+			if (isInitializedOnDemand(beanName)) {
+				this.startTimes.put(beanName, System.currentTimeMillis());
+			}
+			return null;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			Long startTime = (beanName != null ? this.startTimes.remove(beanName) : null);
+			if (startTime != null) {
+				recordFirstAccess(true, System.currentTimeMillis() - startTime);
+			}
+			return bean;
+		}
+	}
+
+
+	/**
+	 * LazyInitTargetSource that reports the first access to its target
+	 * to the LazyInitializationConfigurer.
+	 */
+	@SuppressWarnings("serial")
+	private static class TrackingLazyInitTargetSource extends LazyInitTargetSource {
+
+		private final transient LazyInitializationConfigurer configurer;
+
+		private final AtomicBoolean accessed = new AtomicBoolean();
+
+		public TrackingLazyInitTargetSource(LazyInitializationConfigurer configurer) {
+			this.configurer = configurer;
+		}
+
+		@Override
+		public Object getTarget() throws BeansException {
+			if (this.accessed.get() || this.configurer == null) {
+				return super.getTarget();
+			}
+			boolean onDemand = !this.configurer.beanFactory.containsSingleton(getTargetBeanName());
+			long startTime = System.currentTimeMillis();
+			Object target = super.getTarget();
+			if (this.accessed.compareAndSet(false, true)) {
+				this.configurer.recordFirstAccess(onDemand, System.currentTimeMillis() - startTime);
+			}
+			return target;
+		}
+	}
+
+}
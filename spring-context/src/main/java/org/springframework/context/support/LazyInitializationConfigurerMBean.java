@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.support;
+
+/**
+ * Management interface for a {@link LazyInitializationConfigurer}, exposing
+ * startup and warm-up metrics as a standard MBean. All times are given in
+ * milliseconds, measured from the point where the configurer post-processed
+ * the bean factory.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public interface LazyInitializationConfigurerMBean {
+
+	/**
+	 * Return the number of singleton beans whose initialization got deferred.
+	 */
+	int getLazyBeanCount();
+
+	/**
+	 * Return the number of deferred beans that are fronted by a lazy-init proxy.
+	 */
+	int getProxiedBeanCount();
+
+	/**
+	 * Return the time until the application context was refreshed,
+	 * or -1 if it has not been refreshed yet.
+	 */
+	long getTimeToReady();
+
+	/**
+	 * Return the time until the first request to a deferred bean, or -1 if none
+	 * has been observed yet. A request is the first method invocation on a
+	 * lazy-init proxy, or the initialization of a deferred bean without proxy on
+	 * demand. Requests to beans without proxy that the warm-up has initialized
+	 * already are not visible: with warm-up but without proxies, this may remain -1.
+	 * @see LazyInitializationConfigurer#setProxyLazyBeans
+	 */
+	long getTimeToFirstRequest();
+
+	/**
+	 * Return the duration of the background warm-up after the context refresh,
+	 * or -1 if the warm-up has not completed (yet).
+	 */
+	long getWarmUpTime();
+
+	/**
+	 * Return whether the background warm-up has completed.
+	 */
+	boolean isWarmUpComplete();
+
+	/**
+	 * Return the number of deferred beans that got initialized by the warm-up.
+	 */
+	int getWarmedUpBeanCount();
+
+	/**
+	 * Return the number of deferred beans that got initialized on demand after the
+	 * context refresh, i.e. by a method invocation on their lazy-init proxy or by a
+	 * lookup of or reference to a bean without proxy, before the warm-up reached them.
+	 */
+	int getOnDemandInitializedBeanCount();
+
+	/**
+	 * Return the longest time that the on-demand initialization of a deferred
+	 * bean took, i.e. that a request had to wait for it.
+	 */
+	long getMaxOnDemandInitializationTime();
+
+	/**
+	 * Return the number of deferred beans that failed to initialize during warm-up.
+	 */
+	int getWarmUpFailureCount();
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.scheduling.annotation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.interceptor.AsyncExecutionInterceptor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Specialization of {@link AsyncExecutionInterceptor} that additionally
+ * supports the {@link Coalesce} annotation, buffering calls to coalescing
+ * methods and dispatching them to their batch methods in a single task.
+ * Calls to all other methods are dispatched one task per call, as usual.
+ *
+ * <p>Buffers are kept per target object and method, so coalescing is
+ * primarily intended for singleton beans. On {@link #destroy()}, calls still
+ * buffered get handed to their batch methods in the calling thread, and any
+ * coalescing calls arriving afterwards are handed over right away.
+ *
+ * @author agent
+ * @since 3.1
+ * @see Coalesce
+ * @see AsyncAnnotationAdvisor
+ */
+public class AnnotationAsyncExecutionInterceptor extends AsyncExecutionInterceptor implements DisposableBean {
+
+	private static final Object NO_COALESCE = new Object();
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final ConcurrentMap<CoalesceKey, Object> coalesceCache = new ConcurrentHashMap<CoalesceKey, Object>();
+
+	private final ConcurrentMap<BufferKey, CallBuffer> buffers = new ConcurrentHashMap<BufferKey, CallBuffer>();
+
+	private volatile ScheduledExecutorService timer;
+
+	private volatile boolean closed;
+
+
+	/**
+	 * Create a new AnnotationAsyncExecutionInterceptor.
+	 * @param asyncExecutor the Spring AsyncTaskExecutor to delegate to
+	 */
+	public AnnotationAsyncExecutionInterceptor(AsyncTaskExecutor asyncExecutor) {
+		super(asyncExecutor);
+	}
+
+	/**
+	 * Create a new AnnotationAsyncExecutionInterceptor.
+	 * @param asyncExecutor the <code>java.util.concurrent</code> Executor
+	 * to delegate to (typically a {@link java.util.concurrent.ExecutorService}
+	 */
+	public AnnotationAsyncExecutionInterceptor(Executor asyncExecutor) {
+		super(asyncExecutor);
+	}
+
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Object target = invocation.getThis();
+		Coalesce coalesce = (target != null ? getCoalesce(invocation.getMethod(), target.getClass()) : null);
+		if (coalesce == null) {
+			return super.invoke(invocation);
+		}
+		BufferKey key = new BufferKey(target, invocation.getMethod());
+		CallBuffer buffer = this.buffers.get(key);
+		if (buffer == null) {
+			Object proxy = (invocation instanceof ProxyMethodInvocation ?
+					((ProxyMethodInvocation) invocation).getProxy() : null);
+			buffer = new CallBuffer(coalesce, invocation.getMethod(), target, proxy);
+			CallBuffer existing = this.buffers.putIfAbsent(key, buffer);
+			if (existing != null) {
+				buffer = existing;
+			}
+		}
+		buffer.add(invocation.getArguments()[0]);
+		return null;
+	}
+
+	/**
+	 * Determine the {@link Coalesce} annotation for the given method on the given
+	 * target class, if any, validating the method signature on first access.
+	 */
+	private Coalesce getCoalesce(Method method, Class<?> targetClass) {
+		CoalesceKey cacheKey = new CoalesceKey(method, targetClass);
+		Object cached = this.coalesceCache.get(cacheKey);
+		if (cached == null) {
+			Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+			Coalesce coalesce = AnnotationUtils.findAnnotation(specificMethod, Coalesce.class);
+			if (coalesce != null) {
+				if (method.getReturnType() != void.class || method.getParameterTypes().length != 1) {
+					throw new IllegalStateException(
+							"@Coalesce method must return void and declare a single parameter: " + method);
+				}
+				if (coalesce.maxBatchSize() < 1 || coalesce.bufferCapacity() < coalesce.maxBatchSize()) {
+					throw new IllegalStateException("@Coalesce 'bufferCapacity' must be at least 'maxBatchSize' " +
+							"which needs to be positive: " + method);
+				}
+			}
+			cached = (coalesce != null ? coalesce : NO_COALESCE);
+			this.coalesceCache.put(cacheKey, cached);
+		}
+		return (cached != NO_COALESCE ? (Coalesce) cached : null);
+	}
+
+	/**
+	 * Hand all buffered calls to their batch methods and shut down the timer.
+	 */
+	public void destroy() {
+		this.closed = true;
+		for (CallBuffer buffer : this.buffers.values()) {
+			buffer.flush();
+		}
+		synchronized (this.buffers) {
+			if (this.timer != null) {
+				this.timer.shutdownNow();
+				this.timer = null;
+			}
+		}
+	}
+
+	/**
+	 * Return the shared timer for delayed drains, creating it on first access.
+	 * @return the timer, or <code>null</code> if this interceptor has been destroyed
+	 */
+	private ScheduledExecutorService getTimer() {
+		ScheduledExecutorService timer = this.timer;
+		if (timer == null) {
+			synchronized (this.buffers) {
+				timer = this.timer;
+				if (timer == null && !this.closed) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("async-coalesce-");
+					threadFactory.setDaemon(true);
+					timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+					this.timer = timer;
+				}
+			}
+		}
+		return timer;
+	}
+
+
+	/**
+	 * Key for the {@link Coalesce} annotation of a method on a specific target class,
+	 * since only some implementations of an interface method may be coalescing.
+	 */
+	private static class CoalesceKey {
+
+		private final Method method;
+
+		private final Class<?> targetClass;
+
+		public CoalesceKey(Method method, Class<?> targetClass) {
+			this.method = method;
+			this.targetClass = targetClass;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CoalesceKey)) {
+				return false;
+			}
+			CoalesceKey otherKey = (CoalesceKey) other;
+			return (this.method.equals(otherKey.method) && this.targetClass == otherKey.targetClass);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.method.hashCode() * 29 + this.targetClass.hashCode();
+		}
+	}
+
+
+	/**
+	 * Key for the buffer of a coalescing method on a specific target object.
+	 */
+	private static class BufferKey {
+
+		private final Object target;
+
+		private final Method method;
+
+		public BufferKey(Object target, Method method) {
+			this.target = target;
+			this.method = method;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof BufferKey)) {
+				return false;
+			}
+			BufferKey otherKey = (BufferKey) other;
+			return (this.target == otherKey.target && this.method.equals(otherKey.method));
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this.target) * 29 + this.method.hashCode();
+		}
+	}
+
+
+	/**
+	 * Lock-free buffer of pending call arguments for a coalescing method. At most
+	 * one drain task per buffer is in flight; it is triggered as soon as a full
+	 * batch is available, or by a timer once the maximum delay has elapsed.
+	 */
+	private class CallBuffer implements Runnable {
+
+		private final Coalesce coalesce;
+
+		private final Method method;
+
+		private final Object batchTarget;
+
+		private final Method batchMethod;
+
+		private final Queue<Object> elements = new ConcurrentLinkedQueue<Object>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final Semaphore capacity;
+
+		private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+		private final AtomicBoolean timerScheduled = new AtomicBoolean();
+
+		private final Runnable timerTask = new Runnable() {
+			public void run() {
+				timerScheduled.set(false);
+				scheduleDrain();
+			}
+		};
+
+		public CallBuffer(Coalesce coalesce, Method method, Object target, Object proxy) {
+			this.coalesce = coalesce;
+			this.method = method;
+			Method batchMethod = null;
+			if (proxy != null) {
+				batchMethod = ClassUtils.getMethodIfAvailable(proxy.getClass(), coalesce.batchMethod(), List.class);
+			}
+			if (batchMethod != null) {
+				this.batchTarget = proxy;
+			}
+			else {
+				batchMethod = ReflectionUtils.findMethod(target.getClass(), coalesce.batchMethod(), List.class);
+				if (batchMethod == null) {
+					throw new IllegalStateException("No batch method '" + coalesce.batchMethod() +
+							"(List)' found on " + target.getClass() + " for @Coalesce method " + method);
+				}
+				ReflectionUtils.makeAccessible(batchMethod);
+				this.batchTarget = target;
+			}
+			this.batchMethod = batchMethod;
+			this.capacity = new Semaphore(coalesce.bufferCapacity());
+		}
+
+		public void add(Object element) {
+			this.capacity.acquireUninterruptibly();
+			int size = this.size.incrementAndGet();
+			this.elements.offer(element);
+			if (closed) {
+				flush();
+			}
+			else if (size >= this.coalesce.maxBatchSize()) {
+				scheduleDrain();
+			}
+			else if (size == 1) {
+				scheduleTimer();
+			}
+		}
+
+		private void scheduleTimer() {
+			if (this.timerScheduled.compareAndSet(false, true)) {
+				ScheduledExecutorService timer = getTimer();
+				if (timer == null) {
+					// Destroyed in the meantime
+					this.timerScheduled.set(false);
+					flush();
+					return;
+				}
+				try {
+					timer.schedule(this.timerTask, this.coalesce.maxDelay(), TimeUnit.MILLISECONDS);
+				}
+				catch (RejectedExecutionException ex) {
+					// Shut down in the meantime
+					this.timerScheduled.set(false);
+					flush();
+				}
+			}
+		}
+
+		private void scheduleDrain() {
+			if (this.drainScheduled.compareAndSet(false, true)) {
+				try {
+					getAsyncExecutor().execute(this);
+				}
+				catch (RuntimeException ex) {
+					this.drainScheduled.set(false);
+					throw ex;
+				}
+			}
+		}
+
+		public void run() {
+			try {
+				flush();
+			}
+			finally {
+				this.drainScheduled.set(false);
+			}
+			int remaining = this.size.get();
+			if (remaining >= this.coalesce.maxBatchSize()) {
+				scheduleDrain();
+			}
+			else if (remaining > 0) {
+				scheduleTimer();
+			}
+		}
+
+		/**
+		 * Hand buffered calls to the batch method in the calling thread, in batches
+		 * of at most <code>maxBatchSize</code>, until the buffer has been emptied.
+		 * Every call gets handed over once, even if a drain task is in flight.
+		 */
+		public void flush() {
+			int maxBatchSize = this.coalesce.maxBatchSize();
+			List<Object> batch;
+			do {
+				batch = new ArrayList<Object>(Math.min(this.size.get(), maxBatchSize));
+				Object element;
+				while (batch.size() < maxBatchSize && (element = this.elements.poll()) != null) {
+					batch.add(element);
+				}
+				if (!batch.isEmpty()) {
+					this.size.addAndGet(-batch.size());
+					this.capacity.release(batch.size());
+					invokeBatchMethod(batch);
+				}
+			}
+			while (batch.size() == maxBatchSize);
+		}
+
+		private void invokeBatchMethod(List<Object> batch) {
+			try {
+				this.batchMethod.invoke(this.batchTarget, batch);
+			}
+			catch (Throwable ex) {
+				logger.error("Batch method " + this.batchMethod + " failed for " + batch.size() +
+						" coalesced calls of " + this.method, ex);
+			}
+		}
+	}
+
+}
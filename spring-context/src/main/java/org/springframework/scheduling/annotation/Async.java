@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,10 +36,14 @@ import java.lang.annotation.Target;
  * a temporary Future handle that just passes the return value through: e.g.
  * Spring's {@link AsyncResult} or EJB 3.1's <code>javax.ejb.AsyncResult</code>.
  *
+ * <p>High-frequency <code>void</code> methods may be combined with {@link Coalesce}
+ * in order to dispatch their calls in batches rather than one task per call.
+ *
  * @author Juergen Hoeller
  * @since 3.0
  * @see org.springframework.aop.interceptor.AsyncExecutionInterceptor
  * @see AsyncAnnotationAdvisor
+ * @see Coalesce
  */
 @Target({ElementType.TYPE, ElementType.METHOD})
 @Retention(RetentionPolicy.RUNTIME)
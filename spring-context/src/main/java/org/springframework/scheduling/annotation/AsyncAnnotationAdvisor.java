@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,10 +25,10 @@ import java.util.concurrent.Executor;
 import org.aopalliance.aop.Advice;
 
 import org.springframework.aop.Pointcut;
-import org.springframework.aop.interceptor.AsyncExecutionInterceptor;
 import org.springframework.aop.support.AbstractPointcutAdvisor;
 import org.springframework.aop.support.ComposablePointcut;
 import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.util.Assert;
@@ -43,6 +43,9 @@ import org.springframework.util.Assert;
  * Furthermore, a custom async annotation type may get specified through the
  * {@link #setAsyncAnnotationType "asyncAnnotationType"} property.
  *
+ * <p>Methods additionally annotated with {@link Coalesce} get their calls
+ * buffered and handed to a batch method, instead of one task per call.
+ *
  * @author Juergen Hoeller
  * @since 3.0
  * @see PersistenceExceptionTranslationAdvisor
@@ -50,7 +53,7 @@ import org.springframework.util.Assert;
  * @see org.springframework.dao.DataAccessException
  * @see org.springframework.dao.support.PersistenceExceptionTranslator
  */
-public class AsyncAnnotationAdvisor extends AbstractPointcutAdvisor {
+public class AsyncAnnotationAdvisor extends AbstractPointcutAdvisor implements DisposableBean {
 
 	private Advice advice;
 
@@ -115,13 +118,23 @@ public class AsyncAnnotationAdvisor extends AbstractPointcutAdvisor {
 		return this.pointcut;
 	}
 
+	/**
+	 * Destroy the advice if necessary, handing calls still buffered for
+	 * {@link Coalesce @Coalesce} methods over to their batch methods.
+	 */
+	public void destroy() throws Exception {
+		if (this.advice instanceof DisposableBean) {
+			((DisposableBean) this.advice).destroy();
+		}
+	}
+
 
 	protected Advice buildAdvice(Executor executor) {
 		if (executor instanceof AsyncTaskExecutor) {
-			return new AsyncExecutionInterceptor((AsyncTaskExecutor) executor);
+			return new AnnotationAsyncExecutionInterceptor((AsyncTaskExecutor) executor);
 		}
 		else {
-			return new AsyncExecutionInterceptor(executor);
+			return new AnnotationAsyncExecutionInterceptor(executor);
 		}
 	}
 
@@ -25,6 +25,7 @@ import org.springframework.aop.framework.ProxyConfig;
 import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.core.Ordered;
@@ -53,7 +54,7 @@ import org.springframework.util.ClassUtils;
  */
 @SuppressWarnings("serial")
 public class AsyncAnnotationBeanPostProcessor extends ProxyConfig
-		implements BeanPostProcessor, BeanClassLoaderAware, InitializingBean, Ordered {
+		implements BeanPostProcessor, BeanClassLoaderAware, InitializingBean, DisposableBean, Ordered {
 
 	private Class<? extends Annotation> asyncAnnotationType;
 
@@ -103,6 +104,16 @@ public class AsyncAnnotationBeanPostProcessor extends ProxyConfig
 		}
 	}
 
+	/**
+	 * Hand calls still buffered for {@link Coalesce @Coalesce} methods
+	 * over to their batch methods.
+	 */
+	public void destroy() throws Exception {
+		if (this.asyncAnnotationAdvisor != null) {
+			this.asyncAnnotationAdvisor.destroy();
+		}
+	}
+
 	public int getOrder() {
 		return this.order;
 	}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.scheduling.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that switches an {@link Async @Async} method to <i>coalescing</i>
+ * execution: instead of dispatching one task per call, the arguments of
+ * individual calls accumulate in a buffer and get handed to a batch variant
+ * of the method once {@link #maxBatchSize} calls have accumulated or
+ * {@link #maxDelay} has elapsed since the first buffered call.
+ *
+ * <p>The annotated method needs to return <code>void</code> and declare a
+ * single parameter. The batch method needs to be declared on the same bean,
+ * taking a <code>java.util.List</code> of that parameter's type:
+ *
+ * <pre class="code">
+ * &#064;Async
+ * &#064;Coalesce(batchMethod = "recordAll")
+ * public void record(Event event) {
+ *   recordAll(Collections.singletonList(event));
+ * }
+ *
+ * public void recordAll(List&lt;Event&gt; events) {
+ *   ...
+ * }</pre>
+ *
+ * The batch method gets invoked through the proxy if exposed there (applying
+ * e.g. transactional advice), otherwise directly on the target bean. Once
+ * {@link #bufferCapacity} calls are pending, further callers block until
+ * the buffer has been drained.
+ *
+ * @author agent
+ * @since 3.1
+ * @see Async
+ * @see AnnotationAsyncExecutionInterceptor
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesce {
+
+	/**
+	 * The name of the batch method to hand accumulated arguments to.
+	 */
+	String batchMethod();
+
+	/**
+	 * The maximum number of calls to hand to the batch method at once,
+	 * also triggering a batch as soon as reached. Default is 100.
+	 */
+	int maxBatchSize() default 100;
+
+	/**
+	 * The maximum time (in milliseconds) that a call may stay buffered
+	 * before a batch gets triggered. Default is 100.
+	 */
+	long maxDelay() default 100;
+
+	/**
+	 * The maximum number of buffered calls, beyond which callers block.
+	 * Default is 10000.
+	 */
+	int bufferCapacity() default 10000;
+
+}
@@ -0,0 +1,658 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.scheduling.concurrent;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.SchedulingTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Implementation of Spring's {@link TaskScheduler} interface, keeping scheduled
+ * tasks in a hierarchical hashed timing wheel instead of the binary heap of a
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor}.
+ *
+ * <p>Scheduling and cancelling a task are constant-time operations: the calling
+ * thread links the task into (or out of) a single slot of the wheel, guarded by
+ * a lock per slot, and a single ticker thread cascades tasks from coarser levels
+ * into finer ones and hands due tasks over to a fixed-size pool of worker threads.
+ * Cancelled tasks are unlinked right away rather than kept until they are due.
+ * This makes it suitable for applications with a very large number of live
+ * triggers, e.g. per-session timeouts or per-entity retries, where a
+ * {@link ThreadPoolTaskScheduler} would be bottlenecked on its delay queue.
+ *
+ * <p>The price is timing precision: tasks fire on the first tick at or after
+ * their scheduled execution time, so the {@link #setTickDuration tick duration}
+ * determines the scheduling granularity. Recurring tasks are re-enqueued after
+ * each execution, with the same semantics as their {@link ThreadPoolTaskScheduler}
+ * counterparts otherwise.
+ *
+ * <p>Can be defined through <code>&lt;task:scheduler&gt;</code> with a
+ * "tick-duration" attribute, and used for <code>@Scheduled</code> methods
+ * like any other TaskScheduler.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #setPoolSize
+ * @see #setTickDuration
+ * @see #setWheelSize
+ * @see ThreadPoolTaskScheduler
+ */
+public class TimingWheelTaskScheduler extends ExecutorConfigurationSupport
+		implements TaskScheduler, SchedulingTaskExecutor {
+
+	private static final long serialVersionUID = -1250430587217353544L;
+
+	private static final long MAX_DELAY = Long.MAX_VALUE >> 2;
+
+
+	private volatile int poolSize = 1;
+
+	private volatile long tickDuration = 10;
+
+	private volatile int wheelSize = 512;
+
+	private volatile ErrorHandler errorHandler;
+
+	private volatile ExecutorService executor;
+
+	private volatile Wheel wheel;
+
+	private volatile Thread tickerThread;
+
+	private volatile boolean running;
+
+	/** Most recently deferred task, linked to earlier ones through {@link WheelTask#nextPending} */
+	private final AtomicReference<WheelTask> pendingTasks = new AtomicReference<WheelTask>();
+
+
+	/**
+	 * Set the number of worker threads that execute due tasks.
+	 * Default is 1.
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be 1 or higher");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Set the duration of a single tick of the wheel (in milliseconds),
+	 * i.e. the scheduling granularity. Default is 10.
+	 */
+	public void setTickDuration(long tickDuration) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be 1 or higher");
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * Set the number of buckets per level of the wheel, rounded up to a power
+	 * of two. Default is 512, letting the first level cover 512 ticks.
+	 */
+	public void setWheelSize(int wheelSize) {
+		Assert.isTrue(wheelSize > 1, "'wheelSize' must be 2 or higher");
+		this.wheelSize = wheelSize;
+	}
+
+	/**
+	 * Provide an {@link ErrorHandler} strategy.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	protected ExecutorService initializeExecutor(
+			ThreadFactory threadFactory, RejectedExecutionHandler rejectedExecutionHandler) {
+
+		this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), threadFactory, rejectedExecutionHandler);
+		this.wheel = new Wheel(TimeUnit.MILLISECONDS.toNanos(this.tickDuration), this.wheelSize);
+		this.running = true;
+		this.tickerThread = threadFactory.newThread(this.wheel);
+		this.tickerThread.start();
+		return this.executor;
+	}
+
+	/**
+	 * Stop the ticker thread, cancelling all tasks that have not been handed
+	 * over to the worker threads yet, and shut down the worker threads.
+	 */
+	@Override
+	public void shutdown() {
+		this.running = false;
+		Thread tickerThread = this.tickerThread;
+		if (tickerThread != null) {
+			LockSupport.unpark(tickerThread);
+		}
+		super.shutdown();
+	}
+
+	/**
+	 * Return the underlying ExecutorService that runs due tasks.
+	 * @return the underlying ExecutorService (never <code>null</code>)
+	 * @throws IllegalStateException if the TimingWheelTaskScheduler hasn't been initialized yet
+	 */
+	public ExecutorService getWorkerExecutor() throws IllegalStateException {
+		Assert.state(this.executor != null, "TimingWheelTaskScheduler not initialized");
+		return this.executor;
+	}
+
+	/**
+	 * Return the number of tasks that have been scheduled for a slot the ticker
+	 * thread was already past, and are waiting for it to pick them up.
+	 * This is a snapshot, traversing the pending tasks.
+	 */
+	public int getPendingTaskCount() {
+		int count = 0;
+		for (WheelTask task = this.pendingTasks.get(); task != null; task = task.nextPending) {
+			count++;
+		}
+		return count;
+	}
+
+
+	// SchedulingTaskExecutor implementation
+
+	public void execute(Runnable task) {
+		ExecutorService executor = getWorkerExecutor();
+		try {
+			executor.execute(errorHandlingTask(task, false));
+		}
+		catch (RejectedExecutionException ex) {
+			throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+		}
+	}
+
+	public void execute(Runnable task, long startTimeout) {
+		execute(task);
+	}
+
+	public Future<?> submit(Runnable task) {
+		ExecutorService executor = getWorkerExecutor();
+		try {
+			return executor.submit(errorHandlingTask(task, false));
+		}
+		catch (RejectedExecutionException ex) {
+			throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+		}
+	}
+
+	public <T> Future<T> submit(Callable<T> task) {
+		ExecutorService executor = getWorkerExecutor();
+		try {
+			return executor.submit(task);
+		}
+		catch (RejectedExecutionException ex) {
+			throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+		}
+	}
+
+	public boolean prefersShortLivedTasks() {
+		return true;
+	}
+
+
+	// TaskScheduler implementation
+
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		WheelTask wheelTask = new WheelTask(errorHandlingTask(task, true), trigger);
+		if (!wheelTask.scheduleNextExecution()) {
+			return null;
+		}
+		return scheduleTask(wheelTask);
+	}
+
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		return scheduleTask(new WheelTask(errorHandlingTask(task, false), deadline(startTime), 0));
+	}
+
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		Assert.isTrue(period > 0, "'period' must be positive");
+		return scheduleTask(new WheelTask(errorHandlingTask(task, true), deadline(startTime),
+				TimeUnit.MILLISECONDS.toNanos(period)));
+	}
+
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		Assert.isTrue(period > 0, "'period' must be positive");
+		return scheduleTask(new WheelTask(errorHandlingTask(task, true), System.nanoTime(),
+				TimeUnit.MILLISECONDS.toNanos(period)));
+	}
+
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		Assert.isTrue(delay > 0, "'delay' must be positive");
+		return scheduleTask(new WheelTask(errorHandlingTask(task, true), deadline(startTime),
+				-TimeUnit.MILLISECONDS.toNanos(delay)));
+	}
+
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		Assert.isTrue(delay > 0, "'delay' must be positive");
+		return scheduleTask(new WheelTask(errorHandlingTask(task, true), System.nanoTime(),
+				-TimeUnit.MILLISECONDS.toNanos(delay)));
+	}
+
+	private Runnable errorHandlingTask(Runnable task, boolean isRepeatingTask) {
+		return TaskUtils.decorateTaskWithErrorHandler(task, this.errorHandler, isRepeatingTask);
+	}
+
+	private static long deadline(Date executionTime) {
+		long delay = Math.min(executionTime.getTime() - System.currentTimeMillis(), MAX_DELAY / 1000000);
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+	}
+
+	private ScheduledFuture<?> scheduleTask(WheelTask task) {
+		Assert.state(this.executor != null, "TimingWheelTaskScheduler not initialized");
+		if (!this.running) {
+			throw new TaskRejectedException("TimingWheelTaskScheduler has been shut down - did not accept task: " + task);
+		}
+		enqueue(task);
+		return task;
+	}
+
+	/**
+	 * Insert the given task into the wheel, handing it over to the ticker thread
+	 * if its slot has just been processed. Cancels the task if the scheduler has
+	 * been shut down.
+	 */
+	private void enqueue(WheelTask task) {
+		if (!this.wheel.insert(task)) {
+			WheelTask head;
+			do {
+				head = this.pendingTasks.get();
+				task.nextPending = head;
+			}
+			while (!this.pendingTasks.compareAndSet(head, task));
+		}
+		if (!this.running) {
+			task.cancel(false);
+		}
+	}
+
+
+	/**
+	 * ScheduledFuture for a task kept in the wheel, re-enqueueing itself
+	 * after each execution in case of a recurring task.
+	 */
+	private class WheelTask extends FutureTask<Object> implements ScheduledFuture<Object> {
+
+		/** 0 for a one-time task, positive for a fixed rate, negative for a fixed delay (in nanoseconds) */
+		private final long period;
+
+		private final Trigger trigger;
+
+		private final SimpleTriggerContext triggerContext;
+
+		private volatile Date scheduledExecutionTime;
+
+		private volatile long deadline;
+
+		/** Pending stack link, written before publication and read by the ticker thread */
+		private WheelTask nextPending;
+
+		/** The bucket currently holding this task, if any */
+		private volatile Bucket bucket;
+
+		// List links, guarded by the bucket's monitor
+
+		private WheelTask prev;
+
+		private WheelTask next;
+
+		public WheelTask(Runnable task, long deadline, long period) {
+			super(task, null);
+			this.deadline = deadline;
+			this.period = period;
+			this.trigger = null;
+			this.triggerContext = null;
+		}
+
+		public WheelTask(Runnable task, Trigger trigger) {
+			super(task, null);
+			this.period = 0;
+			this.trigger = trigger;
+			this.triggerContext = new SimpleTriggerContext();
+		}
+
+		public boolean scheduleNextExecution() {
+			Date nextExecutionTime = this.trigger.nextExecutionTime(this.triggerContext);
+			if (nextExecutionTime == null) {
+				return false;
+			}
+			this.scheduledExecutionTime = nextExecutionTime;
+			this.deadline = deadline(nextExecutionTime);
+			return true;
+		}
+
+		@Override
+		public void run() {
+			if (this.trigger != null) {
+				Date actualExecutionTime = new Date();
+				boolean reschedule = runAndReset();
+				Date completionTime = new Date();
+				this.triggerContext.update(this.scheduledExecutionTime, actualExecutionTime, completionTime);
+				if (reschedule) {
+					if (scheduleNextExecution()) {
+						enqueue(this);
+					}
+					else {
+						set(null);
+					}
+				}
+			}
+			else if (this.period == 0) {
+				super.run();
+			}
+			else if (runAndReset()) {
+				this.deadline = (this.period > 0 ? this.deadline + this.period : System.nanoTime() - this.period);
+				enqueue(this);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				Bucket bucket = this.bucket;
+				if (bucket != null) {
+					bucket.remove(this);
+				}
+			}
+			return cancelled;
+		}
+
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		public int compareTo(Delayed other) {
+			if (this == other) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return (diff == 0 ? 0 : ((diff < 0) ? -1 : 1));
+		}
+	}
+
+
+	/**
+	 * Doubly-linked list of the tasks in a single slot of the wheel,
+	 * guarded by its own monitor.
+	 * <p>The critical sections only relink a few references, and the intrusive
+	 * links are what make cancellation a constant-time unlink. A lock-free queue
+	 * per slot would need to leave cancelled tasks in place and purge them in
+	 * bulk, which turned out slower under a schedule-and-cancel load.
+	 */
+	private static class Bucket {
+
+		private WheelTask head;
+
+		private WheelTask tail;
+
+		/** The last tick at which this bucket was drained */
+		private long drainedTick = -1;
+
+		/**
+		 * Add the given task, unless this bucket has already been drained
+		 * at or after the tick at which it is due to be drained for the task.
+		 */
+		public synchronized boolean add(WheelTask task, long drainTick) {
+			if (drainTick <= this.drainedTick) {
+				return false;
+			}
+			task.bucket = this;
+			task.prev = this.tail;
+			if (this.tail == null) {
+				this.head = task;
+			}
+			else {
+				this.tail.next = task;
+			}
+			this.tail = task;
+			return true;
+		}
+
+		public synchronized void remove(WheelTask task) {
+			if (task.bucket != this) {
+				return;
+			}
+			if (task.prev != null) {
+				task.prev.next = task.next;
+			}
+			else {
+				this.head = task.next;
+			}
+			if (task.next != null) {
+				task.next.prev = task.prev;
+			}
+			else {
+				this.tail = task.prev;
+			}
+			task.bucket = null;
+			task.prev = null;
+			task.next = null;
+		}
+
+		/**
+		 * Detach all tasks from this bucket, marking it as drained at the given tick.
+		 * @return the first task of the former chain, linked through
+		 * {@link WheelTask#nextPending}
+		 */
+		public synchronized WheelTask drain(long tick) {
+			this.drainedTick = tick;
+			WheelTask head = this.head;
+			WheelTask task = head;
+			while (task != null) {
+				WheelTask next = task.next;
+				task.bucket = null;
+				task.prev = null;
+				task.next = null;
+				task.nextPending = next;
+				task = next;
+			}
+			this.head = null;
+			this.tail = null;
+			return head;
+		}
+	}
+
+
+	/**
+	 * The ticker: a hierarchy of wheels where each level covers
+	 * <code>wheelSize</code> times the range of the level below it.
+	 * A task sits in the finest level that covers its remaining delay,
+	 * and moves down a level whenever its slot comes up, until it gets
+	 * executed from the first level.
+	 */
+	private class Wheel implements Runnable {
+
+		private final long tickNanos;
+
+		private final int bits;
+
+		private final long mask;
+
+		private final Bucket[][] levels;
+
+		private final long startTime = System.nanoTime();
+
+		private volatile long currentTick;
+
+		public Wheel(long tickNanos, int wheelSize) {
+			this.tickNanos = tickNanos;
+			this.bits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+			this.mask = (1L << this.bits) - 1;
+			// Enough levels to cover any tick count expressible as a positive long
+			this.levels = new Bucket[(63 + this.bits - 1) / this.bits][1 << this.bits];
+			for (Bucket[] level : this.levels) {
+				for (int i = 0; i < level.length; i++) {
+					level[i] = new Bucket();
+				}
+			}
+		}
+
+		public void run() {
+			long tick = 0;
+			try {
+				while (running) {
+					long waitNanos = this.startTime + tick * this.tickNanos - System.nanoTime();
+					if (waitNanos > 0) {
+						LockSupport.parkNanos(this, waitNanos);
+						continue;
+					}
+					this.currentTick = tick;
+					if (tick > 0) {
+						cascade(tick);
+					}
+					transferPendingTasks();
+					expire(this.levels[0][(int) (tick & this.mask)].drain(tick));
+					tick++;
+				}
+			}
+			finally {
+				cancelRemainingTasks();
+			}
+		}
+
+		/**
+		 * Link the given task into the slot covering its deadline, as seen from
+		 * the current tick. Called by scheduling threads as well as the ticker.
+		 * @return <code>false</code> if the ticker has already drained that slot,
+		 * i.e. if the current tick has moved on in the meantime
+		 */
+		public boolean insert(WheelTask task) {
+			long currentTick = this.currentTick;
+			long elapsed = task.deadline - this.startTime;
+			long deadlineTick = (elapsed > 0 ? (elapsed + this.tickNanos - 1) / this.tickNanos : 0);
+			if (deadlineTick < currentTick) {
+				deadlineTick = currentTick;
+			}
+			long delta = deadlineTick - currentTick;
+			int level = 0;
+			while (level < this.levels.length - 1 && (delta >>> (this.bits * (level + 1))) != 0) {
+				level++;
+			}
+			int shift = this.bits * level;
+			Bucket bucket = this.levels[level][(int) ((deadlineTick >>> shift) & this.mask)];
+			if (!bucket.add(task, (deadlineTick >>> shift) << shift)) {
+				return false;
+			}
+			if (task.isCancelled()) {
+				// Cancelled while being inserted, before it could see the bucket
+				bucket.remove(task);
+			}
+			return true;
+		}
+
+		/**
+		 * Move the tasks of every coarser slot that starts at the given tick
+		 * down into the finer levels.
+		 */
+		private void cascade(long tick) {
+			for (int level = 1; level < this.levels.length; level++) {
+				int shift = this.bits * level;
+				if ((tick & ((1L << shift) - 1)) != 0) {
+					break;
+				}
+				WheelTask task = this.levels[level][(int) ((tick >>> shift) & this.mask)].drain(tick);
+				while (task != null) {
+					WheelTask next = task.nextPending;
+					task.nextPending = null;
+					if (!task.isCancelled()) {
+						enqueue(task);
+					}
+					task = next;
+				}
+			}
+		}
+
+		private void transferPendingTasks() {
+			// Reverse the detached stack, inserting tasks in submission order
+			WheelTask task = pendingTasks.getAndSet(null);
+			WheelTask reversed = null;
+			while (task != null) {
+				WheelTask next = task.nextPending;
+				task.nextPending = reversed;
+				reversed = task;
+				task = next;
+			}
+			while (reversed != null) {
+				WheelTask next = reversed.nextPending;
+				reversed.nextPending = null;
+				if (!reversed.isCancelled()) {
+					enqueue(reversed);
+				}
+				reversed = next;
+			}
+		}
+
+		private void expire(WheelTask task) {
+			while (task != null) {
+				WheelTask next = task.nextPending;
+				task.nextPending = null;
+				if (!task.isCancelled()) {
+					try {
+						executor.execute(task);
+					}
+					catch (RejectedExecutionException ex) {
+						logger.warn("Worker executor did not accept scheduled task: " + task, ex);
+						task.cancel(false);
+					}
+				}
+				task = next;
+			}
+		}
+
+		private void cancelRemainingTasks() {
+			for (Bucket[] level : this.levels) {
+				for (Bucket bucket : level) {
+					cancelAll(bucket.drain(Long.MAX_VALUE));
+				}
+			}
+			cancelAll(pendingTasks.getAndSet(null));
+		}
+
+		private void cancelAll(WheelTask task) {
+			while (task != null) {
+				WheelTask next = task.nextPending;
+				task.nextPending = null;
+				task.cancel(false);
+				task = next;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.scheduling.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.SchedulingTaskExecutor;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * {@link AsyncListenableTaskExecutor} implementation that runs tasks on a
+ * work-stealing {@link ForkJoinPool}, or on virtual threads where the JVM
+ * supports them.
+ *
+ * <p>In contrast to {@link ThreadPoolTaskExecutor}, there is no single shared
+ * queue that all worker threads contend on: each worker thread keeps its own
+ * deque, with idle workers stealing from busy ones. By default, the pool is set
+ * up in async mode, i.e. with first-in-first-out processing of submitted tasks,
+ * as appropriate for event-style tasks that are never joined. Alternatively, an
+ * existing pool may be passed in, e.g. one built by a {@link ForkJoinPoolFactoryBean}.
+ *
+ * <p>If {@link #setVirtualThreads virtual threads} are requested and available
+ * on the JVM, each task runs on a new virtual thread instead, which makes this
+ * executor suitable for large numbers of blocking tasks. Otherwise, this executor
+ * falls back to its ForkJoinPool.
+ *
+ * <p>Thread-bound context of the submitting thread can be propagated to the
+ * executing thread through {@link #setTaskDecorators task decorators}, e.g. a
+ * {@link org.springframework.context.i18n.LocaleContextPropagatingTaskDecorator}.
+ * This is opt-in: by default, tasks run without any such context.
+ *
+ * <p>All submission methods return {@link ListenableFuture} instances, allowing
+ * callers to register completion callbacks instead of blocking on the result.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #setParallelism
+ * @see #setVirtualThreads
+ * @see #setTaskDecorators
+ * @see ForkJoinPoolFactoryBean
+ */
+public class WorkStealingTaskExecutor implements AsyncListenableTaskExecutor, SchedulingTaskExecutor,
+		BeanNameAware, InitializingBean, DisposableBean {
+
+	private static final Method ofVirtualMethod = ClassUtils.getMethodIfAvailable(Thread.class, "ofVirtual");
+
+	private static final Method newThreadPerTaskExecutorMethod =
+			ClassUtils.getMethodIfAvailable(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private boolean asyncMode = true;
+
+	private boolean virtualThreads = false;
+
+	private TaskDecorator[] taskDecorators = new TaskDecorator[0];
+
+	private String beanName;
+
+	private ExecutorService executor;
+
+	private boolean internalExecutor = false;
+
+
+	/**
+	 * Specify the parallelism level of the internal ForkJoinPool.
+	 * Default is {@link Runtime#availableProcessors()}.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Specify whether the internal ForkJoinPool should process tasks in
+	 * first-in-first-out order. Default is <code>true</code>, in contrast
+	 * to {@link ForkJoinPoolFactoryBean}, since tasks submitted to a
+	 * TaskExecutor are typically never joined.
+	 * @see ForkJoinPoolFactoryBean#setAsyncMode
+	 */
+	public void setAsyncMode(boolean asyncMode) {
+		this.asyncMode = asyncMode;
+	}
+
+	/**
+	 * Specify an existing ForkJoinPool to run tasks on, instead of creating
+	 * an internal one. The given pool will not be shut down on destruction.
+	 * <p>Cannot be combined with {@link #setVirtualThreads virtual threads}.
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.executor = forkJoinPool;
+		this.internalExecutor = false;
+	}
+
+	/**
+	 * Specify whether to run each task on a new virtual thread, provided that
+	 * the JVM supports virtual threads. Default is <code>false</code>.
+	 * <p>If the JVM does not support virtual threads, this executor falls
+	 * back to a ForkJoinPool. Cannot be combined with an existing
+	 * {@link #setForkJoinPool ForkJoinPool}.
+	 * @see #isVirtualThreadSupportAvailable()
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Specify decorators to apply to every task before execution, in the given order.
+	 * Default is none.
+	 * <p>Decorators get called in the submitting thread, typically capturing
+	 * thread-bound context there and exposing it to the task's execution.
+	 * @see org.springframework.context.i18n.LocaleContextPropagatingTaskDecorator
+	 */
+	public void setTaskDecorators(TaskDecorator... taskDecorators) {
+		Assert.noNullElements(taskDecorators, "TaskDecorators must not contain null elements");
+		this.taskDecorators = taskDecorators;
+	}
+
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+	/**
+	 * Return whether the current JVM supports virtual threads.
+	 */
+	public static boolean isVirtualThreadSupportAvailable() {
+		return (ofVirtualMethod != null && newThreadPerTaskExecutorMethod != null);
+	}
+
+
+	public void afterPropertiesSet() {
+		if (this.virtualThreads && this.executor != null && !this.internalExecutor) {
+			throw new IllegalArgumentException(
+					"Either 'virtualThreads' or 'forkJoinPool' may be specified, not both");
+		}
+		if (this.executor == null) {
+			if (this.virtualThreads && isVirtualThreadSupportAvailable()) {
+				this.executor = createVirtualThreadExecutor();
+			}
+			else {
+				if (this.virtualThreads) {
+					logger.info("Virtual threads not supported on this JVM - falling back to ForkJoinPool");
+				}
+				ForkJoinPoolFactoryBean factoryBean = new ForkJoinPoolFactoryBean();
+				factoryBean.setParallelism(this.parallelism);
+				factoryBean.setAsyncMode(this.asyncMode);
+				factoryBean.afterPropertiesSet();
+				this.executor = factoryBean.getObject();
+			}
+			this.internalExecutor = true;
+		}
+	}
+
+	/**
+	 * Create an ExecutorService that starts a new virtual thread for each task,
+	 * named after the bean name if specified. Only called if virtual thread
+	 * support is available.
+	 */
+	protected ExecutorService createVirtualThreadExecutor() {
+		try {
+			Class<?> builderClass = ClassUtils.forName("java.lang.Thread$Builder", getClass().getClassLoader());
+			Object builder = ReflectionUtils.invokeMethod(ofVirtualMethod, null);
+			if (this.beanName != null) {
+				Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+				builder = ReflectionUtils.invokeMethod(nameMethod, builder, this.beanName + "-", 1L);
+			}
+			ThreadFactory threadFactory =
+					(ThreadFactory) ReflectionUtils.invokeMethod(builderClass.getMethod("factory"), builder);
+			return (ExecutorService) ReflectionUtils.invokeMethod(newThreadPerTaskExecutorMethod, null, threadFactory);
+		}
+		catch (Exception ex) {
+			throw new IllegalStateException("Failed to create virtual thread executor", ex);
+		}
+	}
+
+	/**
+	 * Return the underlying ExecutorService for native access:
+	 * either a ForkJoinPool or a virtual thread executor.
+	 * @return the underlying ExecutorService (never <code>null</code>)
+	 * @throws IllegalStateException if the WorkStealingTaskExecutor hasn't been initialized yet
+	 */
+	public ExecutorService getExecutorService() throws IllegalStateException {
+		Assert.state(this.executor != null, "WorkStealingTaskExecutor not initialized");
+		return this.executor;
+	}
+
+
+	public void execute(Runnable task) {
+		doExecute(decorate(task), task);
+	}
+
+	public void execute(Runnable task, long startTimeout) {
+		execute(task);
+	}
+
+	public Future<?> submit(Runnable task) {
+		return submitListenable(task);
+	}
+
+	public <T> Future<T> submit(Callable<T> task) {
+		return submitListenable(task);
+	}
+
+	public ListenableFuture<?> submitListenable(Runnable task) {
+		ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(task, null);
+		doExecute(decorate(future), task);
+		return future;
+	}
+
+	public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+		ListenableFutureTask<T> future = new ListenableFutureTask<T>(task);
+		doExecute(decorate(future), task);
+		return future;
+	}
+
+	public boolean prefersShortLivedTasks() {
+		return true;
+	}
+
+	/**
+	 * Apply the configured task decorators to the given task, in the submitting thread.
+	 */
+	protected Runnable decorate(Runnable task) {
+		for (TaskDecorator taskDecorator : this.taskDecorators) {
+			task = taskDecorator.decorate(task);
+		}
+		return task;
+	}
+
+	private void doExecute(Runnable runnable, Object task) {
+		Executor executor = getExecutorService();
+		try {
+			executor.execute(runnable);
+		}
+		catch (RejectedExecutionException ex) {
+			throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+		}
+	}
+
+
+	/**
+	 * Shut down the internal ForkJoinPool or virtual thread executor, if any.
+	 */
+	public void destroy() {
+		if (this.internalExecutor) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Shutting down ExecutorService" + (this.beanName != null ? " '" + this.beanName + "'" : ""));
+			}
+			this.executor.shutdown();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + ": executor [" + this.executor + "], taskDecorators " +
+				Arrays.asList(this.taskDecorators);
+	}
+
+}
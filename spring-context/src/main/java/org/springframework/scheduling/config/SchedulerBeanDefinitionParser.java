@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,9 @@ public class SchedulerBeanDefinitionParser extends AbstractSingleBeanDefinitionP
 
 	@Override
 	protected String getBeanClassName(Element element) {
+		if (StringUtils.hasText(element.getAttribute("tick-duration"))) {
+			return "org.springframework.scheduling.concurrent.TimingWheelTaskScheduler";
+		}
 		return "org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler";
 	}
 
@@ -41,6 +44,10 @@ public class SchedulerBeanDefinitionParser extends AbstractSingleBeanDefinitionP
 		if (StringUtils.hasText(poolSize)) {
 			builder.addPropertyValue("poolSize", poolSize);
 		}
+		String tickDuration = element.getAttribute("tick-duration");
+		if (StringUtils.hasText(tickDuration)) {
+			builder.addPropertyValue("tickDuration", tickDuration);
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,9 @@
 
 package org.springframework.scheduling.support;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.List;
 import java.util.TimeZone;
 
 import org.springframework.util.StringUtils;
@@ -53,6 +48,8 @@ import org.springframework.util.StringUtils;
  */
 public class CronSequenceGenerator {
 
+	private static final long ALL_DAYS_OF_WEEK = 0x7F;
+
 	private final BitSet seconds = new BitSet(60);
 
 	private final BitSet minutes = new BitSet(60);
@@ -65,6 +62,18 @@ public class CronSequenceGenerator {
 
 	private final BitSet months = new BitSet(12);
 
+	private final long secondsMask;
+
+	private final long minutesMask;
+
+	private final long hoursMask;
+
+	private final long daysOfWeekMask;
+
+	private final long daysOfMonthMask;
+
+	private final long monthsMask;
+
 	private final String expression;
 
 	private final TimeZone timeZone;
@@ -79,6 +88,12 @@ public class CronSequenceGenerator {
 		this.expression = expression;
 		this.timeZone = timeZone;
 		parse(expression);
+		this.secondsMask = toMask(this.seconds);
+		this.minutesMask = toMask(this.minutes);
+		this.hoursMask = toMask(this.hours);
+		this.daysOfWeekMask = toMask(this.daysOfWeek);
+		this.daysOfMonthMask = toMask(this.daysOfMonth);
+		this.monthsMask = toMask(this.months);
 	}
 
 	/**
@@ -89,137 +104,249 @@ public class CronSequenceGenerator {
 	 * @return the next value matching the pattern
 	 */
 	public Date next(Date date) {
-		/*
-		The plan:
-
-		1 Round up to the next whole second
+		return new Date(next(date.getTime()));
+	}
 
-		2 If seconds match move on, otherwise find the next match:
-		2.1 If next match is in the next minute then roll forwards
+	/**
+	 * Get the next timestamp in the sequence matching the Cron pattern and
+	 * after the value provided, both expressed in milliseconds since the epoch.
+	 * <p>Performs the computation arithmetically on primitive fields, without
+	 * allocating any {@link Calendar} objects.
+	 * @param timestamp a seed value
+	 * @return the next value matching the pattern
+	 * @see #next(Date)
+	 */
+	public long next(long timestamp) {
+		// Round up to the next whole second
+		long seed = floorDiv(timestamp, 1000) * 1000 + 1000;
+		long localSeconds = floorDiv(seed + this.timeZone.getOffset(seed), 1000);
+		while (true) {
+			localSeconds = nextLocalSeconds(localSeconds);
+			long result = toUtc(localSeconds * 1000, seed);
+			if (result >= seed) {
+				return result;
+			}
+			// Local time resolved to an instant before the seed (daylight saving
+			// time overlap): keep searching from the following second.
+			localSeconds++;
+		}
+	}
 
-		3 If minute matches move on, otherwise find the next match
-		3.1 If next match is in the next hour then roll forwards
-		3.2 Reset the seconds and go to 2
+	/**
+	 * Get the next timestamps in the sequence matching the Cron pattern and
+	 * after the value provided, e.g. for previewing a schedule or for handing
+	 * a batch of execution times to a scheduler.
+	 * @param timestamp a seed value (in milliseconds since the epoch)
+	 * @param count the number of timestamps to compute
+	 * @return the next <code>count</code> values matching the pattern,
+	 * in ascending order
+	 * @see #next(long)
+	 */
+	public long[] next(long timestamp, int count) {
+		long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			timestamp = next(timestamp);
+			result[i] = timestamp;
+		}
+		return result;
+	}
 
-		4 If hour matches move on, otherwise find the next match
-		4.1 If next match is in the next day then roll forwards,
-		4.2 Reset the minutes and seconds and go to 2
-		
-		...
-		*/
+	/**
+	 * Find the first local date-time matching the pattern at or after the given
+	 * one, expressed in seconds since the local epoch. Each field either matches,
+	 * jumps to the next set bit of its mask (resetting all lower-order fields),
+	 * or overflows into the next higher-order field.
+	 */
+	private long nextLocalSeconds(long localSeconds) {
+		long days = floorDiv(localSeconds, 86400);
+		int secondOfDay = (int) (localSeconds - days * 86400);
+		int second = secondOfDay % 60;
+		int minute = secondOfDay / 60 % 60;
+		int hour = secondOfDay / 3600;
+
+		// Civil date from the day count (proleptic Gregorian calendar)
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (era * 400) + yearOfEra + (month <= 2 ? 1 : 0);
+
+		// A pattern that does not match within a full 400-year cycle never matches
+		int maxYear = year + 400;
+		while (true) {
+			if (second > 59) {
+				second = 0;
+				minute++;
+			}
+			if (minute > 59) {
+				minute = 0;
+				hour++;
+			}
+			if (hour > 23) {
+				hour = 0;
+				day++;
+			}
+			if (day > lengthOfMonth(year, month)) {
+				day = 1;
+				month++;
+			}
+			if (month > 12) {
+				month = 1;
+				year++;
+			}
+			if (year > maxYear) {
+				throw new IllegalStateException("Invalid cron expression led to runaway search for next trigger");
+			}
 
-		Calendar calendar = new GregorianCalendar();
-		calendar.setTimeZone(this.timeZone);
-		calendar.setTime(date);
+			int nextMonth = nextSetBit(this.monthsMask, month - 1) + 1;
+			if (nextMonth == 0) {
+				month = 13;
+				day = 1;
+				hour = minute = second = 0;
+				continue;
+			}
+			if (nextMonth != month) {
+				month = nextMonth;
+				day = 1;
+				hour = minute = second = 0;
+			}
 
-		// Truncate to the next whole second
-		calendar.add(Calendar.SECOND, 1);
-		calendar.set(Calendar.MILLISECOND, 0);
+			int nextDay = findNextDay(year, month, day);
+			if (nextDay == -1) {
+				day = 32;
+				hour = minute = second = 0;
+				continue;
+			}
+			if (nextDay != day) {
+				day = nextDay;
+				hour = minute = second = 0;
+			}
 
-		doNext(calendar, calendar.get(Calendar.YEAR));
+			int nextHour = nextSetBit(this.hoursMask, hour);
+			if (nextHour == -1) {
+				hour = 24;
+				minute = second = 0;
+				continue;
+			}
+			if (nextHour != hour) {
+				hour = nextHour;
+				minute = second = 0;
+			}
 
-		return calendar.getTime();
-	}
+			int nextMinute = nextSetBit(this.minutesMask, minute);
+			if (nextMinute == -1) {
+				minute = 60;
+				second = 0;
+				continue;
+			}
+			if (nextMinute != minute) {
+				minute = nextMinute;
+				second = 0;
+			}
 
-	private void doNext(Calendar calendar, int dot) {
-		List<Integer> resets = new ArrayList<Integer>();
+			int nextSecond = nextSetBit(this.secondsMask, second);
+			if (nextSecond == -1) {
+				second = 60;
+				continue;
+			}
+			second = nextSecond;
 
-		int second = calendar.get(Calendar.SECOND);
-		List<Integer> emptyList = Collections.emptyList();
-		int updateSecond = findNext(this.seconds, second, calendar, Calendar.SECOND, Calendar.MINUTE, emptyList);
-		if (second == updateSecond) {
-			resets.add(Calendar.SECOND);
+			return daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second;
 		}
+	}
 
-		int minute = calendar.get(Calendar.MINUTE);
-		int updateMinute = findNext(this.minutes, minute, calendar, Calendar.MINUTE, Calendar.HOUR_OF_DAY, resets);
-		if (minute == updateMinute) {
-			resets.add(Calendar.MINUTE);
-		} else {
-			doNext(calendar, dot);
+	/**
+	 * Find the first day of the given month, at or after the given day, that
+	 * matches both the days of month and the days of week.
+	 * @return the day of month, or -1 if none left in the month
+	 */
+	private int findNextDay(int year, int month, int day) {
+		int length = lengthOfMonth(year, month);
+		int dayOfWeek = -1;
+		for (int candidate = nextSetBit(this.daysOfMonthMask, day);
+				candidate != -1 && candidate <= length; candidate = nextSetBit(this.daysOfMonthMask, candidate + 1)) {
+			if (this.daysOfWeekMask == ALL_DAYS_OF_WEEK) {
+				return candidate;
+			}
+			if (dayOfWeek == -1) {
+				// 1970-01-01 was a Thursday, with Sunday being 0 in the cron pattern
+				dayOfWeek = (int) floorMod(daysFromCivil(year, month, day) + 4, 7);
+			}
+			if ((this.daysOfWeekMask & (1L << ((dayOfWeek + candidate - day) % 7))) != 0) {
+				return candidate;
+			}
 		}
+		return -1;
+	}
 
-		int hour = calendar.get(Calendar.HOUR_OF_DAY);
-		int updateHour = findNext(this.hours, hour, calendar, Calendar.HOUR_OF_DAY, Calendar.DAY_OF_WEEK, resets);
-		if (hour == updateHour) {
-			resets.add(Calendar.HOUR_OF_DAY);
-		} else {
-			doNext(calendar, dot);
+	/**
+	 * Convert the given local timestamp into a UTC timestamp, preferring the
+	 * earliest instant at or after the seed in case of a daylight saving time
+	 * overlap. Local times within a daylight saving time gap get shifted forward
+	 * by the length of the gap, like a lenient {@link Calendar} would do.
+	 */
+	private long toUtc(long localMillis, long seed) {
+		int offsetBefore = this.timeZone.getOffset(localMillis - 86400000L);
+		int offsetAfter = this.timeZone.getOffset(localMillis + 86400000L);
+		if (offsetBefore == offsetAfter) {
+			return localMillis - offsetBefore;
 		}
+		long earlier = localMillis - Math.max(offsetBefore, offsetAfter);
+		long later = localMillis - Math.min(offsetBefore, offsetAfter);
+		boolean earlierValid = (localMillis - this.timeZone.getOffset(earlier) == earlier);
+		boolean laterValid = (localMillis - this.timeZone.getOffset(later) == later);
+		if (!earlierValid && !laterValid) {
+			return localMillis - offsetBefore;
+		}
+		if (earlierValid && (earlier >= seed || !laterValid)) {
+			return earlier;
+		}
+		return later;
+	}
 
-		int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-		int dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
-		int updateDayOfMonth = findNextDay(calendar, this.daysOfMonth, dayOfMonth, daysOfWeek, dayOfWeek, resets);
-		if (dayOfMonth == updateDayOfMonth) {
-			resets.add(Calendar.DAY_OF_MONTH);
-		} else {
-			doNext(calendar, dot);
+	private static int nextSetBit(long mask, int fromIndex) {
+		if (fromIndex > 63) {
+			return -1;
 		}
+		long bits = mask & (-1L << fromIndex);
+		return (bits != 0 ? Long.numberOfTrailingZeros(bits) : -1);
+	}
 
-		int month = calendar.get(Calendar.MONTH);
-		int updateMonth = findNext(this.months, month, calendar, Calendar.MONTH, Calendar.YEAR, resets);
-		if (month != updateMonth) {
-			if (calendar.get(Calendar.YEAR) - dot > 4) {
-				throw new IllegalStateException("Invalid cron expression led to runaway search for next trigger");
-			}
-			doNext(calendar, dot);
+	private static int lengthOfMonth(int year, int month) {
+		if (month == 2) {
+			return ((year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28);
 		}
+		return (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+	}
 
+	private static long daysFromCivil(int year, int month, int day) {
+		long y = (month <= 2 ? year - 1 : year);
+		long era = floorDiv(y, 400);
+		int yearOfEra = (int) (y - era * 400);
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
 	}
 
-	private int findNextDay(Calendar calendar, BitSet daysOfMonth, int dayOfMonth, BitSet daysOfWeek, int dayOfWeek,
-			List<Integer> resets) {
-
-		int count = 0;
-		int max = 366;
-		// the DAY_OF_WEEK values in java.util.Calendar start with 1 (Sunday),
-		// but in the cron pattern, they start with 0, so we subtract 1 here
-		while ((!daysOfMonth.get(dayOfMonth) || !daysOfWeek.get(dayOfWeek - 1)) && count++ < max) {
-			calendar.add(Calendar.DAY_OF_MONTH, 1);
-			dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
-			dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-			reset(calendar, resets);
-		}
-		if (count >= max) {
-			throw new IllegalStateException("Overflow in day for expression=" + this.expression);
-		}
-		return dayOfMonth;
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return ((x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q);
 	}
 
-	/**
-	 * Search the bits provided for the next set bit after the value provided,
-	 * and reset the calendar.
-	 * @param bits a {@link BitSet} representing the allowed values of the field
-	 * @param value the current value of the field
-	 * @param calendar the calendar to increment as we move through the bits
-	 * @param field the field to increment in the calendar (@see
-	 * {@link Calendar} for the static constants defining valid fields)
-	 * @param lowerOrders the Calendar field ids that should be reset (i.e. the
-	 * ones of lower significance than the field of interest)
-	 * @return the value of the calendar field that is next in the sequence
-	 */
-	private int findNext(BitSet bits, int value, Calendar calendar, int field, int nextField, List<Integer> lowerOrders) {
-		int nextValue = bits.nextSetBit(value);
-		// roll over if needed
-		if (nextValue == -1) {
-			calendar.add(nextField, 1);
-			reset(calendar, Arrays.asList(field));
-			nextValue = bits.nextSetBit(0);
-		}
-		if (nextValue != value) {
-			calendar.set(field, nextValue);
-			reset(calendar, lowerOrders);
-		}
-		return nextValue;
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
 	}
 
-	/**
-	 * Reset the calendar setting all the fields provided to zero.
-	 */
-	private void reset(Calendar calendar, List<Integer> fields) {
-		for (int field : fields) {
-			calendar.set(field, field == Calendar.DAY_OF_MONTH ? 1 : 0);
+	private static long toMask(BitSet bits) {
+		long mask = 0;
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			mask |= (1L << i);
 		}
+		return mask;
 	}
 
 	// Parsing logic invoked by the constructor.
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.core.convert.ConversionException;
@@ -42,6 +43,7 @@ import org.springframework.core.convert.converter.ConverterRegistry;
 import org.springframework.core.convert.converter.GenericConverter;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Base {@link ConversionService} implementation suitable for use in most environments.
@@ -88,6 +90,14 @@ public class GenericConversionService implements ConfigurableConversionService {
 	private final Map<ConverterCacheKey, GenericConverter> converterCache =
 			new ConcurrentHashMap<ConverterCacheKey, GenericConverter>();
 
+	// converters for plain class pairs, looked up by source class and target class
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, ConverterHandle>> converterHandles =
+			new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, ConverterHandle>>();
+
+	// whether a subclass resolves converters differently, to be consulted for every conversion
+	private final boolean customConverterLookup = (ReflectionUtils.findMethod(getClass(), "getConverter",
+			TypeDescriptor.class, TypeDescriptor.class).getDeclaringClass() != GenericConversionService.class);
+
 
 	// implementing ConverterRegistry
 
@@ -133,8 +143,14 @@ public class GenericConversionService implements ConfigurableConversionService {
 	public boolean canConvert(Class<?> sourceType, Class<?> targetType) {
 		if (targetType == null) {
 			throw new IllegalArgumentException("The targetType to convert to cannot be null");
-		}		
-		return canConvert(sourceType != null ? TypeDescriptor.valueOf(sourceType) : null, TypeDescriptor.valueOf(targetType));
+		}
+		if (sourceType == null) {
+			return true;
+		}
+		ConverterHandle handle = getConverterHandle(sourceType, targetType);
+		GenericConverter converter = (handle.plain && !this.customConverterLookup ?
+				handle.converter : getConverter(handle.sourceType, handle.targetType));
+		return (converter != null);
 	}
 
 	public boolean canConvert(TypeDescriptor sourceType, TypeDescriptor targetType) {
@@ -152,7 +168,10 @@ public class GenericConversionService implements ConfigurableConversionService {
 	public <T> T convert(Object source, Class<T> targetType) {
 		if (targetType == null) {
 			throw new IllegalArgumentException("The targetType to convert to cannot be null");
-		}		
+		}
+		if (source != null) {
+			return (T) convert(source, getConverterHandle(source.getClass(), targetType));
+		}
 		return (T) convert(source, TypeDescriptor.forObject(source), TypeDescriptor.valueOf(targetType));
 	}
 
@@ -193,6 +212,12 @@ public class GenericConversionService implements ConfigurableConversionService {
 	 * @throws IllegalArgumentException if sourceType is null but source is not null
 	 */
 	public Object convert(Object source, TypeDescriptor targetType) {
+		if (source != null && targetType != null && targetType.getAnnotations().length == 0) {
+			ConverterHandle handle = getConverterHandle(source.getClass(), targetType.getType());
+			if (handle.plain) {
+				return convert(source, handle);
+			}
+		}
 		return convert(source, TypeDescriptor.forObject(source), targetType);
 	}
 	
@@ -249,6 +274,12 @@ public class GenericConversionService implements ConfigurableConversionService {
 	 * @see #getDefaultConverter(TypeDescriptor, TypeDescriptor)
 	 */
 	protected GenericConverter getConverter(TypeDescriptor sourceType, TypeDescriptor targetType) {
+		if (sourceType.getAnnotations().length == 0 && targetType.getAnnotations().length == 0) {
+			ConverterHandle handle = getConverterHandle(sourceType.getType(), targetType.getType());
+			if (handle.plain) {
+				return handle.converter;
+			}
+		}
 		ConverterCacheKey key = new ConverterCacheKey(sourceType, targetType);
 		GenericConverter converter = this.converterCache.get(key);
 		if (converter != null) {
@@ -308,6 +339,64 @@ public class GenericConversionService implements ConfigurableConversionService {
 	
 	private void invalidateCache() {
 		this.converterCache.clear();
+		this.converterHandles.clear();
+	}
+
+	/**
+	 * Return the converter handle for the given class pair, resolving it on first access.
+	 * Subsequent lookups neither allocate cache keys nor type descriptors.
+	 */
+	private ConverterHandle getConverterHandle(Class<?> sourceType, Class<?> targetType) {
+		ConcurrentMap<Class<?>, ConverterHandle> handles = this.converterHandles.get(sourceType);
+		if (handles == null) {
+			handles = new ConcurrentHashMap<Class<?>, ConverterHandle>();
+			ConcurrentMap<Class<?>, ConverterHandle> existing = this.converterHandles.putIfAbsent(sourceType, handles);
+			if (existing != null) {
+				handles = existing;
+			}
+		}
+		ConverterHandle handle = handles.get(targetType);
+		if (handle == null) {
+			TypeDescriptor sourceTypeDescriptor = TypeDescriptor.valueOf(sourceType);
+			TypeDescriptor targetTypeDescriptor = TypeDescriptor.valueOf(targetType);
+			GenericConverter converter = findConverterForClassPair(sourceTypeDescriptor, targetTypeDescriptor);
+			if (converter == null) {
+				converter = getDefaultConverter(sourceTypeDescriptor, targetTypeDescriptor);
+			}
+			handle = new ConverterHandle(sourceTypeDescriptor, targetTypeDescriptor, converter);
+			handles.put(targetType, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * Convert the given non-null source object through the given handle, invoking
+	 * plain Converters directly unless {@link #getConverter} resolves differently.
+	 */
+	private Object convert(Object source, ConverterHandle handle) {
+		TypeDescriptor sourceType = handle.sourceType;
+		TypeDescriptor targetType = handle.targetType;
+		GenericConverter converter = (handle.plain && !this.customConverterLookup ?
+				handle.converter : getConverter(sourceType, targetType));
+		if (converter == null) {
+			return handleConverterNotFound(source, sourceType, targetType);
+		}
+		Object result;
+		if (converter == handle.converter && handle.directConverter != null) {
+			try {
+				result = handle.directConverter.convert(source);
+			}
+			catch (ConversionFailedException ex) {
+				throw ex;
+			}
+			catch (Exception ex) {
+				throw new ConversionFailedException(sourceType, targetType, source, ex);
+			}
+		}
+		else {
+			result = ConversionUtils.invokeConverter(converter, source, sourceType, targetType);
+		}
+		return handleResult(sourceType, targetType, result);
 	}
 
 	private Map<Class<?>, MatchableConverters> getSourceConverterMap(Class<?> sourceType) {
@@ -511,7 +600,7 @@ public class GenericConversionService implements ConfigurableConversionService {
 	
 
 	@SuppressWarnings("unchecked")
-	private final class ConverterAdapter implements GenericConverter {
+	private final class ConverterAdapter implements GenericConverter, DirectConverterProvider {
 
 		private final ConvertiblePair typeInfo;
 
@@ -530,6 +619,10 @@ public class GenericConversionService implements ConfigurableConversionService {
 			return this.typeInfo.getTargetType().equals(targetType.getObjectType());
 		}
 
+		public Converter<Object, Object> getDirectConverter(TypeDescriptor targetType) {
+			return this.converter;
+		}
+
 		public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
 			if (source == null) {
 				return convertNullSource(sourceType, targetType);
@@ -545,7 +638,7 @@ public class GenericConversionService implements ConfigurableConversionService {
 
 
 	@SuppressWarnings("unchecked")
-	private final class ConverterFactoryAdapter implements GenericConverter {
+	private final class ConverterFactoryAdapter implements GenericConverter, DirectConverterProvider {
 
 		private final ConvertiblePair typeInfo;
 
@@ -560,6 +653,10 @@ public class GenericConversionService implements ConfigurableConversionService {
 			return Collections.singleton(this.typeInfo);
 		}
 
+		public Converter<Object, Object> getDirectConverter(TypeDescriptor targetType) {
+			return this.converterFactory.getConverter((Class<Object>) targetType.getObjectType());
+		}
+
 		public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
 			if (source == null) {
 				return convertNullSource(sourceType, targetType);
@@ -630,6 +727,47 @@ public class GenericConversionService implements ConfigurableConversionService {
 	}
 
 
+	/**
+	 * Implemented by adapters that can expose the target Converter for non-null sources.
+	 */
+	private interface DirectConverterProvider {
+
+		Converter<Object, Object> getDirectConverter(TypeDescriptor targetType);
+	}
+
+
+	/**
+	 * Resolved converter for a specific class pair, along with the corresponding
+	 * type descriptors and - if available - the Converter to invoke directly.
+	 */
+	private static final class ConverterHandle {
+
+		private final TypeDescriptor sourceType;
+
+		private final TypeDescriptor targetType;
+
+		private final GenericConverter converter;
+
+		private final Converter<Object, Object> directConverter;
+
+		// whether annotation-free descriptors of these classes never carry element type information
+		private final boolean plain;
+
+		public ConverterHandle(TypeDescriptor sourceType, TypeDescriptor targetType, GenericConverter converter) {
+			this.sourceType = sourceType;
+			this.targetType = targetType;
+			this.converter = converter;
+			this.plain = (isPlain(sourceType) && isPlain(targetType));
+			this.directConverter = (converter instanceof DirectConverterProvider ?
+					((DirectConverterProvider) converter).getDirectConverter(targetType) : null);
+		}
+
+		private static boolean isPlain(TypeDescriptor typeDescriptor) {
+			return (!typeDescriptor.isCollection() && !typeDescriptor.isArray() && !typeDescriptor.isMap());
+		}
+	}
+
+
 	private static final class ConverterCacheKey {
 
 		private final TypeDescriptor sourceType;
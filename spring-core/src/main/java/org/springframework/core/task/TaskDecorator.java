@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.core.task;
+
+/**
+ * A callback interface for a decorator to be applied to any {@link Runnable}
+ * about to be executed.
+ *
+ * <p>Note that such a decorator is not necessarily being applied to the
+ * user-supplied <code>Runnable</code>/<code>Callable</code> but rather to the
+ * actual execution callback (which may be a wrapper around the user-supplied task).
+ *
+ * <p>The primary use case is to set some execution context around the task's
+ * invocation: the decorator gets called in the submitting thread, so it may
+ * capture thread-bound state there and expose it in the executing thread for
+ * the duration of the task.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public interface TaskDecorator {
+
+	/**
+	 * Decorate the given <code>Runnable</code>, returning a potentially wrapped
+	 * <code>Runnable</code> for actual execution.
+	 * @param runnable the original <code>Runnable</code>
+	 * @return the decorated <code>Runnable</code>
+	 */
+	Runnable decorate(Runnable runnable);
+
+}
@@ -201,8 +201,16 @@ public abstract class StringUtils {
 		if (!hasLength(str)) {
 			return str;
 		}
-		StringBuilder sb = new StringBuilder(str);
+		int length = str.length();
 		int index = 0;
+		while (index < length && !Character.isWhitespace(str.charAt(index))) {
+			index++;
+		}
+		if (index == length) {
+			// common case: nothing to trim, no need to copy
+			return str;
+		}
+		StringBuilder sb = new StringBuilder(str);
 		while (sb.length() > index) {
 			if (Character.isWhitespace(sb.charAt(index))) {
 				sb.deleteCharAt(index);
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.util.concurrent;
+
+/**
+ * Callback mechanism for the outcome, success or failure, of a
+ * {@link ListenableFuture}.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public interface ListenableFutureCallback<T> {
+
+	/**
+	 * Called when the future completes successfully.
+	 * @param result the result
+	 */
+	void onSuccess(T result);
+
+	/**
+	 * Called when the future completes with an exception or gets cancelled.
+	 * @param ex the exception thrown by the task, or a
+	 * {@link java.util.concurrent.CancellationException} if cancelled
+	 */
+	void onFailure(Throwable ex);
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Extension of {@link FutureTask} that implements {@link ListenableFuture},
+ * invoking the registered callbacks in the thread that completes the task.
+ *
+ * @author agent
+ * @since 3.1
+ */
+public class ListenableFutureTask<T> extends FutureTask<T> implements ListenableFuture<T> {
+
+	private final List<ListenableFutureCallback<? super T>> callbacks =
+			new ArrayList<ListenableFutureCallback<? super T>>(1);
+
+	private boolean completed = false;
+
+
+	/**
+	 * Create a new ListenableFutureTask that will, upon running,
+	 * execute the given {@link Callable}.
+	 * @param callable the callable task
+	 */
+	public ListenableFutureTask(Callable<T> callable) {
+		super(callable);
+	}
+
+	/**
+	 * Create a new ListenableFutureTask that will, upon running,
+	 * execute the given {@link Runnable}, and arrange that {@link #get()}
+	 * will return the given result on successful completion.
+	 * @param runnable the runnable task
+	 * @param result the result to return on successful completion
+	 */
+	public ListenableFutureTask(Runnable runnable, T result) {
+		super(runnable, result);
+	}
+
+
+	public void addCallback(ListenableFutureCallback<? super T> callback) {
+		synchronized (this.callbacks) {
+			if (!this.completed) {
+				this.callbacks.add(callback);
+				return;
+			}
+		}
+		notifyCallback(callback);
+	}
+
+	@Override
+	protected final void done() {
+		List<ListenableFutureCallback<? super T>> callbacks;
+		synchronized (this.callbacks) {
+			this.completed = true;
+			callbacks = new ArrayList<ListenableFutureCallback<? super T>>(this.callbacks);
+			this.callbacks.clear();
+		}
+		for (ListenableFutureCallback<? super T> callback : callbacks) {
+			notifyCallback(callback);
+		}
+	}
+
+	private void notifyCallback(ListenableFutureCallback<? super T> callback) {
+		T result;
+		try {
+			result = get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		catch (ExecutionException ex) {
+			callback.onFailure(ex.getCause() != null ? ex.getCause() : ex);
+			return;
+		}
+		catch (CancellationException ex) {
+			callback.onFailure(ex);
+			return;
+		}
+		callback.onSuccess(result);
+	}
+
+}
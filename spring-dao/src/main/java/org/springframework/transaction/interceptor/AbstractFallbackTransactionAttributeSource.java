@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2006 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,16 +18,17 @@ package org.springframework.transaction.interceptor;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.aop.support.AopUtils;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Abstract implementation of TransactionAttributeSource that caches attributes
@@ -68,7 +69,7 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 	 * <p>As this base class is not marked Serializable, the cache will be recreated
 	 * after serialization - provided that the concrete subclass is Serializable.
 	 */
-	private Map cache = new HashMap();
+	private final Map<Object, Object> cache = new ConcurrentHashMap<Object, Object>();
 
 
 	/**
@@ -119,9 +120,7 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 	 * @return the cache key
 	 */
 	protected Object getCacheKey(Method method, Class targetClass) {
-		// TODO this works fine, but could consider making it faster in future:
-		// Method.toString() is relatively (although not disastrously) slow.
-		return targetClass + "." + method;
+		return new DefaultCacheKey(method, targetClass);
 	}
 	
 	/**
@@ -226,4 +225,36 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 		return txAttribute;
 	}
 
+
+	/**
+	 * Default cache key for the TransactionAttribute cache.
+	 */
+	private static class DefaultCacheKey {
+
+		private final Method method;
+
+		private final Class targetClass;
+
+		public DefaultCacheKey(Method method, Class targetClass) {
+			this.method = method;
+			this.targetClass = targetClass;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof DefaultCacheKey)) {
+				return false;
+			}
+			DefaultCacheKey otherKey = (DefaultCacheKey) other;
+			return (this.method.equals(otherKey.method) &&
+					ObjectUtils.nullSafeEquals(this.targetClass, otherKey.targetClass));
+		}
+
+		public int hashCode() {
+			return this.method.hashCode() * 29 + (this.targetClass != null ? this.targetClass.hashCode() : 0);
+		}
+	}
+
 }
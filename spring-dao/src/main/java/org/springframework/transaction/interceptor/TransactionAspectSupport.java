@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2006 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.transaction.interceptor;
 
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +29,7 @@ import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Superclass for transactional aspects, such as the AOP Alliance-compatible
@@ -45,6 +48,11 @@ import org.springframework.util.ClassUtils;
  * implementation will perform the actual transaction management, and a
  * TransactionAttributeSource is used for determining transaction definitions.
  *
+ * <p>The transaction attribute, the transaction name and the transaction manager
+ * to use for a method are resolved on its first invocation and kept in a
+ * precomputed {@link TransactionPlan}, assuming that the TransactionAttributeSource
+ * returns the same attribute for every invocation of a method on a given target class.
+ *
  * <p>A transaction aspect is serializable if its PlatformTransactionManager
  * and TransactionAttributeSource are serializable.
  *
@@ -115,6 +123,10 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	/** Helper used to find transaction attributes */
 	private TransactionAttributeSource transactionAttributeSource;
 
+	/** TransactionPlans keyed by method and target class */
+	private final Map<TransactionPlanKey, TransactionPlan> transactionPlanCache =
+			new ConcurrentHashMap<TransactionPlanKey, TransactionPlan>();
+
 
 	/**
 	 * Set the transaction manager. This will perform actual
@@ -122,6 +134,7 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	 */
 	public void setTransactionManager(PlatformTransactionManager transactionManager) {
 		this.transactionManager = transactionManager;
+		this.transactionPlanCache.clear();
 	}
 
 	/**
@@ -146,7 +159,7 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	public void setTransactionAttributes(Properties transactionAttributes) {
 		NameMatchTransactionAttributeSource tas = new NameMatchTransactionAttributeSource();
 		tas.setProperties(transactionAttributes);
-		this.transactionAttributeSource = tas;
+		setTransactionAttributeSource(tas);
 	}
 
 	/**
@@ -159,7 +172,7 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	 * @see org.springframework.transaction.annotation.AnnotationTransactionAttributeSource
 	 */
 	public void setTransactionAttributeSources(TransactionAttributeSource[] transactionAttributeSources) {
-		this.transactionAttributeSource = new CompositeTransactionAttributeSource(transactionAttributeSources);
+		setTransactionAttributeSource(new CompositeTransactionAttributeSource(transactionAttributeSources));
 	}
 
 	/**
@@ -174,6 +187,7 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	 */
 	public void setTransactionAttributeSource(TransactionAttributeSource transactionAttributeSource) {
 		this.transactionAttributeSource = transactionAttributeSource;
+		this.transactionPlanCache.clear();
 	}
 
 	/**
@@ -208,22 +222,21 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	 * was a transaction created.
 	 */
 	protected TransactionInfo createTransactionIfNecessary(Method method, Class targetClass) {
-		// If the transaction attribute is null, the method is non-transactional.
-		final TransactionAttribute sourceAttr =
-				this.transactionAttributeSource.getTransactionAttribute(method, targetClass);
-		TransactionAttribute txAttr = sourceAttr;
+		return createTransactionIfNecessary(getTransactionPlan(method, targetClass), method);
+	}
 
-		// If no name specified, apply method identification as transaction name.
-		if (txAttr != null && txAttr.getName() == null) {
-			final String name = methodIdentification(method);
-			txAttr = new DelegatingTransactionAttribute(sourceAttr) {
-				public String getName() {
-					return name;
-				}
-			};
-		}
+	/**
+	 * Create a transaction if necessary, according to the given TransactionPlan.
+	 * @param plan the TransactionPlan for the method, as returned by
+	 * {@link #getTransactionPlan}
+	 * @param method method about to execute
+	 * @return a TransactionInfo object, whether or not a transaction was created
+	 * @see #createTransactionIfNecessary(java.lang.reflect.Method, Class)
+	 */
+	protected TransactionInfo createTransactionIfNecessary(TransactionPlan plan, Method method) {
+		TransactionAttribute txAttr = plan.getTransactionAttribute();
 
-		TransactionInfo txInfo = new TransactionInfo(txAttr, method);
+		TransactionInfo txInfo = new TransactionInfo(txAttr, method, plan.getJoinpointIdentification());
 		if (txAttr != null) {
 			// We need a transaction for this method
 			if (logger.isDebugEnabled()) {
@@ -231,14 +244,14 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 			}
 
 			// The transaction manager will flag an error if an incompatible tx already exists
-			txInfo.newTransactionStatus(this.transactionManager.getTransaction(txAttr));
+			txInfo.newTransactionStatus(plan.getTransactionManager().getTransaction(txAttr));
 		}
 		else {
 			// The TransactionInfo.hasTransaction() method will return
 			// false. We created it only to preserve the integrity of
 			// the ThreadLocal stack maintained in this class.
 			if (logger.isDebugEnabled())
-				logger.debug("Don't need to create transaction for [" + methodIdentification(method) +
+				logger.debug("Don't need to create transaction for [" + txInfo.joinpointIdentification() +
 						"]: this method isn't transactional");
 		}
 
@@ -249,6 +262,47 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 		return txInfo;
 	}
 
+	/**
+	 * Return the TransactionPlan for the given method and target class,
+	 * computing it on first access.
+	 * @param method method about to execute
+	 * @param targetClass class the method is on
+	 * @return the TransactionPlan (never <code>null</code>)
+	 */
+	protected TransactionPlan getTransactionPlan(Method method, Class targetClass) {
+		TransactionPlanKey cacheKey = new TransactionPlanKey(method, targetClass);
+		TransactionPlan plan = this.transactionPlanCache.get(cacheKey);
+		if (plan == null) {
+			plan = createTransactionPlan(method, targetClass);
+			this.transactionPlanCache.put(cacheKey, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Resolve the TransactionPlan for the given method and target class.
+	 * @param method method about to execute
+	 * @param targetClass class the method is on
+	 * @return the TransactionPlan (never <code>null</code>)
+	 */
+	protected TransactionPlan createTransactionPlan(Method method, Class targetClass) {
+		// If the transaction attribute is null, the method is non-transactional.
+		final TransactionAttribute sourceAttr =
+				this.transactionAttributeSource.getTransactionAttribute(method, targetClass);
+		TransactionAttribute txAttr = sourceAttr;
+		final String joinpointIdentification = methodIdentification(method);
+
+		// If no name specified, apply method identification as transaction name.
+		if (txAttr != null && txAttr.getName() == null) {
+			txAttr = new DelegatingTransactionAttribute(sourceAttr) {
+				public String getName() {
+					return joinpointIdentification;
+				}
+			};
+		}
+		return new TransactionPlan(targetClass, txAttr, joinpointIdentification, this.transactionManager);
+	}
+
 	/**
 	 * Convenience method to return a String representation of this Method
 	 * for use in logging. Can be overridden in subclasses to provide a
@@ -335,6 +389,87 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 	}
 
 	
+	/**
+	 * Precomputed transaction handling for a specific method and target class:
+	 * the transaction attribute (with the transaction name applied), the
+	 * joinpoint identification and the transaction manager to use.
+	 */
+	protected static class TransactionPlan {
+
+		private final Class targetClass;
+
+		private final TransactionAttribute transactionAttribute;
+
+		private final String joinpointIdentification;
+
+		private final PlatformTransactionManager transactionManager;
+
+		public TransactionPlan(Class targetClass, TransactionAttribute transactionAttribute,
+				String joinpointIdentification, PlatformTransactionManager transactionManager) {
+
+			this.targetClass = targetClass;
+			this.transactionAttribute = transactionAttribute;
+			this.joinpointIdentification = joinpointIdentification;
+			this.transactionManager = transactionManager;
+		}
+
+		/**
+		 * Return the target class that this plan has been resolved for.
+		 */
+		public Class getTargetClass() {
+			return this.targetClass;
+		}
+
+		/**
+		 * Return the transaction attribute, or <code>null</code> if the
+		 * method is non-transactional.
+		 */
+		public TransactionAttribute getTransactionAttribute() {
+			return this.transactionAttribute;
+		}
+
+		public String getJoinpointIdentification() {
+			return this.joinpointIdentification;
+		}
+
+		public PlatformTransactionManager getTransactionManager() {
+			return this.transactionManager;
+		}
+	}
+
+
+	/**
+	 * Cache key for TransactionPlans, based on method and target class.
+	 */
+	private static class TransactionPlanKey {
+
+		private final Method method;
+
+		private final Class targetClass;
+
+		public TransactionPlanKey(Method method, Class targetClass) {
+			this.method = method;
+			this.targetClass = targetClass;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof TransactionPlanKey)) {
+				return false;
+			}
+			TransactionPlanKey otherKey = (TransactionPlanKey) other;
+			return (this.method.equals(otherKey.method) &&
+					ObjectUtils.nullSafeEquals(this.targetClass, otherKey.targetClass));
+		}
+
+		public int hashCode() {
+			return this.method.hashCode() * 29 + (this.targetClass != null ? this.targetClass.hashCode() : 0);
+		}
+	}
+
+
 	/**
 	 * Opaque object used to hold Transaction information. Subclasses
 	 * must pass it back to methods on this class, but not see its internals.
@@ -346,6 +481,8 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 		// TODO: Could open up to other kinds of joinpoint?
 		private final Method method;
 
+		private String joinpointIdentification;
+
 		private TransactionStatus transactionStatus;
 
 		private TransactionInfo oldTransactionInfo;
@@ -355,6 +492,13 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 			this.method = method;
 		}
 
+		private TransactionInfo(TransactionAttribute transactionAttribute, Method method,
+				String joinpointIdentification) {
+
+			this(transactionAttribute, method);
+			this.joinpointIdentification = joinpointIdentification;
+		}
+
 		/**
 		 * @return whether a transaction was created by this aspect,
 		 * or whether we just have a placeholder to keep ThreadLocal
@@ -369,7 +513,10 @@ public abstract class TransactionAspectSupport implements InitializingBean {
 		 * for use in logging.
 		 */
 		public String joinpointIdentification() {
-			return methodIdentification(this.method);
+			if (this.joinpointIdentification == null) {
+				this.joinpointIdentification = methodIdentification(this.method);
+			}
+			return this.joinpointIdentification;
 		}
 
 		public void newTransactionStatus(TransactionStatus status) {
@@ -20,11 +20,13 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.Properties;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.aop.MethodSpecificInterceptor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 /**
@@ -46,7 +48,8 @@ import org.springframework.transaction.PlatformTransactionManager;
  * @see org.springframework.transaction.interceptor.TransactionAspectSupport
  * @see org.springframework.transaction.PlatformTransactionManager
  */
-public class TransactionInterceptor extends TransactionAspectSupport implements MethodInterceptor, Serializable {
+public class TransactionInterceptor extends TransactionAspectSupport
+		implements MethodSpecificInterceptor, Serializable {
 
 	/**
 	 * Create a new TransactionInterceptor.
@@ -83,14 +86,28 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 	}
 
 
+	/**
+	 * Return an interceptor that holds the TransactionPlan for the given method,
+	 * sparing the plan lookup on every invocation.
+	 * <p>Note that, like any other part of a cached advice chain, the returned
+	 * interceptor does not notice a transaction manager or attribute source
+	 * changed after the chain has been built.
+	 */
+	public MethodInterceptor getMethodSpecificInterceptor(Method method, Class targetClass) {
+		return new PlannedTransactionInterceptor(getTransactionPlan(method, targetClass));
+	}
+
 	public Object invoke(MethodInvocation invocation) throws Throwable {
 		// Work out the target class: may be <code>null</code>.
 		// The TransactionAttributeSource should be passed the target class
 		// as well as the method, which may be from an interface
 		Class targetClass = (invocation.getThis() != null) ? invocation.getThis().getClass() : null;
-		
+		return invokeWithinTransaction(invocation, getTransactionPlan(invocation.getMethod(), targetClass));
+	}
+
+	private Object invokeWithinTransaction(MethodInvocation invocation, TransactionPlan plan) throws Throwable {
 		// Create transaction if necessary.
-		TransactionInfo txInfo = createTransactionIfNecessary(invocation.getMethod(), targetClass);
+		TransactionInfo txInfo = createTransactionIfNecessary(plan, invocation.getMethod());
 
 		Object retVal = null;
 		try {
@@ -112,6 +129,29 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 	}
 
 
+	/**
+	 * Interceptor for a specific method, holding its precomputed TransactionPlan.
+	 * Falls back to a plan lookup if invoked on a target of another class.
+	 */
+	private class PlannedTransactionInterceptor implements MethodInterceptor {
+
+		private final TransactionPlan plan;
+
+		public PlannedTransactionInterceptor(TransactionPlan plan) {
+			this.plan = plan;
+		}
+
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Class targetClass = (invocation.getThis() != null) ? invocation.getThis().getClass() : null;
+			TransactionPlan plan = this.plan;
+			if (targetClass != plan.getTargetClass()) {
+				plan = getTransactionPlan(invocation.getMethod(), targetClass);
+			}
+			return invokeWithinTransaction(invocation, plan);
+		}
+	}
+
+
 	//---------------------------------------------------------------------
 	// Serialization support
 	//---------------------------------------------------------------------
@@ -737,7 +737,13 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 				}
 				// No transaction or new transaction for the current scope ->
 				// invoke the afterCompletion callbacks immediately
-				invokeAfterCompletion(synchronizations, completionStatus);
+				TransactionSynchronizationManager.setSynchronizationCompleting(true);
+				try {
+					invokeAfterCompletion(synchronizations, completionStatus);
+				}
+				finally {
+					TransactionSynchronizationManager.setSynchronizationCompleting(false);
+				}
 			}
 			else {
 				// Existing transaction that we participate in, controlled outside
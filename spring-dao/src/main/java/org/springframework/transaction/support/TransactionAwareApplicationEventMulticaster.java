@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.AsyncApplicationEventMulticaster;
+
+/**
+ * Variant of {@link AsyncApplicationEventMulticaster} that holds back events
+ * published within a transaction until that transaction has committed.
+ * Events published within a transaction that rolls back are discarded.
+ *
+ * <p>Relies on transaction synchronization: events are deferred whenever
+ * synchronization is active for the current thread, and multicast as usual
+ * otherwise. Events published once the transaction is completing, i.e. from
+ * the {@code afterCompletion} callbacks of other synchronizations, are deferred
+ * only if this multicaster's synchronization has not been invoked yet, and are
+ * multicast right away otherwise.
+ *
+ * <p>Declare an instance of this class as bean named "applicationEventMulticaster"
+ * in the application context to have all events published through
+ * {@link org.springframework.context.ApplicationContext#publishEvent} deferred.
+ *
+ * @author agent
+ * @since 3.1
+ * @see TransactionSynchronizationManager
+ */
+public class TransactionAwareApplicationEventMulticaster extends AsyncApplicationEventMulticaster {
+
+	/**
+	 * Create a new TransactionAwareApplicationEventMulticaster.
+	 */
+	public TransactionAwareApplicationEventMulticaster() {
+	}
+
+	/**
+	 * Create a new TransactionAwareApplicationEventMulticaster for the given BeanFactory.
+	 */
+	public TransactionAwareApplicationEventMulticaster(BeanFactory beanFactory) {
+		super(beanFactory);
+	}
+
+
+	public void multicastEvent(ApplicationEvent event) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			DeferredEventsSynchronization synchronization = getDeferredEventsSynchronization();
+			if (synchronization == null && !TransactionSynchronizationManager.isSynchronizationCompleting()) {
+				// a synchronization registered during completion would not be invoked anymore
+				synchronization = new DeferredEventsSynchronization();
+				TransactionSynchronizationManager.registerSynchronization(synchronization);
+			}
+			if (synchronization != null && synchronization.defer(event)) {
+				return;
+			}
+		}
+		super.multicastEvent(event);
+	}
+
+	/**
+	 * Find this multicaster's synchronization for the current transaction, if any.
+	 * Registered synchronizations are suspended and resumed along with their
+	 * transaction, so no separate resource needs to be bound to the thread.
+	 */
+	private DeferredEventsSynchronization getDeferredEventsSynchronization() {
+		List<?> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		for (int i = 0; i < synchronizations.size(); i++) {
+			Object synchronization = synchronizations.get(i);
+			if (synchronization instanceof DeferredEventsSynchronization &&
+					((DeferredEventsSynchronization) synchronization).getMulticaster() == this) {
+				return (DeferredEventsSynchronization) synchronization;
+			}
+		}
+		return null;
+	}
+
+	private void multicastDeferredEvents(List<ApplicationEvent> events) {
+		for (ApplicationEvent event : events) {
+			super.multicastEvent(event);
+		}
+	}
+
+
+	/**
+	 * Synchronization that holds the events published within the current
+	 * transaction and multicasts them on commit.
+	 */
+	private class DeferredEventsSynchronization extends TransactionSynchronizationAdapter {
+
+		private final List<ApplicationEvent> events = new ArrayList<ApplicationEvent>();
+
+		private boolean completed = false;
+
+		public TransactionAwareApplicationEventMulticaster getMulticaster() {
+			return TransactionAwareApplicationEventMulticaster.this;
+		}
+
+		/**
+		 * Hold back the given event until completion of the transaction.
+		 * @return <code>false</code> if the transaction has completed already,
+		 * in which case the event needs to be multicast right away
+		 */
+		public boolean defer(ApplicationEvent event) {
+			if (this.completed) {
+				return false;
+			}
+			this.events.add(event);
+			return true;
+		}
+
+		public void afterCompletion(int status) {
+			this.completed = true;
+			try {
+				if (status == STATUS_COMMITTED) {
+					multicastDeferredEvents(this.events);
+				}
+				else if (logger.isDebugEnabled()) {
+					logger.debug("Discarding " + this.events.size() +
+							" application events published within transaction that did not commit");
+				}
+			}
+			finally {
+				this.events.clear();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.transaction.support;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * {@link TaskDecorator} that exposes a snapshot of the submitting thread's
+ * transaction context (bound resources and transaction characteristics)
+ * to the executing thread for the duration of the task.
+ *
+ * <p><b>NOTE:</b> Transactional resources such as JDBC Connections are shared
+ * between both threads, not copied. The submitting thread needs to wait for the
+ * task to complete before completing the transaction.
+ *
+ * @author agent
+ * @since 3.1
+ * @see TransactionSynchronizationManager#propagateContext
+ * @see org.springframework.scheduling.concurrent.WorkStealingTaskExecutor#setTaskDecorators
+ */
+public class TransactionContextPropagatingTaskDecorator implements TaskDecorator {
+
+	public Runnable decorate(Runnable runnable) {
+		return TransactionSynchronizationManager.propagateContext(runnable);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2006 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -56,6 +56,12 @@ import org.springframework.core.OrderComparator;
  * isn't active, there is either no current transaction, or the transaction manager
  * doesn't support transaction synchronizations.
  *
+ * <p>All state is kept in a single holder per thread, with the sorted list of
+ * synchronizations cached until further synchronizations get registered.
+ * The resources and transaction characteristics of a thread can be propagated
+ * to other threads, e.g. for asynchronous work within a transaction, via
+ * {@link #propagateContext} or {@link #snapshotContext}/{@link #attachContext}.
+ *
  * <p>Synchronization is for example used to always return the same resources like
  * JDBC Connections or Hibernate Sessions within a JTA transaction, for any given
  * DataSource or SessionFactory. In the Hibernate case, the afterCompletion Session
@@ -79,17 +85,13 @@ public abstract class TransactionSynchronizationManager {
 	private static final Log logger = LogFactory.getLog(TransactionSynchronizationManager.class);
 
 
-	private static final ThreadLocal resources = new ThreadLocal();
-
-	private static final ThreadLocal synchronizations = new ThreadLocal();
-
-	private static final Comparator synchronizationComparator = new OrderComparator();
+	private static final Comparator<Object> synchronizationComparator = new OrderComparator();
 
-	private static final ThreadLocal currentTransactionName = new ThreadLocal();
-
-	private static final ThreadLocal currentTransactionReadOnly = new ThreadLocal();
-
-	private static final ThreadLocal actualTransactionActive = new ThreadLocal();
+	/**
+	 * All transaction state of the current thread, in a single holder:
+	 * <code>null</code> if there is none.
+	 */
+	private static final ThreadLocal<TransactionContext> context = new ThreadLocal<TransactionContext>();
 
 
 	//-------------------------------------------------------------------------
@@ -105,7 +107,7 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #hasResource
 	 */
 	public static Map getResourceMap() {
-		Map map = (Map) resources.get();
+		Map<Object, Object> map = getResources();
 		return (map != null ? Collections.unmodifiableMap(map) : Collections.EMPTY_MAP);
 	}
 
@@ -115,7 +117,7 @@ public abstract class TransactionSynchronizationManager {
 	 * @return if there is a value bound to the current thread
 	 */
 	public static boolean hasResource(Object key) {
-		Map map = (Map) resources.get();
+		Map<Object, Object> map = getResources();
 		return (map != null && map.containsKey(key));
 	}
 
@@ -125,7 +127,7 @@ public abstract class TransactionSynchronizationManager {
 	 * @return a value bound to the current thread, or <code>null</code> if none
 	 */
 	public static Object getResource(Object key) {
-		Map map = (Map) resources.get();
+		Map<Object, Object> map = getResources();
 		if (map == null) {
 			return null;
 		}
@@ -144,11 +146,12 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if there is already a value bound to the thread
 	 */
 	public static void bindResource(Object key, Object value) throws IllegalStateException {
-		Map map = (Map) resources.get();
-		// set ThreadLocal Map if none found
+		TransactionContext current = getContext(true);
+		// create resource Map if none found
+		Map<Object, Object> map = current.resources;
 		if (map == null) {
-			map = new HashMap();
-			resources.set(map);
+			map = new HashMap<Object, Object>();
+			current.resources = map;
 		}
 		if (map.containsKey(key)) {
 			throw new IllegalStateException("Already value [" + map.get(key) + "] for key [" + key +
@@ -168,15 +171,16 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if there is no value bound to the thread
 	 */
 	public static Object unbindResource(Object key) throws IllegalStateException {
-		Map map = (Map) resources.get();
+		Map<Object, Object> map = getResources();
 		if (map == null || !map.containsKey(key)) {
 			throw new IllegalStateException(
 					"No value for key [" + key + "] bound to thread [" + Thread.currentThread().getName() + "]");
 		}
 		Object value = map.remove(key);
-		// remove entire ThreadLocal if empty
+		// remove entire Map if empty
 		if (map.isEmpty()) {
-			resources.set(null);
+			getContext(false).resources = null;
+			releaseContextIfEmpty();
 		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Removed value [" + value + "] for key [" + key + "] from thread [" +
@@ -196,7 +200,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #registerSynchronization
 	 */
 	public static boolean isSynchronizationActive() {
-		return (synchronizations.get() != null);
+		TransactionContext current = getContext(false);
+		return (current != null && current.synchronizations != null);
 	}
 
 	/**
@@ -209,7 +214,9 @@ public abstract class TransactionSynchronizationManager {
 			throw new IllegalStateException("Cannot activate transaction synchronization - already active");
 		}
 		logger.debug("Initializing transaction synchronization");
-		synchronizations.set(new LinkedList());
+		TransactionContext current = getContext(true);
+		current.synchronizations = new LinkedList<TransactionSynchronization>();
+		current.sortedSynchronizations = null;
 	}
 
 	/**
@@ -227,8 +234,9 @@ public abstract class TransactionSynchronizationManager {
 		if (!isSynchronizationActive()) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		List synchs = (List) synchronizations.get();
-		synchs.add(synchronization);
+		TransactionContext current = getContext(false);
+		current.synchronizations.add(synchronization);
+		current.sortedSynchronizations = null;
 	}
 
 	/**
@@ -242,13 +250,17 @@ public abstract class TransactionSynchronizationManager {
 		if (!isSynchronizationActive()) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		List synchs = (List) synchronizations.get();
-		// Sort lazily here, not in registerSynchronization.
-		Collections.sort(synchs, synchronizationComparator);
-		// Return unmodifiable snapshot, to avoid ConcurrentModificationExceptions
-		// while iterating and invoking synchronization callbacks that in turn
-		// might register further synchronizations.
-		return Collections.unmodifiableList(new ArrayList(synchs));
+		TransactionContext current = getContext(false);
+		if (current.sortedSynchronizations == null) {
+			// Sort lazily here, not in registerSynchronization.
+			Collections.sort(current.synchronizations, synchronizationComparator);
+			// Keep unmodifiable snapshot until further synchronizations get registered,
+			// to avoid ConcurrentModificationExceptions while iterating and invoking
+			// synchronization callbacks that in turn might register further synchronizations.
+			current.sortedSynchronizations = Collections.unmodifiableList(
+					new ArrayList<TransactionSynchronization>(current.synchronizations));
+		}
+		return current.sortedSynchronizations;
 	}
 
 	/**
@@ -261,7 +273,34 @@ public abstract class TransactionSynchronizationManager {
 			throw new IllegalStateException("Cannot deactivate transaction synchronization - not active");
 		}
 		logger.debug("Clearing transaction synchronization");
-		synchronizations.set(null);
+		TransactionContext current = getContext(false);
+		current.synchronizations = null;
+		current.sortedSynchronizations = null;
+		current.completing = false;
+		releaseContextIfEmpty();
+	}
+
+	/**
+	 * Mark the synchronizations of the current thread as being completed,
+	 * i.e. their <code>afterCompletion</code> callbacks as being invoked.
+	 * Synchronizations registered from now on will not be invoked anymore.
+	 * Called by AbstractPlatformTransactionManager.
+	 */
+	static void setSynchronizationCompleting(boolean completing) {
+		TransactionContext current = getContext(false);
+		if (current != null && current.synchronizations != null) {
+			current.completing = completing;
+		}
+	}
+
+	/**
+	 * Return whether the <code>afterCompletion</code> callbacks of the current
+	 * thread's synchronizations are being invoked, in which case newly registered
+	 * synchronizations will not be invoked anymore.
+	 */
+	static boolean isSynchronizationCompleting() {
+		TransactionContext current = getContext(false);
+		return (current != null && current.completing);
 	}
 
 
@@ -275,7 +314,16 @@ public abstract class TransactionSynchronizationManager {
 	 * @param name the name of the transaction, or <code>null</code> to reset it
 	 */
 	public static void setCurrentTransactionName(String name) {
-		currentTransactionName.set(name);
+		if (name != null) {
+			getContext(true).name = name;
+		}
+		else {
+			TransactionContext current = getContext(false);
+			if (current != null) {
+				current.name = null;
+				releaseContextIfEmpty();
+			}
+		}
 	}
 
 	/**
@@ -284,7 +332,8 @@ public abstract class TransactionSynchronizationManager {
 	 * for example to optimize fetch strategies for specific named transactions.
 	 */
 	public static String getCurrentTransactionName() {
-		return (String) currentTransactionName.get();
+		TransactionContext current = getContext(false);
+		return (current != null ? current.name : null);
 	}
 
 	/**
@@ -295,7 +344,16 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#isReadOnly
 	 */
 	public static void setCurrentTransactionReadOnly(boolean readOnly) {
-		currentTransactionReadOnly.set(readOnly ? Boolean.TRUE : null);
+		if (readOnly) {
+			getContext(true).readOnly = true;
+		}
+		else {
+			TransactionContext current = getContext(false);
+			if (current != null) {
+				current.readOnly = false;
+				releaseContextIfEmpty();
+			}
+		}
 	}
 
 	/**
@@ -313,7 +371,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.hibernate.FlushMode#NEVER
 	 */
 	public static boolean isCurrentTransactionReadOnly() {
-		return (currentTransactionReadOnly.get() != null);
+		TransactionContext current = getContext(false);
+		return (current != null && current.readOnly);
 	}
 
 	/**
@@ -323,7 +382,16 @@ public abstract class TransactionSynchronizationManager {
 	 * with an actual transaction; false to reset that marker
 	 */
 	public static void setActualTransactionActive(boolean active) {
-		actualTransactionActive.set(active ? Boolean.TRUE : null);
+		if (active) {
+			getContext(true).actualTransactionActive = true;
+		}
+		else {
+			TransactionContext current = getContext(false);
+			if (current != null) {
+				current.actualTransactionActive = false;
+				releaseContextIfEmpty();
+			}
+		}
 	}
 
 	/**
@@ -338,7 +406,164 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #isSynchronizationActive()
 	 */
 	public static boolean isActualTransactionActive() {
-		return (actualTransactionActive.get() != null);
+		TransactionContext current = getContext(false);
+		return (current != null && current.actualTransactionActive);
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Propagation of transaction context to other threads
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Capture the transaction context of the current thread, for attaching it
+	 * to another thread via {@link #attachContext}. The snapshot contains the
+	 * bound resources and the transaction characteristics (name, read-only flag,
+	 * actual transaction marker), but not the transaction synchronizations:
+	 * those stay with the thread that drives the transaction.
+	 * <p>Note that the resources themselves are shared, not copied: for example,
+	 * a JDBC Connection bound by the original thread will be used by both threads.
+	 * The original thread needs to wait for the work performed with its context
+	 * to complete before completing the transaction.
+	 * @return the snapshot, or <code>null</code> if there is no context to propagate
+	 * @see #propagateContext
+	 */
+	public static ContextSnapshot snapshotContext() {
+		TransactionContext current = getContext(false);
+		return (current != null ? new ContextSnapshot(current.snapshot()) : null);
+	}
+
+	/**
+	 * Attach the given snapshot to the current thread, replacing the current context.
+	 * @param snapshot the snapshot as returned by {@link #snapshotContext}
+	 * (may be <code>null</code> for an empty context)
+	 * @return the previous context of the current thread, to be passed to
+	 * {@link #restoreContext} once done
+	 */
+	public static ContextSnapshot attachContext(ContextSnapshot snapshot) {
+		TransactionContext previous = context.get();
+		if (snapshot != null) {
+			// copy again, so that the same snapshot can be attached to several threads
+			context.set(snapshot.context.snapshot());
+		}
+		else {
+			context.remove();
+		}
+		return (previous != null ? new ContextSnapshot(previous) : null);
+	}
+
+	/**
+	 * Restore the given context to the current thread, as returned by {@link #attachContext}.
+	 * @param previousContext the context to restore (may be <code>null</code>)
+	 */
+	public static void restoreContext(ContextSnapshot previousContext) {
+		if (previousContext != null) {
+			context.set(previousContext.context);
+		}
+		else {
+			context.remove();
+		}
+	}
+
+	/**
+	 * Decorate the given task to run with the transaction context of the current thread,
+	 * restoring the executing thread's own context afterwards.
+	 * @param task the task to decorate
+	 * @return the decorated task, or the given task if there is no context to propagate
+	 * @see #snapshotContext
+	 */
+	public static Runnable propagateContext(final Runnable task) {
+		final ContextSnapshot snapshot = snapshotContext();
+		if (snapshot == null) {
+			return task;
+		}
+		return new Runnable() {
+			public void run() {
+				ContextSnapshot previousContext = attachContext(snapshot);
+				try {
+					task.run();
+				}
+				finally {
+					restoreContext(previousContext);
+				}
+			}
+		};
+	}
+
+
+	private static TransactionContext getContext(boolean create) {
+		TransactionContext current = context.get();
+		if (current == null && create) {
+			current = new TransactionContext();
+			context.set(current);
+		}
+		return current;
+	}
+
+	private static Map<Object, Object> getResources() {
+		TransactionContext current = getContext(false);
+		return (current != null ? current.resources : null);
+	}
+
+	/**
+	 * Remove the context holder from the current thread once it does not hold
+	 * any state anymore, to avoid leaving it behind in pooled threads.
+	 */
+	private static void releaseContextIfEmpty() {
+		TransactionContext current = getContext(false);
+		if (current != null && current.isEmpty()) {
+			context.remove();
+		}
+	}
+
+
+	/**
+	 * Opaque handle to the transaction context of a thread, as returned by
+	 * {@link TransactionSynchronizationManager#snapshotContext} and
+	 * {@link TransactionSynchronizationManager#attachContext}.
+	 */
+	public static final class ContextSnapshot {
+
+		private final TransactionContext context;
+
+		private ContextSnapshot(TransactionContext context) {
+			this.context = context;
+		}
+	}
+
+
+	/**
+	 * Holder for the transaction state of a thread.
+	 */
+	private static class TransactionContext {
+
+		public Map<Object, Object> resources;
+
+		public List<TransactionSynchronization> synchronizations;
+
+		public List<TransactionSynchronization> sortedSynchronizations;
+
+		public boolean completing;
+
+		public String name;
+
+		public boolean readOnly;
+
+		public boolean actualTransactionActive;
+
+		public boolean isEmpty() {
+			return (this.resources == null && this.synchronizations == null && this.name == null &&
+					!this.readOnly && !this.actualTransactionActive);
+		}
+
+		public TransactionContext snapshot() {
+			TransactionContext snapshot = new TransactionContext();
+			snapshot.resources = (this.resources != null ? new HashMap<Object, Object>(this.resources) : null);
+			snapshot.name = this.name;
+			snapshot.readOnly = this.readOnly;
+			snapshot.actualTransactionActive = this.actualTransactionActive;
+			return snapshot;
+		}
 	}
 
 }
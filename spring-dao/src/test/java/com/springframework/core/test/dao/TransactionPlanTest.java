@@ -0,0 +1,183 @@
+package com.springframework.core.test.dao;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.HotSwappableTargetSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.MatchAlwaysTransactionAttributeSource;
+import org.springframework.transaction.interceptor.DefaultTransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the per-method TransactionPlans of TransactionAspectSupport.
+ */
+public class TransactionPlanTest {
+
+    @Test
+    public void testPlansAreResolvedPerMethodAndTargetClass() throws Exception {
+        final List<Class> lookups = new ArrayList<Class>();
+        PlanAspect aspect = new PlanAspect();
+        aspect.setTransactionAttributeSource(new TransactionAttributeSource() {
+            public TransactionAttribute getTransactionAttribute(Method method, Class targetClass) {
+                lookups.add(targetClass);
+                return (targetClass == Integer.class ? new DefaultTransactionAttribute() : null);
+            }
+        });
+        Method method = Comparable.class.getMethod("compareTo", Object.class);
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(aspect.transactionAttribute(method, Integer.class));
+            assertNull(aspect.transactionAttribute(method, String.class));
+            assertNull(aspect.transactionAttribute(method, null));
+        }
+
+        assertEquals(3, lookups.size());
+        assertEquals("java.lang.Comparable.compareTo", aspect.transactionAttribute(method, Integer.class).getName());
+    }
+
+    @Test
+    public void testPlansAreDiscardedWhenAttributeSourceChanges() throws Exception {
+        PlanAspect aspect = new PlanAspect();
+        Method method = Comparable.class.getMethod("compareTo", Object.class);
+        aspect.setTransactionAttributeSource(new TransactionAttributeSource() {
+            public TransactionAttribute getTransactionAttribute(Method method, Class targetClass) {
+                return null;
+            }
+        });
+        assertNull(aspect.transactionAttribute(method, Integer.class));
+
+        aspect.setTransactionAttributeSource(new TransactionAttributeSource() {
+            public TransactionAttribute getTransactionAttribute(Method method, Class targetClass) {
+                return new DefaultTransactionAttribute();
+            }
+        });
+        assertNotNull(aspect.transactionAttribute(method, Integer.class));
+    }
+
+    @Test
+    public void testPlanIsResolvedOnceForProxiedMethod() {
+        CountingTransactionManager transactionManager = new CountingTransactionManager();
+        CountingTransactionInterceptor interceptor = new CountingTransactionInterceptor(transactionManager,
+                new MatchAlwaysTransactionAttributeSource());
+        ProxyFactory proxyFactory = new ProxyFactory(new Task());
+        proxyFactory.addAdvice(interceptor);
+        @SuppressWarnings("unchecked")
+        Callable<String> proxy = (Callable<String>) proxyFactory.getProxy();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("done", call(proxy));
+        }
+        assertEquals(1, interceptor.planLookups);
+        assertEquals(3, transactionManager.begun);
+        assertEquals(3, transactionManager.committed);
+    }
+
+    @Test
+    public void testPlanIsLookedUpForTargetOfOtherClass() {
+        CountingTransactionManager transactionManager = new CountingTransactionManager();
+        CountingTransactionInterceptor interceptor = new CountingTransactionInterceptor(transactionManager,
+                new TransactionAttributeSource() {
+                    public TransactionAttribute getTransactionAttribute(Method method, Class targetClass) {
+                        return (targetClass == TransactionalTask.class ? new DefaultTransactionAttribute() : null);
+                    }
+                });
+        HotSwappableTargetSource targetSource = new HotSwappableTargetSource(new Task());
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTargetSource(targetSource);
+        proxyFactory.addInterface(Callable.class);
+        proxyFactory.addAdvice(interceptor);
+        @SuppressWarnings("unchecked")
+        Callable<String> proxy = (Callable<String>) proxyFactory.getProxy();
+
+        assertEquals("done", call(proxy));
+        assertEquals(0, transactionManager.begun);
+
+        targetSource.swap(new TransactionalTask());
+        assertEquals("done", call(proxy));
+        assertEquals(1, transactionManager.begun);
+        assertEquals(1, transactionManager.committed);
+    }
+
+    private static String call(Callable<String> callable) {
+        try {
+            return callable.call();
+        }
+        catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    private static class PlanAspect extends TransactionAspectSupport {
+
+        TransactionAttribute transactionAttribute(Method method, Class targetClass) {
+            return getTransactionPlan(method, targetClass).getTransactionAttribute();
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static class CountingTransactionInterceptor extends TransactionInterceptor {
+
+        int planLookups;
+
+        CountingTransactionInterceptor(PlatformTransactionManager ptm, TransactionAttributeSource tas) {
+            super(ptm, tas);
+        }
+
+        protected TransactionPlan getTransactionPlan(Method method, Class targetClass) {
+            this.planLookups++;
+            return super.getTransactionPlan(method, targetClass);
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+        int begun;
+
+        int committed;
+
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            this.begun++;
+        }
+
+        protected void doCommit(DefaultTransactionStatus status) {
+            this.committed++;
+        }
+
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+
+    public static class Task implements Callable<String> {
+
+        public String call() {
+            return "done";
+        }
+    }
+
+
+    public static class TransactionalTask extends Task {
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.springframework.core.test.dao;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.WorkStealingTaskExecutor;
+import org.springframework.transaction.support.TransactionContextPropagatingTaskDecorator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager.ContextSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the propagation of the transaction context of a thread to other
+ * threads, and for the cached sorted list of synchronizations.
+ */
+public class TransactionSynchronizationManagerTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        clearContext();
+    }
+
+    @Test
+    public void testPropagateContextWithoutContextReturnsTask() {
+        Runnable task = new Runnable() {
+            public void run() {
+            }
+        };
+        assertNull(TransactionSynchronizationManager.snapshotContext());
+        assertSame(task, TransactionSynchronizationManager.propagateContext(task));
+    }
+
+    @Test
+    public void testPropagateContextToOtherThread() throws Exception {
+        bindContext("connection", "tx");
+        TransactionSynchronizationManager.initSynchronization();
+        final AtomicReference<Object> resource = new AtomicReference<Object>();
+        final AtomicReference<String> name = new AtomicReference<String>();
+        final AtomicReference<Boolean> synchronizationActive = new AtomicReference<Boolean>();
+
+        Runnable task = TransactionSynchronizationManager.propagateContext(new Runnable() {
+            public void run() {
+                resource.set(TransactionSynchronizationManager.getResource("key"));
+                name.set(TransactionSynchronizationManager.getCurrentTransactionName());
+                synchronizationActive.set(TransactionSynchronizationManager.isSynchronizationActive());
+            }
+        });
+        executor.submit(task).get();
+
+        assertEquals("connection", resource.get());
+        assertEquals("tx", name.get());
+        assertFalse(synchronizationActive.get());
+        assertTrue(isContextEmptyOnExecutorThread());
+    }
+
+    @Test
+    public void testPropagateContextRestoresOwnContextOfExecutingThread() throws Exception {
+        executor.submit(new Runnable() {
+            public void run() {
+                bindContext("own", "ownTx");
+            }
+        }).get();
+        bindContext("connection", "tx");
+
+        final AtomicReference<Object> resource = new AtomicReference<Object>();
+        executor.submit(TransactionSynchronizationManager.propagateContext(new Runnable() {
+            public void run() {
+                resource.set(TransactionSynchronizationManager.getResource("key"));
+            }
+        })).get();
+        assertEquals("connection", resource.get());
+
+        assertEquals("own", executor.submit(new Callable<Object>() {
+            public Object call() {
+                Object own = TransactionSynchronizationManager.getResource("key");
+                assertEquals("ownTx", TransactionSynchronizationManager.getCurrentTransactionName());
+                clearContext();
+                return own;
+            }
+        }).get());
+    }
+
+    @Test
+    public void testAttachedSnapshotIsIsolatedFromOriginatingThread() throws Exception {
+        bindContext("connection", "tx");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        final ContextSnapshot snapshot = TransactionSynchronizationManager.snapshotContext();
+        assertNotNull(snapshot);
+
+        Future<Boolean> readOnly = executor.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                ContextSnapshot previous = TransactionSynchronizationManager.attachContext(snapshot);
+                try {
+                    assertNull(previous);
+                    assertEquals("connection", TransactionSynchronizationManager.getResource("key"));
+                    TransactionSynchronizationManager.bindResource("other", "value");
+                    TransactionSynchronizationManager.setCurrentTransactionName("changed");
+                    return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+                }
+                finally {
+                    TransactionSynchronizationManager.restoreContext(previous);
+                }
+            }
+        });
+
+        assertTrue(readOnly.get());
+        assertFalse(TransactionSynchronizationManager.hasResource("other"));
+        assertEquals("tx", TransactionSynchronizationManager.getCurrentTransactionName());
+        assertTrue(isContextEmptyOnExecutorThread());
+    }
+
+    @Test
+    public void testSnapshotCanBeAttachedRepeatedly() throws Exception {
+        bindContext("connection", "tx");
+        final ContextSnapshot snapshot = TransactionSynchronizationManager.snapshotContext();
+        clearContext();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("connection", executor.submit(new Callable<Object>() {
+                public Object call() {
+                    ContextSnapshot previous = TransactionSynchronizationManager.attachContext(snapshot);
+                    try {
+                        Object resource = TransactionSynchronizationManager.unbindResource("key");
+                        TransactionSynchronizationManager.bindResource("key", "replaced");
+                        return resource;
+                    }
+                    finally {
+                        TransactionSynchronizationManager.restoreContext(previous);
+                    }
+                }
+            }).get());
+        }
+    }
+
+    @Test
+    public void testTaskDecoratorPropagatesContextThroughExecutor() throws Exception {
+        WorkStealingTaskExecutor taskExecutor = new WorkStealingTaskExecutor();
+        taskExecutor.setParallelism(1);
+        taskExecutor.setTaskDecorators(new TransactionContextPropagatingTaskDecorator());
+        taskExecutor.afterPropertiesSet();
+        try {
+            bindContext("connection", "tx");
+            assertEquals("connection", taskExecutor.submit(new Callable<Object>() {
+                public Object call() {
+                    return TransactionSynchronizationManager.getResource("key");
+                }
+            }).get());
+            clearContext();
+
+            assertNull(taskExecutor.submit(new Callable<Object>() {
+                public Object call() {
+                    return TransactionSynchronizationManager.snapshotContext();
+                }
+            }).get());
+        }
+        finally {
+            taskExecutor.destroy();
+        }
+    }
+
+    @Test
+    public void testRestoreContextReinstatesPreviousContext() {
+        bindContext("connection", "tx");
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronization synchronization = new TransactionSynchronizationAdapter() {};
+        TransactionSynchronizationManager.registerSynchronization(synchronization);
+
+        ContextSnapshot previous = TransactionSynchronizationManager.attachContext(null);
+        assertNotNull(previous);
+        assertFalse(TransactionSynchronizationManager.hasResource("key"));
+        assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+        assertNull(TransactionSynchronizationManager.getCurrentTransactionName());
+
+        TransactionSynchronizationManager.restoreContext(previous);
+        assertEquals("connection", TransactionSynchronizationManager.getResource("key"));
+        assertEquals("tx", TransactionSynchronizationManager.getCurrentTransactionName());
+        assertTrue(TransactionSynchronizationManager.isSynchronizationActive());
+        assertSame(synchronization, TransactionSynchronizationManager.getSynchronizations().get(0));
+    }
+
+    @Test
+    public void testSortedSynchronizationsAreCachedUntilRegistration() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronization late = new OrderedSynchronization(2);
+        TransactionSynchronization early = new OrderedSynchronization(1);
+        TransactionSynchronizationManager.registerSynchronization(late);
+        TransactionSynchronizationManager.registerSynchronization(early);
+
+        List<?> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(2, synchronizations.size());
+        assertSame(early, synchronizations.get(0));
+        assertSame(late, synchronizations.get(1));
+        assertSame(synchronizations, TransactionSynchronizationManager.getSynchronizations());
+
+        TransactionSynchronization first = new OrderedSynchronization(0);
+        TransactionSynchronizationManager.registerSynchronization(first);
+        List<?> updated = TransactionSynchronizationManager.getSynchronizations();
+        assertNotSame(synchronizations, updated);
+        assertEquals(2, synchronizations.size());
+        assertEquals(3, updated.size());
+        assertSame(first, updated.get(0));
+        try {
+            updated.clear();
+            fail("Should have thrown UnsupportedOperationException");
+        }
+        catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testContextIsReleasedOnceEmpty() {
+        bindContext("connection", "tx");
+        ContextSnapshot snapshot = TransactionSynchronizationManager.snapshotContext();
+        assertNotNull(snapshot);
+
+        clearContext();
+        assertNull(TransactionSynchronizationManager.snapshotContext());
+    }
+
+    private boolean isContextEmptyOnExecutorThread() throws Exception {
+        return executor.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return TransactionSynchronizationManager.snapshotContext() == null;
+            }
+        }).get();
+    }
+
+    private static void bindContext(Object resource, String name) {
+        TransactionSynchronizationManager.bindResource("key", resource);
+        TransactionSynchronizationManager.setCurrentTransactionName(name);
+    }
+
+    private static void clearContext() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        for (Object key : TransactionSynchronizationManager.getResourceMap().keySet().toArray()) {
+            TransactionSynchronizationManager.unbindResource(key);
+        }
+        TransactionSynchronizationManager.setCurrentTransactionName(null);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+
+    private static class OrderedSynchronization extends TransactionSynchronizationAdapter {
+
+        private final int order;
+
+        OrderedSynchronization(int order) {
+            this.order = order;
+        }
+
+        public int getOrder() {
+            return this.order;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.springframework.core.test.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionAwareApplicationEventMulticaster;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for TransactionAwareApplicationEventMulticaster, driving the
+ * transaction synchronization callbacks by hand.
+ */
+public class TransactionAwareApplicationEventMulticasterTest {
+
+    private TransactionAwareApplicationEventMulticaster multicaster;
+
+    private final List<Object> received = new ArrayList<Object>();
+
+    @Before
+    public void setUp() {
+        multicaster = new TransactionAwareApplicationEventMulticaster();
+        multicaster.setTaskExecutor(new SyncTaskExecutor());
+        multicaster.addApplicationListener(new ApplicationListener<ApplicationEvent>() {
+            public void onApplicationEvent(ApplicationEvent event) {
+                received.add(event.getSource());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEventsOutsideOfTransactionAreMulticastRightAway() {
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testEventsAreMulticastOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+        multicaster.multicastEvent(new ApplicationEvent("b") {});
+        assertTrue(received.isEmpty());
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(2, received.size());
+        assertEquals("a", received.get(0));
+        assertEquals("b", received.get(1));
+        assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+    }
+
+    @Test
+    public void testEventsAreDiscardedOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testEventsPublishedAfterCompletionAreMulticastRightAway() {
+        TransactionSynchronizationManager.initSynchronization();
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            public int getOrder() {
+                return LOWEST_PRECEDENCE;
+            }
+            public void afterCompletion(int status) {
+                multicaster.multicastEvent(new ApplicationEvent("late") {});
+                assertEquals(2, TransactionSynchronizationManager.getSynchronizations().size());
+            }
+        });
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(2, received.size());
+        assertEquals("late", received.get(1));
+    }
+
+    @Test
+    public void testEventsPublishedDuringCompletionOfTransactionWithoutDeferredEvents() {
+        TestTransactionManager transactionManager = new TestTransactionManager();
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            public void afterCompletion(int status) {
+                multicaster.multicastEvent(new ApplicationEvent("late") {});
+                assertEquals(1, received.size());
+            }
+        });
+
+        transactionManager.commit(status);
+        assertEquals(1, received.size());
+        assertEquals("late", received.get(0));
+        assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+    }
+
+    @Test
+    public void testEventsAreMulticastOnCommitOfManagedTransaction() {
+        TestTransactionManager transactionManager = new TestTransactionManager();
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            public void beforeCompletion() {
+                multicaster.multicastEvent(new ApplicationEvent("b") {});
+            }
+        });
+        assertTrue(received.isEmpty());
+
+        transactionManager.commit(status);
+        assertEquals(2, received.size());
+        assertEquals("a", received.get(0));
+        assertEquals("b", received.get(1));
+    }
+
+    @Test
+    public void testEventsAreDiscardedOnRollbackOfManagedTransaction() {
+        TestTransactionManager transactionManager = new TestTransactionManager();
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        multicaster.multicastEvent(new ApplicationEvent("a") {});
+
+        transactionManager.rollback(status);
+        assertTrue(received.isEmpty());
+        multicaster.multicastEvent(new ApplicationEvent("b") {});
+        assertEquals(1, received.size());
+    }
+
+    private void complete(int status) {
+        List<?> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        for (Object synchronization : synchronizations) {
+            ((TransactionSynchronization) synchronization).afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+
+    /**
+     * Transaction manager without a backing resource, to drive the
+     * synchronization callbacks the way a real transaction does.
+     */
+    @SuppressWarnings("serial")
+    private static class TestTransactionManager extends AbstractPlatformTransactionManager {
+
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+}
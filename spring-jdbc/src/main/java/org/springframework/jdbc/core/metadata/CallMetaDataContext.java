@@ -89,6 +89,9 @@ public class CallMetaDataContext {
 	/** the provider of call meta data */
 	private CallMetaDataProvider metaDataProvider;
 
+	/** the cache to obtain the provider of call meta data from, if any */
+	private MetaDataProviderCache metaDataProviderCache;
+
 
 	/**
 	 * Specify the name used for the return value of the function.
@@ -216,6 +219,15 @@ public class CallMetaDataContext {
 		return this.accessCallParameterMetaData;
 	}
 
+	/**
+	 * Set the {@link MetaDataProviderCache} to obtain the call meta data from,
+	 * sharing it with other contexts for the same procedure or function.
+	 * Default is none, retrieving the meta data for this context only.
+	 */
+	public void setMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		this.metaDataProviderCache = metaDataProviderCache;
+	}
+
 
 	/**
 	 * Create a ReturnResultSetParameter/SqlOutParameter depending on the support provided
@@ -266,7 +278,12 @@ public class CallMetaDataContext {
 	 * @param dataSource the DataSource used to retrieve metadata
 	 */
 	public void initializeMetaData(DataSource dataSource) {
-		this.metaDataProvider = CallMetaDataProviderFactory.createMetaDataProvider(dataSource, this);
+		if (this.metaDataProviderCache != null) {
+			this.metaDataProvider = this.metaDataProviderCache.getCallMetaDataProvider(dataSource, this);
+		}
+		else {
+			this.metaDataProvider = CallMetaDataProviderFactory.createMetaDataProvider(dataSource, this);
+		}
 	}
 
 	/**
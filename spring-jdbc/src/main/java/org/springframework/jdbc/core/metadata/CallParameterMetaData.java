@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,17 @@
 
 package org.springframework.jdbc.core.metadata;
 
+import java.io.Serializable;
+
 /**
  * Holder of metadata for a specific parameter that is used for call processing.
  *
  * @author Thomas Risberg
  * @since 2.5
  */
-public class CallParameterMetaData {
+public class CallParameterMetaData implements Serializable {
+
+	private static final long serialVersionUID = -712953451378690832L;
 	private String parameterName;
 	private int parameterType;
 	private int sqlType;
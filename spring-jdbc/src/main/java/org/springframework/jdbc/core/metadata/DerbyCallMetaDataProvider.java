@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,8 @@ import java.sql.SQLException;
  */
 public class DerbyCallMetaDataProvider extends GenericCallMetaDataProvider {
 
+	private static final long serialVersionUID = -1276144883091855132L;
+
 	public DerbyCallMetaDataProvider(DatabaseMetaData databaseMetaData) throws SQLException {
 		super(databaseMetaData);
 	}
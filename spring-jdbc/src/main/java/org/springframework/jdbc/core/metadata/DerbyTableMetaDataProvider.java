@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,8 @@ import java.sql.SQLException;
  */
 public class DerbyTableMetaDataProvider extends GenericTableMetaDataProvider {
 
+	private static final long serialVersionUID = 6913201450818571664L;
+
 	private boolean supportsGeneratedKeysOverride = false;
 
 	public DerbyTableMetaDataProvider(DatabaseMetaData databaseMetaData) throws SQLException {
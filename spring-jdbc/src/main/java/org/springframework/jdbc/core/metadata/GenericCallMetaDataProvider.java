@@ -16,6 +16,7 @@
 
 package org.springframework.jdbc.core.metadata;
 
+import java.io.Serializable;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -36,10 +37,14 @@ import org.springframework.util.StringUtils;
  * Generic implementation for the {@link CallMetaDataProvider} interface.
  * This class can be extended to provide database specific behavior.
  *
+ * <p>Serializable once initialized, for use in a {@link MetaDataProviderCache} snapshot.
+ *
  * @author Thomas Risberg
  * @since 2.5
  */
-public class GenericCallMetaDataProvider implements CallMetaDataProvider {
+public class GenericCallMetaDataProvider implements CallMetaDataProvider, Serializable {
+
+	private static final long serialVersionUID = -155727257701963149L;
 
 	/** Logger available to subclasses */
 	protected static final Log logger = LogFactory.getLog(CallMetaDataProvider.class);
@@ -16,6 +16,7 @@
 
 package org.springframework.jdbc.core.metadata;
 
+import java.io.Serializable;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -30,16 +31,21 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
 
 /**
  * A generic implementation of the {@link TableMetaDataProvider} that should provide
  * enough features for all supported databases.
  *
+ * <p>Serializable once initialized, for use in a {@link MetaDataProviderCache} snapshot.
+ *
  * @author Thomas Risberg
  * @since 2.5
  */
-public class GenericTableMetaDataProvider implements TableMetaDataProvider {
+public class GenericTableMetaDataProvider implements MultiRowInsertMetaDataProvider, Serializable {
+
+	private static final long serialVersionUID = -1878087384511803611L;
 
 	/** Logger available to subclasses */
 	protected static final Log logger = LogFactory.getLog(TableMetaDataProvider.class);
@@ -69,11 +75,18 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 	private List<String> productsNotSupportingGeneratedKeysColumnNameArray =
 			Arrays.asList("Apache Derby", "HSQL Database Engine");
 
+	/** indicates whether multi-row INSERT ... VALUES statements are supported */
+	private boolean multiRowInsertSupported = false;
+
+	/** database products we know supporting multi-row INSERT ... VALUES statements */
+	private List<String> productsSupportingMultiRowInsert =
+			Arrays.asList("Apache Derby", "DB2", "H2", "HSQL Database Engine", "Microsoft SQL Server", "MySQL", "PostgreSQL");
+
 	/** Collection of TableParameterMetaData objects */
 	private List<TableParameterMetaData> insertParameterMetaData = new ArrayList<TableParameterMetaData>();
 
 	/** NativeJdbcExtractor that can be used to retrieve the native connection */
-	private NativeJdbcExtractor nativeJdbcExtractor;
+	private transient NativeJdbcExtractor nativeJdbcExtractor;
 
 
 	/**
@@ -151,6 +164,25 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 		return this.generatedKeysColumnNameArraySupported;
 	}
 
+	/**
+	 * Specify whether multi-row INSERT ... VALUES statements are supported
+	 */
+	public void setMultiRowInsertSupported(boolean multiRowInsertSupported) {
+		this.multiRowInsertSupported = multiRowInsertSupported;
+	}
+
+	public boolean isMultiRowInsertSupported() {
+		return this.multiRowInsertSupported;
+	}
+
+	/**
+	 * This implementation returns 2000, staying below the limit of
+	 * SQL Server (2100) which is the strictest among common databases.
+	 */
+	public int getMaxParametersPerStatement() {
+		return 2000;
+	}
+
 	public void setNativeJdbcExtractor(NativeJdbcExtractor nativeJdbcExtractor) {
 		this.nativeJdbcExtractor = nativeJdbcExtractor;
 	}
@@ -184,6 +216,8 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 				logger.debug("GeneratedKeysColumnNameArray is supported for " + databaseProductName);
 				setGeneratedKeysColumnNameArraySupported(true);
 			}
+			setMultiRowInsertSupported(this.productsSupportingMultiRowInsert.contains(
+					JdbcUtils.commonDatabaseName(databaseProductName)));
 		}
 		catch (SQLException se) {
 			logger.warn("Error retrieving 'DatabaseMetaData.getDatabaseProductName' - " + se.getMessage());
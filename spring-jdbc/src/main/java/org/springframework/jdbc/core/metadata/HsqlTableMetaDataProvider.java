@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,11 +28,28 @@ import java.sql.SQLException;
  */
 public class HsqlTableMetaDataProvider extends GenericTableMetaDataProvider {
 
+	private static final long serialVersionUID = 3085129045324439954L;
+
 	public HsqlTableMetaDataProvider(DatabaseMetaData databaseMetaData) throws SQLException {
 		super(databaseMetaData);
 	}
 
 
+	@Override
+	public void initializeWithMetaData(DatabaseMetaData databaseMetaData) throws SQLException {
+		super.initializeWithMetaData(databaseMetaData);
+		try {
+			// Multi-row VALUES lists are only supported as of HSQLDB 2.0
+			if (databaseMetaData.getDatabaseMajorVersion() < 2) {
+				setMultiRowInsertSupported(false);
+			}
+		}
+		catch (SQLException se) {
+			logger.warn("Error retrieving 'DatabaseMetaData.getDatabaseMajorVersion' - " + se.getMessage());
+			setMultiRowInsertSupported(false);
+		}
+	}
+
 	@Override
 	public boolean isGetGeneratedKeysSimulated() {
 		return true;
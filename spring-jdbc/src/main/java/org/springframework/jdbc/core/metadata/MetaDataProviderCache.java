@@ -0,0 +1,285 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Cache for {@link TableMetaDataProvider} and {@link CallMetaDataProvider} instances,
+ * keyed by {@link DataSource}. Allows any number of
+ * {@link org.springframework.jdbc.core.simple.SimpleJdbcInsert} and
+ * {@link org.springframework.jdbc.core.simple.SimpleJdbcCall} instances
+ * to share the metadata for a given table or procedure, retrieving it
+ * from the {@link java.sql.DatabaseMetaData} only once.
+ *
+ * <p>The cached metadata can be written to a snapshot file, e.g. as part of
+ * the build, and loaded on startup: Subsequent lookups will then be served
+ * from the snapshot without any metadata queries. Loading a snapshot also
+ * registers the recorded database product name with the
+ * {@link SQLErrorCodesFactory}, sparing its metadata lookup as well.
+ *
+ * <p>Metadata is retrieved once and never refreshed; call {@link #invalidate(DataSource)}
+ * after schema changes that affect tables or procedures in use.
+ *
+ * @author agent
+ * @since 3.1
+ * @see TableMetaDataContext#setMetaDataProviderCache
+ * @see CallMetaDataContext#setMetaDataProviderCache
+ */
+public class MetaDataProviderCache {
+
+	private static final Log logger = LogFactory.getLog(MetaDataProviderCache.class);
+
+	private static final MetaDataProviderCache sharedInstance = new MetaDataProviderCache();
+
+
+	/**
+	 * Return the shared instance, for use across all application components
+	 * working with the same DataSources.
+	 */
+	public static MetaDataProviderCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+
+	/** Map from DataSource to its cached metadata */
+	private final Map<DataSource, DataSourceMetaData> dataSourceCache = new WeakHashMap<DataSource, DataSourceMetaData>(16);
+
+
+	/**
+	 * Return the TableMetaDataProvider for the table described by the given context,
+	 * creating it through {@link TableMetaDataProviderFactory} if not cached yet.
+	 * @param dataSource the DataSource to retrieve metadata from
+	 * @param context the context specifying the table
+	 * @param nativeJdbcExtractor the NativeJdbcExtractor to use when creating the provider
+	 * @return the shared TableMetaDataProvider instance
+	 */
+	public TableMetaDataProvider getTableMetaDataProvider(
+			DataSource dataSource, TableMetaDataContext context, NativeJdbcExtractor nativeJdbcExtractor) {
+
+		String key = "table:" + context.getCatalogName() + "." + context.getSchemaName() + "." +
+				context.getTableName() + ";columns=" + context.isAccessTableColumnMetaData() +
+				";synonyms=" + context.isOverrideIncludeSynonymsDefault();
+		DataSourceMetaData metaData = getDataSourceMetaData(dataSource);
+		Object provider = metaData.providers.get(key);
+		if (provider == null) {
+			provider = TableMetaDataProviderFactory.createMetaDataProvider(dataSource, context, nativeJdbcExtractor);
+			Object existing = metaData.providers.putIfAbsent(key, provider);
+			if (existing != null) {
+				provider = existing;
+			}
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug("Using cached table metadata for [" + key + "]");
+		}
+		return (TableMetaDataProvider) provider;
+	}
+
+	/**
+	 * Return the CallMetaDataProvider for the procedure or function described by the
+	 * given context, creating it through {@link CallMetaDataProviderFactory} if not cached yet.
+	 * @param dataSource the DataSource to retrieve metadata from
+	 * @param context the context specifying the procedure or function
+	 * @return the shared CallMetaDataProvider instance
+	 */
+	public CallMetaDataProvider getCallMetaDataProvider(DataSource dataSource, CallMetaDataContext context) {
+		String key = (context.isFunction() ? "function:" : "procedure:") + context.getCatalogName() + "." +
+				context.getSchemaName() + "." + context.getProcedureName() +
+				";parameters=" + context.isAccessCallParameterMetaData();
+		DataSourceMetaData metaData = getDataSourceMetaData(dataSource);
+		Object provider = metaData.providers.get(key);
+		if (provider == null) {
+			provider = CallMetaDataProviderFactory.createMetaDataProvider(dataSource, context);
+			Object existing = metaData.providers.putIfAbsent(key, provider);
+			if (existing != null) {
+				provider = existing;
+			}
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug("Using cached call metadata for [" + key + "]");
+		}
+		return (CallMetaDataProvider) provider;
+	}
+
+	/**
+	 * Remove all cached metadata for the given DataSource,
+	 * including its registration with the {@link SQLErrorCodesFactory}.
+	 * @param dataSource the DataSource to invalidate metadata for
+	 */
+	public void invalidate(DataSource dataSource) {
+		synchronized (this.dataSourceCache) {
+			this.dataSourceCache.remove(dataSource);
+		}
+		SQLErrorCodesFactory.getInstance().unregisterDatabase(dataSource);
+	}
+
+	/**
+	 * Remove all cached metadata for all DataSources,
+	 * including their registrations with the {@link SQLErrorCodesFactory}.
+	 */
+	public void invalidateAll() {
+		List<DataSource> dataSources;
+		synchronized (this.dataSourceCache) {
+			dataSources = new ArrayList<DataSource>(this.dataSourceCache.keySet());
+			this.dataSourceCache.clear();
+		}
+		for (DataSource dataSource : dataSources) {
+			SQLErrorCodesFactory.getInstance().unregisterDatabase(dataSource);
+		}
+	}
+
+	private DataSourceMetaData getDataSourceMetaData(DataSource dataSource) {
+		Assert.notNull(dataSource, "DataSource must not be null");
+		synchronized (this.dataSourceCache) {
+			DataSourceMetaData metaData = this.dataSourceCache.get(dataSource);
+			if (metaData == null) {
+				metaData = new DataSourceMetaData();
+				this.dataSourceCache.put(dataSource, metaData);
+			}
+			return metaData;
+		}
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Snapshot support
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Write the metadata currently cached for the given DataSource to the given stream,
+	 * along with the database product name. Providers that are not serializable are skipped.
+	 * @param dataSource the DataSource whose metadata to write
+	 * @param out the stream to write to (will not be closed)
+	 * @throws IOException in case of I/O errors
+	 */
+	public void writeSnapshot(DataSource dataSource, OutputStream out) throws IOException {
+		DataSourceMetaData metaData = getDataSourceMetaData(dataSource);
+		String databaseProductName = null;
+		try {
+			databaseProductName = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+		}
+		catch (MetaDataAccessException ex) {
+			logger.warn("Could not determine database product name for metadata snapshot", ex);
+		}
+		HashMap<String, Object> providers = new HashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : metaData.providers.entrySet()) {
+			if (entry.getValue() instanceof Serializable) {
+				providers.put(entry.getKey(), entry.getValue());
+			}
+			else if (logger.isInfoEnabled()) {
+				logger.info("Skipping non-serializable metadata provider [" +
+						entry.getValue().getClass().getName() + "] for [" + entry.getKey() + "]");
+			}
+		}
+		ObjectOutputStream oos = new ObjectOutputStream(out);
+		oos.writeObject(databaseProductName);
+		oos.writeObject(providers);
+		oos.flush();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Wrote metadata snapshot with " + providers.size() + " entries for DataSource [" +
+					dataSource + "]");
+		}
+	}
+
+	/**
+	 * Load a snapshot written by {@link #writeSnapshot} for the given DataSource,
+	 * adding its entries to the metadata cached for that DataSource.
+	 * @param dataSource the DataSource that the snapshot describes
+	 * @param in the stream to read from (will not be closed)
+	 * @throws IOException in case of I/O errors or an invalid snapshot
+	 */
+	@SuppressWarnings("unchecked")
+	public void loadSnapshot(DataSource dataSource, InputStream in) throws IOException {
+		ObjectInputStream ois = new ConfigurableObjectInputStream(in, ClassUtils.getDefaultClassLoader());
+		String databaseProductName;
+		Map<String, Object> providers;
+		try {
+			databaseProductName = (String) ois.readObject();
+			providers = (Map<String, Object>) ois.readObject();
+		}
+		catch (ClassNotFoundException ex) {
+			throw new IOException("Could not deserialize metadata snapshot: " + ex.getMessage());
+		}
+		getDataSourceMetaData(dataSource).providers.putAll(providers);
+		if (databaseProductName != null) {
+			SQLErrorCodesFactory.getInstance().registerDatabase(dataSource, databaseProductName);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loaded metadata snapshot with " + providers.size() + " entries for DataSource [" +
+					dataSource + "]");
+		}
+	}
+
+	/**
+	 * Load a snapshot from the given resource, if it exists.
+	 * @param dataSource the DataSource that the snapshot describes
+	 * @param snapshot the resource to load the snapshot from
+	 * @return whether the snapshot has been found and loaded
+	 * @throws IOException in case of I/O errors or an invalid snapshot
+	 * @see #loadSnapshot(DataSource, InputStream)
+	 */
+	public boolean loadSnapshot(DataSource dataSource, Resource snapshot) throws IOException {
+		if (!snapshot.exists()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("No metadata snapshot found at " + snapshot.getDescription());
+			}
+			return false;
+		}
+		InputStream in = snapshot.getInputStream();
+		try {
+			loadSnapshot(dataSource, in);
+			return true;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Holder for the metadata cached for a single DataSource.
+	 */
+	private static class DataSourceMetaData {
+
+		private final ConcurrentHashMap<String, Object> providers = new ConcurrentHashMap<String, Object>();
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.metadata;
+
+/**
+ * Extension of the {@link TableMetaDataProvider} interface, exposing whether
+ * several rows can be inserted through a single <code>INSERT ... VALUES (...), (...)</code>
+ * statement and how many bind parameters such a statement may have.
+ *
+ * <p>Implemented by {@link GenericTableMetaDataProvider} and its subclasses.
+ * Other providers are treated as not supporting multi-row inserts, with batches
+ * falling back to standard JDBC batching.
+ *
+ * @author agent
+ * @since 3.1
+ * @see TableMetaDataContext#isMultiRowInsertSupported()
+ */
+public interface MultiRowInsertMetaDataProvider extends TableMetaDataProvider {
+
+	/**
+	 * Does this database support inserting several rows through a single
+	 * <code>INSERT ... VALUES (...), (...)</code> statement?
+	 */
+	boolean isMultiRowInsertSupported();
+
+	/**
+	 * Get the maximum number of bind parameters the driver accepts in a single statement.
+	 */
+	int getMaxParametersPerStatement();
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,8 @@ import org.springframework.jdbc.core.SqlParameter;
  */
 public class OracleCallMetaDataProvider extends GenericCallMetaDataProvider {
 
+	private static final long serialVersionUID = -2234969190405361742L;
+
 	private static final String REF_CURSOR_NAME = "REF CURSOR";
 
 
@@ -41,6 +41,8 @@ import org.springframework.util.ReflectionUtils;
  */
 public class OracleTableMetaDataProvider extends GenericTableMetaDataProvider {
 
+	private static final long serialVersionUID = 4536390728822902513L;
+
 	private final boolean includeSynonyms;
 	
 	private String defaultSchema;
@@ -33,6 +33,8 @@ import java.sql.Types;
  */
 public class PostgresCallMetaDataProvider extends GenericCallMetaDataProvider {
 
+	private static final long serialVersionUID = 398451139660009923L;
+
 	private static final String RETURN_VALUE_NAME = "returnValue";
 
 
@@ -28,13 +28,33 @@ import java.sql.SQLException;
  */
 public class PostgresTableMetaDataProvider extends GenericTableMetaDataProvider {
 
+	private static final long serialVersionUID = -5774265153396962171L;
+
+	/** whether the database is PostgreSQL 8.2 or later, supporting INSERT ... RETURNING */
+	private boolean version82OrLater = false;
+
 	public PostgresTableMetaDataProvider(DatabaseMetaData databaseMetaData) throws SQLException {
 		super(databaseMetaData);
 	}
 
+
+	@Override
+	public void initializeWithMetaData(DatabaseMetaData databaseMetaData) throws SQLException {
+		super.initializeWithMetaData(databaseMetaData);
+		try {
+			// Compare numerically: as Strings, "10.1" would sort below "8.2.0"
+			int majorVersion = databaseMetaData.getDatabaseMajorVersion();
+			this.version82OrLater =
+					(majorVersion > 8 || (majorVersion == 8 && databaseMetaData.getDatabaseMinorVersion() >= 2));
+		}
+		catch (SQLException se) {
+			logger.warn("Error retrieving 'DatabaseMetaData.getDatabaseMajorVersion' - " + se.getMessage());
+		}
+	}
+
 	@Override
 	public boolean isGetGeneratedKeysSimulated() {
-		if (getDatabaseVersion().compareTo("8.2.0") >= 0) {
+		if (this.version82OrLater) {
 			return true;
 		}
 		else {
@@ -47,4 +67,14 @@ public class PostgresTableMetaDataProvider extends GenericTableMetaDataProvider
 	public String getSimpleQueryForGetGeneratedKey(String tableName, String keyColumnName) {
 		return "RETURNING " + keyColumnName;
 	}
+
+	@Override
+	public boolean isMultiRowInsertSupported() {
+		return (super.isMultiRowInsertSupported() && this.version82OrLater);
+	}
+
+	@Override
+	public int getMaxParametersPerStatement() {
+		return Short.MAX_VALUE;
+	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2007 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,8 @@ import java.sql.SQLException;
  */
 public class SqlServerCallMetaDataProvider extends GenericCallMetaDataProvider {
 
+	private static final long serialVersionUID = -874907934943996311L;
+
 	private static final String REMOVABLE_COLUMN_PREFIX = "@";
 
 	private static final String RETURN_VALUE_NAME = "@RETURN_VALUE";
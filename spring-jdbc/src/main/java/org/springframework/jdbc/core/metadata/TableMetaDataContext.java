@@ -74,6 +74,9 @@ public class TableMetaDataContext {
 	/** NativeJdbcExtractor to be used to retrieve the native connection */
 	NativeJdbcExtractor nativeJdbcExtractor;
 
+	/** the cache to obtain the provider of table meta data from, if any */
+	private MetaDataProviderCache metaDataProviderCache;
+
 
 	/**
 	 * Set the name of the table for this context.
@@ -187,6 +190,24 @@ public class TableMetaDataContext {
 		return this.metaDataProvider.isGeneratedKeysColumnNameArraySupported();
 	}
 
+	/**
+	 * Does this database support multi-row INSERT ... VALUES statements.
+	 * Only known for a {@link MultiRowInsertMetaDataProvider}; false otherwise.
+	 */
+	public boolean isMultiRowInsertSupported() {
+		return (this.metaDataProvider instanceof MultiRowInsertMetaDataProvider &&
+				((MultiRowInsertMetaDataProvider) this.metaDataProvider).isMultiRowInsertSupported());
+	}
+
+	/**
+	 * Get the maximum number of bind parameters allowed in a single statement.
+	 * Only known for a {@link MultiRowInsertMetaDataProvider}; 0 otherwise.
+	 */
+	public int getMaxParametersPerStatement() {
+		return (this.metaDataProvider instanceof MultiRowInsertMetaDataProvider ?
+				((MultiRowInsertMetaDataProvider) this.metaDataProvider).getMaxParametersPerStatement() : 0);
+	}
+
 	/**
 	 * Set {@link NativeJdbcExtractor} to be used to retrieve the native connection.
 	 */
@@ -194,6 +215,15 @@ public class TableMetaDataContext {
 		this.nativeJdbcExtractor = nativeJdbcExtractor;
 	}
 
+	/**
+	 * Set the {@link MetaDataProviderCache} to obtain the table meta data from,
+	 * sharing it with other contexts for the same table.
+	 * Default is none, retrieving the meta data for this context only.
+	 */
+	public void setMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		this.metaDataProviderCache = metaDataProviderCache;
+	}
+
 
 	/**
 	 * Process the current meta data with the provided configuration options.
@@ -202,7 +232,14 @@ public class TableMetaDataContext {
 	 * @param generatedKeyNames name of generated keys
 	 */
 	public void processMetaData(DataSource dataSource, List<String> declaredColumns, String[] generatedKeyNames) {
-		this.metaDataProvider = TableMetaDataProviderFactory.createMetaDataProvider(dataSource, this, this.nativeJdbcExtractor);
+		if (this.metaDataProviderCache != null) {
+			this.metaDataProvider =
+					this.metaDataProviderCache.getTableMetaDataProvider(dataSource, this, this.nativeJdbcExtractor);
+		}
+		else {
+			this.metaDataProvider =
+					TableMetaDataProviderFactory.createMetaDataProvider(dataSource, this, this.nativeJdbcExtractor);
+		}
 		this.tableColumns = reconcileColumnsToUse(declaredColumns, generatedKeyNames);
 	}
 
@@ -293,6 +330,15 @@ public class TableMetaDataContext {
 	 * @return the insert string to be used
 	 */
 	public String createInsertString(String[] generatedKeyNames) {
+		return createInsertString(generatedKeyNames, 1);
+	}
+
+	/**
+	 * Build an insert string for the given number of rows, repeating the VALUES
+	 * list for each row, based on configuration and metadata information
+	 * @return the insert string to be used
+	 */
+	public String createInsertString(String[] generatedKeyNames, int rowCount) {
 		HashSet<String> keys = new HashSet<String>(generatedKeyNames.length);
 		for (String key : generatedKeyNames) {
 			keys.add(key.toUpperCase());
@@ -326,13 +372,18 @@ public class TableMetaDataContext {
 						this.getTableName() + "' so an insert statement can't be generated");
 			}
 		}
-		for (int i = 0; i < columnCount; i++) {
-			if (i > 0) {
-				insertStatement.append(", ");
+		for (int row = 0; row < rowCount; row++) {
+			if (row > 0) {
+				insertStatement.append(", (");
+			}
+			for (int i = 0; i < columnCount; i++) {
+				if (i > 0) {
+					insertStatement.append(", ");
+				}
+				insertStatement.append("?");
 			}
-			insertStatement.append("?");
+			insertStatement.append(")");
 		}
-		insertStatement.append(")");
 		return insertStatement.toString();
 	}
 
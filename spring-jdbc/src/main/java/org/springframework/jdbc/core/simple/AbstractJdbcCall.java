@@ -33,6 +33,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.metadata.CallMetaDataContext;
+import org.springframework.jdbc.core.metadata.MetaDataProviderCache;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -250,6 +251,14 @@ public abstract class AbstractJdbcCall {
 		this.callMetaDataContext.setAccessCallParameterMetaData(accessCallParameterMetaData);
 	}
 
+	/**
+	 * Set the {@link MetaDataProviderCache} to share the call metadata through.
+	 * Default is none, retrieving the metadata when this call gets compiled.
+	 */
+	public void setMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		this.callMetaDataContext.setMetaDataProviderCache(metaDataProviderCache);
+	}
+
 
 	//-------------------------------------------------------------------------
 	// Methods handling compilation issues
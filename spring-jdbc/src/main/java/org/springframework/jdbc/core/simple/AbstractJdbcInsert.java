@@ -42,6 +42,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.SqlTypeValue;
 import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.metadata.MetaDataProviderCache;
 import org.springframework.jdbc.core.metadata.TableMetaDataContext;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -89,6 +90,12 @@ public abstract class AbstractJdbcInsert {
 	/** The names of the columns holding the generated key */
 	private String[] generatedKeyNames = new String[0];
 
+	/** Should batches be inserted using multi-row insert statements where supported */
+	private boolean multiRowInsert = false;
+
+	/** The maximum number of rows to insert per multi-row insert statement */
+	private int maxRowsPerStatement = 1000;
+
 
 	/**
 	 * Constructor for sublasses to delegate to for setting the DataSource.
@@ -216,6 +223,54 @@ public abstract class AbstractJdbcInsert {
 		this.tableMetaDataContext.setNativeJdbcExtractor(nativeJdbcExtractor);
 	}
 
+	/**
+	 * Specify whether batches should be inserted using multi-row
+	 * <code>INSERT ... VALUES (...), (...)</code> statements, sending a chunk of rows
+	 * per statement execution. Only applies where the database supports such statements,
+	 * falling back to standard JDBC batching otherwise. The default is false.
+	 * <p>Note that the individual update counts are not available in this mode:
+	 * All rows of a chunk will report {@link Statement#SUCCESS_NO_INFO} unless the
+	 * driver reports the entire chunk as inserted.
+	 * @see #setMaxRowsPerStatement
+	 */
+	public void setMultiRowInsert(boolean multiRowInsert) {
+		checkIfConfigurationModificationIsAllowed();
+		this.multiRowInsert = multiRowInsert;
+	}
+
+	/**
+	 * Return whether batches are inserted using multi-row insert statements where supported.
+	 */
+	public boolean isMultiRowInsert() {
+		return this.multiRowInsert;
+	}
+
+	/**
+	 * Specify the maximum number of rows per multi-row insert statement. The default is 1000.
+	 * The number of rows will be further limited by the maximum number of bind parameters
+	 * the database accepts in a single statement.
+	 */
+	public void setMaxRowsPerStatement(int maxRowsPerStatement) {
+		checkIfConfigurationModificationIsAllowed();
+		Assert.isTrue(maxRowsPerStatement > 0, "maxRowsPerStatement must be greater than 0");
+		this.maxRowsPerStatement = maxRowsPerStatement;
+	}
+
+	/**
+	 * Return the maximum number of rows per multi-row insert statement.
+	 */
+	public int getMaxRowsPerStatement() {
+		return this.maxRowsPerStatement;
+	}
+
+	/**
+	 * Set the {@link MetaDataProviderCache} to share the table metadata through.
+	 * Default is none, retrieving the metadata when this insert gets compiled.
+	 */
+	public void setMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		this.tableMetaDataContext.setMetaDataProviderCache(metaDataProviderCache);
+	}
+
 	/**
 	 * Get the insert string to be used
 	 */
@@ -585,6 +640,12 @@ public abstract class AbstractJdbcInsert {
 	 */
 	//TODO synchronize parameter setters with the SimpleJdbcTemplate
 	private int[] executeBatchInternal(final List<Object>[] batchValues) {
+		if (this.multiRowInsert && batchValues.length > 1 && this.tableMetaDataContext.isMultiRowInsertSupported()) {
+			int rowsPerStatement = determineRowsPerStatement();
+			if (rowsPerStatement > 1) {
+				return executeMultiRowInsertInternal(batchValues, rowsPerStatement);
+			}
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Executing statement " + getInsertString() + " with batch of size: " + batchValues.length);
 		}
@@ -604,6 +665,84 @@ public abstract class AbstractJdbcInsert {
 		return updateCounts;
 	}
 
+	/**
+	 * Determine the number of rows per multi-row insert statement, based on
+	 * the configured maximum and the parameter limit of the database.
+	 */
+	private int determineRowsPerStatement() {
+		int columnCount = getInsertTypes().length;
+		if (columnCount < 1) {
+			return 0;
+		}
+		return Math.min(this.maxRowsPerStatement, this.tableMetaDataContext.getMaxParametersPerStatement() / columnCount);
+	}
+
+	/**
+	 * Method to execute the batch insert in chunks of multi-row insert statements
+	 */
+	private int[] executeMultiRowInsertInternal(final List<Object>[] batchValues, final int rowsPerStatement) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing multi-row insert into " + getTableName() + " with batch of size: " +
+					batchValues.length + " and " + rowsPerStatement + " rows per statement");
+		}
+		final int[] updateCounts = new int[batchValues.length];
+		jdbcTemplate.execute(new ConnectionCallback() {
+			public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+				int fullChunks = batchValues.length / rowsPerStatement;
+				int remainder = batchValues.length % rowsPerStatement;
+				if (fullChunks > 0) {
+					PreparedStatement ps = null;
+					try {
+						ps = con.prepareStatement(
+								tableMetaDataContext.createInsertString(getGeneratedKeyNames(), rowsPerStatement));
+						for (int chunk = 0; chunk < fullChunks; chunk++) {
+							executeChunk(ps, batchValues, chunk * rowsPerStatement, rowsPerStatement, updateCounts);
+						}
+					}
+					finally {
+						JdbcUtils.closeStatement(ps);
+					}
+				}
+				if (remainder > 0) {
+					PreparedStatement ps = null;
+					try {
+						ps = con.prepareStatement(
+								tableMetaDataContext.createInsertString(getGeneratedKeyNames(), remainder));
+						executeChunk(ps, batchValues, fullChunks * rowsPerStatement, remainder, updateCounts);
+					}
+					finally {
+						JdbcUtils.closeStatement(ps);
+					}
+				}
+				return null;
+			}
+		});
+		return updateCounts;
+	}
+
+	/**
+	 * Bind the values for a chunk of rows to the given multi-row insert statement,
+	 * execute it and record the update counts for the rows of the chunk.
+	 */
+	private void executeChunk(PreparedStatement ps, List<Object>[] batchValues, int offset, int rowCount,
+			int[] updateCounts) throws SQLException {
+
+		int[] columnTypes = getInsertTypes();
+		int colIndex = 0;
+		for (int row = offset; row < offset + rowCount; row++) {
+			int typeIndex = 0;
+			for (Object value : batchValues[row]) {
+				colIndex++;
+				int sqlType = (typeIndex < columnTypes.length ? columnTypes[typeIndex] : SqlTypeValue.TYPE_UNKNOWN);
+				StatementCreatorUtils.setParameterValue(ps, colIndex, sqlType, value);
+				typeIndex++;
+			}
+		}
+		int rowsAffected = ps.executeUpdate();
+		int updateCount = (rowsAffected == rowCount ? 1 : Statement.SUCCESS_NO_INFO);
+		Arrays.fill(updateCounts, offset, offset + rowCount, updateCount);
+	}
+
 	/**
 	 * Internal implementation for setting parameter values
 	 * @param preparedStatement the PreparedStatement
@@ -24,6 +24,7 @@ import javax.sql.DataSource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.metadata.MetaDataProviderCache;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
 /**
@@ -139,6 +140,18 @@ public class SimpleJdbcCall extends AbstractJdbcCall implements SimpleJdbcCallOp
 		return this;
 	}
 
+	/**
+	 * Obtain the parameter meta data from the provided cache, sharing it with
+	 * other calls of the same procedure or function.
+	 * @param metaDataProviderCache the cache to use, e.g.
+	 * {@link MetaDataProviderCache#getSharedInstance()}
+	 * @return the instance of this SimpleJdbcCall
+	 */
+	public SimpleJdbcCall useMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		setMetaDataProviderCache(metaDataProviderCache);
+		return this;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T executeFunction(Class<T> returnType, Object... args) {
 		return (T) doExecute(args).get(getScalarOutParameterName());
@@ -22,6 +22,7 @@ import java.util.Map;
 import javax.sql.DataSource;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.metadata.MetaDataProviderCache;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
@@ -110,6 +111,43 @@ public class SimpleJdbcInsert extends AbstractJdbcInsert implements SimpleJdbcIn
 		return this;
 	}
 
+	/**
+	 * Obtain the column meta data from the provided cache, sharing it with
+	 * other inserts into the same table.
+	 * @param metaDataProviderCache the cache to use, e.g.
+	 * {@link MetaDataProviderCache#getSharedInstance()}
+	 * @return the instance of this SimpleJdbcInsert
+	 */
+	public SimpleJdbcInsert useMetaDataProviderCache(MetaDataProviderCache metaDataProviderCache) {
+		setMetaDataProviderCache(metaDataProviderCache);
+		return this;
+	}
+
+	/**
+	 * Insert batches through multi-row <code>INSERT ... VALUES (...), (...)</code>
+	 * statements where the database supports them.
+	 * @return the instance of this SimpleJdbcInsert
+	 * @see #setMultiRowInsert
+	 */
+	public SimpleJdbcInsert useMultiRowInsert() {
+		setMultiRowInsert(true);
+		return this;
+	}
+
+	/**
+	 * Insert batches through multi-row <code>INSERT ... VALUES (...), (...)</code>
+	 * statements where the database supports them, with at most the given number
+	 * of rows per statement.
+	 * @param maxRowsPerStatement the maximum number of rows per statement
+	 * @return the instance of this SimpleJdbcInsert
+	 * @see #setMaxRowsPerStatement
+	 */
+	public SimpleJdbcInsert useMultiRowInsert(int maxRowsPerStatement) {
+		setMaxRowsPerStatement(maxRowsPerStatement);
+		setMultiRowInsert(true);
+		return this;
+	}
+
 	public int execute(Map<String, Object> args) {
 		return doExecute(args);
 	}
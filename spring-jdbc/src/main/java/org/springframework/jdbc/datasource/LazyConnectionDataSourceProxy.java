@@ -66,6 +66,11 @@ import org.springframework.core.Constants;
  * You will get the same effect with non-transactional reads, but lazy fetching
  * of JDBC Connections allows you to still perform reads in transactions.
  *
+ * <p>Deferring the Connection fetch also allows a routing DataSource behind this
+ * proxy to take the current transaction's characteristics into account, such as
+ * its read-only flag which only gets exposed once the transaction has begun.
+ * See {@link org.springframework.jdbc.datasource.lookup.ReplicaRoutingDataSource}.
+ *
  * <p><b>NOTE:</b> This DataSource proxy needs to return wrapped Connections to
  * handle lazy fetching of an actual JDBC Connection. Therefore, the returned
  * Connections cannot be cast to a native JDBC Connection type like OracleConnection,
@@ -20,19 +20,44 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 
 /**
  * {@link DatabasePopulator} implementation that delegates to a list of other
  * DatabasePopulator implementations, executing all scripts.
  *
+ * <p>By default, the delegates are executed one after the other on the given
+ * Connection. If a {@link #setDataSource DataSource} and a
+ * {@link #setTaskExecutor TaskExecutor} are specified, the delegates are considered
+ * independent of each other and executed in parallel instead: The first delegate
+ * runs on the given Connection in the calling thread, while each further delegate
+ * runs on a Connection of its own, obtained from the DataSource through
+ * {@link DataSourceUtils}.
+ *
  * @author Dave Syer
  * @author Juergen Hoeller
  * @since 3.1
  */
 public class CompositeDatabasePopulator implements DatabasePopulator {
 
+	private static final Log logger = LogFactory.getLog(CompositeDatabasePopulator.class);
+
 	private List<DatabasePopulator> populators = new ArrayList<DatabasePopulator>();
 
+	private DataSource dataSource;
+
+	private TaskExecutor taskExecutor;
+
 
 	/**
 	 * Specify a list of populators to delegate to.
@@ -50,10 +75,100 @@ public class CompositeDatabasePopulator implements DatabasePopulator {
 	}
 
 
+	/**
+	 * Specify the DataSource to obtain a Connection per delegate from
+	 * when executing the delegates in parallel.
+	 * @see #setTaskExecutor
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Specify the TaskExecutor to execute the delegates in parallel with.
+	 * Only applies in combination with a {@link #setDataSource DataSource}.
+	 * <p>Note that all but the first delegate will run on separate Connections and
+	 * therefore must not depend on each other's changes, or on uncommitted changes
+	 * made through the Connection passed into {@link #populate}. If the TaskExecutor
+	 * rejects a delegate, that delegate is executed in the calling thread instead.
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+
 	public void populate(Connection connection) throws SQLException {
+		if (this.dataSource != null && this.taskExecutor != null && this.populators.size() > 1) {
+			populateInParallel(connection);
+			return;
+		}
 		for (DatabasePopulator populator : this.populators) {
 			populator.populate(connection);
 		}
 	}
 
+	/**
+	 * Execute the first delegate on the given Connection and all further delegates
+	 * through the TaskExecutor, waiting for all of them to complete.
+	 * The first failure encountered will be rethrown.
+	 */
+	private void populateInParallel(Connection connection) throws SQLException {
+		List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(this.populators.size() - 1);
+		for (final DatabasePopulator populator : this.populators.subList(1, this.populators.size())) {
+			FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+				public Object call() throws SQLException {
+					Connection taskConnection = DataSourceUtils.getConnection(dataSource);
+					try {
+						populator.populate(taskConnection);
+					}
+					finally {
+						DataSourceUtils.releaseConnection(taskConnection, dataSource);
+					}
+					return null;
+				}
+			});
+			tasks.add(task);
+			try {
+				this.taskExecutor.execute(task);
+			}
+			catch (TaskRejectedException ex) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("TaskExecutor rejected database populator [" + populator +
+							"] - executing it in the calling thread", ex);
+				}
+				task.run();
+			}
+		}
+		Throwable failure = null;
+		try {
+			this.populators.get(0).populate(connection);
+		}
+		catch (Throwable ex) {
+			failure = ex;
+		}
+		for (FutureTask<Object> task : tasks) {
+			try {
+				task.get();
+			}
+			catch (ExecutionException ex) {
+				if (failure == null) {
+					failure = ex.getCause();
+				}
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for database population", ex);
+			}
+		}
+		if (failure instanceof SQLException) {
+			throw (SQLException) failure;
+		}
+		else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		else if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+	}
+
 }
@@ -18,6 +18,7 @@ package org.springframework.jdbc.datasource.init;
 
 import java.io.IOException;
 import java.io.LineNumberReader;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -51,6 +52,8 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 
 	private static String DEFAULT_STATEMENT_SEPARATOR = ";";
 
+	private static int DEFAULT_BATCH_SIZE = 100;
+
 	private static final Log logger = LogFactory.getLog(ResourceDatabasePopulator.class);
 
 
@@ -66,6 +69,8 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 
 	private boolean ignoreFailedDrops = false;
 
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
 
 	/**
 	 * Add a script to execute to populate the database.
@@ -126,6 +131,18 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 		this.ignoreFailedDrops = ignoreFailedDrops;
 	}
 
+	/**
+	 * Set the maximum number of consecutive DML statements (<code>INSERT</code>,
+	 * <code>UPDATE</code>, <code>DELETE</code>, <code>MERGE</code>) to send to the
+	 * database as a single JDBC batch. Default is 100; specify 1 to execute every
+	 * statement on its own.
+	 * <p>Batching only applies if the driver supports batch updates and
+	 * {@link #setContinueOnError "continueOnError"} is not set.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 
 	public void populate(Connection connection) throws SQLException {
 		for (Resource script : this.scripts) {
@@ -146,6 +163,9 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 	 * Execute the given SQL script.
 	 * <p>The script will normally be loaded by classpath. There should be one statement
 	 * per line. Any {@link #setSeparator(String) statement separators} will be removed.
+	 * <p>The script is read and split into statements in a streaming fashion, holding
+	 * only the current statement in memory. Consecutive DML statements are sent as
+	 * JDBC batches of up to {@link #setBatchSize "batchSize"} statements.
 	 * <p><b>Do not use this method to execute DDL if you expect rollback.</b>
 	 * @param connection the JDBC Connection with which to perform JDBC operations
 	 * @param resource the resource (potentially associated with a specific encoding) to load the SQL script from
@@ -159,27 +179,30 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 			logger.info("Executing SQL script from " + resource);
 		}
 		long startTime = System.currentTimeMillis();
-		List<String> statements = new LinkedList<String>();
-		String script;
-		try {
-			script = readScript(resource);
+		// Batches cannot tell which statement failed reliably enough to continue after errors
+		int batchSize = (continueOnError ? 1 : this.batchSize);
+		if (batchSize > 1 && !connection.getMetaData().supportsBatchUpdates()) {
+			batchSize = 1;
 		}
-		catch (IOException ex) {
-			throw new CannotReadScriptException(resource, ex);
-		}
-		String delimiter = this.separator;
-		if (delimiter == null) {
-			delimiter = DEFAULT_STATEMENT_SEPARATOR;
-			if (!containsSqlScriptDelimiters(script, delimiter)) {
-				delimiter = "\n";
-			}
-		}
-		splitSqlScript(script, delimiter, statements);
+		StatementReader statements = openStatementReader(resource);
+		List<String> batch = new ArrayList<String>(batchSize > 1 ? batchSize : 0);
 		int lineNumber = 0;
 		Statement stmt = connection.createStatement();
 		try {
-			for (String statement : statements) {
+			String statement;
+			while ((statement = statements.nextStatement()) != null) {
 				lineNumber++;
+				if (batchSize > 1 && isBatchableStatement(statement)) {
+					batch.add(statement);
+					stmt.addBatch(statement);
+					if (batch.size() >= batchSize) {
+						executeBatch(stmt, batch, lineNumber, resource);
+					}
+					continue;
+				}
+				if (!batch.isEmpty()) {
+					executeBatch(stmt, batch, lineNumber - 1, resource);
+				}
 				try {
 					int rowsAffected = stmt.executeUpdate(statement);
 					if (logger.isDebugEnabled()) {
@@ -199,8 +222,15 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 					}
 				}
 			}
+			if (!batch.isEmpty()) {
+				executeBatch(stmt, batch, lineNumber, resource);
+			}
+		}
+		catch (IOException ex) {
+			throw new CannotReadScriptException(resource, ex);
 		}
 		finally {
+			statements.close();
 			try {
 				stmt.close();
 			}
@@ -215,107 +245,321 @@ public class ResourceDatabasePopulator implements DatabasePopulator {
 	}
 
 	/**
-	 * Read a script from the given resource and build a String containing the lines.
+	 * Determine whether the given statement may be sent as part of a JDBC batch,
+	 * i.e. whether it is a DML statement.
+	 */
+	private boolean isBatchableStatement(String statement) {
+		String trimmed = statement.trim();
+		return (StringUtils.startsWithIgnoreCase(trimmed, "insert") ||
+				StringUtils.startsWithIgnoreCase(trimmed, "update") ||
+				StringUtils.startsWithIgnoreCase(trimmed, "delete") ||
+				StringUtils.startsWithIgnoreCase(trimmed, "merge"));
+	}
+
+	/**
+	 * Execute the statements added to the given JDBC Statement as a batch.
+	 * @param stmt the Statement holding the batch
+	 * @param batch the SQL statements in the batch, cleared after execution
+	 * @param lastLineNumber the line number of the last statement in the batch
+	 * @param resource the resource that the statements have been read from
+	 */
+	private void executeBatch(Statement stmt, List<String> batch, int lastLineNumber, EncodedResource resource)
+			throws SQLException {
+
+		try {
+			int[] rowsAffected = stmt.executeBatch();
+			if (logger.isDebugEnabled()) {
+				for (int i = 0; i < batch.size(); i++) {
+					logger.debug((i < rowsAffected.length ? rowsAffected[i] : "Unknown") +
+							" rows affected by SQL: " + batch.get(i));
+				}
+			}
+		}
+		catch (BatchUpdateException ex) {
+			// Drivers either stop at the failed statement or mark it as failed
+			int[] updateCounts = ex.getUpdateCounts();
+			int failedIndex = (updateCounts != null ? updateCounts.length : 0);
+			if (updateCounts != null) {
+				for (int i = 0; i < updateCounts.length; i++) {
+					if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+						failedIndex = i;
+						break;
+					}
+				}
+			}
+			failedIndex = Math.min(failedIndex, batch.size() - 1);
+			int lineNumber = lastLineNumber - (batch.size() - 1) + failedIndex;
+			throw new ScriptStatementFailedException(batch.get(failedIndex), lineNumber, resource, ex);
+		}
+		finally {
+			batch.clear();
+			stmt.clearBatch();
+		}
+	}
+
+	/**
+	 * Open a reader for the statements in the given script resource.
+	 * <p>If no separator has been specified, the script is scanned for the default
+	 * separator first in order to decide whether to split at separators or at line
+	 * breaks. Resources that can be read repeatedly are scanned in a separate pass;
+	 * for a stream that can only be read once, the lines up to the first separator
+	 * are kept and replayed to the statement reader instead.
 	 * @param resource the resource to be read
-	 * @return <code>String</code> containing the script lines
-	 * @throws IOException in case of I/O errors
+	 * @return the statement reader (to be closed by the caller)
 	 */
-	private String readScript(EncodedResource resource) throws IOException {
-		LineNumberReader lnr = new LineNumberReader(resource.getReader());
-		String currentStatement = lnr.readLine();
-		StringBuilder scriptBuilder = new StringBuilder();
-		while (currentStatement != null) {
-			if (StringUtils.hasText(currentStatement) &&
-					(this.commentPrefix != null && !currentStatement.startsWith(this.commentPrefix))) {
-				if (scriptBuilder.length() > 0) {
-					scriptBuilder.append('\n');
+	private StatementReader openStatementReader(EncodedResource resource) {
+		ScriptLineReader lines = null;
+		try {
+			String delimiter = this.separator;
+			if (delimiter == null) {
+				delimiter = DEFAULT_STATEMENT_SEPARATOR;
+				boolean containsDelimiters;
+				if (resource.getResource().isOpen()) {
+					lines = new ScriptLineReader(resource);
+					containsDelimiters = containsSqlScriptDelimiters(lines, delimiter, true);
+				}
+				else {
+					ScriptLineReader scanned = new ScriptLineReader(resource);
+					try {
+						containsDelimiters = containsSqlScriptDelimiters(scanned, delimiter, false);
+					}
+					finally {
+						scanned.close();
+					}
+				}
+				if (!containsDelimiters) {
+					delimiter = "\n";
 				}
-				scriptBuilder.append(currentStatement);
 			}
-			currentStatement = lnr.readLine();
+			if (lines == null) {
+				lines = new ScriptLineReader(resource);
+			}
+			return new StatementReader(lines, delimiter, trailingSeparatorWhitespace());
+		}
+		catch (IOException ex) {
+			if (lines != null) {
+				lines.close();
+			}
+			throw new CannotReadScriptException(resource, ex);
+		}
+		catch (RuntimeException ex) {
+			if (lines != null) {
+				lines.close();
+			}
+			throw ex;
 		}
-		maybeAddSeparatorToScript(scriptBuilder);
-		return scriptBuilder.toString();
 	}
 
-	private void maybeAddSeparatorToScript(StringBuilder scriptBuilder) {
+	/**
+	 * Return the whitespace that a custom separator ends with, if any: A script ending
+	 * with the remainder of the separator will be treated as ending with the full separator.
+	 */
+	private String trailingSeparatorWhitespace() {
 		if (this.separator == null) {
-			return;
+			return null;
 		}
 		String trimmed = this.separator.trim();
 		if (trimmed.length() == this.separator.length()) {
-			return;
-		}
-		// separator ends in whitespace, so we might want to see if the script is trying to end the same way
-		if (scriptBuilder.lastIndexOf(trimmed) == scriptBuilder.length() - trimmed.length()) {
-			scriptBuilder.append(this.separator.substring(trimmed.length()));
+			return null;
 		}
+		return this.separator.substring(trimmed.length());
 	}
 
 	/**
 	 * Does the provided SQL script contain the specified delimiter?
-	 * @param script the SQL script
+	 * <p>Reads lines up to the first delimiter only.
+	 * @param lines the reader for the lines of the SQL script
 	 * @param delim character delimiting each statement - typically a ';' character
+	 * @param pushBack whether to push the lines read back to the given reader
+	 * for the actual statement splitting
 	 */
-	private boolean containsSqlScriptDelimiters(String script, String delim) {
-		boolean inLiteral = false;
-		char[] content = script.toCharArray();
-		for (int i = 0; i < script.length(); i++) {
-			if (content[i] == '\'') {
-				inLiteral = !inLiteral;
+	private boolean containsSqlScriptDelimiters(ScriptLineReader lines, String delim, boolean pushBack)
+			throws IOException {
+
+		List<String> linesRead = (pushBack ? new ArrayList<String>() : null);
+		try {
+			boolean inLiteral = false;
+			String line;
+			while ((line = lines.readLine()) != null) {
+				if (linesRead != null) {
+					linesRead.add(line);
+				}
+				for (int i = 0; i < line.length(); i++) {
+					if (line.charAt(i) == '\'') {
+						inLiteral = !inLiteral;
+					}
+					if (!inLiteral && line.startsWith(delim, i)) {
+						return true;
+					}
+				}
 			}
-			if (!inLiteral && script.substring(i).startsWith(delim)) {
-				return true;
+			return false;
+		}
+		finally {
+			if (linesRead != null) {
+				lines.pushBack(linesRead);
 			}
 		}
-		return false;
 	}
 
+
 	/**
-	 * Split an SQL script into separate statements delimited with the provided delimiter character.
-	 * Each individual statement will be added to the provided <code>List</code>.
-	 * @param script the SQL script
-	 * @param delim character delimiting each statement (typically a ';' character)
-	 * @param statements the List that will contain the individual statements
+	 * Reads the relevant lines of a script, skipping blank lines and comment lines.
 	 */
-	private void splitSqlScript(String script, String delim, List<String> statements) {
-		StringBuilder sb = new StringBuilder();
-		boolean inLiteral = false;
-		boolean inEscape = false;
-		char[] content = script.toCharArray();
-		for (int i = 0; i < script.length(); i++) {
-			char c = content[i];
-			if (inEscape) {
-				inEscape = false;
-				sb.append(c);
-				continue;
+	private class ScriptLineReader {
+
+		private final LineNumberReader reader;
+
+		/** Lines that have been read already but are to be returned again */
+		private final LinkedList<String> pushedBack = new LinkedList<String>();
+
+		public ScriptLineReader(EncodedResource resource) throws IOException {
+			this.reader = new LineNumberReader(resource.getReader());
+		}
+
+		public String readLine() throws IOException {
+			if (!this.pushedBack.isEmpty()) {
+				return this.pushedBack.removeFirst();
 			}
-			// MySQL style escapes
-			if (c == '\\') {
-				inEscape = true;
-				sb.append(c);
-				continue;
+			String line = this.reader.readLine();
+			while (line != null && !(StringUtils.hasText(line) &&
+					(commentPrefix != null && !line.startsWith(commentPrefix)))) {
+				line = this.reader.readLine();
 			}
-			if (c == '\'') {
-				inLiteral = !inLiteral;
+			return line;
+		}
+
+		/**
+		 * Return the given lines from subsequent {@link #readLine} calls,
+		 * ahead of any lines not read yet.
+		 */
+		public void pushBack(List<String> lines) {
+			this.pushedBack.addAll(0, lines);
+		}
+
+		public void close() {
+			try {
+				this.reader.close();
 			}
-			if (!inLiteral) {
-				if (script.substring(i).startsWith(delim)) {
-					if (sb.length() > 0) {
-						statements.add(sb.toString());
-						sb = new StringBuilder();
-					}
-					i += delim.length() - 1;
+			catch (IOException ex) {
+				logger.debug("Could not close SQL script reader", ex);
+			}
+		}
+	}
+
+
+	/**
+	 * Splits a script into separate statements delimited with the provided delimiter,
+	 * reading ahead no further than needed to detect the next delimiter.
+	 * Lines are joined with newlines, which are replaced with spaces outside of literals.
+	 */
+	private static class StatementReader {
+
+		private final ScriptLineReader lines;
+
+		private final String delimiter;
+
+		private final String trailingSeparatorWhitespace;
+
+		/** Read-ahead text, consumed from position {@link #pos} onwards */
+		private String buffer = "";
+
+		private int pos = 0;
+
+		private boolean firstLine = true;
+
+		private boolean exhausted = false;
+
+		private boolean inLiteral = false;
+
+		private boolean inEscape = false;
+
+		public StatementReader(ScriptLineReader lines, String delimiter, String trailingSeparatorWhitespace) {
+			this.lines = lines;
+			this.delimiter = delimiter;
+			this.trailingSeparatorWhitespace = trailingSeparatorWhitespace;
+		}
+
+		/**
+		 * Return the next statement in the script, or <code>null</code> if none left.
+		 */
+		public String nextStatement() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			while (ensureAvailable(1, sb)) {
+				char c = this.buffer.charAt(this.pos);
+				if (this.inEscape) {
+					this.inEscape = false;
+					sb.append(c);
+					this.pos++;
 					continue;
 				}
-				else if (c == '\n' || c == '\t') {
-					c = ' ';
+				// MySQL style escapes
+				if (c == '\\') {
+					this.inEscape = true;
+					sb.append(c);
+					this.pos++;
+					continue;
+				}
+				if (c == '\'') {
+					this.inLiteral = !this.inLiteral;
+				}
+				if (!this.inLiteral) {
+					if (ensureAvailable(this.delimiter.length(), sb) && this.buffer.startsWith(this.delimiter, this.pos)) {
+						this.pos += this.delimiter.length();
+						if (sb.length() > 0) {
+							return sb.toString();
+						}
+						continue;
+					}
+					else if (c == '\n' || c == '\t') {
+						c = ' ';
+					}
+				}
+				sb.append(c);
+				this.pos++;
+			}
+			if (StringUtils.hasText(sb)) {
+				return sb.toString();
+			}
+			return null;
+		}
+
+		/**
+		 * Make sure that the given number of characters is available in the read-ahead buffer.
+		 * @param count the number of characters needed
+		 * @param current the statement read so far, for matching a trailing separator
+		 * @return whether the characters are available, or the end of the script was reached
+		 */
+		private boolean ensureAvailable(int count, StringBuilder current) throws IOException {
+			while (this.buffer.length() - this.pos < count) {
+				if (this.exhausted) {
+					return false;
 				}
+				String remainder = this.buffer.substring(this.pos);
+				String line = this.lines.readLine();
+				if (line != null) {
+					this.buffer = (this.firstLine ? line : remainder + '\n' + line);
+					this.firstLine = false;
+				}
+				else {
+					this.exhausted = true;
+					this.buffer = remainder;
+					if (this.trailingSeparatorWhitespace != null) {
+						String trimmed = this.delimiter.substring(0,
+								this.delimiter.length() - this.trailingSeparatorWhitespace.length());
+						String tail = (remainder.length() >= trimmed.length() ? remainder : current + remainder);
+						if (tail.endsWith(trimmed)) {
+							this.buffer = remainder + this.trailingSeparatorWhitespace;
+						}
+					}
+				}
+				this.pos = 0;
 			}
-			sb.append(c);
+			return true;
 		}
-		if (StringUtils.hasText(sb)) {
-			statements.add(sb.toString());
+
+		public void close() {
+			this.lines.close();
 		}
 	}
 
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.jdbc.datasource.lookup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * {@link javax.sql.DataSource} that routes connections for read-only transactions
+ * to a pool of replica DataSources, with all other work going to the primary
+ * DataSource. Replicas are chosen in round-robin order; a replica that fails to
+ * hand out a Connection is taken out of rotation and retried once the
+ * {@link #setRetryInterval retry interval} has elapsed. If no replica is
+ * available, read-only work falls back to the primary DataSource.
+ *
+ * <p>The routing decision is based on
+ * {@link TransactionSynchronizationManager#isCurrentTransactionReadOnly()}, which
+ * a transaction manager only exposes <i>after</i> it has begun the transaction.
+ * A transaction manager such as
+ * {@link org.springframework.jdbc.datasource.DataSourceTransactionManager}
+ * fetches its Connection in the course of beginning the transaction, so this
+ * router needs to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * which defers the actual Connection fetch until the first Statement is created:
+ *
+ * <pre class="code">
+ * &lt;bean id="dataSource" class="org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy"&gt;
+ *   &lt;property name="targetDataSource"&gt;
+ *     &lt;bean class="org.springframework.jdbc.datasource.lookup.ReplicaRoutingDataSource"&gt;
+ *       &lt;property name="primaryDataSource" ref="primaryDataSource"/&gt;
+ *       &lt;property name="replicaDataSources"&gt;
+ *         &lt;list&gt;&lt;ref bean="replica1"/&gt;&lt;ref bean="replica2"/&gt;&lt;/list&gt;
+ *       &lt;/property&gt;
+ *     &lt;/bean&gt;
+ *   &lt;/property&gt;
+ * &lt;/bean&gt;
+ *
+ * &lt;bean id="transactionManager" class="org.springframework.jdbc.datasource.DataSourceTransactionManager"&gt;
+ *   &lt;property name="dataSource" ref="dataSource"/&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * With this setup, <code>@Transactional(readOnly=true)</code> methods execute
+ * their statements against a replica, as long as transaction synchronization
+ * is active (the default). Read-only transactions participating in an outer
+ * read-write transaction keep using the outer transaction's primary Connection.
+ *
+ * <p>Replicas may additionally be checked proactively through {@link #checkReplicas()},
+ * e.g. from a scheduled task, optionally running a {@link #setValidationQuery
+ * validation query} against each of them.
+ *
+ * @author agent
+ * @since 3.1
+ * @see org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy
+ * @see TransactionSynchronizationManager#isCurrentTransactionReadOnly()
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean {
+
+	private DataSource primaryDataSource;
+
+	private List<Replica> replicas = Collections.emptyList();
+
+	private long retryInterval = 30000;
+
+	private boolean fallbackToPrimary = true;
+
+	private String validationQuery;
+
+	private final AtomicInteger nextReplica = new AtomicInteger();
+
+
+	/**
+	 * Set the primary DataSource, used for all work except read-only transactions.
+	 */
+	public void setPrimaryDataSource(DataSource primaryDataSource) {
+		this.primaryDataSource = primaryDataSource;
+	}
+
+	/**
+	 * Return the primary DataSource.
+	 */
+	public DataSource getPrimaryDataSource() {
+		return this.primaryDataSource;
+	}
+
+	/**
+	 * Set the replica DataSources to balance read-only transactions across.
+	 */
+	public void setReplicaDataSources(List<DataSource> replicaDataSources) {
+		List<Replica> replicas = new ArrayList<Replica>(replicaDataSources.size());
+		for (DataSource dataSource : replicaDataSources) {
+			replicas.add(new Replica(dataSource));
+		}
+		this.replicas = replicas;
+	}
+
+	/**
+	 * Set the interval (in milliseconds) after which a replica that failed
+	 * to provide a Connection is tried again. Default is 30000 (30 seconds).
+	 */
+	public void setRetryInterval(long retryInterval) {
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Set whether read-only work should fall back to the primary DataSource
+	 * if no replica is available. Default is "true"; switch this to "false"
+	 * to fail with an SQLException instead.
+	 */
+	public void setFallbackToPrimary(boolean fallbackToPrimary) {
+		this.fallbackToPrimary = fallbackToPrimary;
+	}
+
+	/**
+	 * Set an SQL query to run against each replica in {@link #checkReplicas()},
+	 * e.g. "SELECT 1". Default is none, considering a replica healthy as soon
+	 * as it is able to provide a Connection.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	public void afterPropertiesSet() {
+		Assert.notNull(this.primaryDataSource, "Property 'primaryDataSource' is required");
+	}
+
+
+	public Connection getConnection() throws SQLException {
+		return getConnection(null, null);
+	}
+
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (isReadOnly() && !this.replicas.isEmpty()) {
+			Connection con = getReplicaConnection(username, password);
+			if (con != null) {
+				return con;
+			}
+			if (!this.fallbackToPrimary) {
+				throw new SQLException("No replica DataSource available for read-only transaction");
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("No replica DataSource available - falling back to primary DataSource");
+			}
+		}
+		return doGetConnection(this.primaryDataSource, username, password);
+	}
+
+	/**
+	 * Determine whether the current Connection request is meant for read-only work.
+	 * <p>The default implementation checks the read-only flag of the current
+	 * transaction. Can be overridden to take further criteria into account.
+	 * @see TransactionSynchronizationManager#isCurrentTransactionReadOnly()
+	 */
+	protected boolean isReadOnly() {
+		return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	/**
+	 * Obtain a Connection from the next available replica in round-robin order,
+	 * taking replicas that fail out of rotation.
+	 * @return the Connection, or <code>null</code> if no replica is available
+	 */
+	protected Connection getReplicaConnection(String username, String password) {
+		List<Replica> replicas = this.replicas;
+		int count = replicas.size();
+		int start = (this.nextReplica.getAndIncrement() & Integer.MAX_VALUE) % count;
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			Replica replica = replicas.get((start + i) % count);
+			if (replica.isAvailable(now, this.retryInterval)) {
+				try {
+					Connection con = doGetConnection(replica.dataSource, username, password);
+					replica.markUp();
+					return con;
+				}
+				catch (SQLException ex) {
+					replica.markDown(now);
+					logger.warn("Replica DataSource [" + replica.dataSource + "] failed to provide a Connection - " +
+							"taking it out of rotation for " + this.retryInterval + " ms", ex);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check all replicas for health, obtaining a Connection from each of them
+	 * and running the validation query if specified. Healthy replicas are put
+	 * back into rotation right away; failing ones are taken out of rotation.
+	 * <p>Suitable for invocation from a scheduled task.
+	 * @return the number of healthy replicas
+	 * @see #setValidationQuery
+	 */
+	public int checkReplicas() {
+		int healthy = 0;
+		for (Replica replica : this.replicas) {
+			try {
+				Connection con = replica.dataSource.getConnection();
+				try {
+					if (this.validationQuery != null) {
+						Statement stmt = con.createStatement();
+						try {
+							stmt.execute(this.validationQuery);
+						}
+						finally {
+							stmt.close();
+						}
+					}
+				}
+				finally {
+					con.close();
+				}
+				replica.markUp();
+				healthy++;
+			}
+			catch (SQLException ex) {
+				replica.markDown(System.currentTimeMillis());
+				logger.warn("Replica DataSource [" + replica.dataSource + "] failed health check", ex);
+			}
+		}
+		return healthy;
+	}
+
+	/**
+	 * Return the number of replicas currently in rotation.
+	 */
+	public int getAvailableReplicaCount() {
+		int available = 0;
+		for (Replica replica : this.replicas) {
+			if (replica.healthy) {
+				available++;
+			}
+		}
+		return available;
+	}
+
+	private Connection doGetConnection(DataSource dataSource, String username, String password)
+			throws SQLException {
+
+		return (username != null ? dataSource.getConnection(username, password) : dataSource.getConnection());
+	}
+
+
+	/**
+	 * Health state of a single replica DataSource.
+	 */
+	private static class Replica {
+
+		private final DataSource dataSource;
+
+		private volatile boolean healthy = true;
+
+		private volatile long downSince;
+
+		public Replica(DataSource dataSource) {
+			Assert.notNull(dataSource, "Replica DataSource must not be null");
+			this.dataSource = dataSource;
+		}
+
+		public boolean isAvailable(long now, long retryInterval) {
+			return (this.healthy || now - this.downSince >= retryInterval);
+		}
+
+		public void markUp() {
+			this.healthy = true;
+		}
+
+		public void markDown(long now) {
+			this.downSince = now;
+			this.healthy = false;
+		}
+	}
+
+}
@@ -246,4 +246,16 @@ public class SQLErrorCodesFactory {
 		}
 	}
 
+	/**
+	 * Clear the cache for the specified {@link DataSource}, if registered.
+	 * @param dataSource the <code>DataSource</code> identifying the database
+	 * @return the corresponding <code>SQLErrorCodes</code> object that got removed,
+	 * or <code>null</code> if not registered
+	 */
+	public SQLErrorCodes unregisterDatabase(DataSource dataSource) {
+		synchronized (this.dataSourceCache) {
+			return this.dataSourceCache.remove(dataSource);
+		}
+	}
+
 }
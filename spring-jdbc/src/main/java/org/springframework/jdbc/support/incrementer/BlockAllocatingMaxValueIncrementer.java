@@ -0,0 +1,407 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.incrementer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataFieldMaxValueIncrementer} decorator that allocates keys in blocks,
+ * serving the keys of the current block from memory without any locking.
+ * Works with any target incrementer, column- as well as sequence-based.
+ *
+ * <p>Two allocation strategies are supported:
+ * <ul>
+ * <li><b>hi/lo</b> (the default): every value <i>hi</i> obtained from the target
+ * incrementer reserves the block <code>[hi * blockSize, hi * blockSize + blockSize - 1]</code>.
+ * The target sequence simply increments by one.
+ * <li><b>pooled</b>: the target sequence is expected to increment by "blockSize"
+ * itself (e.g. <code>create sequence seq increment by 100</code>), with every value
+ * <i>v</i> reserving the block <code>[v - blockSize + 1, v]</code>. This keeps the
+ * database value meaningful for other clients inserting without this incrementer.
+ * </ul>
+ *
+ * <p>Once the current block has no more than "prefetchThreshold" keys left, the next
+ * block is fetched ahead of exhaustion through the configured {@link TaskExecutor}.
+ * If the executor rejects the fetch (and for the very first block), the first caller
+ * hitting the exhausted block performs it inline instead.
+ *
+ * <p>Either way, every block is fetched in a new transaction of its own
+ * ({@link TransactionDefinition#PROPAGATION_REQUIRES_NEW}), suspending any transaction
+ * of the calling thread: The target incrementer's database update is committed right
+ * away on a separate Connection, so a rollback of the calling transaction cannot undo
+ * it while the block is still in use. By default, a {@link DataSourceTransactionManager}
+ * is used for the DataSource of the target incrementer; specify a custom
+ * {@link #setTransactionManager "transactionManager"} for other setups (e.g. JTA).
+ *
+ * <p>As with the "cacheSize" setting of column-based incrementers, unused keys of
+ * a block are lost when the application is stopped; the maximum hole size in
+ * numbering is consequently twice the block size.
+ *
+ * @author agent
+ * @since 3.1
+ * @see #setTargetIncrementer
+ * @see #setBlockSize
+ * @see #setPooled
+ * @see #setPrefetchThreshold
+ */
+public class BlockAllocatingMaxValueIncrementer implements DataFieldMaxValueIncrementer, InitializingBean {
+
+	private DataFieldMaxValueIncrementer targetIncrementer;
+
+	private int blockSize = 100;
+
+	private boolean pooled = false;
+
+	private int prefetchThreshold = -1;
+
+	private TaskExecutor prefetchExecutor = new SimpleAsyncTaskExecutor(getClass().getSimpleName() + "-");
+
+	private int paddingLength = 0;
+
+	private PlatformTransactionManager transactionManager;
+
+	/** Fetches blocks in a new transaction, initialized on first use */
+	private volatile TransactionTemplate fetchTemplate;
+
+	/** The block that keys are currently served from */
+	private final AtomicReference<KeyBlock> currentBlock = new AtomicReference<KeyBlock>();
+
+	/** The pending fetch of the next block, if any */
+	private final AtomicReference<FutureTask<KeyBlock>> nextBlock = new AtomicReference<FutureTask<KeyBlock>>();
+
+	private final Callable<KeyBlock> blockFetcher = new Callable<KeyBlock>() {
+		public KeyBlock call() {
+			return (KeyBlock) getFetchTemplate().execute(new TransactionCallback() {
+				public Object doInTransaction(TransactionStatus status) {
+					return fetchBlock();
+				}
+			});
+		}
+	};
+
+
+	/**
+	 * Default constructor for bean property style usage.
+	 * @see #setTargetIncrementer
+	 */
+	public BlockAllocatingMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param targetIncrementer the incrementer to obtain blocks from
+	 * @param blockSize the number of keys per block
+	 */
+	public BlockAllocatingMaxValueIncrementer(DataFieldMaxValueIncrementer targetIncrementer, int blockSize) {
+		Assert.notNull(targetIncrementer, "Target incrementer must not be null");
+		Assert.isTrue(blockSize > 0, "Block size must be greater than 0");
+		this.targetIncrementer = targetIncrementer;
+		this.blockSize = blockSize;
+	}
+
+
+	/**
+	 * Set the incrementer to obtain the block values from.
+	 */
+	public void setTargetIncrementer(DataFieldMaxValueIncrementer targetIncrementer) {
+		this.targetIncrementer = targetIncrementer;
+	}
+
+	/**
+	 * Return the incrementer to obtain the block values from.
+	 */
+	public DataFieldMaxValueIncrementer getTargetIncrementer() {
+		return this.targetIncrementer;
+	}
+
+	/**
+	 * Set the number of keys per block. Default is 100.
+	 * <p>In "pooled" mode, this needs to match the increment of the database sequence.
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Return the number of keys per block.
+	 */
+	public int getBlockSize() {
+		return this.blockSize;
+	}
+
+	/**
+	 * Set whether the target values denote the upper bound of a block that the
+	 * database sequence itself has been incremented by ("pooled"), as opposed to
+	 * a block number to be multiplied by the block size ("hi/lo").
+	 * Default is "false".
+	 */
+	public void setPooled(boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	/**
+	 * Return whether the "pooled" allocation strategy is used.
+	 */
+	public boolean isPooled() {
+		return this.pooled;
+	}
+
+	/**
+	 * Set the number of remaining keys in the current block at which the next
+	 * block is to be fetched in the background. Default is a quarter of the block size;
+	 * specify 0 to only fetch the next block once the current one is exhausted.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+	}
+
+	/**
+	 * Return the number of remaining keys at which the next block is prefetched.
+	 */
+	public int getPrefetchThreshold() {
+		return (this.prefetchThreshold >= 0 ? this.prefetchThreshold : this.blockSize / 4);
+	}
+
+	/**
+	 * Set the TaskExecutor to fetch blocks with.
+	 * <p>Default is a {@link SimpleAsyncTaskExecutor}, fetching each block on a fresh
+	 * thread. Blocks are fetched in a new transaction in any case, so a
+	 * {@link org.springframework.core.task.SyncTaskExecutor} is a valid choice as well.
+	 * @see #setTransactionManager
+	 */
+	public void setPrefetchExecutor(TaskExecutor prefetchExecutor) {
+		Assert.notNull(prefetchExecutor, "TaskExecutor must not be null");
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	/**
+	 * Set the padding length, i.e. the length to which a string result
+	 * should be pre-pended with zeroes.
+	 */
+	public void setPaddingLength(int paddingLength) {
+		this.paddingLength = paddingLength;
+	}
+
+	/**
+	 * Return the padding length for String values.
+	 */
+	public int getPaddingLength() {
+		return this.paddingLength;
+	}
+
+	/**
+	 * Set the transaction manager to fetch each block in a new transaction with.
+	 * <p>Default is a {@link DataSourceTransactionManager} for the DataSource of
+	 * the target incrementer, which needs to be an {@link AbstractDataFieldMaxValueIncrementer}
+	 * in that case. Specify the transaction manager that drives the application's
+	 * transactions if its Connections are not managed by DataSourceUtils (e.g. JTA).
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+
+	/**
+	 * Return the transaction manager to fetch blocks with, if specified.
+	 */
+	public PlatformTransactionManager getTransactionManager() {
+		return this.transactionManager;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.targetIncrementer == null) {
+			throw new IllegalArgumentException("Property 'targetIncrementer' is required");
+		}
+		if (this.blockSize <= 0) {
+			throw new IllegalArgumentException("Property 'blockSize' must be greater than 0");
+		}
+		getFetchTemplate();
+	}
+
+	/**
+	 * Return the TransactionTemplate that fetches blocks in a new transaction,
+	 * creating it on first access.
+	 */
+	private TransactionTemplate getFetchTemplate() {
+		TransactionTemplate template = this.fetchTemplate;
+		if (template == null) {
+			PlatformTransactionManager tm = this.transactionManager;
+			if (tm == null) {
+				if (!(this.targetIncrementer instanceof AbstractDataFieldMaxValueIncrementer)) {
+					throw new IllegalArgumentException("Property 'transactionManager' is required " +
+							"for a target incrementer that does not expose its DataSource");
+				}
+				tm = new DataSourceTransactionManager(
+						((AbstractDataFieldMaxValueIncrementer) this.targetIncrementer).getDataSource());
+			}
+			template = new TransactionTemplate(tm);
+			template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+			this.fetchTemplate = template;
+		}
+		return template;
+	}
+
+
+	public int nextIntValue() throws DataAccessException {
+		return (int) getNextKey();
+	}
+
+	public long nextLongValue() throws DataAccessException {
+		return getNextKey();
+	}
+
+	public String nextStringValue() throws DataAccessException {
+		String s = Long.toString(getNextKey());
+		int len = s.length();
+		if (len < this.paddingLength) {
+			StringBuilder sb = new StringBuilder(this.paddingLength);
+			for (int i = 0; i < this.paddingLength - len; i++) {
+				sb.append('0');
+			}
+			sb.append(s);
+			s = sb.toString();
+		}
+		return s;
+	}
+
+
+	/**
+	 * Claim the next key from the current block, switching to the next block
+	 * once the current one is exhausted.
+	 */
+	protected long getNextKey() throws DataAccessException {
+		while (true) {
+			KeyBlock block = this.currentBlock.get();
+			if (block != null) {
+				long key = block.nextKey.getAndIncrement();
+				if (key <= block.lastKey) {
+					if (block.lastKey - key == getPrefetchThreshold()) {
+						startFetch();
+					}
+					return key;
+				}
+			}
+			switchBlock(block);
+		}
+	}
+
+	/**
+	 * Replace the given exhausted block with the next one, waiting for
+	 * a pending fetch or starting one if necessary.
+	 */
+	private void switchBlock(KeyBlock exhaustedBlock) {
+		FutureTask<KeyBlock> fetch = this.nextBlock.get();
+		if (fetch == null) {
+			fetch = startFetch();
+		}
+		// Runs the fetch inline - in a new transaction - if the executor did not get to it yet
+		fetch.run();
+		KeyBlock block;
+		try {
+			block = fetch.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Interrupted while waiting for key block", ex);
+		}
+		catch (ExecutionException ex) {
+			// Allow the next caller to retry the fetch
+			this.nextBlock.compareAndSet(fetch, null);
+			Throwable cause = ex.getCause();
+			if (cause instanceof DataAccessException) {
+				throw (DataAccessException) cause;
+			}
+			throw new DataAccessResourceFailureException("Could not obtain key block", cause);
+		}
+		if (this.currentBlock.compareAndSet(exhaustedBlock, block)) {
+			this.nextBlock.compareAndSet(fetch, null);
+		}
+	}
+
+	/**
+	 * Register a fetch of the next block and hand it to the prefetch executor,
+	 * unless another thread registered one already.
+	 * @return the registered fetch
+	 */
+	private FutureTask<KeyBlock> startFetch() {
+		FutureTask<KeyBlock> fetch = new FutureTask<KeyBlock>(this.blockFetcher);
+		if (!this.nextBlock.compareAndSet(null, fetch)) {
+			FutureTask<KeyBlock> existing = this.nextBlock.get();
+			if (existing != null) {
+				return existing;
+			}
+			if (!this.nextBlock.compareAndSet(null, fetch)) {
+				return this.nextBlock.get();
+			}
+		}
+		try {
+			this.prefetchExecutor.execute(fetch);
+		}
+		catch (TaskRejectedException ex) {
+			// Left to the first caller that hits the exhausted block
+		}
+		return fetch;
+	}
+
+	/**
+	 * Obtain a value from the target incrementer and determine the block it reserves.
+	 */
+	private KeyBlock fetchBlock() {
+		long value = this.targetIncrementer.nextLongValue();
+		if (this.pooled) {
+			return new KeyBlock(value - this.blockSize + 1, value);
+		}
+		else {
+			long firstKey = value * this.blockSize;
+			return new KeyBlock(firstKey, firstKey + this.blockSize - 1);
+		}
+	}
+
+
+	/**
+	 * A contiguous range of keys, claimed through CAS on its next-key counter.
+	 */
+	private static class KeyBlock {
+
+		private final AtomicLong nextKey;
+
+		private final long lastKey;
+
+		public KeyBlock(long firstKey, long lastKey) {
+			this.nextKey = new AtomicLong(firstKey);
+			this.lastKey = lastKey;
+		}
+	}
+
+}
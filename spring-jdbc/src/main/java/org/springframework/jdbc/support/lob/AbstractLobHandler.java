@@ -16,8 +16,11 @@
 
 package org.springframework.jdbc.support.lob;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -26,6 +29,9 @@ import java.sql.SQLException;
  *
  * <p>Implements all accessor methods for column names through a column lookup
  * and delegating to the corresponding accessor that takes a column index.
+ * Additionally offers copy methods on top of the stream accessors, piping LOB
+ * content into a target stream through a buffer of {@link #STREAM_BUFFER_SIZE}
+ * bytes or characters.
  *
  * @author Juergen Hoeller
  * @since 1.2
@@ -33,6 +39,12 @@ import java.sql.SQLException;
  */
 public abstract class AbstractLobHandler implements LobHandler {
 
+	/**
+	 * The size of the buffer used for copying LOB content.
+	 */
+	public static final int STREAM_BUFFER_SIZE = 4096;
+
+
 	public byte[] getBlobAsBytes(ResultSet rs, String columnName) throws SQLException {
 		return getBlobAsBytes(rs, rs.findColumn(columnName));
 	}
@@ -53,4 +65,102 @@ public abstract class AbstractLobHandler implements LobHandler {
 		return getClobAsCharacterStream(rs, rs.findColumn(columnName));
 	}
 
+	/**
+	 * Copy the content of the given BLOB column into the given OutputStream,
+	 * e.g. a servlet response or a file, through a buffer of bounded size.
+	 * The content is never held in memory as a whole.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnName the column name to use
+	 * @param out the stream to copy the content to (will be flushed but not closed)
+	 * @return the number of bytes copied, or -1 if the column was SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException if thrown when reading or writing the content
+	 * @see #getBlobAsBinaryStream
+	 */
+	public long copyBlobToStream(ResultSet rs, String columnName, OutputStream out) throws SQLException, IOException {
+		return copyBlobToStream(rs, rs.findColumn(columnName), out);
+	}
+
+	/**
+	 * Copy the content of the given BLOB column into the given OutputStream,
+	 * e.g. a servlet response or a file, through a buffer of bounded size.
+	 * The content is never held in memory as a whole.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnIndex the column index to use
+	 * @param out the stream to copy the content to (will be flushed but not closed)
+	 * @return the number of bytes copied, or -1 if the column was SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException if thrown when reading or writing the content
+	 * @see #getBlobAsBinaryStream
+	 */
+	public long copyBlobToStream(ResultSet rs, int columnIndex, OutputStream out) throws SQLException, IOException {
+		InputStream in = getBlobAsBinaryStream(rs, columnIndex);
+		if (in == null) {
+			return -1;
+		}
+		try {
+			long byteCount = 0;
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, bytesRead);
+				byteCount += bytesRead;
+			}
+			out.flush();
+			return byteCount;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Copy the content of the given CLOB column into the given Writer,
+	 * e.g. a servlet response or a file, through a buffer of bounded size.
+	 * The content is never held in memory as a whole.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnName the column name to use
+	 * @param out the Writer to copy the content to (will be flushed but not closed)
+	 * @return the number of characters copied, or -1 if the column was SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException if thrown when reading or writing the content
+	 * @see #getClobAsCharacterStream
+	 */
+	public long copyClobToWriter(ResultSet rs, String columnName, Writer out) throws SQLException, IOException {
+		return copyClobToWriter(rs, rs.findColumn(columnName), out);
+	}
+
+	/**
+	 * Copy the content of the given CLOB column into the given Writer,
+	 * e.g. a servlet response or a file, through a buffer of bounded size.
+	 * The content is never held in memory as a whole.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnIndex the column index to use
+	 * @param out the Writer to copy the content to (will be flushed but not closed)
+	 * @return the number of characters copied, or -1 if the column was SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException if thrown when reading or writing the content
+	 * @see #getClobAsCharacterStream
+	 */
+	public long copyClobToWriter(ResultSet rs, int columnIndex, Writer out) throws SQLException, IOException {
+		Reader in = getClobAsCharacterStream(rs, columnIndex);
+		if (in == null) {
+			return -1;
+		}
+		try {
+			long charCount = 0;
+			char[] buffer = new char[STREAM_BUFFER_SIZE];
+			int charsRead;
+			while ((charsRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, charsRead);
+				charCount += charsRead;
+			}
+			out.flush();
+			return charCount;
+		}
+		finally {
+			in.close();
+		}
+	}
+
 }
@@ -50,6 +50,9 @@ import org.apache.commons.logging.LogFactory;
  * via the <code>setBlob</code> / <code>setClob</code> variants that take a stream
  * argument directly. Consider switching the {@link #setStreamAsLob "streamAsLob"}
  * property to "true" when operating against a fully compliant JDBC 4.0 driver.
+ * The {@link StreamingLobCreator} variants for streams of unknown length always require JDBC 4.0,
+ * using the explicit <code>setBlob</code> / <code>setClob</code> stream variants
+ * whenever either "wrapAsLob" or "streamAsLob" is active.
  *
  * <p>See the {@link LobHandler} javadoc for a summary of recommendations.
  *
@@ -177,7 +180,7 @@ public class DefaultLobHandler extends AbstractLobHandler {
 	 * Default LobCreator implementation as inner class.
 	 * Can be subclassed in DefaultLobHandler extensions.
 	 */
-	protected class DefaultLobCreator implements LobCreator {
+	protected class DefaultLobCreator implements StreamingLobCreator {
 
 		public void setBlobAsBytes(PreparedStatement ps, int paramIndex, byte[] content)
 				throws SQLException {
@@ -236,6 +239,26 @@ public class DefaultLobHandler extends AbstractLobHandler {
 			}
 		}
 
+		public void setBlobAsBinaryStream(PreparedStatement ps, int paramIndex, InputStream binaryStream)
+				throws SQLException {
+
+			if (streamAsLob || wrapAsLob) {
+				if (binaryStream != null) {
+					ps.setBlob(paramIndex, binaryStream);
+				}
+				else {
+					ps.setBlob(paramIndex, (Blob) null);
+				}
+			}
+			else {
+				ps.setBinaryStream(paramIndex, binaryStream);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(binaryStream != null ? "Set binary stream of unknown length for BLOB" :
+						"Set BLOB to null");
+			}
+		}
+
 		public void setClobAsString(PreparedStatement ps, int paramIndex, String content)
 				throws SQLException {
 
@@ -324,6 +347,26 @@ public class DefaultLobHandler extends AbstractLobHandler {
 			}
 		}
 
+		public void setClobAsCharacterStream(PreparedStatement ps, int paramIndex, Reader characterStream)
+				throws SQLException {
+
+			if (streamAsLob || wrapAsLob) {
+				if (characterStream != null) {
+					ps.setClob(paramIndex, characterStream);
+				}
+				else {
+					ps.setClob(paramIndex, (Clob) null);
+				}
+			}
+			else {
+				ps.setCharacterStream(paramIndex, characterStream);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(characterStream != null ? "Set character stream of unknown length for CLOB" :
+						"Set CLOB to null");
+			}
+		}
+
 		public void close() {
 			// nothing to do here
 		}
@@ -357,7 +357,7 @@ public class OracleLobHandler extends AbstractLobHandler {
 	 * Creates Oracle-style temporary BLOBs and CLOBs that it frees on close.
 	 * @see #close
 	 */
-	protected class OracleLobCreator implements LobCreator {
+	protected class OracleLobCreator implements StreamingLobCreator {
 
 		private final List createdLobs = new LinkedList();
 
@@ -406,6 +406,12 @@ public class OracleLobHandler extends AbstractLobHandler {
 			}
 		}
 
+		public void setBlobAsBinaryStream(PreparedStatement ps, int paramIndex, InputStream binaryStream)
+				throws SQLException {
+
+			setBlobAsBinaryStream(ps, paramIndex, binaryStream, -1);
+		}
+
 		public void setClobAsString(PreparedStatement ps, int paramIndex, final String content)
 		    throws SQLException {
 
@@ -474,6 +480,12 @@ public class OracleLobHandler extends AbstractLobHandler {
 			}
 		}
 
+		public void setClobAsCharacterStream(PreparedStatement ps, int paramIndex, Reader characterStream)
+				throws SQLException {
+
+			setClobAsCharacterStream(ps, paramIndex, characterStream, -1);
+		}
+
 		/**
 		 * Create a LOB instance for the given PreparedStatement,
 		 * populating it via the given callback.
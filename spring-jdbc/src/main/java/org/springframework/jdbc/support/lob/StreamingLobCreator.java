@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.lob;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Extension of the {@link LobCreator} interface, adding setters for binary and
+ * character streams of unknown length. Allows for streaming content to the
+ * database without buffering it first in order to determine its length.
+ *
+ * <p>Implemented by {@link DefaultLobHandler.DefaultLobCreator} and
+ * {@link OracleLobHandler.OracleLobCreator}. Callers working with an arbitrary
+ * {@link LobHandler} should check for this interface and fall back to the
+ * length-based setters on the plain {@link LobCreator} interface.
+ *
+ * @author agent
+ * @since 3.1
+ * @see LobHandler#getLobCreator()
+ */
+public interface StreamingLobCreator extends LobCreator {
+
+	/**
+	 * Set the given content as binary stream of unknown length on the given statement,
+	 * using the given parameter index. The content will be streamed to the database
+	 * rather than materialized in memory. Might simply invoke the JDBC 4.0
+	 * <code>PreparedStatement.setBinaryStream</code> variant without length, or
+	 * create a Blob instance for it, depending on the database and driver.
+	 * @param ps the PreparedStatement to the set the content on
+	 * @param paramIndex the parameter index to use
+	 * @param contentStream the content as binary stream, or <code>null</code> for SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @see java.sql.PreparedStatement#setBinaryStream(int, java.io.InputStream)
+	 */
+	void setBlobAsBinaryStream(PreparedStatement ps, int paramIndex, InputStream contentStream)
+			throws SQLException;
+
+	/**
+	 * Set the given content as character stream of unknown length on the given statement,
+	 * using the given parameter index. The content will be streamed to the database
+	 * rather than materialized in memory. Might simply invoke the JDBC 4.0
+	 * <code>PreparedStatement.setCharacterStream</code> variant without length, or
+	 * create a Clob instance for it, depending on the database and driver.
+	 * @param ps the PreparedStatement to the set the content on
+	 * @param paramIndex the parameter index to use
+	 * @param characterStream the content as character stream, or <code>null</code> for SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader)
+	 */
+	void setClobAsCharacterStream(PreparedStatement ps, int paramIndex, Reader characterStream)
+			throws SQLException;
+
+}
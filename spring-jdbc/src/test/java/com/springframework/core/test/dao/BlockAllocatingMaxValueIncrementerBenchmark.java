@@ -0,0 +1,85 @@
+package com.springframework.core.test.dao;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.incrementer.BlockAllocatingMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.HsqlSequenceMaxValueIncrementer;
+
+/**
+ * Multi-threaded key generation on embedded H2 and HSQL: a plain sequence
+ * incrementer, with a round trip per key, versus BlockAllocatingMaxValueIncrementer
+ * on top of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class BlockAllocatingMaxValueIncrementerBenchmark {
+
+    @Param({"h2", "hsql"})
+    public String database;
+
+    @Param({"sequence", "block"})
+    public String incrementerType;
+
+    @Param({"100"})
+    public int blockSize;
+
+    private EmbeddedDatabase embeddedDatabase;
+
+    private DataFieldMaxValueIncrementer incrementer;
+
+    @Setup
+    public void setUp() {
+        boolean hsql = "hsql".equals(database);
+        embeddedDatabase = new EmbeddedDatabaseBuilder()
+                .setType(hsql ? EmbeddedDatabaseType.HSQL : EmbeddedDatabaseType.H2)
+                .setName("incrementerBenchmark").build();
+        new JdbcTemplate(embeddedDatabase).execute("create sequence key_seq");
+        DataFieldMaxValueIncrementer sequenceIncrementer = (hsql ?
+                new HsqlSequenceMaxValueIncrementer(embeddedDatabase, "key_seq") :
+                new H2SequenceMaxValueIncrementer(embeddedDatabase, "key_seq"));
+        if ("block".equals(incrementerType)) {
+            BlockAllocatingMaxValueIncrementer blockIncrementer =
+                    new BlockAllocatingMaxValueIncrementer(sequenceIncrementer, blockSize);
+            blockIncrementer.afterPropertiesSet();
+            incrementer = blockIncrementer;
+        }
+        else {
+            incrementer = sequenceIncrementer;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        embeddedDatabase.shutdown();
+    }
+
+    @Benchmark
+    public long nextKey() {
+        return incrementer.nextLongValue();
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.springframework.core.test.dao;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.incrementer.AbstractDataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.BlockAllocatingMaxValueIncrementer;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for BlockAllocatingMaxValueIncrementer on embedded H2,
+ * with a table-based target incrementer that participates in transactions.
+ */
+public class BlockAllocatingMaxValueIncrementerTest {
+
+    private EmbeddedDatabase database;
+
+    private TableIncrementer targetIncrementer;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("incrementerTest").build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table key_block (hi bigint not null)");
+        jdbcTemplate.update("insert into key_block values (0)");
+        targetIncrementer = new TableIncrementer();
+        targetIncrementer.setDataSource(database);
+        targetIncrementer.setIncrementerName("key_block");
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testBlocksInHiLoMode() {
+        BlockAllocatingMaxValueIncrementer incrementer = createIncrementer(10);
+        for (long i = 10; i < 35; i++) {
+            assertEquals(i, incrementer.nextLongValue());
+        }
+        assertEquals(3, targetIncrementer.currentHi());
+    }
+
+    @Test
+    public void testBlocksInPooledMode() {
+        BlockAllocatingMaxValueIncrementer incrementer = new BlockAllocatingMaxValueIncrementer(targetIncrementer, 1);
+        incrementer.setPooled(true);
+        incrementer.afterPropertiesSet();
+        assertEquals(1, incrementer.nextLongValue());
+        assertEquals(2, incrementer.nextLongValue());
+    }
+
+    @Test
+    public void testRollbackOfCallingTransactionKeepsBlock() {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+        BlockAllocatingMaxValueIncrementer incrementer = createIncrementer(10);
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        assertEquals(10, incrementer.nextLongValue());
+        transactionManager.rollback(status);
+
+        // another node must not receive the block that is still in use here
+        BlockAllocatingMaxValueIncrementer otherNode = createIncrementer(10);
+        assertEquals(20, otherNode.nextLongValue());
+        assertEquals(11, incrementer.nextLongValue());
+        assertEquals(2, targetIncrementer.currentHi());
+    }
+
+    @Test
+    public void testConcurrentKeysAreUnique() throws Exception {
+        final BlockAllocatingMaxValueIncrementer incrementer = createIncrementer(50);
+        incrementer.setPrefetchThreshold(10);
+        final Set<Long> keys = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            if (!keys.add(incrementer.nextLongValue())) {
+                                throw new IllegalStateException("Duplicate key");
+                            }
+                        }
+                    }
+                    catch (Throwable ex) {
+                        failure.set(ex);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        assertNull(failure.get());
+        assertEquals(8000, keys.size());
+    }
+
+    private BlockAllocatingMaxValueIncrementer createIncrementer(int blockSize) {
+        BlockAllocatingMaxValueIncrementer incrementer =
+                new BlockAllocatingMaxValueIncrementer(targetIncrementer, blockSize);
+        incrementer.setPrefetchThreshold(0);
+        incrementer.afterPropertiesSet();
+        return incrementer;
+    }
+
+
+    /**
+     * Table-based incrementer working on the transactional Connection, if any,
+     * like MySQLMaxValueIncrementer.
+     */
+    private static class TableIncrementer extends AbstractDataFieldMaxValueIncrementer {
+
+        @Override
+        protected long getNextKey() {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+            jdbcTemplate.update("update " + getIncrementerName() + " set hi = hi + 1");
+            return jdbcTemplate.queryForLong("select hi from " + getIncrementerName());
+        }
+
+        public long currentHi() {
+            return new JdbcTemplate(getDataSource()).queryForLong("select hi from " + getIncrementerName());
+        }
+    }
+
+}
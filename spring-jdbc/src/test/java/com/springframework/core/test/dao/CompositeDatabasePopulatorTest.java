@@ -0,0 +1,154 @@
+package com.springframework.core.test.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.datasource.init.CompositeDatabasePopulator;
+import org.springframework.jdbc.datasource.init.DatabasePopulator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the parallel mode of CompositeDatabasePopulator.
+ */
+public class CompositeDatabasePopulatorTest {
+
+    private final List<RecordingConnection> obtainedConnections =
+            Collections.synchronizedList(new ArrayList<RecordingConnection>());
+
+    @Test
+    public void testFirstDelegateUsesGivenConnection() throws Exception {
+        RecordingPopulator first = new RecordingPopulator(null);
+        RecordingPopulator second = new RecordingPopulator(null);
+        RecordingPopulator third = new RecordingPopulator(null);
+        CompositeDatabasePopulator populator = createParallelPopulator(new SimpleAsyncTaskExecutor());
+        populator.setPopulators(first, second, third);
+
+        Connection connection = new RecordingConnection().createConnection();
+        populator.populate(connection);
+
+        assertSame(connection, first.connection);
+        assertNotNull(second.connection);
+        assertNotNull(third.connection);
+        assertNotSame(connection, second.connection);
+        assertNotSame(second.connection, third.connection);
+        assertEquals(2, obtainedConnections.size());
+        for (RecordingConnection obtained : obtainedConnections) {
+            assertTrue(obtained.isClosed());
+        }
+    }
+
+    @Test
+    public void testRejectedDelegatesRunInCallingThread() throws Exception {
+        RecordingPopulator first = new RecordingPopulator(null);
+        RecordingPopulator second = new RecordingPopulator(null);
+        CompositeDatabasePopulator populator = createParallelPopulator(new TaskExecutor() {
+            public void execute(Runnable task) {
+                throw new TaskRejectedException("Rejected");
+            }
+        });
+        populator.setPopulators(first, second);
+
+        populator.populate(new RecordingConnection().createConnection());
+
+        assertSame(Thread.currentThread(), second.thread);
+        assertEquals(1, obtainedConnections.size());
+        assertTrue(obtainedConnections.get(0).isClosed());
+    }
+
+    @Test
+    public void testFailureIsRethrownAfterAllDelegatesCompleted() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        RecordingPopulator failing = new RecordingPopulator(new SQLException("Failed")) {
+            @Override
+            public void populate(Connection connection) throws SQLException {
+                failed.countDown();
+                super.populate(connection);
+            }
+        };
+        RecordingPopulator waiting = new RecordingPopulator(null) {
+            @Override
+            public void populate(Connection connection) throws SQLException {
+                try {
+                    assertTrue(failed.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.populate(connection);
+            }
+        };
+        CompositeDatabasePopulator populator = createParallelPopulator(new SimpleAsyncTaskExecutor());
+        populator.setPopulators(failing, waiting);
+
+        try {
+            populator.populate(new RecordingConnection().createConnection());
+            fail("Should have thrown SQLException");
+        }
+        catch (SQLException ex) {
+            assertEquals("Failed", ex.getMessage());
+        }
+        // the delegate only proceeds once the first one failed, and has completed by now
+        assertNotNull(waiting.connection);
+        assertTrue(obtainedConnections.get(0).isClosed());
+    }
+
+    private CompositeDatabasePopulator createParallelPopulator(TaskExecutor taskExecutor) {
+        CompositeDatabasePopulator populator = new CompositeDatabasePopulator();
+        populator.setDataSource((DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {DataSource.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getConnection")) {
+                            RecordingConnection recorder = new RecordingConnection();
+                            obtainedConnections.add(recorder);
+                            return recorder.createConnection();
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                }));
+        populator.setTaskExecutor(taskExecutor);
+        return populator;
+    }
+
+
+    private static class RecordingPopulator implements DatabasePopulator {
+
+        private final SQLException failure;
+
+        private volatile Connection connection;
+
+        private volatile Thread thread;
+
+        public RecordingPopulator(SQLException failure) {
+            this.failure = failure;
+        }
+
+        public void populate(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.thread = Thread.currentThread();
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+
+}
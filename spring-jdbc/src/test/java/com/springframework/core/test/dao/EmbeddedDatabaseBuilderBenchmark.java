@@ -0,0 +1,96 @@
+package com.springframework.core.test.dao;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseFactory;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Building an embedded H2 or HSQL database from a generated script with a table
+ * and several thousand inserts: EmbeddedDatabaseBuilder with its default batching,
+ * versus a ResourceDatabasePopulator executing every statement on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddedDatabaseBuilderBenchmark {
+
+    @Param({"h2", "hsql"})
+    public String database;
+
+    @Param({"builder", "unbatched"})
+    public String populatorType;
+
+    @Param({"5000"})
+    public int insertCount;
+
+    private File script;
+
+    private EmbeddedDatabaseType databaseType;
+
+    @Setup
+    public void setUp() throws IOException {
+        databaseType = ("hsql".equals(database) ? EmbeddedDatabaseType.HSQL : EmbeddedDatabaseType.H2);
+        script = File.createTempFile("populate", ".sql");
+        Writer writer = new FileWriter(script);
+        try {
+            writer.write("create table person (id int not null primary key, name varchar(50), age int);\n");
+            for (int i = 0; i < insertCount; i++) {
+                writer.write("insert into person (id, name, age) values (" + i + ", 'person" + i + "', " +
+                        (i % 100) + ");\n");
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        script.delete();
+    }
+
+    @Benchmark
+    public void buildDatabase() {
+        EmbeddedDatabase embeddedDatabase;
+        if ("builder".equals(populatorType)) {
+            embeddedDatabase = new EmbeddedDatabaseBuilder().setType(databaseType).setName("builderBenchmark")
+                    .addScript("file:" + script.getAbsolutePath()).build();
+        }
+        else {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+            populator.addScript(new FileSystemResource(script));
+            populator.setBatchSize(1);
+            EmbeddedDatabaseFactory factory = new EmbeddedDatabaseFactory();
+            factory.setDatabaseType(databaseType);
+            factory.setDatabaseName("builderBenchmark");
+            factory.setDatabasePopulator(populator);
+            embeddedDatabase = factory.getDatabase();
+        }
+        embeddedDatabase.shutdown();
+    }
+
+}
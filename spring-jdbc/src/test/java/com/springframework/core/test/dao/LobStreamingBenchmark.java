@@ -0,0 +1,182 @@
+package com.springframework.core.test.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.support.AbstractLobCreatingPreparedStatementCallback;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.jdbc.support.lob.LobCreator;
+import org.springframework.jdbc.support.lob.StreamingLobCreator;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Writing and reading a large BLOB on a file-based H2 database: as a byte array
+ * versus through the StreamingLobCreator setter and the copy method of
+ * AbstractLobHandler. Prints the peak heap usage of each iteration; run with
+ * <code>-prof gc</code> for the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class LobStreamingBenchmark {
+
+    @Param({"bytes", "stream"})
+    public String access;
+
+    @Param({"32"})
+    public int megabytes;
+
+    private File directory;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DefaultLobHandler lobHandler;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("lobBenchmark", "");
+        directory.delete();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:" + new File(directory, "lob").getAbsolutePath());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table document (id int not null primary key, bin blob)");
+        jdbcTemplate.update("insert into document (id) values (1)");
+        lobHandler = new DefaultLobHandler();
+        lobHandler.setStreamAsLob(true);
+        write();
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("shutdown");
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println("Peak heap usage: " + (peak / 1024 / 1024) + " MB");
+    }
+
+    @Benchmark
+    public void write() {
+        final int length = megabytes * 1024 * 1024;
+        jdbcTemplate.execute("update document set bin = ? where id = 1",
+                new AbstractLobCreatingPreparedStatementCallback(lobHandler) {
+                    @Override
+                    protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException {
+                        if ("bytes".equals(access)) {
+                            byte[] content = new byte[length];
+                            for (int i = 0; i < length; i++) {
+                                content[i] = (byte) i;
+                            }
+                            lobCreator.setBlobAsBytes(ps, 1, content);
+                        }
+                        else {
+                            ((StreamingLobCreator) lobCreator).setBlobAsBinaryStream(ps, 1, new CountingInputStream(length));
+                        }
+                    }
+                });
+    }
+
+    @Benchmark
+    public long read() {
+        return jdbcTemplate.query("select bin from document where id = 1", new ResultSetExtractor<Long>() {
+            public Long extractData(ResultSet rs) throws SQLException {
+                rs.next();
+                if ("bytes".equals(access)) {
+                    return (long) lobHandler.getBlobAsBytes(rs, 1).length;
+                }
+                try {
+                    return lobHandler.copyBlobToStream(rs, 1, new DiscardingOutputStream());
+                }
+                catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+    }
+
+
+    private static class CountingInputStream extends InputStream {
+
+        private final int length;
+
+        private int position;
+
+        CountingInputStream(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return (position < length ? (byte) position++ & 0xff : -1);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int count = Math.min(len, length - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) position++;
+            }
+            return count;
+        }
+    }
+
+
+    private static class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+}
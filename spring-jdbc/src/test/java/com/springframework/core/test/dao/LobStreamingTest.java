@@ -0,0 +1,309 @@
+package com.springframework.core.test.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.support.AbstractLobCreatingPreparedStatementCallback;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.jdbc.support.lob.LobCreator;
+import org.springframework.jdbc.support.lob.StreamingLobCreator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of BLOB and CLOB content on embedded H2: written through the
+ * StreamingLobCreator setters for streams of unknown length and read back through
+ * the copy methods of AbstractLobHandler, comparing length and checksum without
+ * holding the content in memory.
+ */
+public class LobStreamingTest {
+
+    /** Not a multiple of the copy buffer size */
+    private static final int CONTENT_LENGTH = 2 * 1024 * 1024 + 17;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("lobStreamingTest").build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table document (id int not null, bin blob, txt clob)");
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testBlobRoundTrip() throws Exception {
+        assertBlobRoundTrip(new DefaultLobHandler());
+    }
+
+    @Test
+    public void testBlobRoundTripWithStreamAsLob() throws Exception {
+        DefaultLobHandler lobHandler = new DefaultLobHandler();
+        lobHandler.setStreamAsLob(true);
+        assertBlobRoundTrip(lobHandler);
+    }
+
+    @Test
+    public void testBlobRoundTripWithWrapAsLob() throws Exception {
+        DefaultLobHandler lobHandler = new DefaultLobHandler();
+        lobHandler.setWrapAsLob(true);
+        assertBlobRoundTrip(lobHandler);
+    }
+
+    @Test
+    public void testClobRoundTrip() throws Exception {
+        assertClobRoundTrip(new DefaultLobHandler());
+    }
+
+    @Test
+    public void testClobRoundTripWithStreamAsLob() throws Exception {
+        DefaultLobHandler lobHandler = new DefaultLobHandler();
+        lobHandler.setStreamAsLob(true);
+        assertClobRoundTrip(lobHandler);
+    }
+
+    @Test
+    public void testClobRoundTripWithWrapAsLob() throws Exception {
+        DefaultLobHandler lobHandler = new DefaultLobHandler();
+        lobHandler.setWrapAsLob(true);
+        assertClobRoundTrip(lobHandler);
+    }
+
+    @Test
+    public void testNullContentIsCopiedAsMinusOne() throws Exception {
+        final DefaultLobHandler lobHandler = new DefaultLobHandler();
+        lobHandler.setStreamAsLob(true);
+        jdbcTemplate.execute("insert into document (id, bin, txt) values (1, ?, ?)",
+                new AbstractLobCreatingPreparedStatementCallback(lobHandler) {
+                    @Override
+                    protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException {
+                        ((StreamingLobCreator) lobCreator).setBlobAsBinaryStream(ps, 1, null);
+                        ((StreamingLobCreator) lobCreator).setClobAsCharacterStream(ps, 2, null);
+                    }
+                });
+        final long[] copied = new long[2];
+        jdbcTemplate.query("select bin, txt from document where id = 1", new RowCallbackHandler() {
+            public void processRow(ResultSet rs) throws SQLException {
+                try {
+                    copied[0] = lobHandler.copyBlobToStream(rs, "bin", new ChecksumOutputStream());
+                    copied[1] = lobHandler.copyClobToWriter(rs, "txt", new ChecksumWriter());
+                }
+                catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        assertEquals(-1, copied[0]);
+        assertEquals(-1, copied[1]);
+    }
+
+    private void assertBlobRoundTrip(final DefaultLobHandler lobHandler) throws Exception {
+        final PatternInputStream content = new PatternInputStream(CONTENT_LENGTH);
+        jdbcTemplate.execute("insert into document (id, bin) values (1, ?)",
+                new AbstractLobCreatingPreparedStatementCallback(lobHandler) {
+                    @Override
+                    protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException {
+                        assertTrue(lobCreator instanceof StreamingLobCreator);
+                        ((StreamingLobCreator) lobCreator).setBlobAsBinaryStream(ps, 1, content);
+                    }
+                });
+        assertEquals(CONTENT_LENGTH, content.position);
+
+        final ChecksumOutputStream out = new ChecksumOutputStream();
+        final long[] copied = new long[1];
+        jdbcTemplate.query("select bin from document where id = 1", new RowCallbackHandler() {
+            public void processRow(ResultSet rs) throws SQLException {
+                try {
+                    copied[0] = lobHandler.copyBlobToStream(rs, "bin", out);
+                }
+                catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        assertEquals(CONTENT_LENGTH, copied[0]);
+        assertEquals(CONTENT_LENGTH, out.count);
+        assertEquals(content.checksum.getValue(), out.checksum.getValue());
+        assertTrue(out.flushed);
+    }
+
+    private void assertClobRoundTrip(final DefaultLobHandler lobHandler) throws Exception {
+        final PatternReader content = new PatternReader(CONTENT_LENGTH);
+        jdbcTemplate.execute("insert into document (id, txt) values (1, ?)",
+                new AbstractLobCreatingPreparedStatementCallback(lobHandler) {
+                    @Override
+                    protected void setValues(PreparedStatement ps, LobCreator lobCreator) throws SQLException {
+                        ((StreamingLobCreator) lobCreator).setClobAsCharacterStream(ps, 1, content);
+                    }
+                });
+        assertEquals(CONTENT_LENGTH, content.position);
+
+        final ChecksumWriter out = new ChecksumWriter();
+        final long[] copied = new long[1];
+        jdbcTemplate.query("select txt from document where id = 1", new RowCallbackHandler() {
+            public void processRow(ResultSet rs) throws SQLException {
+                try {
+                    copied[0] = lobHandler.copyClobToWriter(rs, "txt", out);
+                }
+                catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        assertEquals(CONTENT_LENGTH, copied[0]);
+        assertEquals(CONTENT_LENGTH, out.count);
+        assertEquals(content.checksum.getValue(), out.checksum.getValue());
+    }
+
+
+    /**
+     * Generates binary content of the given length, computing its checksum on the way.
+     */
+    private static class PatternInputStream extends InputStream {
+
+        final CRC32 checksum = new CRC32();
+
+        private final int length;
+
+        int position;
+
+        PatternInputStream(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (position >= length) {
+                return -1;
+            }
+            int b = (position * 31 + position / 4096) & 0xff;
+            position++;
+            checksum.update(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int count = Math.min(len, length - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) read();
+            }
+            return count;
+        }
+    }
+
+
+    /**
+     * Generates character content of the given length, computing its checksum on the way.
+     */
+    private static class PatternReader extends Reader {
+
+        final CRC32 checksum = new CRC32();
+
+        private final int length;
+
+        int position;
+
+        PatternReader(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int count = Math.min(len, length - position);
+            for (int i = 0; i < count; i++) {
+                char c = (char) ('a' + (position % 26));
+                if (position % 1000 == 999) {
+                    c = '\u00e9';
+                }
+                cbuf[off + i] = c;
+                checksum.update(c);
+                position++;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+
+    private static class ChecksumOutputStream extends OutputStream {
+
+        final CRC32 checksum = new CRC32();
+
+        long count;
+
+        boolean flushed;
+
+        @Override
+        public void write(int b) {
+            checksum.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            checksum.update(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+    }
+
+
+    private static class ChecksumWriter extends Writer {
+
+        final CRC32 checksum = new CRC32();
+
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                checksum.update(cbuf[i]);
+            }
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
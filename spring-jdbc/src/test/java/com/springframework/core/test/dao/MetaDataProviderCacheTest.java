@@ -0,0 +1,195 @@
+package com.springframework.core.test.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.metadata.MetaDataProviderCache;
+import org.springframework.jdbc.core.metadata.TableMetaDataContext;
+import org.springframework.jdbc.core.metadata.TableMetaDataProvider;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for MetaDataProviderCache on embedded H2: shared lookups,
+ * invalidation and the snapshot round trip, counting the calls to
+ * {@link Connection#getMetaData()}.
+ */
+public class MetaDataProviderCacheTest {
+
+    private EmbeddedDatabase database;
+
+    private MetaDataCountingDataSource dataSource;
+
+    private MetaDataProviderCache cache;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("metaDataCacheTest").build();
+        new JdbcTemplate(database).execute("create table person (id int not null, name varchar(50))");
+        dataSource = new MetaDataCountingDataSource(database);
+        cache = new MetaDataProviderCache();
+    }
+
+    @After
+    public void tearDown() {
+        cache.invalidateAll();
+        database.shutdown();
+    }
+
+    @Test
+    public void testInsertsIntoSameTableShareMetaData() {
+        insert(cache, 1, "Juergen");
+        int calls = dataSource.metaDataCalls.get();
+        assertTrue(calls > 0);
+
+        insert(cache, 2, "Rod");
+        insert(cache, 3, "Mark");
+        assertEquals(calls, dataSource.metaDataCalls.get());
+        assertEquals(3, new JdbcTemplate(database).queryForInt("select count(*) from person"));
+    }
+
+    @Test
+    public void testSameProviderIsReturnedUntilInvalidated() {
+        TableMetaDataProvider provider = lookup(cache);
+        assertSame(provider, lookup(cache));
+
+        cache.invalidate(dataSource);
+        TableMetaDataProvider refreshed = lookup(cache);
+        assertNotSame(provider, refreshed);
+        assertSame(refreshed, lookup(cache));
+
+        cache.invalidateAll();
+        assertNotSame(refreshed, lookup(cache));
+    }
+
+    @Test
+    public void testInvalidationOnlyAffectsGivenDataSource() {
+        MetaDataCountingDataSource other = new MetaDataCountingDataSource(database);
+        TableMetaDataProvider provider = lookup(cache);
+        TableMetaDataProvider otherProvider = cache.getTableMetaDataProvider(other, createContext(), null);
+
+        cache.invalidate(other);
+        assertSame(provider, lookup(cache));
+        assertNotSame(otherProvider, cache.getTableMetaDataProvider(other, createContext(), null));
+    }
+
+    @Test
+    public void testSnapshotRoundTripAvoidsMetaDataQueries() throws Exception {
+        insert(cache, 1, "Juergen");
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        cache.writeSnapshot(dataSource, snapshot);
+
+        MetaDataProviderCache restored = new MetaDataProviderCache();
+        try {
+            assertTrue(restored.loadSnapshot(dataSource, new ByteArrayResource(snapshot.toByteArray())));
+            dataSource.metaDataCalls.set(0);
+            insert(restored, 2, "Rod");
+            assertEquals(0, dataSource.metaDataCalls.get());
+
+            Map<String, Object> row = new JdbcTemplate(database).queryForMap("select * from person where id = 2");
+            assertEquals("Rod", row.get("NAME"));
+        }
+        finally {
+            restored.invalidateAll();
+        }
+    }
+
+    @Test
+    public void testLoadedSnapshotAddsToExistingEntries() throws Exception {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        insert(cache, 1, "Juergen");
+        cache.writeSnapshot(dataSource, snapshot);
+
+        MetaDataProviderCache restored = new MetaDataProviderCache();
+        try {
+            restored.loadSnapshot(dataSource, new ByteArrayInputStream(snapshot.toByteArray()));
+            TableMetaDataProvider provider = lookup(restored);
+            assertNotNull(provider);
+            assertSame(provider, lookup(restored));
+        }
+        finally {
+            restored.invalidateAll();
+        }
+    }
+
+    @Test
+    public void testMissingSnapshotIsIgnored() throws Exception {
+        assertFalse(cache.loadSnapshot(dataSource, new ByteArrayResource(new byte[0]) {
+            @Override
+            public boolean exists() {
+                return false;
+            }
+        }));
+    }
+
+    private void insert(MetaDataProviderCache cache, int id, String name) {
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("id", id);
+        args.put("name", name);
+        new SimpleJdbcInsert(dataSource).withTableName("person").useMetaDataProviderCache(cache).execute(args);
+    }
+
+    private TableMetaDataProvider lookup(MetaDataProviderCache cache) {
+        return cache.getTableMetaDataProvider(dataSource, createContext(), null);
+    }
+
+    private static TableMetaDataContext createContext() {
+        TableMetaDataContext context = new TableMetaDataContext();
+        context.setTableName("person");
+        return context;
+    }
+
+
+    /**
+     * DataSource that counts the calls to {@link Connection#getMetaData()}
+     * on the Connections it hands out.
+     */
+    private static class MetaDataCountingDataSource extends DelegatingDataSource {
+
+        final AtomicInteger metaDataCalls = new AtomicInteger();
+
+        MetaDataCountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection target = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("getMetaData")) {
+                                metaDataCalls.incrementAndGet();
+                            }
+                            try {
+                                return method.invoke(target, args);
+                            }
+                            catch (InvocationTargetException ex) {
+                                throw ex.getTargetException();
+                            }
+                        }
+                    });
+        }
+    }
+
+}
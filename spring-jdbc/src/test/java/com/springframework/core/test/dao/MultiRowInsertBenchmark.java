@@ -0,0 +1,92 @@
+package com.springframework.core.test.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Batch inserts of 1000 rows through SimpleJdbcInsert on embedded H2, HSQL
+ * and Derby: a JDBC batch of single-row statements versus multi-row inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiRowInsertBenchmark {
+
+    @Param({"h2", "hsql", "derby"})
+    public String database;
+
+    @Param({"batch", "multiRow"})
+    public String insertMode;
+
+    @Param({"1000"})
+    public int rowCount;
+
+    private EmbeddedDatabase embeddedDatabase;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleJdbcInsert insert;
+
+    private Map<String, Object>[] rows;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        EmbeddedDatabaseType type = ("hsql".equals(database) ? EmbeddedDatabaseType.HSQL :
+                "derby".equals(database) ? EmbeddedDatabaseType.DERBY : EmbeddedDatabaseType.H2);
+        embeddedDatabase = new EmbeddedDatabaseBuilder().setType(type).setName("multiRowInsertBenchmark").build();
+        jdbcTemplate = new JdbcTemplate(embeddedDatabase);
+        jdbcTemplate.execute("create table person (id int not null, name varchar(50), age int)");
+        insert = new SimpleJdbcInsert(embeddedDatabase).withTableName("person");
+        if ("multiRow".equals(insertMode)) {
+            insert.useMultiRowInsert();
+        }
+        rows = new Map[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", i);
+            row.put("name", "person" + i);
+            row.put("age", i % 100);
+            rows[i] = row;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteRows() {
+        jdbcTemplate.update("delete from person");
+    }
+
+    @TearDown
+    public void tearDown() {
+        embeddedDatabase.shutdown();
+    }
+
+    @Benchmark
+    public int[] insertRows() {
+        return insert.executeBatch(rows);
+    }
+
+}
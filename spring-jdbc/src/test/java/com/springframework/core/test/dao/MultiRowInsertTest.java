@@ -0,0 +1,218 @@
+package com.springframework.core.test.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.metadata.MultiRowInsertMetaDataProvider;
+import org.springframework.jdbc.core.metadata.TableMetaDataContext;
+import org.springframework.jdbc.core.metadata.TableMetaDataProviderFactory;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for multi-row inserts through SimpleJdbcInsert on embedded H2,
+ * recording the statements prepared and executed to check the chunking
+ * against the parameter limit of the metadata provider.
+ */
+public class MultiRowInsertTest {
+
+    private static final int COLUMN_COUNT = 20;
+
+    private EmbeddedDatabase database;
+
+    private StatementRecordingDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("multiRowInsertTest").build();
+        StringBuilder ddl = new StringBuilder("create table wide (id int not null");
+        for (int i = 1; i < COLUMN_COUNT; i++) {
+            ddl.append(", c").append(i).append(" varchar(20)");
+        }
+        new JdbcTemplate(database).execute(ddl.append(")").toString());
+        dataSource = new StatementRecordingDataSource(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testChunksAreLimitedByMaxParametersPerStatement() {
+        TableMetaDataContext context = new TableMetaDataContext();
+        context.setTableName("wide");
+        MultiRowInsertMetaDataProvider provider =
+                (MultiRowInsertMetaDataProvider) TableMetaDataProviderFactory.createMetaDataProvider(database, context);
+        assertTrue(provider.isMultiRowInsertSupported());
+        int maxRows = provider.getMaxParametersPerStatement() / COLUMN_COUNT;
+        assertEquals(100, maxRows);
+
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource).withTableName("wide").useMultiRowInsert();
+        int[] counts = insert.executeBatch(rows(250));
+
+        assertEquals(250, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+        // one statement for the full chunks, reused, and one for the remainder
+        assertEquals(2, dataSource.prepared.size());
+        assertEquals(maxRows, rowsIn(dataSource.prepared.get(0)));
+        assertEquals(50, rowsIn(dataSource.prepared.get(1)));
+        assertEquals(3, dataSource.executeUpdateCalls);
+        assertEquals(0, dataSource.executeBatchCalls);
+        assertRowsInserted(250);
+    }
+
+    @Test
+    public void testChunksAreLimitedByMaxRowsPerStatement() {
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource).withTableName("wide").useMultiRowInsert(10);
+        insert.executeBatch(rows(25));
+
+        assertEquals(2, dataSource.prepared.size());
+        assertEquals(10, rowsIn(dataSource.prepared.get(0)));
+        assertEquals(5, rowsIn(dataSource.prepared.get(1)));
+        assertEquals(3, dataSource.executeUpdateCalls);
+        assertRowsInserted(25);
+    }
+
+    @Test
+    public void testSingleRowBatchIsUsedByDefault() {
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource).withTableName("wide");
+        insert.executeBatch(rows(25));
+
+        assertEquals(1, dataSource.prepared.size());
+        assertEquals(1, rowsIn(dataSource.prepared.get(0)));
+        assertEquals(1, dataSource.executeBatchCalls);
+        assertEquals(0, dataSource.executeUpdateCalls);
+        assertRowsInserted(25);
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void testMultiRowInsertCannotBeChangedAfterCompile() {
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource).withTableName("wide");
+        insert.compile();
+        insert.setMultiRowInsert(true);
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void testMaxRowsPerStatementCannotBeChangedAfterCompile() {
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource).withTableName("wide").useMultiRowInsert();
+        insert.compile();
+        insert.setMaxRowsPerStatement(10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object>[] rows(int count) {
+        Map<String, Object>[] rows = new Map[count];
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", i);
+            for (int c = 1; c < COLUMN_COUNT; c++) {
+                row.put("c" + c, "r" + i + "c" + c);
+            }
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    private static int rowsIn(String sql) {
+        int parameters = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                parameters++;
+            }
+        }
+        return parameters / COLUMN_COUNT;
+    }
+
+    private void assertRowsInserted(int count) {
+        JdbcTemplate template = new JdbcTemplate(database);
+        assertEquals(count, template.queryForInt("select count(*) from wide"));
+        for (int id : new int[] {0, count / 2, count - 1}) {
+            Map<String, Object> row = template.queryForMap("select * from wide where id = ?", id);
+            assertEquals("r" + id + "c1", row.get("C1"));
+            assertEquals("r" + id + "c" + (COLUMN_COUNT - 1), row.get("C" + (COLUMN_COUNT - 1)));
+        }
+    }
+
+
+    /**
+     * DataSource that records the SQL of the statements prepared on its
+     * Connections and counts how they are executed.
+     */
+    private static class StatementRecordingDataSource extends DelegatingDataSource {
+
+        final List<String> prepared = Collections.synchronizedList(new ArrayList<String>());
+
+        volatile int executeUpdateCalls;
+
+        volatile int executeBatchCalls;
+
+        StatementRecordingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection target = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = invokeTarget(target, method, args);
+                            if (method.getName().equals("prepareStatement")) {
+                                prepared.add((String) args[0]);
+                                return recording((PreparedStatement) result);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        private PreparedStatement recording(final PreparedStatement target) {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("executeUpdate")) {
+                                executeUpdateCalls++;
+                            }
+                            else if (method.getName().equals("executeBatch")) {
+                                executeBatchCalls++;
+                            }
+                            return invokeTarget(target, method, args);
+                        }
+                    });
+        }
+
+        private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+
+}
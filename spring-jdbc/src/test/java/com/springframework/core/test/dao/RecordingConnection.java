@@ -0,0 +1,92 @@
+package com.springframework.core.test.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates JDBC Connection proxies that record the SQL executed through their Statements,
+ * along with the sizes of the batches executed.
+ */
+public class RecordingConnection implements InvocationHandler {
+
+    private final List<String> executedSql = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<String> batch = new ArrayList<String>();
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private boolean closed;
+
+    public Connection createConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, this);
+    }
+
+    public List<String> getExecutedSql() {
+        return executedSql;
+    }
+
+    public List<Integer> getExecutedBatchSizes() {
+        return batchSizes;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("createStatement")) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Statement.class}, this);
+        }
+        if (name.equals("getMetaData")) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, this);
+        }
+        if (name.equals("supportsBatchUpdates")) {
+            return true;
+        }
+        // whitespace around statements is irrelevant to the database
+        if (name.equals("executeUpdate")) {
+            executedSql.add(((String) args[0]).trim());
+            return 1;
+        }
+        if (name.equals("addBatch")) {
+            batch.add(((String) args[0]).trim());
+            return null;
+        }
+        if (name.equals("executeBatch")) {
+            int[] counts = new int[batch.size()];
+            executedSql.addAll(batch);
+            batchSizes.add(batch.size());
+            batch.clear();
+            return counts;
+        }
+        if (name.equals("close") && method.getDeclaringClass() == Connection.class) {
+            closed = true;
+        }
+        if (name.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        if (name.equals("equals")) {
+            return proxy == args[0];
+        }
+        if (name.equals("toString")) {
+            return "RecordingConnection";
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        return null;
+    }
+
+}
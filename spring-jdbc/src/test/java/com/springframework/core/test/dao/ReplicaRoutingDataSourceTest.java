@@ -0,0 +1,203 @@
+package com.springframework.core.test.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.lookup.ReplicaRoutingDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ReplicaRoutingDataSource behind LazyConnectionDataSourceProxy and
+ * DataSourceTransactionManager, with embedded H2 databases standing in for
+ * the primary and its replicas. Each database knows its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<EmbeddedDatabase>();
+
+    private FailingDataSource replica1;
+
+    private FailingDataSource replica2;
+
+    private ReplicaRoutingDataSource router;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DataSourceTransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        DataSource primary = createDatabase("primary");
+        replica1 = new FailingDataSource(createDatabase("replica1"));
+        replica2 = new FailingDataSource(createDatabase("replica2"));
+        router = new ReplicaRoutingDataSource();
+        router.setPrimaryDataSource(primary);
+        router.setReplicaDataSources(Arrays.<DataSource>asList(replica1, replica2));
+        router.setValidationQuery("select 1");
+        router.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(router);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        for (EmbeddedDatabase database : databases) {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadOnlyTransactionsAreBalancedAcrossReplicas() {
+        List<String> nodes = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(queryNodeInTransaction(true));
+        }
+        assertEquals(2, countOf(nodes, "replica1"));
+        assertEquals(2, countOf(nodes, "replica2"));
+        assertFalse(nodes.get(0).equals(nodes.get(1)));
+    }
+
+    @Test
+    public void testReadWriteTransactionsGoToPrimary() {
+        assertEquals("primary", queryNodeInTransaction(false));
+        jdbcTemplate.update("insert into node values ('written')");
+        assertEquals(2, jdbcTemplate.queryForInt("select count(*) from node"));
+    }
+
+    @Test
+    public void testWorkOutsideOfTransactionGoesToPrimary() {
+        assertEquals("primary", queryNode());
+    }
+
+    @Test
+    public void testReadOnlyTransactionWithinReadWriteTransactionKeepsPrimaryConnection() {
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        String node = (String) outer.execute(new TransactionCallback() {
+            public Object doInTransaction(TransactionStatus status) {
+                queryNode();
+                return queryNodeInTransaction(true);
+            }
+        });
+        assertEquals("primary", node);
+    }
+
+    @Test
+    public void testFailingReplicaIsTakenOutOfRotation() {
+        router.setRetryInterval(60000);
+        replica1.failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica2", queryNodeInTransaction(true));
+        }
+        assertEquals(1, router.getAvailableReplicaCount());
+
+        replica1.failing = false;
+        assertEquals("replica2", queryNodeInTransaction(true));
+        assertEquals(2, router.checkReplicas());
+        assertEquals(2, router.getAvailableReplicaCount());
+        List<String> nodes = Arrays.asList(queryNodeInTransaction(true), queryNodeInTransaction(true));
+        assertTrue(nodes.contains("replica1"));
+    }
+
+    @Test
+    public void testFallbackToPrimaryWithoutAvailableReplica() {
+        replica1.failing = true;
+        replica2.failing = true;
+        assertEquals("primary", queryNodeInTransaction(true));
+        assertEquals(0, router.getAvailableReplicaCount());
+    }
+
+    @Test
+    public void testNoFallbackToPrimaryWithoutAvailableReplica() {
+        router.setFallbackToPrimary(false);
+        replica1.failing = true;
+        replica2.failing = true;
+        try {
+            queryNodeInTransaction(true);
+            fail("Should have thrown DataAccessException");
+        }
+        catch (DataAccessException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHealthCheckDetectsFailingReplica() {
+        replica2.failing = true;
+        assertEquals(1, router.checkReplicas());
+        assertEquals(1, router.getAvailableReplicaCount());
+    }
+
+    private EmbeddedDatabase createDatabase(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .setName("replicaRouting_" + name).build();
+        databases.add(database);
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("create table node (name varchar(20) not null)");
+        template.update("insert into node values (?)", new Object[] {name});
+        return database;
+    }
+
+    private String queryNodeInTransaction(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        return (String) template.execute(new TransactionCallback() {
+            public Object doInTransaction(TransactionStatus status) {
+                return queryNode();
+            }
+        });
+    }
+
+    private String queryNode() {
+        return (String) jdbcTemplate.queryForObject("select min(name) from node", String.class);
+    }
+
+    private static int countOf(List<String> nodes, String node) {
+        int count = 0;
+        for (String each : nodes) {
+            if (each.equals(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    private static class FailingDataSource extends DelegatingDataSource {
+
+        volatile boolean failing;
+
+        FailingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        public Connection getConnection() throws SQLException {
+            if (failing) {
+                throw new SQLException("Replica down");
+            }
+            return super.getConnection();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.springframework.core.test.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptStatementFailedException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ResourceDatabasePopulator's statement splitting and batching, on a recording
+ * Connection and on embedded H2.
+ */
+public class ResourceDatabasePopulatorTest {
+
+    @Test
+    public void testInputStreamResourceIsReadOnce() throws Exception {
+        String script = "-- comment\ninsert into t values (1);\ninsert into t values ('a;b');\nupdate t set x = 2";
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new InputStreamResource(new ByteArrayInputStream(script.getBytes("UTF-8"))));
+        populator.populate(recorder.createConnection());
+        assertEquals(Arrays.asList("insert into t values (1)", "insert into t values ('a;b')", "update t set x = 2"),
+                recorder.getExecutedSql());
+    }
+
+    @Test
+    public void testScriptWithoutSeparatorIsSplitAtLineBreaks() throws Exception {
+        String script = "create table t (x int)\n\ninsert into t values (1)\ninsert into t values (2)\n";
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new InputStreamResource(new ByteArrayInputStream(script.getBytes("UTF-8"))));
+        populator.populate(recorder.createConnection());
+        assertEquals(Arrays.asList("create table t (x int)", "insert into t values (1)", "insert into t values (2)"),
+                recorder.getExecutedSql());
+    }
+
+    @Test
+    public void testSeparatorOnLaterLineAfterLinesWithoutSeparator() throws Exception {
+        String script = "insert into t\nvalues (1);\ninsert into t values (2);";
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new ByteArrayResource(script.getBytes("UTF-8")));
+        populator.populate(recorder.createConnection());
+        assertEquals(Arrays.asList("insert into t values (1)", "insert into t values (2)"), recorder.getExecutedSql());
+    }
+
+    @Test
+    public void testReadableResourceIsScannedForSeparatorInSeparatePass() throws Exception {
+        final int[] opened = new int[1];
+        String script = "create table t (x int)\ninsert into t values (1)\n";
+        ByteArrayResource resource = new ByteArrayResource(script.getBytes("UTF-8")) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                opened[0]++;
+                return super.getInputStream();
+            }
+        };
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(resource);
+        populator.populate(recorder.createConnection());
+        assertEquals(2, opened[0]);
+        assertEquals(Arrays.asList("create table t (x int)", "insert into t values (1)"), recorder.getExecutedSql());
+    }
+
+    @Test
+    public void testConsecutiveDmlStatementsAreBatched() throws Exception {
+        String script = "create table t (x int);\ninsert into t values (1);\nINSERT into t values (2);\n" +
+                "update t set x = 3;\ncreate index t_x on t (x);\ndelete from t;";
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new ByteArrayResource(script.getBytes("UTF-8")));
+        populator.setBatchSize(2);
+        populator.populate(recorder.createConnection());
+        assertEquals(Arrays.asList("create table t (x int)", "insert into t values (1)", "INSERT into t values (2)",
+                "update t set x = 3", "create index t_x on t (x)", "delete from t"), recorder.getExecutedSql());
+        assertEquals(Arrays.asList(2, 1, 1), recorder.getExecutedBatchSizes());
+    }
+
+    @Test
+    public void testNoBatchingWithContinueOnError() throws Exception {
+        String script = "insert into t values (1);\ninsert into t values (2);";
+        RecordingConnection recorder = new RecordingConnection();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new ByteArrayResource(script.getBytes("UTF-8")));
+        populator.setContinueOnError(true);
+        populator.populate(recorder.createConnection());
+        assertEquals(2, recorder.getExecutedSql().size());
+        assertEquals(Collections.emptyList(), recorder.getExecutedBatchSizes());
+    }
+
+    @Test
+    public void testFailedBatchStatementIsReportedWithItsLineNumber() throws Exception {
+        String script = "create table t (x int primary key);\ninsert into t values (1);\n" +
+                "insert into t values (2);\ninsert into t values (1);\ninsert into t values (3);";
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .setName("populatorBatchTest").build();
+        Connection connection = database.getConnection();
+        try {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+            populator.addScript(new ByteArrayResource(script.getBytes("UTF-8")));
+            populator.populate(connection);
+            fail("Should have thrown ScriptStatementFailedException");
+        }
+        catch (ScriptStatementFailedException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 4"));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("insert into t values (1)"));
+        }
+        finally {
+            connection.close();
+            database.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.springframework.core.test.aop;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJAopUtils;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for AspectJAopUtils.prefilterAdvisors, i.e. for the class-level
+ * constraints derived from the text of pointcut expressions: package and type
+ * wildcards, subtype patterns, nested types, throws clauses, negations and
+ * binding forms.
+ */
+public class AspectJAdvisorPrefilterTest {
+
+    private static final String PACKAGE = "com.springframework.core.test.aop";
+
+    private static final String TEST_CLASS = PACKAGE + ".AspectJAdvisorPrefilterTest";
+
+    /** Unrelated classes that an unconstrained expression needs to match */
+    private static final Class<?>[] ANY_CLASSES = {DefaultOrderService.class, CustomerRepository.class,
+            HashMap.class, String.class, Object.class};
+
+    @Test
+    public void testExecutionWithDeclaringTypeAndMethodName() {
+        String expression = "execution(* " + TEST_CLASS + ".OrderService.save*(..))";
+        assertMatches(expression, DefaultOrderService.class);
+        assertMatches(expression, OrderService.class);
+        assertNoMatch(expression, CustomerRepository.class);
+        assertNoMatch("execution(* " + TEST_CLASS + ".OrderService.delete*(..))", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testExecutionWithMethodNameOnly() {
+        assertMatches("execution(* saveOrder(..))", DefaultOrderService.class);
+        assertMatches("execution(public * *Order(Object))", DefaultOrderService.class);
+        assertNoMatch("execution(* saveOrder(..))", CustomerRepository.class);
+        assertNoMatch("execution(* *.delete*(..))", DefaultOrderService.class);
+        assertMatchesAnyClass("execution(* *(..))");
+        assertMatchesAnyClass("execution(* *.*(..))");
+    }
+
+    @Test
+    public void testPackageWildcards() {
+        assertMatches("within(com.springframework..*)", DefaultOrderService.class);
+        assertMatches("within(com..aop.*)", DefaultOrderService.class);
+        assertMatches("within(*..AspectJAdvisorPrefilterTest*)", DefaultOrderService.class);
+        assertMatches("execution(* com.springframework.core..*Service.save*(..))", DefaultOrderService.class);
+        assertNoMatch("within(com.mycompany..*)", DefaultOrderService.class);
+        assertNoMatch("execution(* com.springframework.core..*Service.save*(..))", CustomerRepository.class);
+        assertNoMatch("within(com.springframework.core.test.*)", CustomerRepository.class);
+        // "java.." must not match a package merely starting with "java"
+        assertNoMatch("within(javax..*)", DefaultOrderService.class);
+        assertMatches("within(java..*)", ArrayList.class);
+        // every class inherits methods declared within java.lang.Object
+        assertMatches("within(java..*)", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testSubtypePatterns() {
+        assertMatches("within(java.util.List+)", ArrayList.class);
+        assertMatches("execution(* java.util.Collection+.add(..))", ArrayList.class);
+        assertMatches("target(java.util.Map)", HashMap.class);
+        assertNoMatch("within(java.util.List+)", HashMap.class);
+        assertMatches("within(" + TEST_CLASS + ".OrderService+)", DefaultOrderService.class);
+        // a "+" on the method name is not a type pattern
+        assertMatchesAnyClass("execution(* save+(..))");
+    }
+
+    @Test
+    public void testNestedTypes() {
+        assertMatches("within(" + TEST_CLASS + ".DefaultOrderService)", DefaultOrderService.class);
+        assertMatches("within(" + TEST_CLASS + "$DefaultOrderService)", DefaultOrderService.class);
+        assertMatches("within(AspectJAdvisorPrefilterTest.DefaultOrderService)", DefaultOrderService.class);
+        assertMatches("within(DefaultOrderService)", DefaultOrderService.class);
+        assertMatches("within(" + TEST_CLASS + ".*Service)", DefaultOrderService.class);
+        assertNoMatch("within(" + TEST_CLASS + ".DefaultOrderService)", CustomerRepository.class);
+        assertNoMatch("within(Other.DefaultOrderService)", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testThrowsClause() {
+        String expression = "execution(* " + TEST_CLASS + ".OrderService.save*(..) throws java.io.IOException)";
+        assertMatches(expression, DefaultOrderService.class);
+        assertNoMatch(expression, CustomerRepository.class);
+        assertNoMatch("execution(* delete*(..) throws java.io.IOException, RuntimeException)", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testAnnotations() {
+        assertMatches("@within(" + TEST_CLASS + ".Monitored)", DefaultOrderService.class);
+        assertMatches("@within(Monitored)", DefaultOrderService.class);
+        assertNoMatch("@within(Monitored)", CustomerRepository.class);
+        assertMatches("@annotation(" + TEST_CLASS + ".Audited)", CustomerRepository.class);
+        assertNoMatch("@annotation(Audited)", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testBooleanOperators() {
+        String orders = "within(" + TEST_CLASS + ".OrderService+)";
+        String customers = "execution(* findCustomer(..))";
+        assertMatches(orders + " || " + customers, DefaultOrderService.class);
+        assertMatches(orders + " || " + customers, CustomerRepository.class);
+        assertNoMatch(orders + " && " + customers, DefaultOrderService.class);
+        assertNoMatch(orders + " && " + customers, CustomerRepository.class);
+        assertMatches("(" + orders + " || within(javax..*)) && execution(* save*(..))", DefaultOrderService.class);
+        assertNoMatch("(" + orders + " || within(javax..*)) && execution(* save*(..))", CustomerRepository.class);
+        assertNoMatch("within(com.mycompany..*) && args(String)", DefaultOrderService.class);
+        assertMatches("within(com.mycompany..*) || args(String)", DefaultOrderService.class);
+    }
+
+    @Test
+    public void testNegationMatchesAnyClass() {
+        assertMatchesAnyClass("!within(" + TEST_CLASS + ".*)");
+        assertMatchesAnyClass("!(within(a.b.*) || execution(* foo(..)))");
+        assertMatches("!within(" + TEST_CLASS + ".*)", DefaultOrderService.class);
+        assertNoMatch("execution(* delete*(..)) && !within(com.mycompany..*)", CustomerRepository.class);
+    }
+
+    @Test
+    public void testBindingFormsMatchAnyClass() {
+        assertMatchesAnyClass("@annotation(audited)", "audited");
+        assertMatchesAnyClass("@within(monitored)", "monitored");
+        assertMatchesAnyClass("target(service)", "service");
+        // lowercase unqualified names are treated as bindings even without parameter names
+        assertMatchesAnyClass("target(service)");
+        assertMatchesAnyClass("args(id) && this(proxy) && @target(ann) && bean(orderService)");
+        // a parameter named like a type still does not constrain
+        assertMatchesAnyClass("@annotation(Audited)", "Audited");
+        assertNoMatch("execution(* delete*(..)) && @annotation(audited)", DefaultOrderService.class, "audited");
+    }
+
+    @Test
+    public void testUnsupportedExpressionsMatchAnyClass() {
+        assertMatchesAnyClass(null);
+        assertMatchesAnyClass("myPointcut()");
+        assertMatchesAnyClass("within(com.mycompany..*");
+        assertMatchesAnyClass("within(com.mycompany..*) &&");
+        assertMatchesAnyClass("within(*)");
+        assertMatchesAnyClass("within((com.a.* || com.b.*))");
+        assertMatchesAnyClass("within(com...*)");
+        assertMatchesAnyClass("target(com.mycompany.*Service)");
+        assertMatchesAnyClass("execution(* (com.a.Foo || com.b.Bar).*(..))");
+        assertMatchesAnyClass("execution(* com.mycompany..*(..))");
+    }
+
+    private static boolean isRetained(String expression, Class<?> targetClass, String... parameterNames) {
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        pointcut.setExpression(expression);
+        pointcut.setParameterNames(parameterNames);
+        Advisor advisor = new DefaultPointcutAdvisor(pointcut, new MethodInterceptor() {
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                return invocation.proceed();
+            }
+        });
+        List<Advisor> eligible = AspectJAopUtils.prefilterAdvisors(Collections.singletonList(advisor), targetClass);
+        return eligible.contains(advisor);
+    }
+
+    private static void assertMatches(String expression, Class<?> targetClass, String... parameterNames) {
+        assertTrue("'" + expression + "' should match " + targetClass.getName(),
+                isRetained(expression, targetClass, parameterNames));
+    }
+
+    private static void assertNoMatch(String expression, Class<?> targetClass, String... parameterNames) {
+        assertFalse("'" + expression + "' should not match " + targetClass.getName(),
+                isRetained(expression, targetClass, parameterNames));
+    }
+
+    private static void assertMatchesAnyClass(String expression, String... parameterNames) {
+        for (Class<?> targetClass : ANY_CLASSES) {
+            assertMatches(expression, targetClass, parameterNames);
+        }
+    }
+
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Monitored {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Audited {
+    }
+
+    public interface OrderService {
+
+        void saveOrder(Object order) throws IOException;
+    }
+
+    @Monitored
+    public static class DefaultOrderService implements OrderService {
+
+        public void saveOrder(Object order) {
+        }
+
+        public Object findOrder(long id) {
+            return null;
+        }
+    }
+
+    public static class CustomerRepository {
+
+        @Audited
+        public void saveCustomer(Object customer) {
+        }
+
+        public Object findCustomer(String name) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.springframework.core.test.aop;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+import org.springframework.util.FileCopyUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for CGLIB proxy classes shared across proxy factories and loaded
+ * from a proxy class directory.
+ */
+public class CglibProxyClassCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("cglib-proxy-classes", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("spring.aop.shareProxyClasses");
+        System.clearProperty("spring.aop.proxyClassDirectory");
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testProxyClassIsSharedOnlyForSameCallbackAssignment() {
+        System.setProperty("spring.aop.shareProxyClasses", "true");
+        ClassLoader classLoader = new TestClassLoader();
+        List<String> events = new ArrayList<String>();
+
+        Object find = createProxy(classLoader, events, "find");
+        Object otherFind = createProxy(classLoader, events, "find");
+        Object save = createProxy(classLoader, events, "save");
+        assertSame(find.getClass(), otherFind.getClass());
+        assertNotSame(find.getClass(), save.getClass());
+        assertSame(classLoader, find.getClass().getClassLoader());
+
+        ((Repository) find).find();
+        ((Repository) find).save();
+        ((Repository) save).find();
+        ((Repository) save).save();
+        assertEquals("[find, save]", events.toString());
+    }
+
+    @Test
+    public void testProxyClassLoadedFromDirectoryBehavesLikeGeneratedOne() throws Exception {
+        System.setProperty("spring.aop.proxyClassDirectory", directory.getAbsolutePath());
+        List<String> events = new ArrayList<String>();
+        Object generated = createProxy(new TestClassLoader(), events, "find");
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(generated.getClass().getName() + ".class", files[0].getName());
+        assertTrue(files[0].setLastModified(1000L));
+
+        ClassLoader classLoader = new TestClassLoader();
+        Object loaded = createProxy(classLoader, events, "find");
+        assertEquals(generated.getClass().getName(), loaded.getClass().getName());
+        assertSame(classLoader, loaded.getClass().getClassLoader());
+        assertEquals("file must not have been rewritten", 1000L, files[0].lastModified());
+
+        Repository repository = (Repository) loaded;
+        assertEquals("found", repository.find());
+        repository.save();
+        assertEquals(1, repository.getSaveCount());
+        assertEquals("[find]", events.toString());
+        assertTrue(loaded instanceof Advised);
+        assertEquals(1, ((Advised) loaded).getAdvisors().length);
+        assertEquals(Repository.class, ((Advised) loaded).getTargetSource().getTargetClass());
+        assertTrue(loaded.equals(loaded));
+    }
+
+    @Test
+    public void testCorruptClassFileFallsBackToGeneration() throws Exception {
+        System.setProperty("spring.aop.proxyClassDirectory", directory.getAbsolutePath());
+        String className = createProxy(new TestClassLoader(), new ArrayList<String>(), "find").getClass().getName();
+        File classFile = new File(directory, className + ".class");
+        byte[] corrupt = "not a class file".getBytes("UTF-8");
+        FileCopyUtils.copy(corrupt, classFile);
+
+        List<String> events = new ArrayList<String>();
+        Repository proxy = (Repository) createProxy(new TestClassLoader(), events, "find");
+        assertEquals(className, proxy.getClass().getName());
+        assertEquals("found", proxy.find());
+        assertEquals("[find]", events.toString());
+        assertFalse("file must have been rewritten",
+                Arrays.equals(corrupt, FileCopyUtils.copyToByteArray(classFile)));
+    }
+
+    @Test
+    public void testStaleClassFileFallsBackToGeneration() throws Exception {
+        System.setProperty("spring.aop.proxyClassDirectory", directory.getAbsolutePath());
+        ClassLoader classLoader = new TestClassLoader();
+        String findClassName = createProxy(classLoader, new ArrayList<String>(), "find").getClass().getName();
+        String saveClassName = createProxy(classLoader, new ArrayList<String>(), "save").getClass().getName();
+        assertFalse(findClassName.equals(saveClassName));
+        // a class file written for a different callback assignment
+        byte[] stale = FileCopyUtils.copyToByteArray(new File(directory, findClassName + ".class"));
+        File classFile = new File(directory, saveClassName + ".class");
+        FileCopyUtils.copy(stale, classFile);
+
+        List<String> events = new ArrayList<String>();
+        Repository proxy = (Repository) createProxy(new TestClassLoader(), events, "save");
+        assertEquals(saveClassName, proxy.getClass().getName());
+        proxy.find();
+        proxy.save();
+        assertEquals("[save]", events.toString());
+        assertFalse("file must have been rewritten", Arrays.equals(stale, FileCopyUtils.copyToByteArray(classFile)));
+    }
+
+    private static Object createProxy(ClassLoader classLoader, final List<String> events, String mappedName) {
+        ProxyFactory proxyFactory = new ProxyFactory(new Repository());
+        proxyFactory.setProxyTargetClass(true);
+        NameMatchMethodPointcutAdvisor advisor = new NameMatchMethodPointcutAdvisor(new MethodBeforeAdvice() {
+            public void before(Method method, Object[] args, Object target) {
+                events.add(method.getName());
+            }
+        });
+        advisor.setMappedName(mappedName);
+        proxyFactory.addAdvisor(advisor);
+        // callbacks are assigned per method for frozen configurations only
+        proxyFactory.setFrozen(true);
+        return proxyFactory.getProxy(classLoader);
+    }
+
+
+    public static class Repository {
+
+        private int saveCount;
+
+        public Object find() {
+            return "found";
+        }
+
+        public void save() {
+            this.saveCount++;
+        }
+
+        public int getSaveCount() {
+            return this.saveCount;
+        }
+    }
+
+    /**
+     * Fresh ClassLoader per (simulated) application start, so that every
+     * test starts without any cached proxy class.
+     */
+    private static class TestClassLoader extends ClassLoader {
+
+        TestClassLoader() {
+            super(CglibProxyClassCacheTest.class.getClassLoader());
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.springframework.core.test.aop;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+
+/**
+ * Cold-start cost of creating CGLIB class proxies, as during the startup of
+ * several application contexts proxying the same bean classes: CGLIB's own
+ * cache, proxy classes shared across proxy factories, and proxy classes
+ * loaded from a directory written by a previous run.
+ *
+ * <p>Every measurement runs in a fresh JVM, since the point is the time
+ * spent before any proxy class exists. The warmup fork populates the proxy
+ * class directory for the "directory" mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, warmups = 1)
+public class CglibProxyStartupBenchmark {
+
+    private static final Class<?>[] BEAN_CLASSES = {OrderService.class, CustomerService.class,
+            InvoiceService.class, ShippingService.class};
+
+    @Param({"cglib", "shared", "directory"})
+    public String cacheMode;
+
+    @Param({"10"})
+    public int contexts;
+
+    @Setup
+    public void setUp() {
+        // Checked by Cglib2AopProxy whenever it creates a proxy
+        if ("shared".equals(cacheMode)) {
+            System.setProperty("spring.aop.shareProxyClasses", "true");
+        }
+        else if ("directory".equals(cacheMode)) {
+            File dir = new File(System.getProperty("java.io.tmpdir"), "cglib-proxy-startup-benchmark");
+            System.setProperty("spring.aop.proxyClassDirectory", dir.getAbsolutePath());
+        }
+    }
+
+    @Benchmark
+    public Object createProxies() throws Exception {
+        Object last = null;
+        for (int i = 0; i < contexts; i++) {
+            for (Class<?> beanClass : BEAN_CLASSES) {
+                ProxyFactory proxyFactory = new ProxyFactory(beanClass.newInstance());
+                proxyFactory.setProxyTargetClass(true);
+                // fresh advice instances per context, as in separate application contexts
+                NameMatchMethodPointcutAdvisor before = new NameMatchMethodPointcutAdvisor(new MethodBeforeAdvice() {
+                    public void before(Method method, Object[] args, Object target) {
+                    }
+                });
+                before.setMappedName("find*");
+                proxyFactory.addAdvisor(before);
+                NameMatchMethodPointcutAdvisor around = new NameMatchMethodPointcutAdvisor(new MethodInterceptor() {
+                    public Object invoke(MethodInvocation invocation) throws Throwable {
+                        return invocation.proceed();
+                    }
+                });
+                around.setMappedName("save*");
+                proxyFactory.addAdvisor(around);
+                last = proxyFactory.getProxy();
+            }
+        }
+        return last;
+    }
+
+
+    public static class OrderService {
+
+        public Object findOrder(long id) {
+            return id;
+        }
+
+        public void saveOrder(Object order) {
+        }
+
+        public int countOrders() {
+            return 0;
+        }
+    }
+
+    public static class CustomerService {
+
+        public Object findCustomer(String name) {
+            return name;
+        }
+
+        public void saveCustomer(Object customer) {
+        }
+
+        public void deleteCustomer(Object customer) {
+        }
+    }
+
+    public static class InvoiceService {
+
+        public Object findInvoice(long id) {
+            return id;
+        }
+
+        public void saveInvoice(Object invoice) {
+        }
+    }
+
+    public static class ShippingService {
+
+        public Object findShipment(long id) {
+            return id;
+        }
+
+        public void saveShipment(Object shipment) {
+        }
+
+        public boolean isShipped(Object order) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.springframework.core.test.aop;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+
+/**
+ * Call overhead of interface proxies: a JDK dynamic proxy against a compiled
+ * proxy for the same frozen configuration, for a method without advice, one
+ * with a before advice only and one with a MethodInterceptor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class CompiledProxyBenchmark {
+
+    @Param({"jdk", "compiled"})
+    public String proxyType;
+
+    private Calculator proxy;
+
+    // read from a field rather than a literal, so the JIT cannot fold the calls away
+    private int operand = 42;
+
+    @Setup
+    public void setUp() {
+        ProxyFactory proxyFactory = new ProxyFactory(new SimpleCalculator());
+        proxyFactory.addInterface(Calculator.class);
+        NameMatchMethodPointcutAdvisor before = new NameMatchMethodPointcutAdvisor(new MethodBeforeAdvice() {
+            public void before(Method method, Object[] args, Object target) {
+            }
+        });
+        before.setMappedName("checked");
+        proxyFactory.addAdvisor(before);
+        NameMatchMethodPointcutAdvisor around = new NameMatchMethodPointcutAdvisor(new MethodInterceptor() {
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                return invocation.proceed();
+            }
+        });
+        around.setMappedName("intercepted");
+        proxyFactory.addAdvisor(around);
+        proxyFactory.setFrozen(true);
+        proxyFactory.setCompiled("compiled".equals(proxyType));
+        proxy = (Calculator) proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public int unadvised() {
+        return proxy.plain(operand);
+    }
+
+    @Benchmark
+    public int beforeAdvice() {
+        return proxy.checked(operand);
+    }
+
+    @Benchmark
+    public int methodInterceptor() {
+        return proxy.intercepted(operand);
+    }
+
+
+    public interface Calculator {
+
+        int plain(int value);
+
+        int checked(int value);
+
+        int intercepted(int value);
+    }
+
+    public static class SimpleCalculator implements Calculator {
+
+        public int plain(int value) {
+            return value + 1;
+        }
+
+        public int checked(int value) {
+            return value + 2;
+        }
+
+        public int intercepted(int value) {
+            return value + 3;
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.springframework.core.test.aop;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.springframework.aop.AfterReturningAdvice;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopConfigException;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+import org.springframework.aop.target.SingletonTargetSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for compiled interface proxies: invocation, before and after returning
+ * advice, exception semantics, replacement of a returned target, reuse of the
+ * generated class and rejection of a new TargetSource.
+ */
+public class CompiledProxyTest {
+
+    @Test
+    public void testCompiledProxyInvokesTarget() {
+        CompiledProxyBenchmark.Calculator proxy = createProxy(new CompiledProxyBenchmark.SimpleCalculator());
+        assertEquals(2, proxy.plain(1));
+        assertEquals(3, proxy.checked(1));
+        assertEquals(4, proxy.intercepted(1));
+    }
+
+    @Test
+    public void testProxyClassIsReusedForSameShape() {
+        CompiledProxyBenchmark.Calculator first = createProxy(new CompiledProxyBenchmark.SimpleCalculator());
+        CompiledProxyBenchmark.Calculator second = createProxy(new CompiledProxyBenchmark.SimpleCalculator());
+        assertNotSame(first, second);
+        assertSame(first.getClass(), second.getClass());
+    }
+
+    @Test
+    public void testSetTargetSourceIsRejected() {
+        CompiledProxyBenchmark.Calculator proxy = createProxy(new CompiledProxyBenchmark.SimpleCalculator());
+        try {
+            ((Advised) proxy).setTargetSource(new SingletonTargetSource(new CompiledProxyBenchmark.SimpleCalculator()));
+            fail("Should have thrown AopConfigException");
+        }
+        catch (AopConfigException ex) {
+            // expected
+        }
+        assertEquals(2, proxy.plain(1));
+    }
+
+    @Test
+    public void testBeforeAndAfterReturningAdviceMatchesDynamicProxy() {
+        List<String> compiledEvents = new ArrayList<String>();
+        Service compiled = createServiceProxy(true, new RecordingAdvice("first", compiledEvents),
+                new RecordingAdvice("second", compiledEvents));
+        assertEquals(3, compiled.compute(2));
+        compiled.run();
+
+        List<String> dynamicEvents = new ArrayList<String>();
+        Service dynamic = createServiceProxy(false, new RecordingAdvice("first", dynamicEvents),
+                new RecordingAdvice("second", dynamicEvents));
+        assertEquals(3, dynamic.compute(2));
+        dynamic.run();
+
+        assertEquals("[before first compute [2], before second compute [2], " +
+                "afterReturning second compute 3, afterReturning first compute 3, " +
+                "before first run [], before second run [], " +
+                "afterReturning second run null, afterReturning first run null]", compiledEvents.toString());
+        assertEquals(dynamicEvents, compiledEvents);
+    }
+
+    @Test
+    public void testAfterReturningAdviceIsSkippedIfTargetThrows() throws Exception {
+        List<String> events = new ArrayList<String>();
+        Service proxy = createServiceProxy(true, new RecordingAdvice("advice", events));
+        try {
+            proxy.read(-1);
+            fail("Should have thrown IOException");
+        }
+        catch (IOException ex) {
+            assertEquals("negative", ex.getMessage());
+        }
+        assertEquals("[before advice read [-1]]", events.toString());
+    }
+
+    @Test
+    public void testDeclaredCheckedExceptionIsPropagated() {
+        for (Advice advice : new Advice[] {new ThrowingBeforeAdvice(), new ThrowingInterceptor()}) {
+            Service proxy = createServiceProxy(true, advice);
+            try {
+                proxy.read(1);
+                fail("Should have thrown IOException");
+            }
+            catch (IOException ex) {
+                assertEquals("from advice", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testUndeclaredCheckedExceptionIsWrapped() {
+        for (Advice advice : new Advice[] {new ThrowingBeforeAdvice(), new ThrowingInterceptor()}) {
+            Service proxy = createServiceProxy(true, advice);
+            try {
+                proxy.compute(1);
+                fail("Should have thrown UndeclaredThrowableException");
+            }
+            catch (UndeclaredThrowableException ex) {
+                assertTrue(ex.getUndeclaredThrowable() instanceof IOException);
+                assertEquals("from advice", ex.getUndeclaredThrowable().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testRuntimeExceptionIsNotWrapped() {
+        Service proxy = createServiceProxy(true, new MethodBeforeAdvice() {
+            public void before(Method method, Object[] args, Object target) {
+                throw new IllegalStateException("from advice");
+            }
+        });
+        try {
+            proxy.compute(1);
+            fail("Should have thrown IllegalStateException");
+        }
+        catch (IllegalStateException ex) {
+            assertEquals("from advice", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testReturnedTargetIsReplacedWithProxy() {
+        Service unadvised = createServiceProxy(true);
+        assertSame(unadvised, unadvised.self());
+        assertNotSame(unadvised, unadvised.other());
+
+        Service flat = createServiceProxy(true, new RecordingAdvice("advice", new ArrayList<String>()));
+        assertSame(flat, flat.self());
+        assertNotSame(flat, flat.other());
+
+        Service intercepted = createServiceProxy(true, new MethodInterceptor() {
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                return invocation.proceed();
+            }
+        });
+        assertSame(intercepted, intercepted.self());
+        assertNotSame(intercepted, intercepted.other());
+    }
+
+    private static Service createServiceProxy(boolean compiled, Advice... advices) {
+        ProxyFactory proxyFactory = new ProxyFactory(new SimpleService());
+        proxyFactory.addInterface(Service.class);
+        for (Advice advice : advices) {
+            NameMatchMethodPointcutAdvisor advisor = new NameMatchMethodPointcutAdvisor(advice);
+            advisor.setMappedNames(new String[] {"compute", "read", "run", "self", "other"});
+            proxyFactory.addAdvisor(advisor);
+        }
+        proxyFactory.setFrozen(true);
+        proxyFactory.setCompiled(compiled);
+        Service proxy = (Service) proxyFactory.getProxy();
+        assertEquals(compiled, !Proxy.isProxyClass(proxy.getClass()));
+        return proxy;
+    }
+
+    private static CompiledProxyBenchmark.Calculator createProxy(CompiledProxyBenchmark.Calculator target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(CompiledProxyBenchmark.Calculator.class);
+        proxyFactory.setFrozen(true);
+        proxyFactory.setCompiled(true);
+        return (CompiledProxyBenchmark.Calculator) proxyFactory.getProxy();
+    }
+
+
+    public interface Service {
+
+        int compute(int value);
+
+        int read(int value) throws IOException;
+
+        void run();
+
+        Service self();
+
+        Service other();
+    }
+
+    public static class SimpleService implements Service {
+
+        public int compute(int value) {
+            return value + 1;
+        }
+
+        public int read(int value) throws IOException {
+            if (value < 0) {
+                throw new IOException("negative");
+            }
+            return value;
+        }
+
+        public void run() {
+        }
+
+        public Service self() {
+            return this;
+        }
+
+        public Service other() {
+            return new SimpleService();
+        }
+    }
+
+    private static class RecordingAdvice implements MethodBeforeAdvice, AfterReturningAdvice {
+
+        private final String name;
+
+        private final List<String> events;
+
+        RecordingAdvice(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        public void before(Method method, Object[] args, Object target) {
+            assertTrue(target instanceof SimpleService);
+            this.events.add("before " + this.name + " " + method.getName() + " " + Arrays.toString(args));
+        }
+
+        public void afterReturning(Object returnValue, Method method, Object[] args, Object target) {
+            this.events.add("afterReturning " + this.name + " " + method.getName() + " " + returnValue);
+        }
+    }
+
+    private static class ThrowingBeforeAdvice implements MethodBeforeAdvice {
+
+        public void before(Method method, Object[] args, Object target) throws Throwable {
+            throw new IOException("from advice");
+        }
+    }
+
+    private static class ThrowingInterceptor implements MethodInterceptor {
+
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            throw new IOException("from advice");
+        }
+    }
+
+}
@@ -0,0 +1,307 @@
+package com.springframework.core.test.aop;
+
+import java.lang.ref.WeakReference;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.target.ConcurrentPoolTargetSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ConcurrentPoolTargetSource: thread affinity, the maximum size,
+ * release checks, eviction, validation, and that destroyed objects are not
+ * kept alive by threads that used them.
+ */
+public class ConcurrentPoolTargetSourceTest {
+
+    private DefaultListableBeanFactory beanFactory;
+
+    private EvictablePoolTargetSource targetSource;
+
+    @Before
+    public void setUp() {
+        beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(ValidatedService.class);
+        beanDefinition.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("pooledService", beanDefinition);
+        targetSource = new EvictablePoolTargetSource();
+        targetSource.setMaxSize(2);
+        targetSource.setMaxWait(50);
+        targetSource.setTargetBeanName("pooledService");
+    }
+
+    private void createPool() {
+        targetSource.setBeanFactory(beanFactory);
+    }
+
+    @After
+    public void tearDown() {
+        targetSource.destroy();
+    }
+
+    @Test
+    public void testThreadGetsMostRecentlyUsedTarget() throws Exception {
+        createPool();
+        Object first = targetSource.getTarget();
+        Object second = targetSource.getTarget();
+        assertNotSame(first, second);
+        targetSource.releaseTarget(first);
+        targetSource.releaseTarget(second);
+        assertSame(second, targetSource.getTarget());
+        assertEquals(1, targetSource.getActiveCount());
+        assertEquals(1, targetSource.getIdleCount());
+    }
+
+    @Test
+    public void testExhaustedPoolTimesOut() throws Exception {
+        createPool();
+        targetSource.getTarget();
+        targetSource.getTarget();
+        try {
+            targetSource.getTarget();
+            fail("Should have thrown NoSuchElementException");
+        }
+        catch (NoSuchElementException ex) {
+            assertEquals(1, targetSource.getTimeoutCount());
+        }
+    }
+
+    @Test
+    public void testDestroyedTargetsAreNotHeldByThreads() throws Exception {
+        createPool();
+        final Object[] holder = new Object[1];
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread() {
+            public void run() {
+                try {
+                    holder[0] = targetSource.getTarget();
+                    targetSource.releaseTarget(holder[0]);
+                    released.countDown();
+                    // Stay alive, with the target as this thread's most recently used one
+                    done.await();
+                }
+                catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        worker.start();
+        try {
+            assertTrue(released.await(5, TimeUnit.SECONDS));
+            Object local = targetSource.getTarget();
+            targetSource.releaseTarget(local);
+            WeakReference<Object> workerTarget = new WeakReference<Object>(holder[0]);
+            WeakReference<Object> localTarget = new WeakReference<Object>(local);
+            holder[0] = null;
+            local = null;
+
+            targetSource.destroy();
+            assertEquals(0, targetSource.getSize());
+            for (int i = 0; i < 10 && (workerTarget.get() != null || localTarget.get() != null); i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(workerTarget.get());
+            assertNull(localTarget.get());
+        }
+        finally {
+            done.countDown();
+            worker.join();
+        }
+    }
+
+    @Test
+    public void testReleasedTargetCannotBeReleasedAgain() throws Exception {
+        createPool();
+        Object target = targetSource.getTarget();
+        targetSource.releaseTarget(target);
+        try {
+            targetSource.releaseTarget(target);
+            fail("Should have thrown IllegalStateException");
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+        // the failed release must not have returned another permit
+        targetSource.getTarget();
+        targetSource.getTarget();
+        try {
+            targetSource.getTarget();
+            fail("Should have thrown NoSuchElementException");
+        }
+        catch (NoSuchElementException ex) {
+            assertEquals(2, targetSource.getSize());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignObjectCannotBeReleased() throws Exception {
+        createPool();
+        targetSource.releaseTarget(new ValidatedService());
+    }
+
+    @Test
+    public void testIdleTargetsAreEvicted() throws Exception {
+        targetSource.setTimeBetweenEvictionRunsMillis(10);
+        targetSource.setMinEvictableIdleTimeMillis(20);
+        createPool();
+        ValidatedService first = (ValidatedService) targetSource.getTarget();
+        ValidatedService second = (ValidatedService) targetSource.getTarget();
+        targetSource.releaseTarget(first);
+        targetSource.releaseTarget(second);
+        assertEquals(2, targetSource.getIdleCount());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (targetSource.getSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, targetSource.getSize());
+        assertEquals(2, targetSource.getDestroyedCount());
+        assertTrue(first.destroyed);
+        assertTrue(second.destroyed);
+    }
+
+    @Test
+    public void testTargetsInUseAreNotEvicted() throws Exception {
+        targetSource.setMinEvictableIdleTimeMillis(0);
+        createPool();
+        Object target = targetSource.getTarget();
+        Thread.sleep(5);
+        targetSource.runEviction();
+        assertEquals(1, targetSource.getActiveCount());
+        assertEquals(0, targetSource.getDestroyedCount());
+        targetSource.releaseTarget(target);
+    }
+
+    @Test
+    public void testEvictionKeepsAndRefillsMinIdle() throws Exception {
+        targetSource.setMaxSize(3);
+        targetSource.setMinIdle(2);
+        targetSource.setMinEvictableIdleTimeMillis(0);
+        createPool();
+        targetSource.runEviction();
+        assertEquals(2, targetSource.getSize());
+        assertEquals(2, targetSource.getIdleCount());
+
+        Object first = targetSource.getTarget();
+        Object second = targetSource.getTarget();
+        Object third = targetSource.getTarget();
+        targetSource.releaseTarget(first);
+        targetSource.releaseTarget(second);
+        targetSource.releaseTarget(third);
+        Thread.sleep(5);
+        targetSource.runEviction();
+        assertEquals(2, targetSource.getSize());
+        assertEquals(1, targetSource.getDestroyedCount());
+
+        // invalid objects are discarded while idle and replaced
+        targetSource.setTestWhileIdle(true);
+        targetSource.setValidationMethodName("isValid");
+        ValidatedService target = (ValidatedService) targetSource.getTarget();
+        target.valid = false;
+        targetSource.releaseTarget(target);
+        targetSource.runEviction();
+        assertTrue(target.destroyed);
+        assertEquals(2, targetSource.getSize());
+        assertEquals(2, targetSource.getIdleCount());
+        assertEquals(4, targetSource.getCreatedCount());
+    }
+
+    @Test
+    public void testInvalidTargetIsDiscardedOnBorrow() throws Exception {
+        targetSource.setTestOnBorrow(true);
+        targetSource.setValidationMethodName("isValid");
+        createPool();
+        ValidatedService target = (ValidatedService) targetSource.getTarget();
+        targetSource.releaseTarget(target);
+        assertSame(target, targetSource.getTarget());
+        targetSource.releaseTarget(target);
+
+        target.valid = false;
+        Object replacement = targetSource.getTarget();
+        assertNotSame(target, replacement);
+        assertTrue(target.destroyed);
+        assertEquals(1, targetSource.getValidationFailureCount());
+        assertEquals(1, targetSource.getSize());
+        targetSource.releaseTarget(replacement);
+    }
+
+    @Test
+    public void testInvalidTargetIsDiscardedWhileIdle() throws Exception {
+        targetSource.setTestWhileIdle(true);
+        targetSource.setValidationMethodName("isValid");
+        createPool();
+        ValidatedService valid = (ValidatedService) targetSource.getTarget();
+        ValidatedService invalid = (ValidatedService) targetSource.getTarget();
+        invalid.valid = false;
+        targetSource.releaseTarget(valid);
+        targetSource.releaseTarget(invalid);
+
+        targetSource.runEviction();
+        assertFalse(valid.destroyed);
+        assertTrue(invalid.destroyed);
+        assertEquals(1, targetSource.getSize());
+        assertEquals(1, targetSource.getIdleCount());
+        assertEquals(1, targetSource.getValidationFailureCount());
+        assertSame(valid, targetSource.getTarget());
+    }
+
+    @Test
+    public void testFailingValidationMethodMarksTargetInvalid() throws Exception {
+        targetSource.setTestOnBorrow(true);
+        targetSource.setValidationMethodName("isValid");
+        createPool();
+        ValidatedService target = (ValidatedService) targetSource.getTarget();
+        target.failing = true;
+        targetSource.releaseTarget(target);
+
+        Object replacement = targetSource.getTarget();
+        assertNotSame(target, replacement);
+        assertTrue(target.destroyed);
+        assertEquals(1, targetSource.getValidationFailureCount());
+        // the failed candidate gave its permit back to the pool
+        targetSource.getTarget();
+        assertEquals(2, targetSource.getSize());
+    }
+
+
+    public static class ValidatedService implements DisposableBean {
+
+        volatile boolean valid = true;
+
+        volatile boolean failing;
+
+        volatile boolean destroyed;
+
+        public boolean isValid() {
+            if (this.failing) {
+                throw new IllegalStateException("Validation failed");
+            }
+            return this.valid;
+        }
+
+        public void destroy() {
+            this.destroyed = true;
+        }
+    }
+
+    /**
+     * Exposes eviction runs, for running them without waiting for the evictor thread.
+     */
+    private static class EvictablePoolTargetSource extends ConcurrentPoolTargetSource {
+
+        public void runEviction() {
+            evict();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.springframework.core.test.aop;
+
+import java.lang.reflect.Method;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.interceptor.HistogramPerformanceMonitorInterceptor;
+import org.springframework.aop.interceptor.LatencyHistogram;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for HistogramPerformanceMonitorInterceptor on a proxied service:
+ * per-method statistics, percentiles, sampling and reset.
+ */
+public class HistogramPerformanceMonitorInterceptorTest {
+
+    private static final String FAST = CompiledProxyBenchmark.Calculator.class.getName() + ".plain(int)";
+
+    private static final String SLOW = CompiledProxyBenchmark.Calculator.class.getName() + ".checked(int)";
+
+    private HistogramPerformanceMonitorInterceptor interceptor;
+
+    private CompiledProxyBenchmark.Calculator proxy;
+
+    @Before
+    public void setUp() {
+        interceptor = new HistogramPerformanceMonitorInterceptor();
+        ProxyFactory proxyFactory = new ProxyFactory(new SleepingCalculator());
+        proxyFactory.addAdvice(interceptor);
+        proxy = (CompiledProxyBenchmark.Calculator) proxyFactory.getProxy();
+    }
+
+    @Test
+    public void testStatisticsPerMethod() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            proxy.plain(i);
+        }
+        for (int i = 0; i < 5; i++) {
+            proxy.checked(i);
+        }
+        assertArrayEquals(new String[] {SLOW, FAST}, interceptor.getMonitoredMethods());
+        assertEquals(100, interceptor.getInvocationCount(FAST));
+        assertEquals(5, interceptor.getInvocationCount(SLOW));
+
+        // checked(int) sleeps for 20ms, within the histogram's relative error
+        assertTrue(interceptor.getPercentileTime(SLOW, 50) >= 20);
+        assertTrue(interceptor.getMeanTime(SLOW) >= 20);
+        assertTrue(interceptor.getMaxTime(SLOW) >= interceptor.getPercentileTime(SLOW, 99));
+        assertTrue(interceptor.getPercentileTime(FAST, 99) < interceptor.getPercentileTime(SLOW, 1));
+
+        String[] statistics = interceptor.getStatistics();
+        assertEquals(2, statistics.length);
+        assertTrue(statistics[0], statistics[0].startsWith(SLOW + ": count=5, mean="));
+        assertTrue(statistics[0], statistics[0].contains(", p99.9="));
+
+        Method method = CompiledProxyBenchmark.Calculator.class.getMethod("plain", int.class);
+        LatencyHistogram histogram = interceptor.getHistogram(method);
+        assertEquals(100, histogram.getSnapshot().getCount());
+        assertNull(interceptor.getHistogram(CompiledProxyBenchmark.Calculator.class.getMethod("intercepted", int.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMethod() {
+        interceptor.getInvocationCount("com.mycompany.Unknown.method()");
+    }
+
+    @Test
+    public void testSamplingInterval() {
+        interceptor.setSamplingInterval(10);
+        for (int i = 0; i < 1000; i++) {
+            proxy.plain(i);
+        }
+        assertEquals(100, interceptor.getInvocationCount(FAST));
+
+        interceptor.setSamplingInterval(0);
+        for (int i = 0; i < 1000; i++) {
+            proxy.plain(i);
+            proxy.intercepted(i);
+        }
+        assertEquals(100, interceptor.getInvocationCount(FAST));
+        assertEquals(1, interceptor.getMonitoredMethods().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSamplingInterval() {
+        interceptor.setSamplingInterval(-1);
+    }
+
+    @Test
+    public void testReset() {
+        proxy.plain(1);
+        proxy.checked(1);
+        interceptor.reset();
+        assertEquals(0, interceptor.getInvocationCount(FAST));
+        assertEquals(0, interceptor.getMaxTime(SLOW), 0);
+        proxy.plain(1);
+        assertEquals(1, interceptor.getInvocationCount(FAST));
+    }
+
+
+    private static class SleepingCalculator extends CompiledProxyBenchmark.SimpleCalculator {
+
+        @Override
+        public int checked(int value) {
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return super.checked(value);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.springframework.core.test.aop;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.springframework.aop.interceptor.LatencyHistogram;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the bucketing, percentiles and concurrent recording of LatencyHistogram.
+ * Bucket bounds are observed through percentiles of a snapshot.
+ */
+public class LatencyHistogramTest {
+
+    /** Relative width of a bucket: 16 sub-buckets per power of two */
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+
+    /** Just below 2^44 ns, about 4.9 hours: the highest value with its own bucket */
+    private static final long MAX_TRACKABLE = (1L << 44) - 1;
+
+    @Test
+    public void testSmallValuesHaveExactBuckets() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, bucketUpperBound(value));
+        }
+    }
+
+    @Test
+    public void testBucketBoundsAreContiguous() {
+        long lowest = 0;
+        long highest = -1;
+        while (lowest <= MAX_TRACKABLE) {
+            highest = bucketUpperBound(lowest);
+            assertTrue("Empty bucket from " + lowest, highest >= lowest);
+            assertEquals(highest, bucketUpperBound(highest));
+            if (highest > lowest) {
+                assertEquals(highest, bucketUpperBound(lowest + (highest - lowest) / 2));
+            }
+            lowest = highest + 1;
+        }
+        assertEquals(MAX_TRACKABLE, highest);
+    }
+
+    @Test
+    public void testBucketWidthIsWithinRelativeError() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            long value = random.nextLong() >>> (20 + random.nextInt(44));
+            if (value > MAX_TRACKABLE) {
+                continue;
+            }
+            long highest = bucketUpperBound(value);
+            assertTrue(highest >= value);
+            assertTrue("Value " + value + " reported as " + highest,
+                    highest - value <= Math.max(value * MAX_RELATIVE_ERROR, 0));
+        }
+    }
+
+    @Test
+    public void testValuesBeyondRangeGoToHighestBucket() {
+        assertEquals(MAX_TRACKABLE, bucketUpperBound(MAX_TRACKABLE + 1));
+        assertEquals(MAX_TRACKABLE, bucketUpperBound(Long.MAX_VALUE / 4));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(Long.MAX_VALUE / 2, snapshot.getMax());
+        assertEquals(MAX_TRACKABLE, snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testNegativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(50000500.0, snapshot.getMean(), 0.001);
+        assertEquals(100000000, snapshot.getMax());
+        for (double percentile : new double[] {1, 10, 50, 90, 99, 99.9, 99.99}) {
+            long exact = (long) Math.ceil(percentile * 1000) * 1000;
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile + " reported as " + reported + ", exact " + exact, reported >= exact);
+            assertTrue("p" + percentile + " reported as " + reported + ", exact " + exact,
+                    reported <= exact * (1 + MAX_RELATIVE_ERROR));
+        }
+        assertEquals(snapshot.getMax(), snapshot.getValueAtPercentile(100));
+        assertEquals(snapshot.getValueAtPercentile(0), snapshot.getValueAtPercentile(-1));
+        assertEquals(snapshot.getMax(), snapshot.getValueAtPercentile(150));
+    }
+
+    @Test
+    public void testPercentilesOfSkewedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            // mostly fast calls with a long tail
+            values[i] = (i % 100 == 0 ? 50000000 + random.nextInt(50000000) : 10000 + random.nextInt(5000));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        for (double percentile : new double[] {50, 90, 98.9, 99.5, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile + " reported as " + reported + ", exact " + exact,
+                    reported >= exact && reported <= exact * (1 + MAX_RELATIVE_ERROR));
+        }
+        assertTrue(snapshot.getValueAtPercentile(98.9) < 20000);
+        assertTrue(snapshot.getValueAtPercentile(99.5) >= 50000000);
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram(2);
+        histogram.record(100);
+        histogram.record(5000);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        histogram.record(300);
+        assertEquals(1, histogram.getSnapshot().getCount());
+        assertEquals(300, histogram.getSnapshot().getMax());
+    }
+
+    @Test
+    public void testConcurrentRecordingKeepsExactCounts() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram(2);
+        final int threads = 4;
+        final int perThread = 250000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] recorders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            recorders[t] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i % 1000 + offset);
+                    }
+                }
+            };
+            recorders[t].start();
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(threads * perThread, snapshot.getCount());
+        assertEquals(999 + threads - 1, snapshot.getMax());
+        assertEquals(499.5 + (threads - 1) / 2.0, snapshot.getMean(), 0.000001);
+    }
+
+    /**
+     * Return the highest value of the bucket that the given value is counted in:
+     * the median of the value and a larger one, which is not capped by the maximum.
+     */
+    private static long bucketUpperBound(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getSnapshot().getValueAtPercentile(50);
+    }
+
+}
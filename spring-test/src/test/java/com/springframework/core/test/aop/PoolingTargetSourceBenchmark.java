@@ -0,0 +1,85 @@
+package com.springframework.core.test.aop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.target.AbstractPoolingTargetSource;
+import org.springframework.aop.target.CommonsPoolTargetSource;
+import org.springframework.aop.target.ConcurrentPoolTargetSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+/**
+ * Borrowing and releasing pooled targets under contention: more threads
+ * than pooled objects, CommonsPoolTargetSource (a single pool monitor)
+ * versus ConcurrentPoolTargetSource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class PoolingTargetSourceBenchmark {
+
+    @Param({"commons", "concurrent"})
+    public String poolType;
+
+    @Param({"8"})
+    public int maxSize;
+
+    private AbstractPoolingTargetSource targetSource;
+
+    @Setup
+    public void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(PooledService.class);
+        beanDefinition.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("pooledService", beanDefinition);
+        targetSource = ("commons".equals(poolType) ? new CommonsPoolTargetSource() : new ConcurrentPoolTargetSource());
+        targetSource.setMaxSize(maxSize);
+        targetSource.setTargetBeanName("pooledService");
+        targetSource.setBeanFactory(beanFactory);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((DisposableBean) targetSource).destroy();
+    }
+
+    @Benchmark
+    public int borrowAndRelease() throws Exception {
+        PooledService service = (PooledService) targetSource.getTarget();
+        try {
+            return service.work();
+        }
+        finally {
+            targetSource.releaseTarget(service);
+        }
+    }
+
+
+    public static class PooledService {
+
+        private int calls;
+
+        public int work() {
+            return ++calls;
+        }
+    }
+
+}
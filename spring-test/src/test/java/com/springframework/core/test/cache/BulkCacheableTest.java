@@ -0,0 +1,97 @@
+package com.springframework.core.test.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.annotation.AnnotationCacheOperationSource;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.CacheInterceptor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for bulk cacheable methods invoked through a CacheInterceptor.
+ */
+public class BulkCacheableTest {
+
+    private UserRepository target;
+
+    private Repository proxy;
+
+    @Before
+    public void setUp() throws Exception {
+        CacheInterceptor interceptor = new CacheInterceptor();
+        interceptor.setCacheManager(new ConcurrentMapCacheManager());
+        interceptor.setCacheOperationSources(new AnnotationCacheOperationSource());
+        interceptor.afterPropertiesSet();
+
+        target = new UserRepository();
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(Repository.class);
+        proxyFactory.addAdvice(interceptor);
+        proxy = (Repository) proxyFactory.getProxy();
+    }
+
+    @Test
+    public void testMethodIsInvokedForMissingKeysOnly() {
+        assertEquals(Arrays.asList("user1", "user2"), proxy.findUsers(Arrays.asList(1L, 2L)));
+        assertEquals(Arrays.asList("user2", "user3", "user1"), proxy.findUsers(Arrays.asList(2L, 3L, 1L)));
+
+        assertEquals(2, target.requests.size());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<Long>(target.requests.get(0)));
+        assertEquals(Arrays.asList(3L), new ArrayList<Long>(target.requests.get(1)));
+    }
+
+    @Test
+    public void testCallerArgumentsAreLeftUntouched() {
+        proxy.findUsers(Arrays.asList(1L));
+        final List<Long> ids = Arrays.asList(1L, 2L);
+
+        ProxyFactory proxyFactory = new ProxyFactory(proxy);
+        proxyFactory.addInterface(Repository.class);
+        proxyFactory.addAdvice(new MethodInterceptor() {
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                Object[] arguments = invocation.getArguments();
+                Object retVal = invocation.proceed();
+                assertSame(ids, arguments[0]);
+                return retVal;
+            }
+        });
+        Repository outer = (Repository) proxyFactory.getProxy();
+
+        assertEquals(Arrays.asList("user1", "user2"), outer.findUsers(ids));
+        assertEquals(Arrays.asList(1L, 2L), ids);
+        assertEquals(Arrays.asList(2L), new ArrayList<Long>(target.requests.get(1)));
+    }
+
+
+    public interface Repository {
+
+        List<String> findUsers(Collection<Long> ids);
+    }
+
+
+    public static class UserRepository implements Repository {
+
+        final List<Collection<Long>> requests = new ArrayList<Collection<Long>>();
+
+        @Cacheable(value = "users", bulk = true)
+        public List<String> findUsers(Collection<Long> ids) {
+            requests.add(ids);
+            List<String> users = new ArrayList<String>();
+            for (Long id : ids) {
+                users.add("user" + id);
+            }
+            return users;
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.springframework.core.test.cache;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.CacheInterceptor;
+import org.springframework.cache.interceptor.CacheOperation;
+import org.springframework.cache.interceptor.CacheOperationSource;
+import org.springframework.cache.interceptor.CacheableOperation;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the key and condition expressions of cache operations, evaluated
+ * through a CacheInterceptor that shares its resolved expressions between
+ * invocations, methods and target classes.
+ */
+public class CacheExpressionTest {
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private CacheInterceptor interceptor;
+
+    private CacheableOperation operation;
+
+    @Before
+    public void setUp() throws Exception {
+        operation = new CacheableOperation();
+        operation.setName("test");
+        operation.setCacheName("test");
+        cacheManager = new ConcurrentMapCacheManager();
+        interceptor = new CacheInterceptor();
+        interceptor.setCacheManager(cacheManager);
+        interceptor.setCacheOperationSources(new CacheOperationSource() {
+            public Collection<CacheOperation> getCacheOperations(Method method, Class<?> targetClass) {
+                // the same operation instance for every method and target class
+                return Collections.<CacheOperation>singletonList(operation);
+            }
+        });
+        interceptor.afterPropertiesSet();
+    }
+
+    @Test
+    public void testSharedOperationIsEvaluatedPerMethod() {
+        operation.setKey("#root.methodName + #p0");
+        operation.setCondition("#p0 != 'skip'");
+        DefaultService target = new DefaultService();
+        Service service = createProxy(target);
+
+        assertEquals("a", service.find("a"));
+        assertEquals("a", service.load("a"));
+        assertEquals("skip", service.find("skip"));
+        assertEquals("skip", service.find("skip"));
+        assertEquals("a", service.find("a"));
+
+        Cache cache = cacheManager.getCache("test");
+        assertNotNull(cache.get("finda"));
+        assertNotNull(cache.get("loada"));
+        assertNull(cache.get("findskip"));
+        assertEquals(4, target.invocations.get());
+    }
+
+    @Test
+    public void testSharedOperationIsEvaluatedPerTargetClass() {
+        operation.setKey("{#root.targetClass, #p0}");
+        DefaultService defaultTarget = new DefaultService();
+        OtherService otherTarget = new OtherService();
+
+        assertEquals("a", createProxy(defaultTarget).find("a"));
+        assertEquals("a", createProxy(otherTarget).find("a"));
+        assertEquals("a", createProxy(defaultTarget).find("a"));
+
+        Cache cache = cacheManager.getCache("test");
+        assertNotNull(cache.get(Arrays.asList(DefaultService.class, "a")));
+        assertNotNull(cache.get(Arrays.asList(OtherService.class, "a")));
+        assertEquals(1, defaultTarget.invocations.get());
+        assertEquals(1, otherTarget.invocations.get());
+    }
+
+    @Test
+    public void testArgumentReferencesAsKey() {
+        Service service = createProxy(new DefaultService());
+        operation.setKey("#p0");
+        service.find("a");
+        operation.setKey("#p0.length()");
+        service.load("abc");
+
+        Cache cache = cacheManager.getCache("test");
+        assertEquals("a", cache.get("a").get());
+        assertEquals("abc", cache.get(3).get());
+    }
+
+    private Service createProxy(Service target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(Service.class);
+        proxyFactory.addAdvice(interceptor);
+        return (Service) proxyFactory.getProxy();
+    }
+
+
+    public interface Service {
+
+        String find(String id);
+
+        String load(String id);
+    }
+
+
+    public static class DefaultService implements Service {
+
+        final AtomicInteger invocations = new AtomicInteger();
+
+        public String find(String id) {
+            invocations.incrementAndGet();
+            return id;
+        }
+
+        public String load(String id) {
+            invocations.incrementAndGet();
+            return id;
+        }
+    }
+
+
+    public static class OtherService extends DefaultService {
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.springframework.core.test.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueRetrievalException;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.cache.local.LocalCache;
+import org.springframework.cache.offheap.OffHeapCache;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrency tests for the load-through variant of Cache.get
+ * on all Cache implementations that coordinate their loads,
+ * and on EhCacheCache, which serializes loads per key instead.
+ */
+public class CacheLoadThroughTest {
+
+    private static final int THREADS = 16;
+
+    private ExecutorService executor;
+
+    private OffHeapCache offHeapCache;
+
+    private CacheManager ehCacheManager;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        offHeapCache = new OffHeapCache("offHeap", 1024 * 1024);
+        ehCacheManager = new CacheManager(new Configuration().name("cacheLoadThroughTest")
+                .defaultCache(new CacheConfiguration("default", 1000)));
+        ehCacheManager.addCache("ehcache");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        offHeapCache.close();
+        ehCacheManager.shutdown();
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        for (Cache cache : caches()) {
+            assertConcurrentMissesLoadOnce(cache);
+        }
+        assertConcurrentMissesLoadOnce(ehCacheCache());
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllWaitingCallers() throws Exception {
+        for (Cache cache : caches()) {
+            assertFailureIsPropagatedToAllWaitingCallers(cache);
+        }
+    }
+
+    @Test
+    public void testDifferentKeysLoadInParallel() throws Exception {
+        for (Cache cache : caches()) {
+            assertDifferentKeysLoadInParallel(cache);
+        }
+        assertDifferentKeysLoadInParallel(ehCacheCache());
+    }
+
+    @Test
+    public void testRecursiveLoadOfSameKeyIsRejected() throws Exception {
+        for (final Cache cache : caches()) {
+            Future<String> result = executor.submit(new Callable<String>() {
+                public String call() {
+                    return cache.get("key", new Callable<String>() {
+                        public String call() {
+                            return cache.get("key", new Callable<String>() {
+                                public String call() {
+                                    return "inner";
+                                }
+                            });
+                        }
+                    });
+                }
+            });
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail(cache.getName() + ": should have thrown ValueRetrievalException");
+            }
+            catch (ExecutionException ex) {
+                assertTrue(cache.getName(), ex.getCause() instanceof ValueRetrievalException);
+                assertTrue(cache.getName(), ex.getCause().getCause() instanceof IllegalStateException);
+            }
+            assertNull(cache.getName(), cache.get("key"));
+        }
+    }
+
+    @Test
+    public void testEhCacheLoaderFailureIsNotRemembered() throws Exception {
+        Cache cache = ehCacheCache();
+        final AtomicInteger invocations = new AtomicInteger();
+        Callable<String> failingLoader = new Callable<String>() {
+            public String call() {
+                invocations.incrementAndGet();
+                throw new IllegalStateException("Failed");
+            }
+        };
+        // every caller runs the loader in turn under the key lock, and sees its own failure
+        for (Future<String> result : submitGets(cache, "failing", failingLoader, new CountDownLatch(THREADS))) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Should have thrown ValueRetrievalException");
+            }
+            catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ValueRetrievalException);
+                assertTrue(ex.getCause().getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(THREADS, invocations.get());
+        assertNull(cache.get("failing"));
+        assertEquals("recovered", cache.get("failing", new Callable<String>() {
+            public String call() {
+                return "recovered";
+            }
+        }));
+    }
+
+    private Cache ehCacheCache() {
+        return new EhCacheCache(ehCacheManager.getEhcache("ehcache"));
+    }
+
+    private List<Cache> caches() {
+        List<Cache> caches = new ArrayList<Cache>();
+        caches.add(new ConcurrentMapCache("concurrentMap"));
+        caches.add(new LocalCache("local"));
+        caches.add(offHeapCache);
+        return caches;
+    }
+
+    private void assertConcurrentMissesLoadOnce(final Cache cache) throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        final CountDownLatch loaderEntered = new CountDownLatch(1);
+        final CountDownLatch releaseLoader = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+            public String call() throws Exception {
+                invocations.incrementAndGet();
+                loaderEntered.countDown();
+                releaseLoader.await(5, TimeUnit.SECONDS);
+                return "value";
+            }
+        };
+        CountDownLatch callersStarted = new CountDownLatch(THREADS);
+        List<Future<String>> results = submitGets(cache, "key", loader, callersStarted);
+        assertTrue(loaderEntered.await(5, TimeUnit.SECONDS));
+        // all other callers are on their way into the cache while the load is blocked
+        assertTrue(callersStarted.await(5, TimeUnit.SECONDS));
+        releaseLoader.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals(cache.getName(), "value", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(cache.getName(), 1, invocations.get());
+        assertEquals(cache.getName(), "value", cache.get("key").get());
+        assertEquals(cache.getName(), "value", cache.get("key", loader));
+        assertEquals(cache.getName(), 1, invocations.get());
+    }
+
+    private void assertFailureIsPropagatedToAllWaitingCallers(Cache cache) throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        final CountDownLatch loaderEntered = new CountDownLatch(1);
+        final CountDownLatch releaseLoader = new CountDownLatch(1);
+        Callable<String> failingLoader = new Callable<String>() {
+            public String call() throws Exception {
+                invocations.incrementAndGet();
+                loaderEntered.countDown();
+                releaseLoader.await(5, TimeUnit.SECONDS);
+                throw new IllegalStateException("Failed");
+            }
+        };
+        CountDownLatch callersStarted = new CountDownLatch(THREADS);
+        List<Future<String>> results = submitGets(cache, "failing", failingLoader, callersStarted);
+        assertTrue(loaderEntered.await(5, TimeUnit.SECONDS));
+        assertTrue(callersStarted.await(5, TimeUnit.SECONDS));
+        releaseLoader.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail(cache.getName() + ": should have thrown ValueRetrievalException");
+            }
+            catch (ExecutionException ex) {
+                assertTrue(cache.getName(), ex.getCause() instanceof ValueRetrievalException);
+                assertEquals(cache.getName(), "failing", ((ValueRetrievalException) ex.getCause()).getKey());
+                assertTrue(cache.getName(), ex.getCause().getCause() instanceof IllegalStateException);
+            }
+        }
+        assertNull(cache.getName(), cache.get("failing"));
+
+        // a failed load must not be remembered
+        String value = cache.get("failing", new Callable<String>() {
+            public String call() {
+                return "recovered";
+            }
+        });
+        assertEquals(cache.getName(), "recovered", value);
+        assertTrue(cache.getName(), invocations.get() < THREADS);
+    }
+
+    private void assertDifferentKeysLoadInParallel(final Cache cache) throws Exception {
+        final CountDownLatch bothEntered = new CountDownLatch(2);
+        Future<String> first = executor.submit(new Callable<String>() {
+            public String call() {
+                return cache.get("first", new Callable<String>() {
+                    public String call() throws Exception {
+                        bothEntered.countDown();
+                        assertTrue(bothEntered.await(5, TimeUnit.SECONDS));
+                        return "1";
+                    }
+                });
+            }
+        });
+        Future<String> second = executor.submit(new Callable<String>() {
+            public String call() {
+                return cache.get("second", new Callable<String>() {
+                    public String call() throws Exception {
+                        bothEntered.countDown();
+                        assertTrue(bothEntered.await(5, TimeUnit.SECONDS));
+                        return "2";
+                    }
+                });
+            }
+        });
+        assertEquals(cache.getName(), "1", first.get(10, TimeUnit.SECONDS));
+        assertEquals(cache.getName(), "2", second.get(10, TimeUnit.SECONDS));
+    }
+
+    private List<Future<String>> submitGets(final Cache cache, final Object key, final Callable<String> loader,
+            final CountDownLatch callersStarted) {
+
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                public String call() {
+                    callersStarted.countDown();
+                    return cache.get(key, loader);
+                }
+            }));
+        }
+        return results;
+    }
+
+}
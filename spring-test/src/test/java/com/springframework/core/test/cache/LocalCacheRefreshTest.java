@@ -0,0 +1,111 @@
+package com.springframework.core.test.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.cache.local.CacheLoader;
+import org.springframework.cache.local.LocalCache;
+import org.springframework.cache.local.LocalCacheSettings;
+import org.springframework.core.task.TaskExecutor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the refresh-ahead support of LocalCache.
+ */
+public class LocalCacheRefreshTest {
+
+    private static final long MILLIS = 1000000L;
+
+    private final List<Runnable> pendingRefreshes = new ArrayList<Runnable>();
+
+    private long time;
+
+    @Test
+    public void testRefreshThroughCacheLoader() {
+        final AtomicInteger loads = new AtomicInteger();
+        LocalCache cache = createCache();
+        cache.setCacheLoader(new CacheLoader() {
+            public Object load(Object key) {
+                return key + "-" + loads.incrementAndGet();
+            }
+        });
+        cache.put("key", "initial");
+
+        time += 50 * MILLIS;
+        assertEquals("initial", cache.get("key").get());
+        assertEquals(0, loads.get());
+
+        time += 100 * MILLIS;
+        // the current value is returned while the refresh is pending
+        assertEquals("initial", cache.get("key").get());
+        assertEquals("initial", cache.get("key").get());
+        assertEquals(1, pendingRefreshes.size());
+        runPendingRefreshes();
+        assertEquals(1, loads.get());
+        assertEquals("key-1", cache.get("key").get());
+        assertTrue(pendingRefreshes.isEmpty());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsCurrentValue() {
+        LocalCache cache = createCache();
+        cache.setCacheLoader(new CacheLoader() {
+            public Object load(Object key) {
+                throw new IllegalStateException("Failed");
+            }
+        });
+        cache.put("key", "initial");
+
+        time += 150 * MILLIS;
+        assertEquals("initial", cache.get("key").get());
+        runPendingRefreshes();
+        assertEquals("initial", cache.get("key").get());
+    }
+
+    @Test
+    public void testValueLoaderIsNeverUsedForRefresh() {
+        final AtomicInteger invocations = new AtomicInteger();
+        LocalCache cache = createCache();
+        Callable<String> valueLoader = new Callable<String>() {
+            public String call() {
+                return "value-" + invocations.incrementAndGet();
+            }
+        };
+        assertEquals("value-1", cache.get("key", valueLoader));
+
+        time += 150 * MILLIS;
+        assertEquals("value-1", cache.get("key").get());
+        assertEquals("value-1", cache.get("key", valueLoader));
+        assertTrue(pendingRefreshes.isEmpty());
+        assertEquals(1, invocations.get());
+    }
+
+    private LocalCache createCache() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setRefreshAfterWrite(100);
+        LocalCache cache = new LocalCache("refreshing", settings) {
+            @Override
+            protected long currentTime() {
+                return time;
+            }
+        };
+        cache.setRefreshExecutor(new TaskExecutor() {
+            public void execute(Runnable task) {
+                pendingRefreshes.add(task);
+            }
+        });
+        return cache;
+    }
+
+    private void runPendingRefreshes() {
+        for (Runnable task : pendingRefreshes) {
+            task.run();
+        }
+        pendingRefreshes.clear();
+    }
+
+}
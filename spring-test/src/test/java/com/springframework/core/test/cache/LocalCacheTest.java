@@ -0,0 +1,219 @@
+package com.springframework.core.test.cache;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.springframework.cache.Cache.ValueRetrievalException;
+import org.springframework.cache.local.LocalCache;
+import org.springframework.cache.local.LocalCacheSettings;
+import org.springframework.cache.local.Weigher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the size and weight bounds, expiration and statistics of LocalCache,
+ * on a cache with a controllable clock.
+ */
+public class LocalCacheTest {
+
+    private static final long MILLIS = 1000000L;
+
+    private long time;
+
+    @Test
+    public void testSizeBoundEvictsLeastRecentlyUsedProbationaryEntries() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setMaximumSize(5);
+        LocalCache cache = createCache(settings);
+        for (int i = 1; i <= 5; i++) {
+            cache.put(i, "value" + i);
+        }
+        // promoted to the protected segment
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+
+        cache.put(6, "value6");
+        cache.put(7, "value7");
+
+        assertEquals(5, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        assertNull(cache.get(3));
+        assertNull(cache.get(4));
+        assertNotNull(cache.get(5));
+        assertNotNull(cache.get(6));
+        assertNotNull(cache.get(7));
+    }
+
+    @Test
+    public void testEntriesReadOnceDoNotFlushFrequentlyUsedEntries() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setMaximumSize(10);
+        LocalCache cache = createCache(settings);
+        for (int i = 0; i < 4; i++) {
+            cache.put("hot" + i, "value");
+            assertNotNull(cache.get("hot" + i));
+        }
+        // each loaded on a miss and never read again
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value", cache.get("scan" + i, new Callable<String>() {
+                public String call() {
+                    return "value";
+                }
+            }));
+        }
+        assertEquals(10, cache.getSize());
+        for (int i = 0; i < 4; i++) {
+            assertNotNull("hot" + i, cache.get("hot" + i));
+        }
+    }
+
+    @Test
+    public void testWeightBoundUsesWeigher() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setMaximumWeight(10);
+        settings.setWeigher(new Weigher() {
+            public int weigh(Object key, Object value) {
+                return ((String) value).length();
+            }
+        });
+        LocalCache cache = createCache(settings);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertEquals(8, cache.getWeightedSize());
+
+        cache.put("c", "ccc");
+        assertEquals(7, cache.getWeightedSize());
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get("a"));
+        assertEquals("ccc", cache.get("c").get());
+
+        // replacing an entry accounts for the difference in weight only
+        cache.put("c", "c");
+        assertEquals(5, cache.getWeightedSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setExpireAfterWrite(100);
+        LocalCache cache = createCache(settings);
+        cache.put("key", "value");
+
+        time += 99 * MILLIS;
+        // reads do not extend the lifetime
+        assertEquals("value", cache.get("key").get());
+        time += 1 * MILLIS;
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getExpirationCount());
+
+        cache.put("key", "value2");
+        time += 50 * MILLIS;
+        cache.put("key", "value3");
+        time += 60 * MILLIS;
+        assertEquals("value3", cache.get("key").get());
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setExpireAfterAccess(100);
+        LocalCache cache = createCache(settings);
+        cache.put("key", "value");
+
+        time += 60 * MILLIS;
+        assertEquals("value", cache.get("key").get());
+        time += 60 * MILLIS;
+        assertEquals("value", cache.get("key").get());
+        time += 100 * MILLIS;
+        assertNull(cache.get("key"));
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreRemovedByLaterModifications() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setExpireAfterWrite(100);
+        LocalCache cache = createCache(settings);
+        cache.put("a", "value");
+        cache.put("b", "value");
+
+        time += 150 * MILLIS;
+        cache.put("c", "value");
+        assertEquals(1, cache.getSize());
+        assertEquals(2, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testStatistics() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setMaximumSize(2);
+        LocalCache cache = createCache(settings);
+        assertEquals(1.0, cache.getHitRatio(), 0.0);
+
+        assertNull(cache.get("a"));
+        cache.put("a", "value");
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("a"));
+        assertEquals("loaded", cache.get("b", new Callable<String>() {
+            public String call() {
+                return "loaded";
+            }
+        }));
+        try {
+            cache.get("c", new Callable<String>() {
+                public String call() {
+                    throw new IllegalStateException("Failed");
+                }
+            });
+            fail("Should have thrown ValueRetrievalException");
+        }
+        catch (ValueRetrievalException ex) {
+            // expected
+        }
+        cache.put("d", "value");
+
+        // misses: "a" once, "b" and "c" on their loads
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0.4, cache.getHitRatio(), 0.0001);
+        assertEquals(1, cache.getLoadSuccessCount());
+        assertEquals(1, cache.getLoadFailureCount());
+        assertTrue(cache.getAverageLoadTime() >= 0.0);
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getLoadSuccessCount());
+        assertEquals(0, cache.getLoadFailureCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(0.0, cache.getAverageLoadTime(), 0.0);
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testStatisticsCanBeDisabled() {
+        LocalCacheSettings settings = new LocalCacheSettings();
+        settings.setRecordStats(false);
+        LocalCache cache = createCache(settings);
+        assertNull(cache.get("a"));
+        cache.put("a", "value");
+        assertNotNull(cache.get("a"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    private LocalCache createCache(LocalCacheSettings settings) {
+        return new LocalCache("local", settings) {
+            @Override
+            protected long currentTime() {
+                return time;
+            }
+        };
+    }
+
+}
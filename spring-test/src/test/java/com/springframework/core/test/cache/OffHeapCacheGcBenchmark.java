@@ -0,0 +1,164 @@
+package com.springframework.core.test.cache;
+
+import java.io.Serializable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.offheap.OffHeapCache;
+
+/**
+ * GC behavior of a large cached working set: ConcurrentMapCache, holding all
+ * values on the heap, versus OffHeapCache, holding them serialized in direct memory.
+ * Each operation reads a random entry, replaces one in ten, and allocates some
+ * short-lived garbage as a request would. The collector time and count per
+ * iteration are printed next to the throughput; run with <code>-prof gc</code>
+ * for allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=3g"})
+@Threads(4)
+public class OffHeapCacheGcBenchmark {
+
+    @Param({"concurrentMap", "offHeap"})
+    public String cacheType;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private Cache cache;
+
+    private long gcCount;
+
+    private long gcTime;
+
+    @Setup
+    public void setUp() {
+        if ("offHeap".equals(cacheType)) {
+            cache = new OffHeapCache("products", 2L * 1024 * 1024 * 1024);
+        }
+        else {
+            cache = new ConcurrentMapCache("products");
+        }
+        for (int i = 0; i < entries; i++) {
+            cache.put(i, new ProductDto(i));
+        }
+        System.gc();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (cache instanceof OffHeapCache) {
+            ((OffHeapCache) cache).close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void recordGcStart() {
+        gcCount = totalGcCount();
+        gcTime = totalGcTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printGcActivity() {
+        System.out.println();
+        System.out.println(cacheType + ": " + (totalGcCount() - gcCount) + " collections, " +
+                (totalGcTime() - gcTime) + " ms");
+    }
+
+    @Benchmark
+    public Object request(RandomState state) {
+        Random random = state.random;
+        int key = random.nextInt(entries);
+        Cache.ValueWrapper wrapper = cache.get(key);
+        if (random.nextInt(10) == 0) {
+            cache.put(key, new ProductDto(key));
+        }
+        // short-lived garbage of a typical request
+        byte[] response = new byte[2048];
+        response[random.nextInt(response.length)] = 1;
+        return (wrapper != null ? wrapper.get() : response);
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long totalGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += gc.getCollectionTime();
+        }
+        return time;
+    }
+
+
+    @State(Scope.Thread)
+    public static class RandomState {
+
+        final Random random = new Random();
+    }
+
+
+    public static class ProductDto implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+
+        private final String name;
+
+        private final BigDecimal price;
+
+        private final long[] priceHistory = new long[64];
+
+        public ProductDto(long id) {
+            this.id = id;
+            this.name = "Product " + id;
+            this.price = BigDecimal.valueOf(id % 10000, 2);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public long[] getPriceHistory() {
+            return priceHistory;
+        }
+    }
+
+}
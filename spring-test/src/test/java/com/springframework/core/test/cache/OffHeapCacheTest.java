@@ -0,0 +1,264 @@
+package com.springframework.core.test.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.offheap.OffHeapCache;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.util.FileSystemUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for OffHeapCache: the ring buffer of a segment wrapping around
+ * and evicting its oldest entries, recovery of file-backed segments across
+ * close and reopen, and <code>null</code> values.
+ */
+public class OffHeapCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("offHeapCacheTest", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void testRingWrapsAroundAndEvictsOldestEntries() {
+        OffHeapCache cache = createCache(4096, null, true);
+        try {
+            for (int i = 0; i < 100; i++) {
+                cache.put(i, new byte[100]);
+            }
+            int size = cache.size();
+            assertTrue(size > 5);
+            assertTrue(size < 100);
+            // FIFO: exactly the most recent entries survive
+            for (int i = 0; i < 100; i++) {
+                assertEquals("key " + i, i >= 100 - size, cache.get(i) != null);
+            }
+
+            // entries written after the wrap are intact
+            cache.put("last", "value");
+            assertEquals("value", cache.get("last").get());
+            assertArrayEquals(new byte[100], (byte[]) cache.get(99).get());
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testReplacedAndEvictedEntries() {
+        OffHeapCache cache = createCache(4096, null, true);
+        try {
+            cache.put("key", "value1");
+            cache.put("key", "value2");
+            assertEquals("value2", cache.get("key").get());
+            assertEquals(1, cache.size());
+
+            cache.evict("key");
+            assertNull(cache.get("key"));
+            assertEquals(0, cache.size());
+
+            // an entry larger than the segment is not cached
+            cache.put("large", new byte[8192]);
+            assertNull(cache.get("large"));
+
+            cache.put("a", "value");
+            cache.clear();
+            assertNull(cache.get("a"));
+            assertEquals(0, cache.size());
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testContentsAreRecoveredAfterClose() {
+        OffHeapCache cache = createCache(4096, directory, true);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.put("null", null);
+        cache.evict(99);
+        int size = cache.size();
+        cache.close();
+
+        OffHeapCache reopened = createCache(4096, directory, true);
+        try {
+            assertEquals(size, reopened.size());
+            assertNull(reopened.get(99));
+            assertEquals("value98", reopened.get(98).get());
+            ValueWrapper wrapper = reopened.get("null");
+            assertNotNull(wrapper);
+            assertNull(wrapper.get());
+
+            // the ring continues where it left off
+            reopened.put("next", "value");
+            assertEquals("value", reopened.get("next").get());
+            assertEquals("value98", reopened.get(98).get());
+        }
+        finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testContentsOfCacheNotClosedAreDiscarded() {
+        OffHeapCache cache = createCache(4096, directory, true);
+        try {
+            cache.put("key", "value");
+            OffHeapCache reopened = createCache(4096, directory, true);
+            try {
+                assertNull(reopened.get("key"));
+                assertEquals(0, reopened.size());
+            }
+            finally {
+                reopened.close();
+            }
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testContentsAreDiscardedOnCapacityChange() {
+        OffHeapCache cache = createCache(4096, directory, true);
+        cache.put("key", "value");
+        cache.close();
+
+        OffHeapCache reopened = createCache(8192, directory, true);
+        try {
+            assertNull(reopened.get("key"));
+        }
+        finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testCorruptSegmentFileIsDiscarded() throws IOException {
+        OffHeapCache cache = createCache(4096, directory, true);
+        cache.put("key", "value");
+        cache.close();
+
+        RandomAccessFile file = new RandomAccessFile(new File(directory, "offHeap-0.cache"), "rw");
+        try {
+            // key length of the first entry
+            file.seek(24 + 4);
+            file.writeInt(Integer.MAX_VALUE - 8);
+        }
+        finally {
+            file.close();
+        }
+
+        OffHeapCache reopened = createCache(4096, directory, true);
+        try {
+            assertNull(reopened.get("key"));
+            reopened.put("key", "value2");
+            assertEquals("value2", reopened.get("key").get());
+        }
+        finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testWrapNearTwoGigabytes() throws IOException {
+        // a sparse segment file of the maximum size, with the write position
+        // just before its end, as if the ring had been filled up to there
+        int capacity = Integer.MAX_VALUE;
+        RandomAccessFile file = new RandomAccessFile(new File(directory, "offHeap-0.cache"), "rw");
+        try {
+            file.setLength(capacity);
+            file.writeInt(0x53434F48);
+            file.writeInt(capacity);
+            file.writeInt(capacity - 8);
+            file.writeInt(capacity - 8);
+            file.writeInt(0);
+            file.writeInt(1);
+        }
+        finally {
+            file.close();
+        }
+
+        OffHeapCache cache = createCache(capacity, directory, true);
+        try {
+            cache.put("key", "value");
+            assertEquals("value", cache.get("key").get());
+            cache.put("other", "value2");
+            assertEquals("value", cache.get("key").get());
+            assertEquals("value2", cache.get("other").get());
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testNullValues() {
+        OffHeapCache cache = createCache(4096, null, true);
+        try {
+            cache.put("key", null);
+            ValueWrapper wrapper = cache.get("key");
+            assertNotNull(wrapper);
+            assertNull(wrapper.get());
+
+            assertNull(cache.get("loaded", new Callable<Object>() {
+                public Object call() {
+                    return null;
+                }
+            }));
+            assertNotNull(cache.get("loaded"));
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testNullValuesNotAllowed() {
+        OffHeapCache cache = createCache(4096, null, false);
+        try {
+            try {
+                cache.put("key", null);
+                fail("Should have thrown IllegalArgumentException");
+            }
+            catch (IllegalArgumentException ex) {
+                // expected
+            }
+            assertNull(cache.get("loaded", new Callable<Object>() {
+                public Object call() {
+                    return null;
+                }
+            }));
+            assertNull(cache.get("loaded"));
+        }
+        finally {
+            cache.close();
+        }
+    }
+
+    private static OffHeapCache createCache(long capacity, File directory, boolean allowNullValues) {
+        return new OffHeapCache("offHeap", capacity, 1, directory,
+                new DefaultSerializer(), new DefaultDeserializer(), allowNullValues);
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.springframework.core.test.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.annotation.AnnotationCacheOperationSource;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.CacheInterceptor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for synchronized cacheable methods invoked through a CacheInterceptor,
+ * counting the invocations of the target method under concurrent callers.
+ */
+public class SyncCacheableTest {
+
+    private static final int THREADS = 16;
+
+    private ExecutorService executor;
+
+    private ItemService target;
+
+    private Service proxy;
+
+    @Before
+    public void setUp() throws Exception {
+        CacheInterceptor interceptor = new CacheInterceptor();
+        interceptor.setCacheManager(new ConcurrentMapCacheManager());
+        interceptor.setCacheOperationSources(new AnnotationCacheOperationSource());
+        interceptor.afterPropertiesSet();
+
+        target = new ItemService();
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(Service.class);
+        proxyFactory.addAdvice(interceptor);
+        proxy = (Service) proxyFactory.getProxy();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        target.release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersInvokeMethodOnce() throws Exception {
+        List<Future<String>> results = callConcurrently(1L);
+        assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(target.callersStarted.await(5, TimeUnit.SECONDS));
+        target.release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("item1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, target.invocations.get());
+        assertEquals("item1", proxy.findItem(1L));
+        assertEquals(1, target.invocations.get());
+
+        assertEquals("item2", proxy.findItem(2L));
+        assertEquals(2, target.invocations.get());
+    }
+
+    @Test
+    public void testCheckedExceptionOfMethodIsPropagated() throws Exception {
+        target.release.countDown();
+        try {
+            proxy.findItem(-1L);
+            fail("Should have thrown IOException");
+        }
+        catch (IOException ex) {
+            assertEquals("No item -1", ex.getMessage());
+        }
+        // the failure is not cached
+        try {
+            proxy.findItem(-1L);
+            fail("Should have thrown IOException");
+        }
+        catch (IOException ex) {
+            assertEquals("No item -1", ex.getMessage());
+        }
+        assertEquals(2, target.invocations.get());
+    }
+
+    @Test
+    public void testConcurrentCallersSeeFailureOfSingleInvocation() throws Exception {
+        List<Future<String>> results = callConcurrently(-1L);
+        assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(target.callersStarted.await(5, TimeUnit.SECONDS));
+        target.release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Should have thrown IOException");
+            }
+            catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+            }
+        }
+        assertTrue(target.invocations.get() < THREADS);
+    }
+
+    private List<Future<String>> callConcurrently(final long id) {
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    target.callersStarted.countDown();
+                    return proxy.findItem(id);
+                }
+            }));
+        }
+        return results;
+    }
+
+
+    public interface Service {
+
+        String findItem(long id) throws IOException;
+    }
+
+
+    public static class ItemService implements Service {
+
+        final AtomicInteger invocations = new AtomicInteger();
+
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        final CountDownLatch callersStarted = new CountDownLatch(THREADS);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Cacheable(value = "items", sync = true)
+        public String findItem(long id) throws IOException {
+            invocations.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (id < 0) {
+                throw new IOException("No item " + id);
+            }
+            return "item" + id;
+        }
+    }
+
+}
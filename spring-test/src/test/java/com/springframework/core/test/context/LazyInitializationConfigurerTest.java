@@ -0,0 +1,291 @@
+package com.springframework.core.test.context;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.context.support.LazyInitializationConfigurer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for LazyInitializationConfigurer: which beans are deferred, lazy-init
+ * proxies for deferred beans, on-demand initialization metrics, background
+ * warm-up, and closing the context while the warm-up is still initializing
+ * a bean.
+ */
+public class LazyInitializationConfigurerTest {
+
+    private GenericApplicationContext context;
+
+    private LazyInitializationConfigurer configurer;
+
+    @Before
+    public void setUp() {
+        Counted.reset();
+        context = new GenericApplicationContext();
+        configurer = new LazyInitializationConfigurer();
+        configurer.setWarmUp(false);
+        context.addBeanFactoryPostProcessor(configurer);
+        context.addApplicationListener(configurer);
+    }
+
+    @After
+    public void tearDown() {
+        SlowBean.release.countDown();
+        context.close();
+    }
+
+    @Test
+    public void testApplicationBeansAreDeferred() {
+        context.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        context.refresh();
+
+        assertEquals(1, configurer.getLazyBeanCount());
+        assertEquals(0, configurer.getProxiedBeanCount());
+        assertFalse(context.getBeanFactory().containsSingleton("service"));
+        assertEquals(0, Service.created.get());
+
+        assertEquals("done", context.getBean("service", Service.class).process());
+        assertEquals(1, Service.created.get());
+        assertFalse(AopUtils.isAopProxy(context.getBean("service")));
+    }
+
+    @Test
+    public void testEagerBeansAreInitializedOnRefresh() {
+        context.registerBeanDefinition("byName", new RootBeanDefinition(Service.class));
+        RootBeanDefinition byAttribute = new RootBeanDefinition(Service.class);
+        byAttribute.setAttribute(LazyInitializationConfigurer.EAGER_INIT_ATTRIBUTE, "true");
+        context.registerBeanDefinition("byAttribute", byAttribute);
+        context.registerBeanDefinition("postProcessor", new RootBeanDefinition(NoOpBeanPostProcessor.class));
+        context.registerBeanDefinition("deferred", new RootBeanDefinition(Service.class));
+        configurer.setEagerBeanNames(new String[] {"by*"});
+        context.refresh();
+
+        assertEquals(1, configurer.getLazyBeanCount());
+        assertTrue(context.getBeanFactory().containsSingleton("byName"));
+        assertTrue(context.getBeanFactory().containsSingleton("byAttribute"));
+        assertTrue(context.getBeanFactory().containsSingleton("postProcessor"));
+        assertFalse(context.getBeanFactory().containsSingleton("deferred"));
+        assertEquals(2, Service.created.get());
+    }
+
+    @Test
+    public void testEagerReferenceInitializesDeferredBeanWithoutProxy() {
+        context.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        RootBeanDefinition client = new RootBeanDefinition(Client.class);
+        client.getPropertyValues().add("service", new RuntimeBeanReference("service"));
+        context.registerBeanDefinition("client", client);
+        configurer.setEagerBeanNames(new String[] {"client"});
+        context.refresh();
+
+        assertEquals(1, Service.created.get());
+        assertSame(context.getBean("service"), context.getBean("client", Client.class).getService());
+    }
+
+    @Test
+    public void testOnDemandInitializationWithoutProxyIsTracked() {
+        context.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        RootBeanDefinition client = new RootBeanDefinition(Client.class);
+        client.getPropertyValues().add("service", new RuntimeBeanReference("service"));
+        context.registerBeanDefinition("client", client);
+        context.refresh();
+        assertEquals(-1, configurer.getTimeToFirstRequest());
+        assertEquals(0, configurer.getOnDemandInitializedBeanCount());
+
+        // initializes both the client and the service it references
+        context.getBean("client");
+        assertEquals(2, configurer.getOnDemandInitializedBeanCount());
+        assertTrue(configurer.getTimeToFirstRequest() >= configurer.getTimeToReady());
+
+        // lookups of initialized beans are not visible
+        context.getBean("service");
+        assertEquals(2, configurer.getOnDemandInitializedBeanCount());
+    }
+
+    @Test
+    public void testInitializationDuringRefreshIsNotTracked() {
+        context.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        RootBeanDefinition client = new RootBeanDefinition(Client.class);
+        client.getPropertyValues().add("service", new RuntimeBeanReference("service"));
+        context.registerBeanDefinition("client", client);
+        configurer.setEagerBeanNames(new String[] {"client"});
+        context.refresh();
+
+        context.getBean("service");
+        assertEquals(0, configurer.getOnDemandInitializedBeanCount());
+        assertEquals(-1, configurer.getTimeToFirstRequest());
+    }
+
+    @Test
+    public void testDeferredBeanBehindProxy() {
+        context.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        RootBeanDefinition client = new RootBeanDefinition(Client.class);
+        client.getPropertyValues().add("service", new RuntimeBeanReference("service"));
+        context.registerBeanDefinition("client", client);
+        configurer.setEagerBeanNames(new String[] {"client"});
+        configurer.setProxyLazyBeans(true);
+        context.refresh();
+
+        assertEquals(1, configurer.getProxiedBeanCount());
+        assertTrue(context.containsBeanDefinition("lazyTarget.service"));
+        Service service = context.getBean("client", Client.class).getService();
+        assertTrue(AopUtils.isCglibProxy(service));
+        assertSame(service, context.getBean("service"));
+        assertFalse(context.getBeanFactory().containsSingleton("lazyTarget.service"));
+        // the proxy instance itself runs the default constructor
+        int createdBeforeCall = Service.created.get();
+
+        assertEquals("done", service.process());
+        assertEquals(createdBeforeCall + 1, Service.created.get());
+        assertTrue(context.getBeanFactory().containsSingleton("lazyTarget.service"));
+        assertEquals(1, configurer.getOnDemandInitializedBeanCount());
+    }
+
+    @Test
+    public void testWarmUpInitializesDeferredBeans() throws Exception {
+        context.registerBeanDefinition("first", new RootBeanDefinition(Service.class));
+        context.registerBeanDefinition("second", new RootBeanDefinition(Service.class));
+        configurer.setWarmUp(true);
+        context.refresh();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!configurer.isWarmUpComplete() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(configurer.isWarmUpComplete());
+        assertEquals(2, configurer.getWarmedUpBeanCount());
+        assertTrue(context.getBeanFactory().containsSingleton("first"));
+        assertTrue(context.getBeanFactory().containsSingleton("second"));
+        assertEquals(0, configurer.getOnDemandInitializedBeanCount());
+        assertEquals(-1, configurer.getTimeToFirstRequest());
+    }
+
+    @Test
+    public void testCloseWaitsForBeansBeingWarmedUp() throws Exception {
+        // With two warm-up threads, "slow" is initialized by the second one, while
+        // the first one goes on to "blocked", which waits for the singleton lock.
+        context.registerBeanDefinition("first", new RootBeanDefinition(TrackedBean.class));
+        context.registerBeanDefinition("slow", new RootBeanDefinition(SlowBean.class));
+        context.registerBeanDefinition("blocked", new RootBeanDefinition(TrackedBean.class));
+        context.registerBeanDefinition("later", new RootBeanDefinition(TrackedBean.class));
+        configurer.setWarmUp(true);
+        configurer.setWarmUpConcurrency(2);
+        context.refresh();
+        assertTrue(SlowBean.started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        Thread closer = new Thread() {
+            public void run() {
+                context.close();
+            }
+        };
+        closer.start();
+        closer.join(200);
+        assertTrue("Context closed while a bean was being initialized", closer.isAlive());
+        assertEquals(0, SlowBean.destroyed.get());
+
+        SlowBean.release.countDown();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        // Every bean initialized by the warm-up got destroyed with the context.
+        assertEquals(1, SlowBean.destroyed.get());
+        assertTrue(TrackedBean.created.get() >= 1);
+        assertEquals(TrackedBean.created.get(), TrackedBean.destroyed.get());
+    }
+
+
+    public static class Counted {
+
+        static void reset() {
+            Service.created.set(0);
+            TrackedBean.created.set(0);
+            TrackedBean.destroyed.set(0);
+            SlowBean.started = new CountDownLatch(1);
+            SlowBean.release = new CountDownLatch(1);
+            SlowBean.destroyed.set(0);
+        }
+    }
+
+    public static class Service {
+
+        static final AtomicInteger created = new AtomicInteger();
+
+        public Service() {
+            created.incrementAndGet();
+        }
+
+        public String process() {
+            return "done";
+        }
+    }
+
+    public static class Client {
+
+        private Service service;
+
+        public void setService(Service service) {
+            this.service = service;
+        }
+
+        public Service getService() {
+            return this.service;
+        }
+    }
+
+    public static class TrackedBean implements DisposableBean {
+
+        static final AtomicInteger created = new AtomicInteger();
+
+        static final AtomicInteger destroyed = new AtomicInteger();
+
+        public TrackedBean() {
+            created.incrementAndGet();
+        }
+
+        public void destroy() {
+            destroyed.incrementAndGet();
+        }
+    }
+
+    public static class SlowBean implements InitializingBean, DisposableBean {
+
+        static volatile CountDownLatch started;
+
+        static volatile CountDownLatch release;
+
+        static final AtomicInteger destroyed = new AtomicInteger();
+
+        public void afterPropertiesSet() throws Exception {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        }
+
+        public void destroy() {
+            destroyed.incrementAndGet();
+        }
+    }
+
+    public static class NoOpBeanPostProcessor implements BeanPostProcessor {
+
+        public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+            return bean;
+        }
+
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            return bean;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.springframework.core.test.convert;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.validation.DataBinder;
+
+/**
+ * Binding throughput through the ConversionService: a form of scalar fields
+ * bound by a DataBinder, as a web request would, plus the raw conversions
+ * underneath it. Run with <code>-prof gc</code> to see the allocation rate
+ * per operation next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class ConversionBindingBenchmark {
+
+    private ConversionService conversionService;
+
+    private MutablePropertyValues formValues;
+
+    // read from fields rather than literals, so the JIT cannot fold the conversions away
+    private String number = "4711";
+
+    private String status = "SHIPPED";
+
+    private String flag = "true";
+
+    private Class<?> sourceType = String.class;
+
+    private Class<?> targetType = BigDecimal.class;
+
+    @Setup
+    public void setUp() {
+        conversionService = new DefaultConversionService();
+        formValues = new MutablePropertyValues();
+        formValues.addPropertyValue("id", "4711");
+        formValues.addPropertyValue("quantity", "12");
+        formValues.addPropertyValue("price", "19.99");
+        formValues.addPropertyValue("active", "true");
+        formValues.addPropertyValue("status", "SHIPPED");
+        formValues.addPropertyValue("name", "widget");
+    }
+
+    @Benchmark
+    public Order bindForm() {
+        Order order = new Order();
+        DataBinder binder = new DataBinder(order);
+        binder.setConversionService(conversionService);
+        binder.bind(formValues);
+        return order;
+    }
+
+    @Benchmark
+    public Object convertStringToInteger() {
+        return conversionService.convert(number, Integer.class);
+    }
+
+    @Benchmark
+    public Object convertStringToEnum() {
+        return conversionService.convert(status, Status.class);
+    }
+
+    @Benchmark
+    public Object convertStringToBoolean() {
+        return conversionService.convert(flag, Boolean.class);
+    }
+
+    @Benchmark
+    public boolean canConvertStringToBigDecimal() {
+        return conversionService.canConvert(sourceType, targetType);
+    }
+
+
+    public enum Status {
+        NEW, SHIPPED, DELIVERED
+    }
+
+    public static class Order {
+
+        private long id;
+
+        private int quantity;
+
+        private BigDecimal price;
+
+        private boolean active;
+
+        private Status status;
+
+        private String name;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.springframework.core.test.convert;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.converter.GenericConverter;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the class pair converter handles of GenericConversionService,
+ * making sure the fast paths resolve like the descriptor-based lookup.
+ */
+public class ConverterHandleTest {
+
+    public List<Integer> numbers;
+
+    @Test
+    public void testScalarConversions() {
+        GenericConversionService conversionService = new DefaultConversionService();
+        assertEquals(Integer.valueOf(4711), conversionService.convert("4711", Integer.class));
+        assertEquals(Long.valueOf(12), conversionService.convert("12", Long.class));
+        assertEquals(Boolean.TRUE, conversionService.convert("true", Boolean.class));
+        assertEquals(ConversionBindingBenchmark.Status.SHIPPED,
+                conversionService.convert("SHIPPED", ConversionBindingBenchmark.Status.class));
+        assertEquals(Integer.valueOf(7), conversionService.convert("7", TypeDescriptor.valueOf(Integer.class)));
+        assertTrue(conversionService.canConvert(String.class, Integer.class));
+        assertFalse(conversionService.canConvert(Integer.class, Thread.class));
+    }
+
+    @Test
+    public void testElementTypeOfTargetDescriptorIsHonored() throws Exception {
+        GenericConversionService conversionService = new DefaultConversionService();
+        TypeDescriptor targetType = new TypeDescriptor(getClass().getField("numbers"));
+        Object result = conversionService.convert("1,2", targetType);
+        assertEquals(Arrays.asList(1, 2), result);
+    }
+
+    @Test
+    public void testConverterAddedAfterLookupIsUsed() {
+        GenericConversionService conversionService = new DefaultConversionService();
+        assertEquals(Integer.valueOf(1), conversionService.convert("1", Integer.class));
+        conversionService.addConverter(new Converter<String, Integer>() {
+            public Integer convert(String source) {
+                return -1;
+            }
+        });
+        assertEquals(Integer.valueOf(-1), conversionService.convert("1", Integer.class));
+    }
+
+    @Test
+    public void testOverriddenConverterLookupIsHonored() {
+        GenericConversionService conversionService = new DefaultConversionService() {
+            @Override
+            protected GenericConverter getConverter(TypeDescriptor sourceType, TypeDescriptor targetType) {
+                return (targetType.getType() == Integer.class ? null : super.getConverter(sourceType, targetType));
+            }
+        };
+        assertFalse(conversionService.canConvert(String.class, Integer.class));
+        assertEquals(Boolean.TRUE, conversionService.convert("true", Boolean.class));
+    }
+
+}
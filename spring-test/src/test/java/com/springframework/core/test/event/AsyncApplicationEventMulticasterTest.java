@@ -0,0 +1,290 @@
+package com.springframework.core.test.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.AsyncApplicationEventMulticaster;
+import org.springframework.context.event.AsyncApplicationEventMulticaster.OverflowPolicy;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for AsyncApplicationEventMulticaster: ordering, back-pressure,
+ * queue lifecycle, and listener cache eviction on registration changes.
+ */
+public class AsyncApplicationEventMulticasterTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEventsAreDeliveredInPublicationOrderPerListener() throws Exception {
+        AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster();
+        multicaster.setTaskExecutor(executor);
+        multicaster.setQueueCapacity(16);
+        RecordingListener first = new RecordingListener(1000);
+        RecordingListener second = new RecordingListener(1000);
+        multicaster.addApplicationListener(first);
+        multicaster.addApplicationListener(second);
+
+        for (int i = 0; i < 1000; i++) {
+            multicaster.multicastEvent(new NumberEvent(i));
+        }
+
+        assertTrue(first.await());
+        assertTrue(second.await());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, first.numbers.get(i).intValue());
+            assertEquals(i, second.numbers.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testDropPolicyCountsDroppedEvents() {
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        AsyncApplicationEventMulticaster multicaster = newStalledMulticaster(tasks, OverflowPolicy.DROP);
+        RecordingListener listener = new RecordingListener(2);
+        multicaster.addApplicationListener(listener);
+
+        for (int i = 0; i < 5; i++) {
+            multicaster.multicastEvent(new NumberEvent(i));
+        }
+
+        assertEquals(3, multicaster.getDroppedEventCount());
+        assertEquals(2, multicaster.getQueueDepth(listener));
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(0, 1), listener.numbers);
+        assertEquals(0, multicaster.getQueueDepth());
+    }
+
+    @Test
+    public void testCallerRunsPolicyInvokesListenerInPublishingThread() {
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        AsyncApplicationEventMulticaster multicaster = newStalledMulticaster(tasks, OverflowPolicy.CALLER_RUNS);
+        RecordingListener listener = new RecordingListener(5);
+        multicaster.addApplicationListener(listener);
+
+        for (int i = 0; i < 5; i++) {
+            multicaster.multicastEvent(new NumberEvent(i));
+        }
+
+        assertEquals(3, multicaster.getCallerRunsEventCount());
+        assertEquals(Arrays.asList(2, 3, 4), listener.numbers);
+        assertEquals(Collections.singleton(Thread.currentThread()), listener.threads);
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(2, 3, 4, 0, 1), listener.numbers);
+    }
+
+    @Test
+    public void testListenersPublishingToEachOtherDoNotDeadlock() throws Exception {
+        final AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster();
+        multicaster.setTaskExecutor(executor);
+        multicaster.setQueueCapacity(1);
+        multicaster.setOverflowPolicy(OverflowPolicy.BLOCK);
+        final AtomicInteger budget = new AtomicInteger(300);
+        final CountDownLatch done = new CountDownLatch(20 + 300);
+        multicaster.addApplicationListener(new ApplicationListener<PingEvent>() {
+            public void onApplicationEvent(PingEvent event) {
+                for (int i = 0; i < 3; i++) {
+                    multicaster.multicastEvent(new PongEvent(event.getSource()));
+                }
+                done.countDown();
+            }
+        });
+        multicaster.addApplicationListener(new ApplicationListener<PongEvent>() {
+            public void onApplicationEvent(PongEvent event) {
+                if (budget.decrementAndGet() >= 0) {
+                    multicaster.multicastEvent(new PingEvent(event.getSource()));
+                }
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            multicaster.multicastEvent(new PingEvent(i));
+        }
+
+        assertTrue("Listeners publishing to each other got stuck", done.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRemovedListenerQueueIsDiscarded() throws Exception {
+        AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster();
+        multicaster.setTaskExecutor(executor);
+        RecordingListener listener = new RecordingListener(1);
+        multicaster.addApplicationListener(listener);
+        multicaster.multicastEvent(new NumberEvent(1));
+        assertTrue(listener.await());
+        assertEquals(1, multicaster.getListenerQueueCount());
+
+        multicaster.removeApplicationListener(listener);
+        waitForQueueCount(multicaster, 0);
+        multicaster.multicastEvent(new NumberEvent(2));
+        assertEquals(0, multicaster.getListenerQueueCount());
+        assertEquals(Collections.singletonList(1), listener.numbers);
+    }
+
+    @Test
+    public void testRemoveAllListenersDiscardsQueues() throws Exception {
+        AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster();
+        multicaster.setTaskExecutor(executor);
+        RecordingListener first = new RecordingListener(1);
+        RecordingListener second = new RecordingListener(1);
+        multicaster.addApplicationListener(first);
+        multicaster.addApplicationListener(second);
+        multicaster.multicastEvent(new NumberEvent(1));
+        assertTrue(first.await());
+        assertTrue(second.await());
+
+        multicaster.removeAllListeners();
+        waitForQueueCount(multicaster, 0);
+    }
+
+    @Test
+    public void testPrototypeListenerQueuesAreDiscardedOnceDrained() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition definition = new RootBeanDefinition(CountingListener.class);
+        definition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("listener", definition);
+        AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster(beanFactory);
+        multicaster.setTaskExecutor(executor);
+        multicaster.addApplicationListenerBean("listener");
+
+        CountingListener.count.set(0);
+        for (int i = 0; i < 100; i++) {
+            multicaster.multicastEvent(new NumberEvent(i));
+        }
+
+        waitForQueueCount(multicaster, 0);
+        assertEquals(100, CountingListener.count.get());
+    }
+
+    @Test
+    public void testListenerRegistrationAfterFirstEventIsHonored() {
+        SimpleApplicationEventMulticaster multicaster = new SimpleApplicationEventMulticaster();
+        RecordingListener first = new RecordingListener(3);
+        multicaster.addApplicationListener(first);
+        multicaster.multicastEvent(new NumberEvent(1));
+
+        RecordingListener second = new RecordingListener(3);
+        multicaster.addApplicationListener(second);
+        multicaster.addApplicationListener(new ApplicationListener<PingEvent>() {
+            public void onApplicationEvent(PingEvent event) {
+            }
+        });
+        multicaster.multicastEvent(new NumberEvent(2));
+
+        multicaster.removeApplicationListener(first);
+        multicaster.multicastEvent(new NumberEvent(3));
+
+        assertEquals(Arrays.asList(1, 2), first.numbers);
+        assertEquals(Arrays.asList(2, 3), second.numbers);
+    }
+
+    private AsyncApplicationEventMulticaster newStalledMulticaster(final List<Runnable> tasks, OverflowPolicy policy) {
+        AsyncApplicationEventMulticaster multicaster = new AsyncApplicationEventMulticaster();
+        multicaster.setTaskExecutor(new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        multicaster.setQueueCapacity(2);
+        multicaster.setOverflowPolicy(policy);
+        return multicaster;
+    }
+
+    private static void waitForQueueCount(AsyncApplicationEventMulticaster multicaster, int count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (multicaster.getListenerQueueCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, multicaster.getListenerQueueCount());
+    }
+
+
+    @SuppressWarnings("serial")
+    static class NumberEvent extends ApplicationEvent {
+
+        NumberEvent(int number) {
+            super(number);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class PingEvent extends ApplicationEvent {
+
+        PingEvent(Object source) {
+            super(source);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class PongEvent extends ApplicationEvent {
+
+        PongEvent(Object source) {
+            super(source);
+        }
+    }
+
+    static class RecordingListener implements ApplicationListener<NumberEvent> {
+
+        final List<Integer> numbers = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        private final CountDownLatch latch;
+
+        RecordingListener(int expected) {
+            this.latch = new CountDownLatch(expected);
+        }
+
+        public void onApplicationEvent(NumberEvent event) {
+            numbers.add((Integer) event.getSource());
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class CountingListener implements ApplicationListener<NumberEvent> {
+
+        static final AtomicInteger count = new AtomicInteger();
+
+        public void onApplicationEvent(NumberEvent event) {
+            count.incrementAndGet();
+        }
+    }
+
+}
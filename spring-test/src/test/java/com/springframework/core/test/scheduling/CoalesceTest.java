@@ -0,0 +1,264 @@
+package com.springframework.core.test.scheduling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.AsyncAnnotationAdvisor;
+import org.springframework.scheduling.annotation.Coalesce;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for coalescing @Async calls: full and timed batches, back-pressure,
+ * per-target-class resolution, and that no buffered call
+ * gets lost when the advisor (and with it the interceptor) is destroyed.
+ */
+public class CoalesceTest {
+
+    private ExecutorService executor;
+
+    private AsyncAnnotationAdvisor advisor;
+
+    private Recorder recorder;
+
+    private Recording proxy;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        advisor = new AsyncAnnotationAdvisor(executor);
+        recorder = new Recorder();
+        ProxyFactory proxyFactory = new ProxyFactory(recorder);
+        proxyFactory.addAdvisor(advisor);
+        proxy = (Recording) proxyFactory.getProxy();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        advisor.destroy();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFullBatchIsHandedOver() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            proxy.record(i);
+        }
+        recorder.await(5);
+        assertEquals(Collections.singletonList(5), recorder.batchSizes());
+    }
+
+    @Test
+    public void testPartialBatchIsHandedOverAfterMaxDelay() throws Exception {
+        TimedRecorder timedRecorder = new TimedRecorder();
+        Recording timedProxy = createProxy(timedRecorder);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            timedProxy.record(i);
+        }
+        assertEquals(0, timedRecorder.count());
+
+        timedRecorder.await(3);
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertEquals(Collections.singletonList(3), timedRecorder.batchSizes());
+
+        // the timer is re-armed for the next partial batch
+        timedProxy.record(3);
+        timedRecorder.await(4);
+        assertEquals(Arrays.asList(3, 1), timedRecorder.batchSizes());
+    }
+
+    @Test
+    public void testCallerIsBlockedWhileBufferIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        BoundedRecorder boundedRecorder = new BoundedRecorder();
+        final Recording boundedProxy = createProxy(boundedRecorder);
+        // fills the buffer, with its drain queued behind the blocking task
+        boundedProxy.record(1);
+        boundedProxy.record(2);
+
+        Thread caller = new Thread() {
+            public void run() {
+                boundedProxy.record(3);
+            }
+        };
+        caller.start();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, caller.getState());
+        assertEquals(0, boundedRecorder.count());
+
+        release.countDown();
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+        boundedRecorder.await(2);
+        assertEquals(Integer.valueOf(2), boundedRecorder.batchSizes().get(0));
+        advisor.destroy();
+        assertEquals(3, boundedRecorder.count());
+    }
+
+    @Test
+    public void testCoalescingIsDeterminedPerTargetClass() throws Exception {
+        PlainRecorder plainRecorder = new PlainRecorder();
+        Recording plainProxy = createProxy(plainRecorder);
+
+        proxy.record(1);
+        plainProxy.record(1);
+        assertTrue(plainRecorder.recorded.await(5, TimeUnit.SECONDS));
+        assertEquals(0, recorder.count());
+    }
+
+    @Test
+    public void testBufferedCallsAreFlushedOnDestroy() throws Exception {
+        proxy.record(1);
+        proxy.record(2);
+        assertTrue(timerThreadRunning(true));
+
+        advisor.destroy();
+        assertEquals(2, recorder.count());
+        assertFalse(timerThreadRunning(false));
+        assertEquals(Thread.currentThread(), recorder.lastThread);
+    }
+
+    @Test
+    public void testCallsAfterDestroyAreHandedOverRightAway() throws Exception {
+        advisor.destroy();
+        proxy.record(1);
+        assertEquals(1, recorder.count());
+        assertFalse(timerThreadRunning(false));
+    }
+
+    private Recording createProxy(Recording target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvisor(advisor);
+        return (Recording) proxyFactory.getProxy();
+    }
+
+    /**
+     * Wait for the timer thread to be started or stopped, and return whether it is running.
+     */
+    private static boolean timerThreadRunning(boolean expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        boolean running;
+        do {
+            running = false;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("async-coalesce-") && thread.isAlive()) {
+                    running = true;
+                }
+            }
+            if (running == expected) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        while (System.currentTimeMillis() < deadline);
+        return running;
+    }
+
+
+    public interface Recording {
+
+        void record(Integer value);
+
+        void recordAll(List<Integer> values);
+    }
+
+    public static class Recorder implements Recording {
+
+        private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        private int count;
+
+        volatile Thread lastThread;
+
+        @Async
+        @Coalesce(batchMethod = "recordAll", maxBatchSize = 5, maxDelay = 60000)
+        public void record(Integer value) {
+            recordAll(Collections.singletonList(value));
+        }
+
+        public synchronized void recordAll(List<Integer> values) {
+            batchSizes.add(values.size());
+            count += values.size();
+            lastThread = Thread.currentThread();
+            notifyAll();
+        }
+
+        synchronized List<Integer> batchSizes() {
+            return new ArrayList<Integer>(batchSizes);
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized void await(int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (count < expected && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            assertEquals(expected, count);
+        }
+    }
+
+    public static class TimedRecorder extends Recorder {
+
+        @Async
+        @Coalesce(batchMethod = "recordAll", maxBatchSize = 100, maxDelay = 50)
+        public void record(Integer value) {
+            super.record(value);
+        }
+    }
+
+    public static class BoundedRecorder extends Recorder {
+
+        @Async
+        @Coalesce(batchMethod = "recordAll", maxBatchSize = 2, bufferCapacity = 2, maxDelay = 60000)
+        public void record(Integer value) {
+            super.record(value);
+        }
+    }
+
+    /**
+     * Implements the coalescing interface method of {@link Recorder} without
+     * coalescing its calls.
+     */
+    public static class PlainRecorder implements Recording {
+
+        final CountDownLatch recorded = new CountDownLatch(1);
+
+        @Async
+        public void record(Integer value) {
+            recorded.countDown();
+        }
+
+        public void recordAll(List<Integer> values) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
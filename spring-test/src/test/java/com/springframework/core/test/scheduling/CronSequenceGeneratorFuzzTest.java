@@ -0,0 +1,246 @@
+package com.springframework.core.test.scheduling;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fuzzes the arithmetic CronSequenceGenerator against the iterative,
+ * Calendar-based algorithm it replaced: random patterns, time zones and
+ * seeds, following each sequence for a number of steps.
+ *
+ * <p>The old algorithm does not reset the seconds when rolling over into
+ * the next hour or day if it had already moved them forward, thereby
+ * skipping matches (e.g. "2,16 * 6,14 * * *" after 13:06:14 yields 14:00:16),
+ * and does not re-check the hour after rolling over into the next matching
+ * day, thereby returning midnight regardless of the hours field. Wherever the
+ * two differ, the new result must match the pattern, and the old one must
+ * either be later or not match.
+ *
+ * <p>In zones with daylight saving time the two are allowed to differ
+ * across a transition, where the old algorithm depends on how a lenient
+ * Calendar resolves skipped and repeated local times. A local time skipped
+ * by the transition is shifted forward by the length of the gap, so the new
+ * result must either match the pattern or be such a shifted local time.
+ */
+public class CronSequenceGeneratorFuzzTest {
+
+    private static final String[] FIXED_OFFSET_ZONES = {"UTC", "Asia/Kolkata", "Asia/Tokyo", "GMT-03:00"};
+
+    private static final String[] DAYLIGHT_SAVING_ZONES = {"Europe/Berlin", "America/New_York",
+            "Australia/Sydney", "Australia/Lord_Howe"};
+
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG",
+            "SEP", "OCT", "NOV", "DEC"};
+
+    private static final String[] DAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    private static final long FROM = Date.UTC(80, 0, 1, 0, 0, 0);
+
+    private static final long TO = Date.UTC(180, 0, 1, 0, 0, 0);
+
+    private final Random random = new Random(20111019L);
+
+    @Test
+    public void testFixedOffsetZonesMatchIterativeAlgorithm() {
+        Stats stats = fuzz(FIXED_OFFSET_ZONES, 1500, 20, false);
+        assertEquals(0, stats.transitionDifferences);
+        assertTrue("Too few comparisons: " + stats, stats.equal > 20000);
+    }
+
+    @Test
+    public void testDaylightSavingZonesMatchIterativeAlgorithmAwayFromTransitions() {
+        Stats stats = fuzz(DAYLIGHT_SAVING_ZONES, 1500, 20, false);
+        assertTrue("Too few comparisons: " + stats, stats.equal > 20000);
+        assertTrue("Too many differences: " + stats, stats.transitionDifferences < stats.equal / 100);
+    }
+
+    @Test
+    public void testDaylightSavingTransitionsProduceMatchingTimes() {
+        Stats stats = fuzz(DAYLIGHT_SAVING_ZONES, 1500, 20, true);
+        assertTrue("Too few comparisons: " + stats, stats.equal > 10000);
+    }
+
+    private Stats fuzz(String[] zones, int patterns, int steps, boolean nearTransition) {
+        Stats stats = new Stats();
+        for (int i = 0; i < patterns; i++) {
+            String expression = randomExpression();
+            TimeZone timeZone = TimeZone.getTimeZone(zones[random.nextInt(zones.length)]);
+            CronSequenceGenerator generator = new CronSequenceGenerator(expression, timeZone);
+            IterativeCronSequenceGenerator reference = new IterativeCronSequenceGenerator(expression, timeZone);
+            long seed = FROM + (long) (random.nextDouble() * (TO - FROM));
+            if (nearTransition) {
+                seed = nextTransition(timeZone, seed) - random.nextInt(2 * 86400000);
+            }
+            for (int step = 0; step < steps; step++) {
+                String context = "'" + expression + "' in " + timeZone.getID() + " after " + seed;
+                Long expected = referenceNext(reference, seed);
+                Long actual = next(generator, seed);
+                if (actual == null) {
+                    assertNull("No match for " + context + ", expected " + expected, expected);
+                    stats.bothExhausted++;
+                    break;
+                }
+                assertTrue("Not after the seed for " + context, actual > seed);
+                assertTrue("No match for " + context + ": " + actual,
+                        reference.matches(new Date(actual)) || matchesSkippedTime(expression, timeZone, actual));
+                if (expected == null) {
+                    // The iterative algorithm gives up on sparse patterns after a few years
+                    stats.referenceExhausted++;
+                }
+                else if (expected.longValue() == actual) {
+                    stats.equal++;
+                }
+                else if (actual < expected) {
+                    stats.referenceSkipped++;
+                }
+                else if (!reference.matches(new Date(expected))) {
+                    stats.referenceInvalid++;
+                }
+                else {
+                    long later = Math.max(expected, actual);
+                    assertTrue("Expected " + expected + " but was " + actual + " for " + context,
+                            timeZone.getOffset(seed) != timeZone.getOffset(later));
+                    stats.transitionDifferences++;
+                }
+                seed = (random.nextInt(4) == 0 ? actual + random.nextInt(1000) : actual);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Whether the given instant results from a local time skipped by a daylight
+     * saving time transition, i.e. matches the pattern as a local time with the
+     * offset before the transition.
+     */
+    private static boolean matchesSkippedTime(String expression, TimeZone timeZone, long instant) {
+        int offsetBefore = timeZone.getOffset(instant - 86400000L);
+        if (timeZone.getOffset(instant) <= offsetBefore) {
+            return false;
+        }
+        TimeZone before = new SimpleTimeZone(offsetBefore, "before");
+        return new IterativeCronSequenceGenerator(expression, before).matches(new Date(instant));
+    }
+
+    /**
+     * Find the first instant after the given one at which the zone's offset
+     * changes, to the millisecond.
+     */
+    private static long nextTransition(TimeZone timeZone, long from) {
+        int offset = timeZone.getOffset(from);
+        long to = from;
+        while (timeZone.getOffset(to) == offset) {
+            to += 86400000;
+        }
+        while (to - from > 1) {
+            long middle = from + (to - from) / 2;
+            if (timeZone.getOffset(middle) == offset) {
+                from = middle;
+            }
+            else {
+                to = middle;
+            }
+        }
+        return to;
+    }
+
+    private static Long next(CronSequenceGenerator generator, long seed) {
+        try {
+            return generator.next(seed);
+        }
+        catch (IllegalStateException ex) {
+            return null;
+        }
+    }
+
+    private static Long referenceNext(IterativeCronSequenceGenerator reference, long seed) {
+        try {
+            return reference.next(new Date(seed)).getTime();
+        }
+        catch (IllegalStateException ex) {
+            return null;
+        }
+    }
+
+    private String randomExpression() {
+        return randomField(0, 59, null) + " " + randomField(0, 59, null) + " " + randomField(0, 23, null) + " "
+                + (random.nextInt(8) == 0 ? "?" : randomField(1, 31, null)) + " "
+                + randomField(1, 12, MONTHS) + " "
+                + (random.nextInt(8) == 0 ? "?" : randomField(0, 7, DAYS));
+    }
+
+    /**
+     * Build a field out of up to three comma-separated parts: wildcards,
+     * single values, ranges and increments, using names where available.
+     */
+    private String randomField(int min, int max, String[] names) {
+        if (random.nextInt(3) == 0) {
+            return "*";
+        }
+        StringBuilder field = new StringBuilder();
+        int parts = 1 + random.nextInt(3);
+        for (int i = 0; i < parts; i++) {
+            if (i > 0) {
+                field.append(',');
+            }
+            int from = min + random.nextInt(max - min + 1);
+            int to = from + random.nextInt(max - from + 1);
+            switch (random.nextInt(5)) {
+                case 0:
+                    field.append("*/").append(1 + random.nextInt(max - min + 1));
+                    break;
+                case 1:
+                    field.append(value(from, min, names)).append('/').append(1 + random.nextInt(max - min + 1));
+                    break;
+                case 2:
+                    field.append(value(from, min, names)).append('-').append(value(to, min, names))
+                            .append('/').append(1 + random.nextInt(max - min + 1));
+                    break;
+                case 3:
+                    field.append(value(from, min, names)).append('-').append(value(to, min, names));
+                    break;
+                default:
+                    field.append(value(from, min, names));
+            }
+        }
+        return field.toString();
+    }
+
+    private String value(int value, int min, String[] names) {
+        if (names != null && value - min < names.length && random.nextBoolean()) {
+            return names[value - min];
+        }
+        return String.valueOf(value);
+    }
+
+
+    private static class Stats {
+
+        int equal;
+
+        int transitionDifferences;
+
+        int referenceSkipped;
+
+        int referenceInvalid;
+
+        int referenceExhausted;
+
+        int bothExhausted;
+
+        public String toString() {
+            return equal + " equal, " + transitionDifferences + " around transitions, " + referenceSkipped
+                    + " skipped by the old algorithm, " + referenceInvalid + " not matching in the old algorithm, "
+                    + referenceExhausted
+                    + " only matched by the new algorithm, " + bothExhausted + " never matching";
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.springframework.core.test.scheduling;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.concurrent.TimingWheelTaskScheduler;
+
+/**
+ * Session timeout workload: a large number of live timeouts, each operation
+ * touching a random session, i.e. cancelling its current timeout and
+ * scheduling a new one. Compares TimingWheelTaskScheduler with
+ * ThreadPoolTaskScheduler, whose delay queue is a single locked heap.
+ *
+ * <p>With a single timeout for all sessions, deadlines arrive in ascending
+ * order and every heap insertion stops at the first comparison; with varying
+ * timeouts (e.g. per-tenant session lengths, retry backoffs) insertions sift
+ * through the heap, which also keeps every cancelled timeout until it is due.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class TaskSchedulerBenchmark {
+
+    private static final Runnable TIMEOUT = new Runnable() {
+        public void run() {
+        }
+    };
+
+    @Param({"threadPool", "timingWheel"})
+    public String schedulerType;
+
+    @Param({"500000"})
+    public int sessions;
+
+    @Param({"1800000"})
+    public long timeout;
+
+    /** Whether to pick each timeout at random between a sixteenth and all of {@link #timeout} */
+    @Param({"false", "true"})
+    public boolean varyTimeout;
+
+    private TaskScheduler scheduler;
+
+    private AtomicReferenceArray<ScheduledFuture<?>> timeouts;
+
+    @Setup
+    public void setUp() {
+        if ("timingWheel".equals(schedulerType)) {
+            TimingWheelTaskScheduler timingWheel = new TimingWheelTaskScheduler();
+            timingWheel.initialize();
+            scheduler = timingWheel;
+        }
+        else {
+            ThreadPoolTaskScheduler threadPool = new ThreadPoolTaskScheduler();
+            threadPool.initialize();
+            scheduler = threadPool;
+        }
+        timeouts = new AtomicReferenceArray<ScheduledFuture<?>>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            timeouts.set(i, scheduleTimeout(timeout));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (scheduler instanceof TimingWheelTaskScheduler) {
+            ((TimingWheelTaskScheduler) scheduler).shutdown();
+        }
+        else {
+            ((ThreadPoolTaskScheduler) scheduler).shutdown();
+        }
+    }
+
+    @Benchmark
+    public ScheduledFuture<?> touchSession(RandomState random) {
+        int session = random.nextInt(sessions);
+        long delay = (varyTimeout ? timeout - random.nextInt((int) (timeout - timeout / 16)) : timeout);
+        ScheduledFuture<?> next = scheduleTimeout(delay);
+        ScheduledFuture<?> previous = timeouts.getAndSet(session, next);
+        previous.cancel(false);
+        return next;
+    }
+
+    private ScheduledFuture<?> scheduleTimeout(long delay) {
+        return scheduler.schedule(TIMEOUT, new Date(System.currentTimeMillis() + delay));
+    }
+
+
+    @State(Scope.Thread)
+    public static class RandomState {
+
+        private final Random random = new Random();
+
+        int nextInt(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.springframework.core.test.scheduling;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.concurrent.TimingWheelTaskScheduler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for TimingWheelTaskScheduler: one-time, recurring and trigger-based
+ * tasks, cancellation and shutdown, with deadlines spread across the levels
+ * of a small wheel.
+ */
+public class TimingWheelTaskSchedulerTest {
+
+    private TimingWheelTaskScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new TimingWheelTaskScheduler();
+        scheduler.setTickDuration(1);
+        scheduler.setWheelSize(4);
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testOneTimeTasksFireAcrossLevels() throws Exception {
+        int[] delays = {0, 1, 3, 5, 17, 70, 300};
+        final CountDownLatch latch = new CountDownLatch(delays.length);
+        final List<Long> lateness = new ArrayList<Long>();
+        for (int delay : delays) {
+            final long due = System.currentTimeMillis() + delay;
+            scheduler.schedule(new Runnable() {
+                public void run() {
+                    synchronized (lateness) {
+                        lateness.add(System.currentTimeMillis() - due);
+                    }
+                    latch.countDown();
+                }
+            }, new Date(due));
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (long late : lateness) {
+            assertTrue("Task fired " + -late + "ms early", late >= -1);
+        }
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotFire() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        Runnable task = new Runnable() {
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(scheduler.schedule(task, new Date(System.currentTimeMillis() + 50 + i)));
+        }
+        for (ScheduledFuture<?> future : futures) {
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+        }
+        final CountDownLatch marker = new CountDownLatch(1);
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                marker.countDown();
+            }
+        }, new Date(System.currentTimeMillis() + 200));
+        assertTrue(marker.await(5, TimeUnit.SECONDS));
+        assertEquals(0, count.get());
+    }
+
+    @Test
+    public void testConcurrentlyScheduledTasksFireExactlyOnce() throws Exception {
+        final int threads = 4;
+        final int tasksPerThread = 2000;
+        final AtomicInteger[] fired = new AtomicInteger[threads * tasksPerThread];
+        final CountDownLatch latch = new CountDownLatch(fired.length);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> schedulingThreads = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * tasksPerThread;
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < tasksPerThread; i++) {
+                        final AtomicInteger counter = new AtomicInteger();
+                        fired[offset + i] = counter;
+                        // short delays keep the ticker draining the slots being added to
+                        scheduler.schedule(new Runnable() {
+                            public void run() {
+                                counter.incrementAndGet();
+                                latch.countDown();
+                            }
+                        }, new Date(System.currentTimeMillis() + (i % 20)));
+                    }
+                }
+            };
+            thread.start();
+            schedulingThreads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : schedulingThreads) {
+            thread.join();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        for (AtomicInteger counter : fired) {
+            assertEquals(1, counter.get());
+        }
+    }
+
+    @Test
+    public void testTasksScheduledAlongsideCancelledOnesFire() throws Exception {
+        final AtomicInteger cancelledFired = new AtomicInteger();
+        Runnable cancelledTask = new Runnable() {
+            public void run() {
+                cancelledFired.incrementAndGet();
+            }
+        };
+        final CountDownLatch latch = new CountDownLatch(50);
+        Runnable task = new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        };
+        // same deadline, so that all of them share a bucket and cancellations purge it
+        Date due = new Date(System.currentTimeMillis() + 100);
+        for (int i = 0; i < 50; i++) {
+            ScheduledFuture<?> first = scheduler.schedule(cancelledTask, due);
+            scheduler.schedule(task, due);
+            ScheduledFuture<?> second = scheduler.schedule(cancelledTask, due);
+            assertTrue(first.cancel(false));
+            assertTrue(second.cancel(false));
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, cancelledFired.get());
+    }
+
+    @Test
+    public void testFixedRateTaskRepeatsUntilCancelled() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(5);
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        }, 5);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testFixedDelayTaskRepeats() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        }, new Date(), 5);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        future.cancel(false);
+    }
+
+    @Test
+    public void testTriggerTaskStopsWhenTriggerIsExhausted() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+        ScheduledFuture<?> future = scheduler.schedule(new Runnable() {
+            public void run() {
+                count.incrementAndGet();
+                latch.countDown();
+            }
+        }, new Trigger() {
+            private int remaining = 3;
+            public Date nextExecutionTime(TriggerContext context) {
+                if (remaining-- == 0) {
+                    return null;
+                }
+                Date last = context.lastCompletionTime();
+                return new Date((last != null ? last.getTime() : System.currentTimeMillis()) + 10);
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    public void testShutdownCancelsScheduledTasks() throws Exception {
+        ScheduledFuture<?> future = scheduler.schedule(new Runnable() {
+            public void run() {
+            }
+        }, new Date(System.currentTimeMillis() + 60000));
+        scheduler.shutdown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!future.isCancelled() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(future.isCancelled());
+    }
+
+}
@@ -0,0 +1,321 @@
+package com.springframework.core.test.scheduling;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.i18n.LocaleContextPropagatingTaskDecorator;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.WorkStealingTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.RequestContextPropagatingTaskDecorator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for WorkStealingTaskExecutor: ListenableFuture callbacks, task
+ * decorators and the choice of the underlying ExecutorService.
+ */
+public class WorkStealingTaskExecutorTest {
+
+    private WorkStealingTaskExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new WorkStealingTaskExecutor();
+        executor.setParallelism(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.destroy();
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void testCallbacksAreInvokedInRegistrationOrder() throws Exception {
+        executor.afterPropertiesSet();
+        final CountDownLatch release = new CountDownLatch(1);
+        ListenableFuture<String> future = executor.submitListenable(new Callable<String>() {
+            public String call() throws Exception {
+                release.await();
+                return "result";
+            }
+        });
+        final List<String> invocations = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            final String name = "callback" + i;
+            future.addCallback(new ListenableFutureCallback<String>() {
+                public void onSuccess(String result) {
+                    invocations.add(name + ":" + result);
+                    done.countDown();
+                }
+                public void onFailure(Throwable ex) {
+                    invocations.add(name + ":" + ex);
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(invocations.isEmpty());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("[callback0:result, callback1:result, callback2:result]", invocations.toString());
+    }
+
+    @Test
+    public void testCallbackAddedAfterCompletionIsInvokedRightAway() throws Exception {
+        executor.afterPropertiesSet();
+        ListenableFuture<String> future = executor.submitListenable(new Callable<String>() {
+            public String call() {
+                return "result";
+            }
+        });
+        assertEquals("result", future.get(5, TimeUnit.SECONDS));
+
+        final AtomicReference<Thread> callbackThread = new AtomicReference<Thread>();
+        final AtomicReference<String> callbackResult = new AtomicReference<String>();
+        future.addCallback(new ListenableFutureCallback<String>() {
+            public void onSuccess(String result) {
+                callbackThread.set(Thread.currentThread());
+                callbackResult.set(result);
+            }
+            public void onFailure(Throwable ex) {
+                fail("Unexpected failure: " + ex);
+            }
+        });
+        assertSame(Thread.currentThread(), callbackThread.get());
+        assertEquals("result", callbackResult.get());
+    }
+
+    @Test
+    public void testCallbackReceivesCauseOfFailure() throws Exception {
+        executor.afterPropertiesSet();
+        final IllegalStateException failure = new IllegalStateException("failed");
+        ListenableFuture<?> future = executor.submitListenable(new Runnable() {
+            public void run() {
+                throw failure;
+            }
+        });
+        final AtomicReference<Throwable> received = new AtomicReference<Throwable>();
+        final CountDownLatch done = new CountDownLatch(1);
+        future.addCallback(new ListenableFutureCallback<Object>() {
+            public void onSuccess(Object result) {
+                done.countDown();
+            }
+            public void onFailure(Throwable ex) {
+                received.set(ex);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(failure, received.get());
+    }
+
+    @Test
+    public void testDecoratorsAreAppliedInOrderInSubmittingThread() throws Exception {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final Thread submittingThread = Thread.currentThread();
+        executor.setTaskDecorators(new RecordingDecorator("outer", events, submittingThread),
+                new RecordingDecorator("inner", events, submittingThread));
+        executor.afterPropertiesSet();
+
+        executor.submit(new Runnable() {
+            public void run() {
+                events.add("task");
+            }
+        }).get(5, TimeUnit.SECONDS);
+        // the future completes before the decorators have returned
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events.size() < 7 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // the decorator applied last wraps all others and runs first
+        assertEquals("[decorate outer, decorate inner, before inner, before outer, task, after outer, after inner]",
+                events.toString());
+    }
+
+    @Test
+    public void testLocaleContextIsPropagatedAndRestored() throws Exception {
+        executor.setTaskDecorators(new LocaleContextPropagatingTaskDecorator());
+        executor.setParallelism(1);
+        executor.afterPropertiesSet();
+
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        final AtomicReference<Locale> taskLocale = new AtomicReference<Locale>();
+        executor.submit(new Runnable() {
+            public void run() {
+                taskLocale.set(LocaleContextHolder.getLocaleContext().getLocale());
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(Locale.GERMAN, taskLocale.get());
+
+        // the single worker thread must not keep the propagated context
+        LocaleContextHolder.resetLocaleContext();
+        assertNull(executor.submit(new Callable<Object>() {
+            public Object call() {
+                return LocaleContextHolder.getLocaleContext();
+            }
+        }).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRequestAttributesArePropagatedAndRestored() throws Exception {
+        executor.setTaskDecorators(new RequestContextPropagatingTaskDecorator());
+        executor.setParallelism(1);
+        executor.afterPropertiesSet();
+
+        final RequestAttributes workerAttributes = createRequestAttributes();
+        executor.submit(new Runnable() {
+            public void run() {
+                RequestContextHolder.setRequestAttributes(workerAttributes);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        RequestAttributes requestAttributes = createRequestAttributes();
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        try {
+            assertSame(requestAttributes, executor.submit(new Callable<Object>() {
+                public Object call() {
+                    return RequestContextHolder.getRequestAttributes();
+                }
+            }).get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        assertSame(workerAttributes, executor.submit(new Callable<Object>() {
+            public Object call() {
+                RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+                RequestContextHolder.resetRequestAttributes();
+                return attributes;
+            }
+        }).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWithoutLocaleContextTaskIsNotDecorated() {
+        Runnable task = new Runnable() {
+            public void run() {
+            }
+        };
+        assertSame(task, new LocaleContextPropagatingTaskDecorator().decorate(task));
+    }
+
+    @Test
+    public void testForkJoinPoolFallbackWithoutVirtualThreadSupport() throws Exception {
+        executor.setVirtualThreads(true);
+        executor.afterPropertiesSet();
+        if (WorkStealingTaskExecutor.isVirtualThreadSupportAvailable()) {
+            assertFalse(executor.getExecutorService() instanceof ForkJoinPool);
+        }
+        else {
+            assertTrue(executor.getExecutorService() instanceof ForkJoinPool);
+            assertEquals(2, ((ForkJoinPool) executor.getExecutorService()).getParallelism());
+            assertTrue(((ForkJoinPool) executor.getExecutorService()).getAsyncMode());
+        }
+        assertEquals("done", executor.submit(new Callable<String>() {
+            public String call() {
+                return "done";
+            }
+        }).get(5, TimeUnit.SECONDS));
+
+        executor.destroy();
+        assertTrue(executor.getExecutorService().isShutdown());
+    }
+
+    @Test
+    public void testExistingForkJoinPoolIsUsedAndNotShutDown() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            executor.setForkJoinPool(pool);
+            executor.afterPropertiesSet();
+            assertSame(pool, executor.getExecutorService());
+            executor.destroy();
+            assertFalse(pool.isShutdown());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVirtualThreadsCannotBeCombinedWithForkJoinPool() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            executor.setForkJoinPool(pool);
+            executor.setVirtualThreads(true);
+            executor.afterPropertiesSet();
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static RequestAttributes createRequestAttributes() {
+        return (RequestAttributes) Proxy.newProxyInstance(WorkStealingTaskExecutorTest.class.getClassLoader(),
+                new Class<?>[] {RequestAttributes.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+
+    private static class RecordingDecorator implements TaskDecorator {
+
+        private final String name;
+
+        private final List<String> events;
+
+        private final Thread expectedThread;
+
+        RecordingDecorator(String name, List<String> events, Thread expectedThread) {
+            this.name = name;
+            this.events = events;
+            this.expectedThread = expectedThread;
+        }
+
+        public Runnable decorate(final Runnable runnable) {
+            assertSame(this.expectedThread, Thread.currentThread());
+            this.events.add("decorate " + this.name);
+            return new Runnable() {
+                public void run() {
+                    events.add("before " + name);
+                    try {
+                        runnable.run();
+                    }
+                    finally {
+                        events.add("after " + name);
+                    }
+                }
+            };
+        }
+    }
+
+}
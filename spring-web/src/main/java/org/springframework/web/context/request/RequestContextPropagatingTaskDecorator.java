@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.web.context.request;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * {@link TaskDecorator} that exposes the submitting thread's {@link RequestAttributes}
+ * to the executing thread for the duration of the task, restoring the executing
+ * thread's own RequestAttributes afterwards.
+ *
+ * <p><b>NOTE:</b> The request attributes are shared, not copied. The task needs
+ * to complete before the original request completes; after that point, the
+ * request and session scopes may no longer be accessible.
+ *
+ * @author agent
+ * @since 3.1
+ * @see RequestContextHolder
+ * @see org.springframework.scheduling.concurrent.WorkStealingTaskExecutor#setTaskDecorators
+ */
+public class RequestContextPropagatingTaskDecorator implements TaskDecorator {
+
+	public Runnable decorate(final Runnable runnable) {
+		final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+		if (requestAttributes == null) {
+			return runnable;
+		}
+		return new Runnable() {
+			public void run() {
+				RequestAttributes previousRequestAttributes = RequestContextHolder.getRequestAttributes();
+				RequestContextHolder.setRequestAttributes(requestAttributes);
+				try {
+					runnable.run();
+				}
+				finally {
+					RequestContextHolder.setRequestAttributes(previousRequestAttributes);
+				}
+			}
+		};
+	}
+
+}